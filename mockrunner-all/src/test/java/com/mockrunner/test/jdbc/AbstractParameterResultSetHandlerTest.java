@@ -67,6 +67,52 @@ public class AbstractParameterResultSetHandlerTest extends BaseTestCase
         assertSame(result1, preparedStatementHandler.getResultSet("xyz", parameter));
     }
     
+    @Test
+    public void testGetResultSetManyParameterSets() throws Exception
+    {
+        MockResultSet[] results = new MockResultSet[1000];
+        for(int ii = 0; ii < results.length; ii++)
+        {
+            results[ii] = new MockResultSet("id" + ii);
+            preparedStatementHandler.prepareResultSet("select customer", results[ii], new Object[] {new Integer(ii)});
+        }
+        MockResultSet nullResult = new MockResultSet("null");
+        preparedStatementHandler.prepareResultSet("select customer", nullResult, new Object[] {null});
+        MockResultSet arrayResult = new MockResultSet("array");
+        preparedStatementHandler.prepareResultSet("select customer", arrayResult, new Object[] {new byte[] {1, 2}});
+        MockResultSet anyResult = new MockResultSet("any");
+        preparedStatementHandler.prepareResultSet("select customer", anyResult, new Object[0]);
+        MockResultSet duplicateResult = new MockResultSet("duplicate");
+        preparedStatementHandler.prepareResultSet("select customer", duplicateResult, new Object[] {new Integer(500)});
+        Map parameter = new HashMap();
+        parameter.put(new Integer(1), new Integer(500));
+        parameter.put(new Integer(2), "x");
+        assertSame(results[500], preparedStatementHandler.getResultSet("select customer", parameter));
+        parameter.put(new Integer(1), new Long(500));
+        assertSame(anyResult, preparedStatementHandler.getResultSet("select customer", parameter));
+        parameter.put(new Integer(1), null);
+        assertSame(nullResult, preparedStatementHandler.getResultSet("select customer", parameter));
+        parameter.put(new Integer(1), new byte[] {1, 2});
+        assertSame(arrayResult, preparedStatementHandler.getResultSet("select customer", parameter));
+        preparedStatementHandler.setExactMatchParameter(true);
+        parameter.clear();
+        parameter.put(new Integer(1), new Integer(999));
+        assertSame(results[999], preparedStatementHandler.getResultSet("select customer", parameter));
+        parameter.put(new Integer(1), new Integer(1000));
+        assertNull(preparedStatementHandler.getResultSet("select customer", parameter));
+        parameter.put(new Integer(1), new byte[] {1, 2});
+        assertSame(arrayResult, preparedStatementHandler.getResultSet("select customer", parameter));
+        parameter.clear();
+        assertSame(anyResult, preparedStatementHandler.getResultSet("select customer", parameter));
+        MockResultSet addedResult = new MockResultSet("added");
+        preparedStatementHandler.prepareResultSet("select customer", addedResult, new Object[] {"abc"});
+        parameter.put(new Integer(1), "abc");
+        assertSame(addedResult, preparedStatementHandler.getResultSet("select customer", parameter));
+        preparedStatementHandler.setExactMatchParameter(false);
+        assertSame(anyResult, preparedStatementHandler.getResultSet("select customer", parameter));
+        assertSame(anyResult, preparedStatementHandler.getResultSet("SELECT CUSTOMER", parameter));
+    }
+    
     @Test
     public void testGetResultSets() throws Exception
     {
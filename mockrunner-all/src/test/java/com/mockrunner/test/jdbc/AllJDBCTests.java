@@ -14,7 +14,18 @@ import org.junit.runners.Suite;
 	ParameterUtilTest.class, XMLResultSetFactoryTest.class, BasicJDBCTestCaseAdapterTest.class,
 	PolyResultSetTest.class, MockResultSetMetaDataTest.class, MockParameterMetaDataTest.class,
 	MockRefTest.class, MockRowIdTest.class, MockSQLXMLTest.class, 
-	ArrayResultSetFactoryTest.class, StringValuesTableTest.class
+	ArrayResultSetFactoryTest.class, StringValuesTableTest.class,
+	SQLStatementIndexTest.class,
+	ColumnVectorTest.class,
+	StreamingMockResultSetTest.class,
+	BinaryResultSetFactoryTest.class,
+	MockPooledDataSourceTest.class,
+	LatencySimulationTest.class,
+	GeneratedResultSetFactoryTest.class,
+	QueryEngineTest.class,
+	DataAccessReportTest.class,
+	JDBCRecorderTest.class,
+	ResultSetComparatorTest.class
 })
 public class AllJDBCTests
 {
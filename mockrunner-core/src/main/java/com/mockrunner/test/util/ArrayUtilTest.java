@@ -139,6 +139,11 @@ public class ArrayUtilTest extends TestCase
         assertEquals(-1, ArrayUtil.indexOf(testArray, testArray), 1);
         assertEquals(1, ArrayUtil.indexOf(testArray, new byte[] {1}), 1);
         assertEquals(6, ArrayUtil.indexOf(testArray, new byte[] {7, 7, 8}), 6);
+        
+        assertEquals(6, ArrayUtil.indexOf(testArray, 9, new byte[] {7, 7, 8}, 0));
+        assertEquals(-1, ArrayUtil.indexOf(testArray, 8, new byte[] {7, 7, 8}, 0));
+        assertEquals(-1, ArrayUtil.indexOf(testArray, 9, new byte[] {3}, 4));
+        assertEquals(3, ArrayUtil.indexOf(testArray, 4, new byte[] {}, 3));
     }
     
     public void testConvertToObjectArray()
@@ -1,6 +1,9 @@
 package com.mockrunner.test.util;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -231,4 +234,60 @@ public class CaseAwareMapTest extends TestCase
         assertEquals("2", map.remove(new Integer(2)));
         assertNull(map.remove(new Integer(2)));
     }
-}
\ No newline at end of file
+    
+    public void testRemoveAndPutAgain()
+    {
+        for(int ii = 0; ii < 1000; ii++)
+        {
+            map.put("Key" + ii, new Integer(ii));
+        }
+        assertEquals(new Integer(500), map.put("KEY500", "500"));
+        assertTrue(map.keySet().contains("Key500"));
+        assertFalse(map.keySet().contains("KEY500"));
+        assertEquals("500", map.remove("key500"));
+        assertEquals(999, map.size());
+        assertNull(map.put("KEY500", "500"));
+        assertTrue(map.keySet().contains("KEY500"));
+        assertFalse(map.keySet().contains("Key500"));
+        assertEquals("500", map.get("kEy500"));
+        assertEquals(new Integer(999), map.get("kEy999"));
+        map.put(null, "null");
+        assertEquals("null", map.put(null, "null2"));
+        assertEquals("null2", map.remove(null));
+        assertEquals(1000, map.size());
+    }
+    
+    public void testConcurrentReads() throws Exception
+    {
+        for(int ii = 0; ii < 1000; ii++)
+        {
+            map.put("Key" + ii, new Integer(ii));
+        }
+        final List failures = Collections.synchronizedList(new ArrayList());
+        Thread[] threads = new Thread[4];
+        for(int ii = 0; ii < threads.length; ii++)
+        {
+            threads[ii] = new Thread()
+            {
+                public void run()
+                {
+                    for(int yy = 0; yy < 10000; yy++)
+                    {
+                        int number = yy % 1000;
+                        if(!new Integer(number).equals(map.get("KEY" + number)) || !map.containsKey("key" + number) || map.containsKey("key" + yy + "x"))
+                        {
+                            failures.add(new Integer(yy));
+                        }
+                    }
+                }
+            };
+            threads[ii].start();
+        }
+        for(int ii = 0; ii < threads.length; ii++)
+        {
+            threads[ii].join();
+        }
+        assertTrue(failures.isEmpty());
+        assertEquals(1000, map.size());
+    }
+}
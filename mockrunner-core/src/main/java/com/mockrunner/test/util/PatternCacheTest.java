@@ -0,0 +1,105 @@
+package com.mockrunner.test.util;
+
+import org.apache.oro.text.regex.Pattern;
+import org.apache.oro.text.regex.Perl5Matcher;
+
+import com.mockrunner.base.NestedApplicationException;
+import com.mockrunner.util.common.PatternCache;
+
+import junit.framework.TestCase;
+
+public class PatternCacheTest extends TestCase
+{
+    private PatternCache cache;
+    
+    protected void setUp() throws Exception
+    {
+        super.setUp();
+        cache = new PatternCache(3);
+    }
+    
+    public void testGetPerl5Pattern()
+    {
+        Pattern pattern = cache.getPerl5Pattern("a[abc]c", true);
+        assertTrue(new Perl5Matcher().matches("abc", pattern));
+        assertFalse(new Perl5Matcher().matches("aBc", pattern));
+        assertSame(pattern, cache.getPerl5Pattern("a[abc]c", true));
+        Pattern caseInsensitivePattern = cache.getPerl5Pattern("a[abc]c", false);
+        assertNotSame(pattern, caseInsensitivePattern);
+        assertTrue(new Perl5Matcher().matches("aBc", caseInsensitivePattern));
+        assertEquals(2, cache.getSize());
+        assertEquals(1, cache.getHitCount());
+        assertEquals(2, cache.getMissCount());
+    }
+    
+    public void testGetJavaPattern()
+    {
+        java.util.regex.Pattern pattern = cache.getJavaPattern("a[abc]c", false);
+        assertTrue(pattern.matcher("aBc").matches());
+        assertSame(pattern, cache.getJavaPattern("a[abc]c", false));
+        cache.getPerl5Pattern("a[abc]c", false);
+        assertEquals(2, cache.getSize());
+        assertEquals(1, cache.getHitCount());
+        assertEquals(2, cache.getMissCount());
+    }
+    
+    public void testMalformedPattern()
+    {
+        try
+        {
+            cache.getPerl5Pattern("a(b", true);
+            fail();
+        }
+        catch(NestedApplicationException exc)
+        {
+            //should throw exception
+        }
+        try
+        {
+            cache.getJavaPattern("a(b", true);
+            fail();
+        }
+        catch(NestedApplicationException exc)
+        {
+            //should throw exception
+        }
+        assertEquals(0, cache.getSize());
+    }
+    
+    public void testEviction()
+    {
+        Pattern pattern1 = cache.getPerl5Pattern("1", true);
+        Pattern pattern2 = cache.getPerl5Pattern("2", true);
+        cache.getPerl5Pattern("3", true);
+        assertSame(pattern1, cache.getPerl5Pattern("1", true));
+        cache.getPerl5Pattern("4", true);
+        assertEquals(3, cache.getSize());
+        assertSame(pattern1, cache.getPerl5Pattern("1", true));
+        assertNotSame(pattern2, cache.getPerl5Pattern("2", true));
+        cache.setMaxSize(1);
+        assertEquals(1, cache.getMaxSize());
+        assertEquals(1, cache.getSize());
+        cache.resetStatistics();
+        cache.getPerl5Pattern("2", true);
+        assertEquals(1, cache.getHitCount());
+        assertEquals(0, cache.getMissCount());
+    }
+    
+    public void testDisabledCache()
+    {
+        cache.setMaxSize(0);
+        Pattern pattern = cache.getPerl5Pattern("abc", true);
+        assertNotSame(pattern, cache.getPerl5Pattern("abc", true));
+        assertEquals(0, cache.getSize());
+        assertEquals(2, cache.getMissCount());
+    }
+    
+    public void testClear()
+    {
+        cache.getPerl5Pattern("abc", true);
+        cache.getJavaPattern("abc", true);
+        cache.clear();
+        assertEquals(0, cache.getSize());
+        assertEquals(2, cache.getMissCount());
+    }
+}
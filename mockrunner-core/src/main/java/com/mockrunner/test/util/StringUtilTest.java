@@ -229,6 +229,18 @@ public class StringUtilTest extends TestCase
         assertFalse(StringUtil.matchesPerl5("a[abc]c", "abc", true));
     }
     
+    public void testMatchesJavaRegex()
+    {
+        assertTrue(StringUtil.matchesJavaRegex("abc", "abc", true));
+        assertTrue(StringUtil.matchesJavaRegex("abc", "a[abc]c", true));
+        assertTrue(StringUtil.matchesJavaRegex("aBc", "a[abc]c", false));
+        assertTrue(StringUtil.matchesJavaRegex("abc", ".*", true));
+        assertFalse(StringUtil.matchesJavaRegex("aBc", "abc", true));
+        assertFalse(StringUtil.matchesJavaRegex("aBc", "a[abc]c", true));
+        assertFalse(StringUtil.matchesJavaRegex("a[abc]c", "abc", true));
+        assertFalse(StringUtil.matchesJavaRegex("abcd", "abc", true));
+    }
+    
     public void testFieldToString()
     { 
         assertEquals("test: class java.lang.String", StringUtil.fieldToString("test", String.class));
@@ -404,10 +404,30 @@ public class ArrayUtil
      */
     public static int indexOf(byte[] source, byte[] bytes, int index)
     {
-        if(index + bytes.length > source.length) return -1;
-        for(int ii = index; ii <= source.length - bytes.length; ii++)
-        {
-            int yy = 0; 
+        return indexOf(source, source.length, bytes, index);
+    }
+    
+    /**
+     * Returns the index of the first occurence of the
+     * array <i>bytes</i> in the first <i>sourceLength</i>
+     * bytes of the array <i>source</i>.
+     * @param source the array in which to search
+     * @param sourceLength the number of bytes of <i>source</i> to search
+     * @param bytes the array to search
+     * @param index the index where to begin the search
+     * @return the index of the first occurence or
+     *         -1, if <i>source</i> does not contain <i>bytes</i>
+     */
+    public static int indexOf(byte[] source, int sourceLength, byte[] bytes, int index)
+    {
+        if(index + bytes.length > sourceLength) return -1;
+        if(bytes.length == 0) return index;
+        byte first = bytes[0];
+        int last = sourceLength - bytes.length;
+        for(int ii = index; ii <= last; ii++)
+        {
+            if(source[ii] != first) continue;
+            int yy = 1; 
             while(yy < bytes.length && bytes[yy] == source[ii + yy]) yy++;
             if(yy == bytes.length) return ii;
         }
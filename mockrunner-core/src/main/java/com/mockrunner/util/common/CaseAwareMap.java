@@ -35,13 +35,16 @@ import java.util.Set;
  * behaves like a usual <code>HashMap</code>.<br>
  * Note: This class is similar to a <code>TreeMap(String.CASE_INSENSITIVE_ORDER)</code>
  *       except that non-strings do not throw a <code>ClassCastException</code>
- *       and that keys are not sorted.
+ *       and that keys are not sorted.<br>
+ * Reading methods do not modify the <code>Map</code>, so a <code>Map</code>
+ * that is not modified anymore can be read by multiple threads.
  */
 public class CaseAwareMap implements Map
 {
     private boolean isCaseSensitive;
     private Map caseInsensitiveMap;
     private Map actualMap;
+    private Map originalKeyMap;
      
     public CaseAwareMap()
     {
@@ -53,6 +56,7 @@ public class CaseAwareMap implements Map
         this.isCaseSensitive = isCaseSensitive;
         caseInsensitiveMap = new HashMap();
         actualMap = new HashMap();
+        originalKeyMap = new HashMap();
     }
     
     /**
@@ -82,10 +86,12 @@ public class CaseAwareMap implements Map
     {
         caseInsensitiveMap.clear();
         actualMap.clear();
+        originalKeyMap.clear();
     }
     
     public boolean containsKey(Object key)
     {
+        if(actualMap.containsKey(key)) return true;
         Object compareKey = getCompareKey(key);
         return getCompareMap().containsKey(compareKey);
     }
@@ -102,6 +108,8 @@ public class CaseAwareMap implements Map
     
     public Object get(Object key)
     {
+        Object value = actualMap.get(key);
+        if(null != value) return value;
         Object compareKey = getCompareKey(key);
         return getCompareMap().get(compareKey);
     }
@@ -147,15 +155,6 @@ public class CaseAwareMap implements Map
         return actualMap.values();
     }
     
-    private boolean areKeysEquals(Object actualKey, Object compareKey)
-    {
-        if(null == actualKey && null == compareKey) return true;
-        if(null == actualKey) return false;
-        if(null == compareKey) return false;
-        Object actualCompareKey = getCompareKey(actualKey);
-        return compareKey.equals(actualCompareKey);
-    }
-    
     private boolean isStringKey(Object key)
     {
         return (null != key) && (key instanceof String);
@@ -186,16 +185,7 @@ public class CaseAwareMap implements Map
         {
             return modifier.modify(key, compareKey);
         }
-        Iterator iterator = actualMap.keySet().iterator();
-        while(iterator.hasNext())
-        {
-            Object actualKey = iterator.next();
-            if(areKeysEquals(actualKey, compareKey))
-            {
-                return modifier.modify(actualKey, compareKey);
-            }
-        }
-        return null;
+        return modifier.modify(originalKeyMap.get(compareKey), compareKey);
     }
     
     private interface ConsistentModify
@@ -208,6 +198,7 @@ public class CaseAwareMap implements Map
         public Object modify(Object key1, Object key2)
         {
             actualMap.remove(key1);
+            originalKeyMap.remove(key2);
             return caseInsensitiveMap.remove(key2);
         }
     }
@@ -224,6 +215,7 @@ public class CaseAwareMap implements Map
         public Object modify(Object key1, Object key2)
         {
             actualMap.put(key1, value);
+            originalKeyMap.put(key2, key1);
             return caseInsensitiveMap.put(key2, value);
         }
     }
@@ -0,0 +1,238 @@
+package com.mockrunner.util.common;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.PatternSyntaxException;
+
+import org.apache.oro.text.regex.MalformedPatternException;
+import org.apache.oro.text.regex.Pattern;
+import org.apache.oro.text.regex.Perl5Compiler;
+
+import com.mockrunner.base.NestedApplicationException;
+
+/**
+ * Bounded cache for compiled regular expressions. The cache holds
+ * Perl5 patterns (used by {@link StringUtil#matchesPerl5}) and
+ * <code>java.util.regex</code> patterns (used by
+ * {@link StringUtil#matchesJavaRegex}). Patterns are keyed by the
+ * expression and the case sensitivity flag. If the cache is full,
+ * the least recently used pattern is evicted.
+ * The number of cache hits and misses is recorded, so the maximum
+ * size can be adjusted if necessary. All methods are thread safe.
+ * Compiled patterns of both kinds are immutable and can be shared,
+ * but the matchers are not, so callers create their own matcher.
+ */
+public class PatternCache
+{
+    /**
+     * The default maximum number of cached patterns.
+     */
+    public static final int DEFAULT_MAX_SIZE = 256;
+
+    private final static PatternCache instance = new PatternCache(DEFAULT_MAX_SIZE);
+
+    private int maxSize;
+    private Map patterns;
+    private long hits;
+    private long misses;
+
+    /**
+     * Returns the shared instance used by {@link StringUtil}.
+     * @return the shared <code>PatternCache</code>
+     */
+    public static PatternCache getInstance()
+    {
+        return instance;
+    }
+
+    public PatternCache(int maxSize)
+    {
+        this.maxSize = maxSize;
+        this.patterns = new LinkedHashMap(16, 0.75f, true)
+        {
+            protected boolean removeEldestEntry(Map.Entry eldest)
+            {
+                return size() > PatternCache.this.maxSize;
+            }
+        };
+    }
+
+    /**
+     * Returns the compiled Perl5 pattern for the specified expression.
+     * @param expression the regular expression
+     * @param caseSensitive is the pattern case sensitive
+     * @return the compiled pattern
+     * @throws NestedApplicationException if the expression is malformed
+     */
+    public Pattern getPerl5Pattern(String expression, boolean caseSensitive)
+    {
+        PatternKey key = new PatternKey(expression, caseSensitive, false);
+        Pattern pattern = (Pattern)lookup(key);
+        if(null != pattern) return pattern;
+        int mask = Perl5Compiler.CASE_INSENSITIVE_MASK;
+        if(caseSensitive)
+        {
+            mask = Perl5Compiler.DEFAULT_MASK;
+        }
+        try
+        {
+            pattern = new Perl5Compiler().compile(expression, mask);
+        }
+        catch(MalformedPatternException exc)
+        {
+            throw new NestedApplicationException(exc);
+        }
+        store(key, pattern);
+        return pattern;
+    }
+
+    /**
+     * Returns the compiled <code>java.util.regex</code> pattern
+     * for the specified expression.
+     * @param expression the regular expression
+     * @param caseSensitive is the pattern case sensitive
+     * @return the compiled pattern
+     * @throws NestedApplicationException if the expression is malformed
+     */
+    public java.util.regex.Pattern getJavaPattern(String expression, boolean caseSensitive)
+    {
+        PatternKey key = new PatternKey(expression, caseSensitive, true);
+        java.util.regex.Pattern pattern = (java.util.regex.Pattern)lookup(key);
+        if(null != pattern) return pattern;
+        int flags = 0;
+        if(!caseSensitive)
+        {
+            flags = java.util.regex.Pattern.CASE_INSENSITIVE;
+        }
+        try
+        {
+            pattern = java.util.regex.Pattern.compile(expression, flags);
+        }
+        catch(PatternSyntaxException exc)
+        {
+            throw new NestedApplicationException(exc);
+        }
+        store(key, pattern);
+        return pattern;
+    }
+
+    /**
+     * Sets the maximum number of cached patterns. If the cache
+     * contains more patterns, the least recently used ones are
+     * evicted.
+     * @param maxSize the maximum number of patterns
+     */
+    public synchronized void setMaxSize(int maxSize)
+    {
+        this.maxSize = maxSize;
+        while(patterns.size() > maxSize)
+        {
+            patterns.remove(patterns.keySet().iterator().next());
+        }
+    }
+
+    /**
+     * Returns the maximum number of cached patterns.
+     * @return the maximum number of patterns
+     */
+    public synchronized int getMaxSize()
+    {
+        return maxSize;
+    }
+
+    /**
+     * Returns the current number of cached patterns.
+     * @return the number of patterns
+     */
+    public synchronized int getSize()
+    {
+        return patterns.size();
+    }
+
+    /**
+     * Returns how often a requested pattern was found in the cache.
+     * @return the number of cache hits
+     */
+    public synchronized long getHitCount()
+    {
+        return hits;
+    }
+
+    /**
+     * Returns how often a requested pattern had to be compiled.
+     * @return the number of cache misses
+     */
+    public synchronized long getMissCount()
+    {
+        return misses;
+    }
+
+    /**
+     * Resets the hit and miss counters.
+     */
+    public synchronized void resetStatistics()
+    {
+        hits = 0;
+        misses = 0;
+    }
+
+    /**
+     * Removes all patterns from the cache. Does not reset
+     * the hit and miss counters.
+     */
+    public synchronized void clear()
+    {
+        patterns.clear();
+    }
+
+    private synchronized Object lookup(PatternKey key)
+    {
+        Object pattern = patterns.get(key);
+        if(null != pattern)
+        {
+            hits++;
+        }
+        else
+        {
+            misses++;
+        }
+        return pattern;
+    }
+
+    private synchronized void store(PatternKey key, Object pattern)
+    {
+        if(maxSize > 0)
+        {
+            patterns.put(key, pattern);
+        }
+    }
+
+    private static class PatternKey
+    {
+        private String expression;
+        private boolean caseSensitive;
+        private boolean javaRegex;
+
+        public PatternKey(String expression, boolean caseSensitive, boolean javaRegex)
+        {
+            this.expression = expression;
+            this.caseSensitive = caseSensitive;
+            this.javaRegex = javaRegex;
+        }
+
+        public boolean equals(Object object)
+        {
+            if(!(object instanceof PatternKey)) return false;
+            PatternKey other = (PatternKey)object;
+            return (caseSensitive == other.caseSensitive) && (javaRegex == other.javaRegex) && expression.equals(other.expression);
+        }
+
+        public int hashCode()
+        {
+            int hashCode = expression.hashCode() * 4;
+            if(caseSensitive) hashCode += 1;
+            if(javaRegex) hashCode += 2;
+            return hashCode;
+        }
+    }
+}
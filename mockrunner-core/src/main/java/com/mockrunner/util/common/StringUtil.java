@@ -7,13 +7,9 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 
-import org.apache.oro.text.regex.MalformedPatternException;
 import org.apache.oro.text.regex.Pattern;
-import org.apache.oro.text.regex.Perl5Compiler;
 import org.apache.oro.text.regex.Perl5Matcher;
 
-import com.mockrunner.base.NestedApplicationException;
-
 /**
  * Simple util class for <code>String</code> related methods.
  */
@@ -361,7 +357,8 @@ public class StringUtil
     /**
      * Returns if the regular expression <code>target</code> matches 
      * <code>source</code>, ignoring case, if <code>caseSensitive</code> 
-     * is <code>false</code>.
+     * is <code>false</code>. The compiled expression is kept in
+     * the {@link PatternCache}.
      * @param source the source String
      * @param target the target String
      * @param caseSensitive is the comparison case sensitive
@@ -370,19 +367,26 @@ public class StringUtil
      */
     public static boolean matchesPerl5(String source, String target, boolean caseSensitive)
     {
-        int mask = Perl5Compiler.CASE_INSENSITIVE_MASK;
-        if(caseSensitive)
-        {
-            mask = Perl5Compiler.DEFAULT_MASK;
-        }
-        try
-        {
-            Pattern pattern = new Perl5Compiler().compile(target, mask);
-            return (new Perl5Matcher().matches(source, pattern));
-        } 
-        catch(MalformedPatternException exc)
-        {
-            throw new NestedApplicationException(exc);
-        }
+        Pattern pattern = PatternCache.getInstance().getPerl5Pattern(target, caseSensitive);
+        return (new Perl5Matcher().matches(source, pattern));
+    }
+    
+    /**
+     * Returns if the <code>java.util.regex</code> regular expression 
+     * <code>target</code> matches <code>source</code>, ignoring case, 
+     * if <code>caseSensitive</code> is <code>false</code>. Like
+     * {@link #matchesPerl5}, the expression must match the complete
+     * <code>source</code>. The compiled expression is kept in
+     * the {@link PatternCache}.
+     * @param source the source String
+     * @param target the target String
+     * @param caseSensitive is the comparison case sensitive
+     * @return <code>true</code> if the strings matches
+     *         <code>false</code> otherwise
+     */
+    public static boolean matchesJavaRegex(String source, String target, boolean caseSensitive)
+    {
+        java.util.regex.Pattern pattern = PatternCache.getInstance().getJavaPattern(target, caseSensitive);
+        return pattern.matcher(source).matches();
     }
 }
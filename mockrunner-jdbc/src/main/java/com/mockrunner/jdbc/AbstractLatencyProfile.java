@@ -0,0 +1,28 @@
+package com.mockrunner.jdbc;
+
+/**
+ * Base class for the {@link LatencyProfile} implementations.
+ * Manages the fetch time per row.
+ */
+public abstract class AbstractLatencyProfile implements LatencyProfile
+{
+    private volatile long rowFetchLatency = 0;
+    
+    /**
+     * Sets the time it takes to fetch one row. Default is 0.
+     * @param rowFetchLatency the fetch time per row in milliseconds
+     */
+    public void setRowFetchLatency(long rowFetchLatency)
+    {
+        if(rowFetchLatency < 0)
+        {
+            throw new IllegalArgumentException("rowFetchLatency must be greater or equals 0");
+        }
+        this.rowFetchLatency = rowFetchLatency;
+    }
+    
+    public long getRowFetchLatency()
+    {
+        return rowFetchLatency;
+    }
+}
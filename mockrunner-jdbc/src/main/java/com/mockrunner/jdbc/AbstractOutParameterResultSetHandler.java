@@ -1,11 +1,9 @@
 package com.mockrunner.jdbc;
 
-import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.TreeMap;
 
 /**
  * Abstract base class for all statement types
@@ -15,8 +13,8 @@ public abstract class AbstractOutParameterResultSetHandler extends AbstractParam
 {
     private boolean mustRegisterOutParameters = false;
     private Map globalOutParameter = null;
-    private Map outParameterForStatement = new TreeMap();
-    private Map outParameterForStatementParameters = new TreeMap();
+    private Map outParameterForStatement = new SQLStatementMap();
+    private Map outParameterForStatementParameters = new SQLStatementMap();
     
     /**
      * Set if out parameters must be registered to be returned.
@@ -190,7 +188,7 @@ public abstract class AbstractOutParameterResultSetHandler extends AbstractParam
         List list = (List)outParameterForStatementParameters.get(sql);
         if(null == list)
         {
-            list = new ArrayList();
+            list = createParameterWrapperList();
             outParameterForStatementParameters.put(sql, list);
         }
         list.add(new MockOutParameterWrapper(new HashMap(outParameters), new HashMap(parameters)));
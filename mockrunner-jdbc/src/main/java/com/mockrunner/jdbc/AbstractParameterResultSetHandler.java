@@ -1,14 +1,17 @@
 package com.mockrunner.jdbc;
 
+import java.math.BigDecimal;
+import java.math.BigInteger;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.TreeMap;
+import java.util.Set;
 
 import com.mockrunner.mock.jdbc.MockResultSet;
 import com.mockrunner.util.common.ArrayUtil;
@@ -20,15 +23,19 @@ import com.mockrunner.util.common.ArrayUtil;
  */
 public abstract class AbstractParameterResultSetHandler extends AbstractResultSetHandler
 {
+    private final static Set indexableTypes = new HashSet(Arrays.asList(new Class[] {String.class, Integer.class, Long.class, Short.class, Byte.class, Double.class, Float.class, Boolean.class, Character.class, BigInteger.class, BigDecimal.class}));
+    
     private boolean exactMatchParameter = false;
-    private Map resultSetsForStatement = new TreeMap();
-    private Map updateCountForStatement = new TreeMap();
-    private Map throwsSQLException = new TreeMap();
-    private Map generatedKeysForStatement = new TreeMap();
-	private Map executedStatementParameters = new TreeMap();
+    private Map resultSetsForStatement = new SQLStatementMap();
+    private Map updateCountForStatement = new SQLStatementMap();
+    private Map throwsSQLException = new SQLStatementMap();
+    private Map generatedKeysForStatement = new SQLStatementMap();
+	private Map executedStatementParameters = createStatementMap(Collections.EMPTY_MAP);
     
 	/**
 	 * Collects all SQL strings that were executed.
+	 * The number of recorded parameter sets depends on
+	 * the journal mode (see {@link #setJournalMode}).
 	 * @param sql the SQL string
 	 * @param parameters a copy of the corresponding parameter map
 	 */
@@ -36,15 +43,50 @@ public abstract class AbstractParameterResultSetHandler extends AbstractResultSe
 	{
 		if(null != parameters)
 		{
-			if(null == executedStatementParameters.get(sql))
+			if(isCollectingStatistics())
 			{
-				executedStatementParameters.put(sql, new ParameterSets(sql));
+				getStatisticsForStatement(sql).addParameterSet();
 			}
 			ParameterSets sets = (ParameterSets)executedStatementParameters.get(sql);
+			if(null == sets)
+			{
+				sets = (ParameterSets)getOrPut(executedStatementParameters, sql, new ParameterSets(sql, createJournalList(Collections.EMPTY_LIST)));
+			}
 			sets.addParameterSet(parameters);
 		}
 	}
 	
+	/**
+	 * Records the parameter sets of an executed batch. The parameter
+	 * values are copied and stored column by column as one block,
+	 * the recorded parameter sets are read only <code>Map</code> views
+	 * of the block. The number of recorded parameter sets depends on
+	 * the journal mode (see {@link #setJournalMode}). Only the parameter
+	 * sets that are kept by the journal are copied.
+	 * @param sql the SQL string
+	 * @param parameterSets the <code>List</code> of parameter <code>Map</code> objects
+	 */
+	public void addParameterSetsForExecutedBatch(String sql, List parameterSets)
+	{
+		if(null == parameterSets || parameterSets.isEmpty()) return;
+		if(isCollectingStatistics())
+		{
+			getStatisticsForStatement(sql).addParameterSets(parameterSets.size());
+		}
+		int capacity = getJournalCapacity();
+		if(0 == capacity) return;
+		if(capacity > 0 && capacity < parameterSets.size())
+		{
+			parameterSets = parameterSets.subList(parameterSets.size() - capacity, parameterSets.size());
+		}
+		ParameterSets sets = (ParameterSets)executedStatementParameters.get(sql);
+		if(null == sets)
+		{
+			sets = (ParameterSets)getOrPut(executedStatementParameters, sql, new ParameterSets(sql, createJournalList(Collections.EMPTY_LIST)));
+		}
+		sets.getParameterSetList().addAll(new ParameterBlock(parameterSets));
+	}
+	
 	/**
 	 * Returns the <code>ParameterSets</code> for a specified
 	 * SQL string.
@@ -64,9 +106,75 @@ public abstract class AbstractParameterResultSetHandler extends AbstractResultSe
 	 */
 	public Map getExecutedStatementParameterMap()
 	{
-		return Collections.unmodifiableMap(executedStatementParameters);
+		return getSortedMap(executedStatementParameters);
+	}
+	
+	/**
+	 * Returns the {@link ParameterSets} objects of all executed SQL strings
+	 * that are matched by the specified SQL string, ordered by the
+	 * executed SQL strings. Uses an index of the executed SQL strings
+	 * (except for regular expressions).
+	 * @param sql the SQL string
+	 * @param matcher the {@link SQLStatementMatcher} with the match parameters
+	 * @return the <code>List</code> of {@link ParameterSets} objects
+	 */
+	public List getExecutedStatementParameterSets(String sql, SQLStatementMatcher matcher)
+	{
+		return getMatchingValues(executedStatementParameters, matcher, sql);
 	}
     
+    public void setJournalMode(int journalMode)
+    {
+        super.setJournalMode(journalMode);
+        updateParameterSetLists();
+    }
+    
+    public void setJournalSize(int journalSize)
+    {
+        super.setJournalSize(journalSize);
+        updateParameterSetLists();
+    }
+    
+    public void setConcurrent(boolean concurrent)
+    {
+        super.setConcurrent(concurrent);
+        updateParameterSetLists();
+    }
+    
+    public void clearExecutedStatements()
+    {
+        super.clearExecutedStatements();
+        executedStatementParameters = createStatementMap(Collections.EMPTY_MAP);
+    }
+    
+    protected Map createStatisticsFromJournal()
+    {
+        Map statisticsMap = super.createStatisticsFromJournal();
+        Iterator iterator = executedStatementParameters.values().iterator();
+        while(iterator.hasNext())
+        {
+            ParameterSets sets = (ParameterSets)iterator.next();
+            ExecutedStatementStatistics statistics = (ExecutedStatementStatistics)statisticsMap.get(sets.getSQLStatement());
+            if(null != statistics)
+            {
+                statistics.addParameterSets(sets.getNumberParameterSets());
+            }
+        }
+        return statisticsMap;
+    }
+    
+    private void updateParameterSetLists()
+    {
+        Map newParameters = createStatementMap(Collections.EMPTY_MAP);
+        Iterator iterator = executedStatementParameters.values().iterator();
+        while(iterator.hasNext())
+        {
+            ParameterSets sets = (ParameterSets)iterator.next();
+            newParameters.put(sets.getSQLStatement(), new ParameterSets(sets.getSQLStatement(), createJournalList(sets.getParameterSetList())));
+        }
+        executedStatementParameters = newParameters;
+    }
+    
     /**
      * @deprecated use {@link #getExecutedStatementParameterMap}
      */
@@ -142,6 +250,85 @@ public abstract class AbstractParameterResultSetHandler extends AbstractResultSe
         return null;
     }
     
+    /**
+     * Returns the update count for each parameter set of a batch.
+     * The SQL string is matched only once for the whole batch.
+     * For each parameter set the first update count prepared for the
+     * SQL string and the parameters is returned. If there is none, the
+     * first update count prepared for the SQL string without parameters
+     * or the global update count is returned.
+     * Please note that you can modify the match parameters with 
+     * {@link #setCaseSensitive}, {@link #setExactMatch} and 
+     * {@link #setUseRegularExpressions} and the match parameters for the 
+     * specified parameter list with {@link #setExactMatchParameter}.
+     * @param sql the SQL string
+     * @param parameterSets the <code>List</code> of parameter <code>Map</code> objects
+     * @return the update counts
+     */
+    public int[] getBatchUpdateCounts(String sql, List parameterSets)
+    {
+        List wrapperLists = getMatchingParameterWrapperLists(sql, updateCountForStatement);
+        int defaultUpdateCount = getDefaultUpdateCount(sql);
+        int[] updateCounts = new int[parameterSets.size()];
+        for(int ii = 0; ii < updateCounts.length; ii++)
+        {
+            ParameterWrapper wrapper = findMatchingParameterWrapper(wrapperLists, (Map)parameterSets.get(ii));
+            if(wrapper instanceof MockUpdateCountWrapper)
+            {
+                updateCounts[ii] = ((MockUpdateCountWrapper)wrapper).getUpdateCount().intValue();
+            }
+            else if(wrapper instanceof MockUpdateCountArrayWrapper)
+            {
+                Integer[] preparedCounts = ((MockUpdateCountArrayWrapper)wrapper).getUpdateCount();
+                updateCounts[ii] = (preparedCounts.length > 0) ? preparedCounts[0].intValue() : 0;
+            }
+            else
+            {
+                updateCounts[ii] = defaultUpdateCount;
+            }
+        }
+        return updateCounts;
+    }
+    
+    private int getDefaultUpdateCount(String sql)
+    {
+        Integer[] updateCounts = getUpdateCounts(sql);
+        if(null != updateCounts)
+        {
+            return (updateCounts.length > 0) ? updateCounts[0].intValue() : 0;
+        }
+        return getGlobalUpdateCount();
+    }
+    
+    /**
+     * Returns the exception for each parameter set of a batch.
+     * The SQL string is matched only once for the whole batch.
+     * For each parameter set the exception prepared for the SQL
+     * string and the parameters is returned. If there is none, the
+     * exception prepared for the SQL string without parameters is
+     * returned. The array contains <code>null</code> for parameter
+     * sets that should not raise an exception.
+     * Please note that you can modify the match parameters with 
+     * {@link #setCaseSensitive}, {@link #setExactMatch} and 
+     * {@link #setUseRegularExpressions} and the match parameters for the 
+     * specified parameter list with {@link #setExactMatchParameter}.
+     * @param sql the SQL string
+     * @param parameterSets the <code>List</code> of parameter <code>Map</code> objects
+     * @return the exceptions
+     */
+    public SQLException[] getBatchSQLExceptions(String sql, List parameterSets)
+    {
+        List wrapperLists = getMatchingParameterWrapperLists(sql, throwsSQLException);
+        SQLException defaultException = getSQLException(sql);
+        SQLException[] exceptions = new SQLException[parameterSets.size()];
+        for(int ii = 0; ii < exceptions.length; ii++)
+        {
+            MockSQLExceptionWrapper wrapper = (MockSQLExceptionWrapper)findMatchingParameterWrapper(wrapperLists, (Map)parameterSets.get(ii));
+            exceptions[ii] = (null != wrapper) ? wrapper.getException() : defaultException;
+        }
+        return exceptions;
+    }
+    
     /**
      * Returns the if the specified SQL string with the specified parameters
      * returns multiple update counts.
@@ -290,12 +477,56 @@ public abstract class AbstractParameterResultSetHandler extends AbstractResultSe
     }
 
     protected ParameterWrapper getMatchingParameterWrapper(String sql, Map parameters, Map statementMap)
+    {
+        return findMatchingParameterWrapper(getMatchingParameterWrapperLists(sql, statementMap), parameters);
+    }
+    
+    private List getMatchingParameterWrapperLists(String sql, Map statementMap)
     {
         SQLStatementMatcher matcher = new SQLStatementMatcher(getCaseSensitive(), getExactMatch(), getUseRegularExpressions());
-        List list = matcher.getMatchingObjects(statementMap, sql, true, true);
+        return matcher.getMatchingObjects(statementMap, sql, false, true);
+    }
+    
+    private ParameterWrapper findMatchingParameterWrapper(List list, Map parameters)
+    {
         for(int ii = 0; ii < list.size(); ii++)
         {
-            ParameterWrapper wrapper = (ParameterWrapper)list.get(ii);
+            ParameterWrapper wrapper;
+            if(list.get(ii) instanceof ParameterWrapperList)
+            {
+                wrapper = ((ParameterWrapperList)list.get(ii)).getMatchingParameterWrapper(parameters);
+            }
+            else
+            {
+                wrapper = getMatchingParameterWrapper((List)list.get(ii), parameters);
+            }
+            if(null != wrapper)
+            {
+                return wrapper;
+            }
+        }
+        return null;
+    }
+    
+    /**
+     * Creates the <code>List</code> that stores the {@link ParameterWrapper}
+     * objects for one SQL string in the statement maps. The returned
+     * <code>List</code> keeps an index of the parameter values, so
+     * {@link #getMatchingParameterWrapper(String, Map, Map)} does not have
+     * to compare the parameters of each wrapper. Wrappers must only be 
+     * appended to the <code>List</code>.
+     * @return the <code>List</code> for the wrappers
+     */
+    protected List createParameterWrapperList()
+    {
+        return new ParameterWrapperList();
+    }
+    
+    private ParameterWrapper getMatchingParameterWrapper(List wrappers, Map parameters)
+    {
+        for(int ii = 0; ii < wrappers.size(); ii++)
+        {
+            ParameterWrapper wrapper = (ParameterWrapper)wrappers.get(ii);
             if(doParameterMatch(wrapper.getParamters(), parameters))
             {
                 return wrapper;
@@ -856,12 +1087,17 @@ public abstract class AbstractParameterResultSetHandler extends AbstractResultSe
         List list = (List)map.get(sql);
         if(null == list)
         {
-            list = new ArrayList();
+            list = createParameterWrapperList();
             map.put(sql, list);
         }
         return list;
     }
     
+    private static boolean isIndexable(Object value)
+    {
+        return (null == value) || indexableTypes.contains(value.getClass());
+    }
+    
     private Map createParameterMap(List parameters)
     {
         Map params = new HashMap();
@@ -967,4 +1203,161 @@ public abstract class AbstractParameterResultSetHandler extends AbstractResultSe
             return updateCounts;
         }
     }
+    
+    /**
+     * Keeps an index of the parameter values of its wrappers.
+     * In exact match mode the parameter <code>Map</code> of a wrapper is
+     * used as hash key. Otherwise one parameter of each wrapper is used
+     * as key of an inverted index. The index is only used if the actual 
+     * parameters are of simple value types (strings, numbers etc.) whose 
+     * <code>equals</code> and <code>hashCode</code> are consistent with
+     * {@link ParameterUtil#compareParameter}. All candidates found with
+     * the index are checked with the usual parameter match in the order
+     * they have been added, so the result is the same as without the index.
+     * Wrappers with parameters that cannot be indexed are always checked.
+     */
+    private class ParameterWrapperList extends ArrayList
+    {
+        private int indexedCount = 0;
+        private Map exactIndex = new HashMap();
+        private List exactUnindexed = new ArrayList();
+        private Map subsetIndex = new HashMap();
+        private List subsetUnindexed = new ArrayList();
+        
+        public ParameterWrapper getMatchingParameterWrapper(Map parameters)
+        {
+            if(!canUseIndex(parameters))
+            {
+                return AbstractParameterResultSetHandler.this.getMatchingParameterWrapper(this, parameters);
+            }
+            updateIndex();
+            List candidates = new ArrayList();
+            if(exactMatchParameter)
+            {
+                Object position = exactIndex.get(parameters);
+                if(null != position) candidates.add(position);
+                candidates.addAll(exactUnindexed);
+            }
+            else
+            {
+                Iterator entries = parameters.entrySet().iterator();
+                while(entries.hasNext())
+                {
+                    Map.Entry entry = (Map.Entry)entries.next();
+                    List positions = (List)subsetIndex.get(new ParameterEntry(entry.getKey(), entry.getValue()));
+                    if(null != positions) candidates.addAll(positions);
+                }
+                candidates.addAll(subsetUnindexed);
+            }
+            Collections.sort(candidates);
+            for(int ii = 0; ii < candidates.size(); ii++)
+            {
+                ParameterWrapper wrapper = (ParameterWrapper)get(((Integer)candidates.get(ii)).intValue());
+                if(doParameterMatch(wrapper.getParamters(), parameters))
+                {
+                    return wrapper;
+                }
+            }
+            return null;
+        }
+        
+        private boolean canUseIndex(Map parameters)
+        {
+            Iterator values = parameters.values().iterator();
+            while(values.hasNext())
+            {
+                Object value = values.next();
+                if(!isIndexable(value)) return false;
+                if(exactMatchParameter && null == value) return false;
+            }
+            return true;
+        }
+        
+        private synchronized void updateIndex()
+        {
+            if(indexedCount > size())
+            {
+                indexedCount = 0;
+                exactIndex.clear();
+                exactUnindexed.clear();
+                subsetIndex.clear();
+                subsetUnindexed.clear();
+            }
+            for(; indexedCount < size(); indexedCount++)
+            {
+                Integer position = new Integer(indexedCount);
+                Map expectedParameters = ((ParameterWrapper)get(indexedCount)).getParamters();
+                addToExactIndex(expectedParameters, position);
+                addToSubsetIndex(expectedParameters, position);
+            }
+        }
+        
+        private void addToExactIndex(Map expectedParameters, Integer position)
+        {
+            Iterator values = expectedParameters.values().iterator();
+            while(values.hasNext())
+            {
+                Object value = values.next();
+                if(null == value || !isIndexable(value))
+                {
+                    exactUnindexed.add(position);
+                    return;
+                }
+            }
+            if(!exactIndex.containsKey(expectedParameters))
+            {
+                exactIndex.put(expectedParameters, position);
+            }
+        }
+        
+        private void addToSubsetIndex(Map expectedParameters, Integer position)
+        {
+            Iterator entries = expectedParameters.entrySet().iterator();
+            while(entries.hasNext())
+            {
+                Map.Entry entry = (Map.Entry)entries.next();
+                if(isIndexable(entry.getValue()))
+                {
+                    ParameterEntry key = new ParameterEntry(entry.getKey(), entry.getValue());
+                    List positions = (List)subsetIndex.get(key);
+                    if(null == positions)
+                    {
+                        positions = new ArrayList(1);
+                        subsetIndex.put(key, positions);
+                    }
+                    positions.add(position);
+                    return;
+                }
+            }
+            subsetUnindexed.add(position);
+        }
+    }
+    
+    private static class ParameterEntry
+    {
+        private Object key;
+        private Object value;
+        
+        public ParameterEntry(Object key, Object value)
+        {
+            this.key = key;
+            this.value = value;
+        }
+
+        public boolean equals(Object obj)
+        {
+            if(!(obj instanceof ParameterEntry)) return false;
+            ParameterEntry other = (ParameterEntry)obj;
+            if(!key.equals(other.key)) return false;
+            if(null == value) return null == other.value;
+            return value.equals(other.value);
+        }
+
+        public int hashCode()
+        {
+            int hashCode = key.hashCode();
+            if(null != value) hashCode = (31 * hashCode) + value.hashCode();
+            return hashCode;
+        }
+    }
 }
@@ -3,9 +3,14 @@ package com.mockrunner.jdbc;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.SortedMap;
 import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import com.mockrunner.mock.jdbc.MockResultSet;
 import com.mockrunner.util.common.ArrayUtil;
@@ -24,23 +29,59 @@ import com.mockrunner.util.common.ArrayUtil;
  * of the <code>ResultSet</code> to identify it.
  * The <code>ResultSet</code> objects returned by {@link #getReturnedResultSets}
  * are actually the instances the executed statements returned.
+ * By default, all executed statements and returned <code>ResultSet</code>
+ * objects are recorded. Use {@link #setJournalMode} to limit the
+ * recorded data, if a test executes a large number of statements.
+ * If statements are executed by multiple threads, the handler has
+ * to be switched to concurrent mode (see {@link #setConcurrent}).
+ * Statements return immediately, unless a latency is prepared
+ * with {@link #prepareLatency} or {@link #prepareGlobalLatency}.
  */
 public abstract class AbstractResultSetHandler
 {
+    /**
+     * All executed statements, parameters and returned
+     * <code>ResultSet</code> objects are recorded.
+     */
+    public final static int JOURNAL_FULL = 0;
+    
+    /**
+     * Only the last executed statements, parameters and returned
+     * <code>ResultSet</code> objects are recorded.
+     * See {@link #setJournalSize}.
+     */
+    public final static int JOURNAL_RING_BUFFER = 1;
+    
+    /**
+     * Only the {@link ExecutedStatementStatistics} are recorded.
+     */
+    public final static int JOURNAL_STATISTICS = 2;
+    
     private boolean caseSensitive = false;
     private boolean exactMatch = false;
     private boolean useRegularExpressions = false;
     private boolean continueProcessingOnBatchFailure = false;
+    private boolean concurrent = false;
     private Object globalResultSets;
-    private Map resultSetsForStatement = new TreeMap();
+    private Map resultSetsForStatement = new SQLStatementMap();
     private Object globalUpdateCounts;
-    private Map updateCountForStatement = new TreeMap();
+    private Map updateCountForStatement = new SQLStatementMap();
     private MockResultSet globalGeneratedKeys;
-    private Map generatedKeysForStatement = new TreeMap();
-    private Map returnsResultSetMap = new TreeMap();
-    private Map throwsSQLException = new TreeMap();
+    private Map generatedKeysForStatement = new SQLStatementMap();
+    private Map returnsResultSetMap = new SQLStatementMap();
+    private Map throwsSQLException = new SQLStatementMap();
+    private LatencyProfile globalLatency;
+    private Map latencyForStatement = new SQLStatementMap();
+    private Clock clock = new SystemClock();
+    private int journalMode = JOURNAL_FULL;
+    private int journalSize = 1000;
+    private int statisticsSize = 10000;
+    private boolean statisticsEnabled = false;
+    private boolean readTrackingEnabled = false;
     private List executedStatements = new ArrayList();
     private List returnedResultSets = new ArrayList();
+    private Map executedStatementStatistics = new LinkedHashMap();
+    private Map statisticsLookup = new ConcurrentHashMap();
     
     /**
      * Creates a new <code>ResultSet</code> with a
@@ -157,13 +198,442 @@ public abstract class AbstractResultSetHandler
         this.continueProcessingOnBatchFailure = continueProcessingOnBatchFailure;
     }
     
+    /**
+     * Sets what is recorded when statements are executed.
+     * {@link #JOURNAL_FULL} records all executed SQL strings, parameters
+     * and returned <code>ResultSet</code> objects.
+     * {@link #JOURNAL_RING_BUFFER} records only the last entries
+     * (see {@link #setJournalSize}).
+     * {@link #JOURNAL_STATISTICS} only records the number of executions
+     * for each SQL string, {@link #getExecutedStatements} returns every
+     * executed SQL string once and no parameters and <code>ResultSet</code>
+     * objects are recorded.
+     * The {@link ExecutedStatementStatistics} are collected in the modes
+     * {@link #JOURNAL_RING_BUFFER} and {@link #JOURNAL_STATISTICS}, where
+     * their number is limited (see {@link #setStatisticsSize}). In the mode
+     * {@link #JOURNAL_FULL} they are only collected if they are enabled
+     * with {@link #setStatisticsEnabled}, otherwise they are computed
+     * from the recorded SQL strings and parameters.
+     * Default is {@link #JOURNAL_FULL}. Changing the mode keeps as much
+     * of the already recorded data as the new mode allows.
+     * @param journalMode the journal mode
+     */
+    public void setJournalMode(int journalMode)
+    {
+        if(journalMode != JOURNAL_FULL && journalMode != JOURNAL_RING_BUFFER && journalMode != JOURNAL_STATISTICS)
+        {
+            throw new IllegalArgumentException("Invalid journal mode " + journalMode);
+        }
+        if(!isCollectingStatistics() && JOURNAL_FULL != journalMode)
+        {
+            collectStatisticsFromJournal();
+        }
+        this.journalMode = journalMode;
+        executedStatements = createJournalList(executedStatements);
+        returnedResultSets = createJournalList(returnedResultSets);
+        if(!isCollectingStatistics())
+        {
+            clearExecutedStatementStatistics();
+        }
+    }
+    
+    /**
+     * Sets the number of entries that are recorded in the mode
+     * {@link #JOURNAL_RING_BUFFER}. The size applies to the executed
+     * SQL strings, the returned <code>ResultSet</code> objects and
+     * the parameter sets of each SQL string separately.
+     * Default is <code>1000</code>.
+     * @param journalSize the number of recorded entries
+     */
+    public void setJournalSize(int journalSize)
+    {
+        if(journalSize < 0)
+        {
+            throw new IllegalArgumentException("journalSize must be greater or equals 0");
+        }
+        this.journalSize = journalSize;
+        executedStatements = createJournalList(executedStatements);
+        returnedResultSets = createJournalList(returnedResultSets);
+    }
+    
+    /**
+     * Sets the number of different SQL strings that get their own
+     * {@link ExecutedStatementStatistics} in the modes
+     * {@link #JOURNAL_RING_BUFFER} and {@link #JOURNAL_STATISTICS}.
+     * If the limit is reached, SQL strings without statistics are
+     * recorded by their shape (see {@link SQLUtil#getStatementShape}),
+     * so statements with inline literals do not create a new
+     * statistics object for each execution.
+     * Default is <code>10000</code>.
+     * @param statisticsSize the number of SQL strings with statistics
+     */
+    public void setStatisticsSize(int statisticsSize)
+    {
+        if(statisticsSize < 0)
+        {
+            throw new IllegalArgumentException("statisticsSize must be greater or equals 0");
+        }
+        this.statisticsSize = statisticsSize;
+    }
+    
+    /**
+     * Returns the number of different SQL strings that get their
+     * own {@link ExecutedStatementStatistics} in the modes
+     * {@link #JOURNAL_RING_BUFFER} and {@link #JOURNAL_STATISTICS}.
+     * @return the number of SQL strings with statistics
+     */
+    public int getStatisticsSize()
+    {
+        return statisticsSize;
+    }
+    
+    /**
+     * Enables or disables the collection of {@link ExecutedStatementStatistics}
+     * in the journal mode {@link #JOURNAL_FULL}. The statistics contain
+     * the execution times and durations and the number of batch executions,
+     * but each execution has to update them. If the statistics are disabled,
+     * {@link #getExecutedStatementStatistics} computes them from the
+     * recorded SQL strings and parameters. In the other journal modes
+     * the statistics are always collected.
+     * Default is <code>false</code>.
+     * @param statisticsEnabled enable or disable the statistics
+     */
+    public void setStatisticsEnabled(boolean statisticsEnabled)
+    {
+        if(statisticsEnabled && !isCollectingStatistics())
+        {
+            collectStatisticsFromJournal();
+        }
+        this.statisticsEnabled = statisticsEnabled;
+        if(!isCollectingStatistics())
+        {
+            clearExecutedStatementStatistics();
+        }
+    }
+    
+    /**
+     * Returns if the collection of {@link ExecutedStatementStatistics}
+     * is enabled in the journal mode {@link #JOURNAL_FULL}.
+     * @return <code>true</code> if the statistics are enabled,
+     *         <code>false</code> otherwise
+     */
+    public boolean isStatisticsEnabled()
+    {
+        return statisticsEnabled;
+    }
+    
+    /**
+     * Enables or disables the tracking of the read rows and columns
+     * of the <code>ResultSet</code> objects returned by the statements
+     * (see {@link MockResultSet#setReadTracking}). The
+     * {@link DataAccessReport} needs the read rows and columns to
+     * report over-fetching <code>ResultSet</code> objects.
+     * Default is <code>false</code>.
+     * @param readTrackingEnabled enable or disable the read tracking
+     */
+    public void setReadTrackingEnabled(boolean readTrackingEnabled)
+    {
+        this.readTrackingEnabled = readTrackingEnabled;
+    }
+    
+    /**
+     * Returns if the read rows and columns of the returned
+     * <code>ResultSet</code> objects are tracked.
+     * @return <code>true</code> if the read tracking is enabled,
+     *         <code>false</code> otherwise
+     */
+    public boolean isReadTrackingEnabled()
+    {
+        return readTrackingEnabled;
+    }
+    
+    /**
+     * Returns if the {@link ExecutedStatementStatistics} are updated
+     * when statements are executed, i.e. if they are enabled or the
+     * journal mode is not {@link #JOURNAL_FULL}.
+     * @return <code>true</code> if the statistics are collected,
+     *         <code>false</code> otherwise
+     */
+    protected boolean isCollectingStatistics()
+    {
+        return statisticsEnabled || JOURNAL_FULL != journalMode;
+    }
+    
+    /**
+     * Returns the current journal mode.
+     * @return the journal mode
+     */
+    public int getJournalMode()
+    {
+        return journalMode;
+    }
+    
+    /**
+     * Returns the number of entries that are recorded
+     * in the mode {@link #JOURNAL_RING_BUFFER}.
+     * @return the number of recorded entries
+     */
+    public int getJournalSize()
+    {
+        return journalSize;
+    }
+    
+    /**
+     * Enables or disables the concurrent mode. In concurrent mode
+     * statements can be created and executed by multiple threads
+     * at the same time. Each thread records the executed statements,
+     * parameters and returned <code>ResultSet</code> objects in its own
+     * journal without locking. The journals are merged in the order
+     * of execution when they are read, so the verification results
+     * do not depend on the scheduling of the threads once they
+     * have finished.
+     * The prepared <code>ResultSet</code> objects, update counts etc.
+     * can be read by multiple threads, but they must be prepared
+     * before the threads start executing statements.
+     * The mode {@link #JOURNAL_RING_BUFFER} synchronizes the recording.
+     * Default is <code>false</code>.
+     * @param concurrent enable or disable concurrent mode
+     */
+    public void setConcurrent(boolean concurrent)
+    {
+        this.concurrent = concurrent;
+        executedStatements = createJournalList(executedStatements);
+        returnedResultSets = createJournalList(returnedResultSets);
+    }
+    
+    /**
+     * Returns if the concurrent mode is enabled.
+     * @return <code>true</code> if the concurrent mode is enabled,
+     *         <code>false</code> otherwise
+     */
+    public boolean isConcurrent()
+    {
+        return concurrent;
+    }
+    
+    /**
+     * Creates a <code>List</code> for recording executed statements
+     * according to the current journal mode and copies the
+     * specified entries into it.
+     * @param entries the already recorded entries
+     * @return the new <code>List</code>
+     */
+    protected List createJournalList(List entries)
+    {
+        List list;
+        if(JOURNAL_FULL == journalMode)
+        {
+            list = concurrent ? (List)new ConcurrentJournalList() : new ArrayList();
+        }
+        else if(JOURNAL_RING_BUFFER == journalMode)
+        {
+            list = new RingBufferList(journalSize);
+            if(concurrent)
+            {
+                list = Collections.synchronizedList(list);
+            }
+        }
+        else
+        {
+            list = new RingBufferList(0);
+        }
+        list.addAll(entries);
+        return list;
+    }
+    
+    /**
+     * Returns how many entries a <code>List</code> created with
+     * {@link #createJournalList} keeps. Entries that are added
+     * beyond this number discard the oldest entries.
+     * @return the number of kept entries or <code>-1</code>,
+     *         if all entries are kept
+     */
+    protected int getJournalCapacity()
+    {
+        if(JOURNAL_FULL == journalMode) return -1;
+        if(JOURNAL_RING_BUFFER == journalMode) return journalSize;
+        return 0;
+    }
+    
+    /**
+     * Creates a <code>List</code> for the created statements
+     * and copies the specified statements into it. 
+     * In concurrent mode each thread adds to its own list.
+     * @param statements the already created statements
+     * @return the new <code>List</code>
+     */
+    protected List createStatementList(List statements)
+    {
+        List list = concurrent ? (List)new ConcurrentJournalList() : new ArrayList();
+        list.addAll(statements);
+        return list;
+    }
+    
+    /**
+     * Creates a <code>Map</code> with SQL strings as keys and copies
+     * the specified entries into it. The <code>Map</code> is a
+     * {@link SQLStatementMap} sorted by its keys, unless the concurrent
+     * mode is enabled. Use {@link #getSortedMap} to get a sorted copy
+     * in concurrent mode.
+     * @param entries the already created entries
+     * @return the new <code>Map</code>
+     */
+    protected Map createStatementMap(Map entries)
+    {
+        Map map = concurrent ? (Map)new ConcurrentHashMap() : new SQLStatementMap();
+        map.putAll(entries);
+        return map;
+    }
+    
+    /**
+     * Returns the values of a <code>Map</code> created with
+     * {@link #createStatementMap} for all SQL strings that are
+     * matched by the specified SQL string, ordered by the SQL strings.
+     * Values that are collections are resolved. The lookup uses
+     * the index of the {@link SQLStatementMap}. In concurrent
+     * mode a sorted copy of the <code>Map</code> is searched.
+     * @param map the <code>Map</code>
+     * @param matcher the {@link SQLStatementMatcher}
+     * @param sql the SQL string
+     * @return the <code>List</code> of matching values
+     */
+    protected List getMatchingValues(Map map, SQLStatementMatcher matcher, String sql)
+    {
+        if(!(map instanceof SQLStatementMap))
+        {
+            map = getSortedMap(map);
+        }
+        return matcher.getMatchingObjects(map, sql, true, false);
+    }
+    
+    /**
+     * Returns the value for the specified SQL string from a <code>Map</code>
+     * created with {@link #createStatementMap}. If there's no value,
+     * the specified value is stored and returned. In concurrent mode
+     * the value of the first thread wins.
+     * @param map the <code>Map</code>
+     * @param sql the SQL string
+     * @param value the new value
+     * @return the value for the SQL string
+     */
+    protected Object getOrPut(Map map, String sql, Object value)
+    {
+        if(map instanceof ConcurrentMap)
+        {
+            Object currentValue = ((ConcurrentMap)map).putIfAbsent(sql, value);
+            return (null != currentValue) ? currentValue : value;
+        }
+        Object currentValue = map.get(sql);
+        if(null != currentValue) return currentValue;
+        map.put(sql, value);
+        return value;
+    }
+    
+    /**
+     * Returns an unmodifiable view of a <code>Map</code> created with
+     * {@link #createStatementMap}. In concurrent mode a sorted copy
+     * is returned.
+     * @param map the <code>Map</code>
+     * @return the sorted <code>Map</code>
+     */
+    protected Map getSortedMap(Map map)
+    {
+        if(map instanceof SortedMap)
+        {
+            return Collections.unmodifiableMap(map);
+        }
+        return Collections.unmodifiableMap(new TreeMap(map));
+    }
+    
     /**
      * Collects all SQL strings that were executed.
      * @param sql the SQL string
      */
     public void addExecutedStatement(String sql)
     {
-		executedStatements.add(sql);
+        addExecutedStatement(sql, 0);
+    }
+    
+    /**
+     * Collects all SQL strings that were executed.
+     * The duration is recorded in the {@link ExecutedStatementStatistics},
+     * if they are collected.
+     * @param sql the SQL string
+     * @param duration the duration of the execution in milliseconds
+     */
+    public void addExecutedStatement(String sql, long duration)
+    {
+        if(isCollectingStatistics())
+        {
+            getStatisticsForStatement(sql).addExecution(clock.currentTimeMillis(), duration);
+        }
+        executedStatements.add(sql);
+    }
+    
+    /**
+     * Records multiple executions of the specified SQL string
+     * as commands of an executed batch.
+     * @param sql the SQL string
+     * @param number the number of executions
+     */
+    public void addExecutedStatements(String sql, int number)
+    {
+        addExecutedStatements(sql, number, 0);
+    }
+    
+    /**
+     * Records multiple executions of the specified SQL string
+     * as commands of an executed batch. The duration of the
+     * whole batch is recorded in the {@link ExecutedStatementStatistics},
+     * if they are collected.
+     * @param sql the SQL string
+     * @param number the number of executions
+     * @param duration the duration of the batch in milliseconds
+     */
+    public void addExecutedStatements(String sql, int number, long duration)
+    {
+        if(number <= 0) return;
+        if(isCollectingStatistics())
+        {
+            getStatisticsForStatement(sql).addBatchExecutions(number, clock.currentTimeMillis(), duration);
+        }
+        executedStatements.addAll(Collections.nCopies(number, sql));
+    }
+    
+    /**
+     * Returns the statistics object for the specified SQL string.
+     * Creates the object, if necessary. If the limit of
+     * {@link #setStatisticsSize} is reached, the statistics object
+     * of the shape of the SQL string is returned.
+     * @param sql the SQL string
+     * @return the statistics object
+     */
+    protected ExecutedStatementStatistics getStatisticsForStatement(String sql)
+    {
+        ExecutedStatementStatistics statistics = (ExecutedStatementStatistics)statisticsLookup.get(sql);
+        if(null != statistics) return statistics;
+        synchronized(executedStatementStatistics)
+        {
+            statistics = (ExecutedStatementStatistics)executedStatementStatistics.get(sql);
+            if(null != statistics) return statistics;
+            if(JOURNAL_FULL != journalMode && executedStatementStatistics.size() >= statisticsSize)
+            {
+                String shape = SQLUtil.getStatementShape(sql);
+                statistics = (ExecutedStatementStatistics)executedStatementStatistics.get(shape);
+                if(null == statistics)
+                {
+                    statistics = new ExecutedStatementStatistics(shape);
+                    executedStatementStatistics.put(shape, statistics);
+                    statisticsLookup.put(shape, statistics);
+                }
+                statistics.setStatementShape(true);
+                return statistics;
+            }
+            statistics = new ExecutedStatementStatistics(sql);
+            executedStatementStatistics.put(sql, statistics);
+            statisticsLookup.put(sql, statistics);
+        }
+        return statistics;
     }
     
     /**
@@ -193,11 +663,122 @@ public abstract class AbstractResultSetHandler
     
     /**
      * Returns the <code>List</code> of all executed SQL strings.
+     * In the journal mode {@link #JOURNAL_RING_BUFFER} only the last
+     * executed SQL strings are returned. In the mode
+     * {@link #JOURNAL_STATISTICS} every executed SQL string is
+     * returned once in the order of its first execution.
      * @return the <code>List</code> of executed SQL strings
      */
     public List getExecutedStatements()
     {
-        return Collections.unmodifiableList(executedStatements);
+        if(JOURNAL_STATISTICS == journalMode)
+        {
+            List list = new ArrayList();
+            Iterator iterator = getExecutedStatementStatistics().values().iterator();
+            while(iterator.hasNext())
+            {
+                ExecutedStatementStatistics statistics = (ExecutedStatementStatistics)iterator.next();
+                if(statistics.getExecutionCount() > 0)
+                {
+                    list.add(statistics.getSQLStatement());
+                }
+            }
+            return Collections.unmodifiableList(list);
+        }
+        return getJournal(executedStatements);
+    }
+    
+    /**
+     * Returns the {@link ExecutedStatementStatistics} of all executed
+     * SQL strings. The keys are the SQL strings in the order of their
+     * first execution. SQL strings that were recorded after the limit of
+     * {@link #setStatisticsSize} was reached are combined by their shape
+     * (see {@link ExecutedStatementStatistics#isStatementShape}).
+     * If the statistics are not collected (see {@link #setStatisticsEnabled}),
+     * they are computed from the recorded SQL strings and parameters.
+     * @return the <code>Map</code> of statistics
+     */
+    public Map getExecutedStatementStatistics()
+    {
+        if(!isCollectingStatistics())
+        {
+            return Collections.unmodifiableMap(createStatisticsFromJournal());
+        }
+        if(concurrent)
+        {
+            synchronized(executedStatementStatistics)
+            {
+                return Collections.unmodifiableMap(new LinkedHashMap(executedStatementStatistics));
+            }
+        }
+        return Collections.unmodifiableMap(executedStatementStatistics);
+    }
+    
+    /**
+     * Clears the collected {@link ExecutedStatementStatistics}.
+     * The recorded SQL strings, parameters and <code>ResultSet</code>
+     * objects are not affected, so if the statistics are computed
+     * from them (see {@link #setStatisticsEnabled}), use
+     * {@link #clearExecutedStatements} to reset the statistics.
+     */
+    public void clearExecutedStatementStatistics()
+    {
+        synchronized(executedStatementStatistics)
+        {
+            executedStatementStatistics.clear();
+            statisticsLookup.clear();
+        }
+    }
+    
+    /**
+     * Clears all recorded SQL strings, parameters, returned
+     * <code>ResultSet</code> objects and the collected
+     * {@link ExecutedStatementStatistics}. Must not be called while
+     * other threads execute statements.
+     */
+    public void clearExecutedStatements()
+    {
+        executedStatements = createJournalList(Collections.EMPTY_LIST);
+        returnedResultSets = createJournalList(Collections.EMPTY_LIST);
+        clearExecutedStatementStatistics();
+    }
+    
+    /**
+     * Computes the {@link ExecutedStatementStatistics} from the recorded
+     * SQL strings. Used if the statistics are not collected.
+     * The statistics contain no execution times, durations
+     * and batch executions.
+     * @return the <code>Map</code> of statistics in the order
+     *         of the first execution
+     */
+    protected Map createStatisticsFromJournal()
+    {
+        Map statisticsMap = new LinkedHashMap();
+        Iterator iterator = getJournal(executedStatements).iterator();
+        while(iterator.hasNext())
+        {
+            String sql = (String)iterator.next();
+            ExecutedStatementStatistics statistics = (ExecutedStatementStatistics)statisticsMap.get(sql);
+            if(null == statistics)
+            {
+                statistics = new ExecutedStatementStatistics(sql);
+                statisticsMap.put(sql, statistics);
+            }
+            statistics.addExecutions(1, -1, 0);
+        }
+        return statisticsMap;
+    }
+    
+    private void collectStatisticsFromJournal()
+    {
+        Map statisticsMap = createStatisticsFromJournal();
+        synchronized(executedStatementStatistics)
+        {
+            executedStatementStatistics.clear();
+            statisticsLookup.clear();
+            executedStatementStatistics.putAll(statisticsMap);
+            statisticsLookup.putAll(statisticsMap);
+        }
     }
     
     /**
@@ -208,11 +789,34 @@ public abstract class AbstractResultSetHandler
      * the full array of <code>ResultSet</code> objects that were prepared, even
      * if {@link com.mockrunner.mock.jdbc.MockStatement#getMoreResults()} was
      * not called for all the result sets.
+     * In the journal mode {@link #JOURNAL_RING_BUFFER} only the last
+     * returned objects are recorded, in the mode {@link #JOURNAL_STATISTICS}
+     * the <code>List</code> is always empty.
      * @return the <code>List</code> of returned <code>ResultSet</code> or <code>ResultSet[]</code> objects
      */
     public List getReturnedResultSets()
     {
-        return Collections.unmodifiableList(returnedResultSets);
+        return getJournal(returnedResultSets);
+    }
+    
+    /**
+     * Returns an unmodifiable view of a <code>List</code> created
+     * with {@link #createJournalList}. In the mode {@link #JOURNAL_RING_BUFFER}
+     * the concurrent journal is synchronized, so a copy is returned
+     * that is taken while holding its lock.
+     * @param journal the journal
+     * @return the unmodifiable journal
+     */
+    protected List getJournal(List journal)
+    {
+        if(concurrent && JOURNAL_RING_BUFFER == journalMode)
+        {
+            synchronized(journal)
+            {
+                return Collections.unmodifiableList(new ArrayList(journal));
+            }
+        }
+        return Collections.unmodifiableList(journal);
     }
     
     /**
@@ -256,6 +860,22 @@ public abstract class AbstractResultSetHandler
         generatedKeysForStatement.clear();
     }
     
+    /**
+     * Clears the prepared latency profiles.
+     */
+    public void clearLatencies()
+    {
+        latencyForStatement.clear();
+    }
+    
+    /**
+     * Clears the prepared global latency profile.
+     */
+    public void clearGlobalLatency()
+    {
+        this.globalLatency = null;
+    }
+    
     /**
      * Clears the prepared global <code>ResultSet</code>.
      */
@@ -812,6 +1432,89 @@ public abstract class AbstractResultSetHandler
         throwsSQLException.put(sql, exc);
     }
     
+    /**
+     * Returns the {@link LatencyProfile} for the specified SQL string.
+     * If no profile is prepared for the SQL string, the global
+     * profile is returned. Returns <code>null</code>, if there's
+     * no latency.
+     * Please note that you can modify the match parameters with 
+     * {@link #setCaseSensitive}, {@link #setExactMatch} and 
+     * {@link #setUseRegularExpressions}.
+     * @param sql the SQL string
+     * @return the {@link LatencyProfile} or <code>null</code>
+     */
+    public LatencyProfile getLatencyProfile(String sql)
+    {
+        SQLStatementMatcher matcher = new SQLStatementMatcher(getCaseSensitive(), getExactMatch(), getUseRegularExpressions());
+        List list = matcher.getMatchingObjects(latencyForStatement, sql, true, true);
+        if(null != list && list.size() > 0)
+        {
+            return (LatencyProfile)list.get(0);
+        }
+        return globalLatency;
+    }
+    
+    /**
+     * Returns the global {@link LatencyProfile}.
+     * @return the global {@link LatencyProfile} or <code>null</code>
+     */
+    public LatencyProfile getGlobalLatencyProfile()
+    {
+        return globalLatency;
+    }
+    
+    /**
+     * Prepare the latency of the specified SQL string. The executing
+     * thread waits for the execution time of the profile before the
+     * statement returns. Returned <code>ResultSet</code> objects wait
+     * for the fetch time of the rows when the cursor is moved.
+     * The query timeout of the statement is respected, i.e. if the
+     * execution takes longer than the timeout, the statement throws a
+     * <code>SQLTimeoutException</code> after the timeout.
+     * Statements can be cancelled while they wait.
+     * The time is measured with the {@link Clock} of this handler
+     * (see {@link #setClock}).
+     * Please note that you can modify the match parameters with 
+     * {@link #setCaseSensitive}, {@link #setExactMatch} and 
+     * {@link #setUseRegularExpressions}.
+     * @param sql the SQL string
+     * @param profile the {@link LatencyProfile}
+     */
+    public void prepareLatency(String sql, LatencyProfile profile)
+    {
+        latencyForStatement.put(sql, profile);
+    }
+    
+    /**
+     * Prepare the latency of all statements without a latency profile
+     * for their SQL string. See {@link #prepareLatency}.
+     * @param profile the {@link LatencyProfile}
+     */
+    public void prepareGlobalLatency(LatencyProfile profile)
+    {
+        this.globalLatency = profile;
+    }
+    
+    /**
+     * Sets the {@link Clock} used to simulate the prepared latency.
+     * Default is a {@link SystemClock}. Use a {@link VirtualClock},
+     * if tests should not wait.
+     * @param clock the {@link Clock}
+     */
+    public void setClock(Clock clock)
+    {
+        this.clock = clock;
+    }
+    
+    /**
+     * Returns the {@link Clock} used to simulate the prepared latency.
+     * @return the {@link Clock}
+     */
+    public Clock getClock()
+    {
+        return clock;
+    }
+    
     /**
      * Returns if specified SQL strings should be handled case sensitive.
      * @return is case sensitivity enabled or disabled
@@ -883,5 +1586,14 @@ public abstract class AbstractResultSetHandler
     	generatedKeysForStatement.remove(sql);
     }
 
+
+    /**
+     * Remove the latency profile for the specified SQL string.
+     * @param sql The SQL string the latency profile was prepared for
+     */
+    public void removeLatency(String sql) {
+    	latencyForStatement.remove(sql);
+    }
+
     
 }
@@ -255,6 +255,14 @@ public abstract class BasicJDBCTestCaseAdapter
         return jdbcTestModule.getExecutedSQLStatementParameterMap();
     }
 
+    /**
+     * Delegates to {@link com.mockrunner.jdbc.JDBCTestModule#getExecutedSQLStatementStatistics}
+     */
+    protected Map getExecutedSQLStatementStatistics()
+    {
+        return jdbcTestModule.getExecutedSQLStatementStatistics();
+    }
+
     /**
      * Delegates to {@link com.mockrunner.jdbc.JDBCTestModule#getExecutedSQLStatementParameterSets(String)}
      */
@@ -623,6 +631,46 @@ public abstract class BasicJDBCTestCaseAdapter
         jdbcTestModule.verifyAllResultSetsClosed();
     }
 
+    /**
+     * Delegates to {@link com.mockrunner.jdbc.JDBCTestModule#verifyNumberConnectionAcquisitions(int)}
+     */
+    protected void verifyNumberConnectionAcquisitions(int number)
+    {
+        jdbcTestModule.verifyNumberConnectionAcquisitions(number);
+    }
+
+    /**
+     * Delegates to {@link com.mockrunner.jdbc.JDBCTestModule#verifyPeakConnectionsInUse(int)}
+     */
+    protected void verifyPeakConnectionsInUse(int number)
+    {
+        jdbcTestModule.verifyPeakConnectionsInUse(number);
+    }
+
+    /**
+     * Delegates to {@link com.mockrunner.jdbc.JDBCTestModule#verifyAllConnectionsReleased}
+     */
+    protected void verifyAllConnectionsReleased()
+    {
+        jdbcTestModule.verifyAllConnectionsReleased();
+    }
+
+    /**
+     * Delegates to {@link com.mockrunner.jdbc.JDBCTestModule#verifyNumberConnectionTimeouts(int)}
+     */
+    protected void verifyNumberConnectionTimeouts(int number)
+    {
+        jdbcTestModule.verifyNumberConnectionTimeouts(number);
+    }
+
+    /**
+     * Delegates to {@link com.mockrunner.jdbc.JDBCTestModule#verifyMaxConnectionWaitTime(long)}
+     */
+    protected void verifyMaxConnectionWaitTime(long maxWaitTime)
+    {
+        jdbcTestModule.verifyMaxConnectionWaitTime(maxWaitTime);
+    }
+
     /**
      * Delegates to {@link com.mockrunner.jdbc.JDBCTestModule#verifyNumberCommits(int)}
      */
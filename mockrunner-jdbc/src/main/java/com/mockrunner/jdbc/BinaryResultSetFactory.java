@@ -0,0 +1,253 @@
+package com.mockrunner.jdbc;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.math.BigDecimal;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.sql.Date;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.mockrunner.base.NestedApplicationException;
+import com.mockrunner.mock.jdbc.MockResultSet;
+import com.mockrunner.util.common.FileUtil;
+
+/**
+ * Can be used to create a <code>ResultSet</code> based on
+ * a binary snapshot file. Snapshot files are written with the
+ * {@link BinaryResultSetWriter}, which can also convert the
+ * CSV and XML files of the {@link FileResultSetFactory} and the
+ * {@link XMLResultSetFactory}. Loading a snapshot is much faster
+ * than parsing the text formats, because the file is mapped
+ * into memory and the values are stored column by column
+ * with their type.
+ * The file can be specified directly or by its name. The class
+ * tries to find the file in the absolut or relative path and
+ * (if not found) by calling <code>getResource</code>. Note that the
+ * file must exist in the local file system and cannot be loaded from
+ * inside a jar archive.
+ * <br><br>
+ * The format of a snapshot file is (all numbers big endian):
+ * <ul>
+ * <li>the magic number <code>0x4D524253</code> and the format version</li>
+ * <li>the number of columns and the number of rows</li>
+ * <li>for each column the name and the type of the values</li>
+ * <li>for each column a bitmap of the <code>null</code> values followed
+ * by the non <code>null</code> values. Strings, byte arrays and
+ * <code>BigDecimal</code> values are length prefixed. Columns
+ * with values of different types prefix each value with its type.</li>
+ * </ul>
+ */
+public class BinaryResultSetFactory implements ResultSetFactory
+{
+    final static int MAGIC = 0x4D524253;
+    final static int VERSION = 1;
+
+    final static byte TYPE_MIXED = 0;
+    final static byte TYPE_STRING = 1;
+    final static byte TYPE_INTEGER = 2;
+    final static byte TYPE_LONG = 3;
+    final static byte TYPE_DOUBLE = 4;
+    final static byte TYPE_BYTES = 5;
+    final static byte TYPE_BOOLEAN = 6;
+    final static byte TYPE_SHORT = 7;
+    final static byte TYPE_BYTE = 8;
+    final static byte TYPE_FLOAT = 9;
+    final static byte TYPE_BIG_DECIMAL = 10;
+    final static byte TYPE_DATE = 11;
+    final static byte TYPE_TIME = 12;
+    final static byte TYPE_TIMESTAMP = 13;
+
+    private File file = null;
+    private boolean columnarStorage = false;
+
+    public BinaryResultSetFactory(String fileName)
+    {
+        this(new File(fileName));
+    }
+
+    public BinaryResultSetFactory(File file)
+    {
+        this.file = file;
+    }
+
+    /**
+     * Get the <code>File</code> being used to read in the
+     * <code>ResultSet</code>. Throws a <code>RuntimeException</code>
+     * if the file does not exist.
+     * @return the file
+     */
+    public File getFile()
+    {
+        if(file.exists() && file.isFile())
+        {
+            return file;
+        }
+        try
+        {
+            file = FileUtil.findFile(file.getPath());
+        }
+        catch(FileNotFoundException exc)
+        {
+            throw new RuntimeException("Could not find: " + file.getPath() + ". Current dir = " + System.getProperty("user.dir"));
+        }
+        return file;
+    }
+
+    /**
+     * Set if the created <code>ResultSet</code> should use columnar
+     * storage. See {@link com.mockrunner.mock.jdbc.MockResultSet#setColumnarStorage}.
+     * Default is <code>false</code>.
+     * @param columnarStorage set <code>true</code> to enable columnar storage
+     */
+    public void setColumnarStorage(boolean columnarStorage)
+    {
+        this.columnarStorage = columnarStorage;
+    }
+
+    public MockResultSet create(String id)
+    {
+        MockResultSet resultSet = new MockResultSet(id);
+        resultSet.setColumnarStorage(columnarStorage);
+        FileInputStream stream = null;
+        try
+        {
+            stream = new FileInputStream(getFile());
+            FileChannel channel = stream.getChannel();
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            readResultSet(buffer, resultSet);
+        }
+        catch(IOException exc)
+        {
+            throw new NestedApplicationException("Failure while reading from binary file", exc);
+        }
+        catch(BufferUnderflowException exc)
+        {
+            throw new NestedApplicationException("Binary file is truncated", exc);
+        }
+        finally
+        {
+            closeStream(stream);
+        }
+        return resultSet;
+    }
+
+    static void readResultSet(ByteBuffer buffer, MockResultSet resultSet) throws IOException
+    {
+        if(buffer.remaining() < 16 || buffer.getInt() != MAGIC)
+        {
+            throw new IOException("File is not a binary result set snapshot");
+        }
+        int version = buffer.getInt();
+        if(version != VERSION)
+        {
+            throw new IOException("Unsupported snapshot version " + version);
+        }
+        int columnCount = buffer.getInt();
+        int rowCount = buffer.getInt();
+        String[] names = new String[columnCount];
+        byte[] types = new byte[columnCount];
+        for(int ii = 0; ii < columnCount; ii++)
+        {
+            names[ii] = readString(buffer);
+            types[ii] = buffer.get();
+        }
+        for(int ii = 0; ii < columnCount; ii++)
+        {
+            resultSet.addColumn(names[ii], readColumn(buffer, types[ii], rowCount));
+        }
+    }
+
+    private static List readColumn(ByteBuffer buffer, byte type, int rowCount) throws IOException
+    {
+        long[] nullBitmap = new long[(rowCount + 63) >> 6];
+        for(int ii = 0; ii < nullBitmap.length; ii++)
+        {
+            nullBitmap[ii] = buffer.getLong();
+        }
+        List column = new ArrayList(rowCount);
+        for(int ii = 0; ii < rowCount; ii++)
+        {
+            if((nullBitmap[ii >> 6] & (1L << (ii & 63))) != 0)
+            {
+                column.add(null);
+            }
+            else
+            {
+                byte valueType = (TYPE_MIXED == type) ? buffer.get() : type;
+                column.add(readValue(buffer, valueType));
+            }
+        }
+        return column;
+    }
+
+    static Object readValue(ByteBuffer buffer, byte type) throws IOException
+    {
+        switch(type)
+        {
+            case TYPE_STRING:
+                return readString(buffer);
+            case TYPE_INTEGER:
+                return new Integer(buffer.getInt());
+            case TYPE_LONG:
+                return new Long(buffer.getLong());
+            case TYPE_DOUBLE:
+                return new Double(buffer.getDouble());
+            case TYPE_BYTES:
+                return readBytes(buffer);
+            case TYPE_BOOLEAN:
+                return Boolean.valueOf(buffer.get() != 0);
+            case TYPE_SHORT:
+                return new Short(buffer.getShort());
+            case TYPE_BYTE:
+                return new Byte(buffer.get());
+            case TYPE_FLOAT:
+                return new Float(buffer.getFloat());
+            case TYPE_BIG_DECIMAL:
+                return new BigDecimal(readString(buffer));
+            case TYPE_DATE:
+                return new Date(buffer.getLong());
+            case TYPE_TIME:
+                return new Time(buffer.getLong());
+            case TYPE_TIMESTAMP:
+                Timestamp timestamp = new Timestamp(buffer.getLong());
+                timestamp.setNanos(buffer.getInt());
+                return timestamp;
+            default:
+                throw new IOException("Unknown value type " + type);
+        }
+    }
+
+    private static byte[] readBytes(ByteBuffer buffer)
+    {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    static String readString(ByteBuffer buffer) throws UnsupportedEncodingException
+    {
+        return new String(readBytes(buffer), "UTF-8");
+    }
+
+    private void closeStream(FileInputStream stream)
+    {
+        if(null == stream) return;
+        try
+        {
+            stream.close();
+        }
+        catch(IOException exc)
+        {
+            throw new NestedApplicationException(exc);
+        }
+    }
+}
@@ -0,0 +1,286 @@
+package com.mockrunner.jdbc;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import com.mockrunner.base.NestedApplicationException;
+import com.mockrunner.mock.jdbc.MockResultSet;
+import com.mockrunner.mock.jdbc.StreamingMockResultSet;
+
+/**
+ * Writes the data of a {@link com.mockrunner.mock.jdbc.MockResultSet}
+ * to a binary snapshot file that can be loaded with the
+ * {@link BinaryResultSetFactory}. Use {@link #convert} to create
+ * a snapshot from the CSV or XML files of an existing
+ * {@link FileResultSetFactory} or {@link XMLResultSetFactory}.
+ * The current data of the <code>ResultSet</code> is written.
+ * The rows of a {@link com.mockrunner.mock.jdbc.StreamingMockResultSet}
+ * are read from its {@link RowSource}, e.g. when converting the
+ * files of a streaming {@link FileResultSetFactory}.
+ * Supported value types are <code>String</code>, the numeric
+ * wrapper types, <code>Boolean</code>, <code>BigDecimal</code>,
+ * <code>byte[]</code>, <code>java.sql.Date</code>,
+ * <code>java.sql.Time</code> and <code>java.sql.Timestamp</code>.
+ */
+public class BinaryResultSetWriter
+{
+    /**
+     * Creates a <code>ResultSet</code> with the specified factory
+     * and writes it to the specified file.
+     * @param factory the factory that reads the source file
+     * @param file the snapshot file
+     */
+    public static void convert(ResultSetFactory factory, File file)
+    {
+        write(factory.create("snapshot"), file);
+    }
+
+    /**
+     * Writes the specified <code>ResultSet</code> to the specified file.
+     * An existing file will be overwritten. If the <code>ResultSet</code>
+     * cannot be written, the file is deleted.
+     * @param resultSet the <code>ResultSet</code>
+     * @param file the snapshot file
+     * @throws IllegalArgumentException if the <code>ResultSet</code>
+     *         contains values of an unsupported type
+     */
+    public static void write(MockResultSet resultSet, File file)
+    {
+        DataOutputStream stream = null;
+        boolean written = false;
+        try
+        {
+            stream = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+            writeResultSet(resultSet, stream);
+            stream.close();
+            stream = null;
+            written = true;
+        }
+        catch(IOException exc)
+        {
+            throw new NestedApplicationException("Failure while writing binary file", exc);
+        }
+        finally
+        {
+            try
+            {
+                closeStream(stream);
+            }
+            finally
+            {
+                if(!written) file.delete();
+            }
+        }
+    }
+
+    static void writeResultSet(MockResultSet resultSet, DataOutputStream stream) throws IOException
+    {
+        List names = resultSet.getColumnNames();
+        List[] columns = new List[names.size()];
+        int rowCount;
+        if(resultSet instanceof StreamingMockResultSet)
+        {
+            rowCount = readRows(((StreamingMockResultSet)resultSet).getRowSource(), columns);
+        }
+        else
+        {
+            rowCount = resultSet.getRowCount();
+            for(int ii = 0; ii < columns.length; ii++)
+            {
+                columns[ii] = resultSet.getColumn(ii + 1);
+            }
+        }
+        byte[] types = new byte[names.size()];
+        for(int ii = 0; ii < columns.length; ii++)
+        {
+            types[ii] = determineColumnType(columns[ii]);
+        }
+        stream.writeInt(BinaryResultSetFactory.MAGIC);
+        stream.writeInt(BinaryResultSetFactory.VERSION);
+        stream.writeInt(columns.length);
+        stream.writeInt(rowCount);
+        for(int ii = 0; ii < columns.length; ii++)
+        {
+            writeString((String)names.get(ii), stream);
+            stream.writeByte(types[ii]);
+        }
+        for(int ii = 0; ii < columns.length; ii++)
+        {
+            writeColumn(columns[ii], types[ii], rowCount, stream);
+        }
+    }
+
+    private static int readRows(RowSource rowSource, List[] columns)
+    {
+        for(int ii = 0; ii < columns.length; ii++)
+        {
+            columns[ii] = new ArrayList();
+        }
+        int rowCount = 0;
+        Iterator rows = rowSource.openRows();
+        try
+        {
+            while(rows.hasNext())
+            {
+                List row = (List)rows.next();
+                for(int ii = 0; ii < columns.length; ii++)
+                {
+                    columns[ii].add((ii < row.size()) ? row.get(ii) : null);
+                }
+                rowCount++;
+            }
+        }
+        finally
+        {
+            rowSource.closeRows(rows);
+        }
+        return rowCount;
+    }
+
+    private static void writeColumn(List column, byte type, int rowCount, DataOutputStream stream) throws IOException
+    {
+        long[] nullBitmap = new long[(rowCount + 63) >> 6];
+        for(int ii = 0; ii < rowCount; ii++)
+        {
+            if(null == column.get(ii))
+            {
+                nullBitmap[ii >> 6] |= 1L << (ii & 63);
+            }
+        }
+        for(int ii = 0; ii < nullBitmap.length; ii++)
+        {
+            stream.writeLong(nullBitmap[ii]);
+        }
+        for(int ii = 0; ii < rowCount; ii++)
+        {
+            Object value = column.get(ii);
+            if(null == value) continue;
+            byte valueType = type;
+            if(BinaryResultSetFactory.TYPE_MIXED == type)
+            {
+                valueType = getValueType(value);
+                stream.writeByte(valueType);
+            }
+            writeValue(value, valueType, stream);
+        }
+    }
+
+    static void writeValue(Object value, byte type, DataOutputStream stream) throws IOException
+    {
+        switch(type)
+        {
+            case BinaryResultSetFactory.TYPE_STRING:
+                writeString((String)value, stream);
+                break;
+            case BinaryResultSetFactory.TYPE_INTEGER:
+                stream.writeInt(((Integer)value).intValue());
+                break;
+            case BinaryResultSetFactory.TYPE_LONG:
+                stream.writeLong(((Long)value).longValue());
+                break;
+            case BinaryResultSetFactory.TYPE_DOUBLE:
+                stream.writeDouble(((Double)value).doubleValue());
+                break;
+            case BinaryResultSetFactory.TYPE_BYTES:
+                writeBytes((byte[])value, stream);
+                break;
+            case BinaryResultSetFactory.TYPE_BOOLEAN:
+                stream.writeBoolean(((Boolean)value).booleanValue());
+                break;
+            case BinaryResultSetFactory.TYPE_SHORT:
+                stream.writeShort(((Short)value).shortValue());
+                break;
+            case BinaryResultSetFactory.TYPE_BYTE:
+                stream.writeByte(((Byte)value).byteValue());
+                break;
+            case BinaryResultSetFactory.TYPE_FLOAT:
+                stream.writeFloat(((Float)value).floatValue());
+                break;
+            case BinaryResultSetFactory.TYPE_BIG_DECIMAL:
+                writeString(value.toString(), stream);
+                break;
+            case BinaryResultSetFactory.TYPE_DATE:
+            case BinaryResultSetFactory.TYPE_TIME:
+                stream.writeLong(((java.util.Date)value).getTime());
+                break;
+            case BinaryResultSetFactory.TYPE_TIMESTAMP:
+                stream.writeLong(((Timestamp)value).getTime());
+                stream.writeInt(((Timestamp)value).getNanos());
+                break;
+        }
+    }
+
+    private static byte determineColumnType(List column)
+    {
+        byte columnType = BinaryResultSetFactory.TYPE_MIXED;
+        boolean first = true;
+        for(int ii = 0; ii < column.size(); ii++)
+        {
+            Object value = column.get(ii);
+            if(null == value) continue;
+            byte valueType = getValueType(value);
+            if(first)
+            {
+                columnType = valueType;
+                first = false;
+            }
+            else if(valueType != columnType)
+            {
+                columnType = BinaryResultSetFactory.TYPE_MIXED;
+            }
+        }
+        return columnType;
+    }
+
+    static byte getValueType(Object value)
+    {
+        if(value instanceof String) return BinaryResultSetFactory.TYPE_STRING;
+        if(value instanceof Integer) return BinaryResultSetFactory.TYPE_INTEGER;
+        if(value instanceof Long) return BinaryResultSetFactory.TYPE_LONG;
+        if(value instanceof Double) return BinaryResultSetFactory.TYPE_DOUBLE;
+        if(value instanceof byte[]) return BinaryResultSetFactory.TYPE_BYTES;
+        if(value instanceof Boolean) return BinaryResultSetFactory.TYPE_BOOLEAN;
+        if(value instanceof Short) return BinaryResultSetFactory.TYPE_SHORT;
+        if(value instanceof Byte) return BinaryResultSetFactory.TYPE_BYTE;
+        if(value instanceof Float) return BinaryResultSetFactory.TYPE_FLOAT;
+        if(value instanceof BigDecimal) return BinaryResultSetFactory.TYPE_BIG_DECIMAL;
+        if(value instanceof Date) return BinaryResultSetFactory.TYPE_DATE;
+        if(value instanceof Time) return BinaryResultSetFactory.TYPE_TIME;
+        if(value instanceof Timestamp) return BinaryResultSetFactory.TYPE_TIMESTAMP;
+        throw new IllegalArgumentException("Values of type " + value.getClass().getName() + " cannot be written to a binary snapshot");
+    }
+
+    private static void writeBytes(byte[] bytes, DataOutputStream stream) throws IOException
+    {
+        stream.writeInt(bytes.length);
+        stream.write(bytes);
+    }
+
+    static void writeString(String value, DataOutputStream stream) throws IOException
+    {
+        writeBytes(value.getBytes("UTF-8"), stream);
+    }
+
+    private static void closeStream(DataOutputStream stream)
+    {
+        if(null == stream) return;
+        try
+        {
+            stream.close();
+        }
+        catch(IOException exc)
+        {
+            throw new NestedApplicationException(exc);
+        }
+    }
+}
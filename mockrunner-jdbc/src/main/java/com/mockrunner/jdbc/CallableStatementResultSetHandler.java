@@ -2,9 +2,9 @@ package com.mockrunner.jdbc;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.TreeMap;
 
 import com.mockrunner.mock.jdbc.MockCallableStatement;
 
@@ -19,7 +19,7 @@ public class CallableStatementResultSetHandler extends AbstractOutParameterResul
     public CallableStatementResultSetHandler()
     {
         callableStatements = new ArrayList();
-        callbaleStatementMap = new TreeMap();
+        callbaleStatementMap = new SQLStatementMap();
     }
 
     /**
@@ -33,8 +33,7 @@ public class CallableStatementResultSetHandler extends AbstractOutParameterResul
         List list = (List)callbaleStatementMap.get(statement.getSQL());
         if(null == list)
         {
-            list = new ArrayList();
-            callbaleStatementMap.put(statement.getSQL(), list);
+            list = (List)getOrPut(callbaleStatementMap, statement.getSQL(), createStatementList(Collections.EMPTY_LIST));
         }
         list.add(statement);
         callableStatements.add(statement);
@@ -57,9 +56,38 @@ public class CallableStatementResultSetHandler extends AbstractOutParameterResul
      */
     public Map getCallableStatementMap()
     {
-        return Collections.unmodifiableMap(callbaleStatementMap);
+        return getSortedMap(callbaleStatementMap);
+    }
+    
+    /**
+     * Returns all callable statements with an SQL string that is matched by
+     * the specified SQL string, ordered by their SQL strings. Uses an index
+     * of the SQL strings instead of comparing the specified SQL string with
+     * the SQL string of every callable statement (except for regular
+     * expressions).
+     * @param sql the SQL string
+     * @param matcher the {@link SQLStatementMatcher} with the match parameters
+     * @return the <code>List</code> of {@link MockCallableStatement} objects
+     */
+    public List getCallableStatements(String sql, SQLStatementMatcher matcher)
+    {
+        return getMatchingValues(callbaleStatementMap, matcher, sql);
     }
 
+    public void setConcurrent(boolean concurrent)
+    {
+        super.setConcurrent(concurrent);
+        callableStatements = createStatementList(callableStatements);
+        Map newStatementMap = createStatementMap(Collections.EMPTY_MAP);
+        Iterator iterator = callbaleStatementMap.entrySet().iterator();
+        while(iterator.hasNext())
+        {
+            Map.Entry entry = (Map.Entry)iterator.next();
+            newStatementMap.put(entry.getKey(), createStatementList((List)entry.getValue()));
+        }
+        callbaleStatementMap = newStatementMap;
+    }
+    
     /**
      * Clears all callable statements
      */
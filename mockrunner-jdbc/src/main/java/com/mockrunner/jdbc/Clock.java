@@ -0,0 +1,26 @@
+package com.mockrunner.jdbc;
+
+/**
+ * The clock used by the mock statements to simulate the latency
+ * prepared with {@link AbstractResultSetHandler#prepareLatency}.
+ * The {@link SystemClock} really waits, the {@link VirtualClock}
+ * only advances its time, so tests that simulate latency
+ * do not have to wait. Implementations must be thread safe.
+ */
+public interface Clock
+{
+    /**
+     * Returns the current time of this clock in milliseconds.
+     * @return the current time
+     */
+    public long currentTimeMillis();
+    
+    /**
+     * Waits for the specified number of milliseconds.
+     * Returns immediately if the time is less or equal 0.
+     * A statement interrupts the waiting thread when it is cancelled.
+     * @param millis the time to wait
+     * @throws InterruptedException if the waiting thread is interrupted
+     */
+    public void sleep(long millis) throws InterruptedException;
+}
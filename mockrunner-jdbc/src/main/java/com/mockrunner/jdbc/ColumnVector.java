@@ -0,0 +1,444 @@
+package com.mockrunner.jdbc;
+
+import java.util.AbstractList;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * Columnar <code>List</code> implementation used by
+ * {@link com.mockrunner.mock.jdbc.MockResultSet} for its column data,
+ * if columnar storage is enabled. As long as a column only contains
+ * values of one of the types <code>Integer</code>, <code>Long</code>,
+ * <code>Double</code> or <code>byte[]</code> (and <code>null</code>),
+ * the values are stored in an <code>int[]</code>, <code>long[]</code>,
+ * <code>double[]</code> or <code>byte[][]</code> array. <code>null</code>
+ * values are tracked in a separate bitmap. If a value of any other type
+ * (or a different one of the types above) is added, the column falls
+ * back to an <code>Object[]</code> array. The values returned by
+ * {@link #get} always have the type of the values that were added,
+ * so the column behaves exactly like an <code>ArrayList</code>.
+ * The primitive getters allow reading numeric columns without creating
+ * wrapper objects.
+ */
+public class ColumnVector extends AbstractList implements RandomAccess, Cloneable
+{
+    public final static int TYPE_EMPTY = 0;
+    public final static int TYPE_INT = 1;
+    public final static int TYPE_LONG = 2;
+    public final static int TYPE_DOUBLE = 3;
+    public final static int TYPE_BYTES = 4;
+    public final static int TYPE_OBJECT = 5;
+
+    private final static int DEFAULT_CAPACITY = 10;
+
+    private int type;
+    private int size;
+    private int[] intValues;
+    private long[] longValues;
+    private double[] doubleValues;
+    private byte[][] bytesValues;
+    private Object[] objectValues;
+    private long[] nullBits;
+
+    public ColumnVector()
+    {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public ColumnVector(int initialCapacity)
+    {
+        type = TYPE_EMPTY;
+        size = 0;
+        nullBits = new long[bitmapLength(Math.max(initialCapacity, 1))];
+    }
+
+    /**
+     * Creates a column with the values of the specified <code>List</code>.
+     * The values are not copied.
+     * @param values the column values
+     */
+    public ColumnVector(List values)
+    {
+        this(values.size());
+        for(int ii = 0; ii < values.size(); ii++)
+        {
+            add(values.get(ii));
+        }
+    }
+
+    /**
+     * Returns the storage type of this column, i.e. one of the
+     * <code>TYPE</code> constants. {@link #TYPE_EMPTY} means,
+     * that the column only contains <code>null</code> values.
+     * @return the storage type
+     */
+    public int getType()
+    {
+        return type;
+    }
+
+    /**
+     * Returns if the values of this column are stored in a
+     * primitive numeric array, i.e. if the primitive getters
+     * can be used without creating wrapper objects. A column
+     * that only contains <code>null</code> values is numeric, too.
+     * @return <code>true</code> if the column is numeric,
+     *         <code>false</code> otherwise
+     */
+    public boolean isNumeric()
+    {
+        return type == TYPE_EMPTY || type == TYPE_INT || type == TYPE_LONG || type == TYPE_DOUBLE;
+    }
+
+    /**
+     * Returns if the value at the specified index is <code>null</code>.
+     * @param index the index
+     * @return <code>true</code> if the value is <code>null</code>,
+     *         <code>false</code> otherwise
+     */
+    public boolean isNull(int index)
+    {
+        checkIndex(index);
+        return isNullBitSet(index);
+    }
+
+    /**
+     * Returns the value at the specified index as <code>int</code>.
+     * Works like <code>Number.intValue()</code>. Returns 0 for
+     * <code>null</code> values.
+     * @param index the index
+     * @return the value
+     * @throws IllegalStateException if the column is not numeric
+     */
+    public int getInt(int index)
+    {
+        checkIndex(index);
+        if(isNullBitSet(index)) return 0;
+        switch(type)
+        {
+            case TYPE_INT: return intValues[index];
+            case TYPE_LONG: return (int)longValues[index];
+            case TYPE_DOUBLE: return (int)doubleValues[index];
+        }
+        throw new IllegalStateException("Column is not numeric");
+    }
+
+    /**
+     * Returns the value at the specified index as <code>long</code>.
+     * Works like <code>Number.longValue()</code>. Returns 0 for
+     * <code>null</code> values.
+     * @param index the index
+     * @return the value
+     * @throws IllegalStateException if the column is not numeric
+     */
+    public long getLong(int index)
+    {
+        checkIndex(index);
+        if(isNullBitSet(index)) return 0;
+        switch(type)
+        {
+            case TYPE_INT: return intValues[index];
+            case TYPE_LONG: return longValues[index];
+            case TYPE_DOUBLE: return (long)doubleValues[index];
+        }
+        throw new IllegalStateException("Column is not numeric");
+    }
+
+    /**
+     * Returns the value at the specified index as <code>double</code>.
+     * Works like <code>Number.doubleValue()</code>. Returns 0 for
+     * <code>null</code> values.
+     * @param index the index
+     * @return the value
+     * @throws IllegalStateException if the column is not numeric
+     */
+    public double getDouble(int index)
+    {
+        checkIndex(index);
+        if(isNullBitSet(index)) return 0;
+        switch(type)
+        {
+            case TYPE_INT: return intValues[index];
+            case TYPE_LONG: return longValues[index];
+            case TYPE_DOUBLE: return doubleValues[index];
+        }
+        throw new IllegalStateException("Column is not numeric");
+    }
+
+    public int size()
+    {
+        return size;
+    }
+
+    public Object get(int index)
+    {
+        checkIndex(index);
+        if(isNullBitSet(index)) return null;
+        switch(type)
+        {
+            case TYPE_INT: return new Integer(intValues[index]);
+            case TYPE_LONG: return new Long(longValues[index]);
+            case TYPE_DOUBLE: return new Double(doubleValues[index]);
+            case TYPE_BYTES: return bytesValues[index];
+            case TYPE_OBJECT: return objectValues[index];
+        }
+        return null;
+    }
+
+    public Object set(int index, Object value)
+    {
+        checkIndex(index);
+        Object oldValue = get(index);
+        prepareFor(value);
+        store(index, value);
+        return oldValue;
+    }
+
+    public void add(int index, Object value)
+    {
+        if(index < 0 || index > size)
+        {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        prepareFor(value);
+        ensureCapacity(size + 1);
+        Object values = getValueArray();
+        if(null != values && index < size)
+        {
+            System.arraycopy(values, index, values, index + 1, size - index);
+        }
+        for(int ii = size; ii > index; ii--)
+        {
+            setNullBit(ii, isNullBitSet(ii - 1));
+        }
+        size++;
+        modCount++;
+        store(index, value);
+    }
+
+    public Object remove(int index)
+    {
+        checkIndex(index);
+        Object oldValue = get(index);
+        Object values = getValueArray();
+        if(null != values && index < size - 1)
+        {
+            System.arraycopy(values, index + 1, values, index, size - index - 1);
+        }
+        for(int ii = index; ii < size - 1; ii++)
+        {
+            setNullBit(ii, isNullBitSet(ii + 1));
+        }
+        size--;
+        setNullBit(size, false);
+        clearSlot(size);
+        modCount++;
+        return oldValue;
+    }
+
+    public void clear()
+    {
+        type = TYPE_EMPTY;
+        size = 0;
+        intValues = null;
+        longValues = null;
+        doubleValues = null;
+        bytesValues = null;
+        objectValues = null;
+        nullBits = new long[1];
+        modCount++;
+    }
+
+    /**
+     * Returns a copy of this column. The values are copied using
+     * {@link ParameterUtil#copyParameter}. Primitive columns are
+     * copied with one array copy.
+     * @return the copy
+     */
+    public ColumnVector copy()
+    {
+        ColumnVector copy = (ColumnVector)clone();
+        if(type == TYPE_BYTES)
+        {
+            for(int ii = 0; ii < size; ii++)
+            {
+                copy.bytesValues[ii] = (byte[])ParameterUtil.copyParameter(bytesValues[ii]);
+            }
+        }
+        else if(type == TYPE_OBJECT)
+        {
+            for(int ii = 0; ii < size; ii++)
+            {
+                copy.objectValues[ii] = ParameterUtil.copyParameter(objectValues[ii]);
+            }
+        }
+        return copy;
+    }
+
+    /**
+     * Returns a shallow copy of this column. The backing arrays are
+     * copied, the values are not.
+     * @return the copy
+     */
+    public Object clone()
+    {
+        try
+        {
+            ColumnVector copy = (ColumnVector)super.clone();
+            copy.nullBits = (long[])nullBits.clone();
+            if(null != intValues) copy.intValues = (int[])intValues.clone();
+            if(null != longValues) copy.longValues = (long[])longValues.clone();
+            if(null != doubleValues) copy.doubleValues = (double[])doubleValues.clone();
+            if(null != bytesValues) copy.bytesValues = (byte[][])bytesValues.clone();
+            if(null != objectValues) copy.objectValues = (Object[])objectValues.clone();
+            copy.modCount = 0;
+            return copy;
+        }
+        catch(CloneNotSupportedException exc)
+        {
+            throw new InternalError();
+        }
+    }
+
+    private void prepareFor(Object value)
+    {
+        if(null == value) return;
+        int valueType = determineType(value);
+        if(valueType == type) return;
+        if(type == TYPE_EMPTY)
+        {
+            type = valueType;
+            allocateValueArray(capacity());
+        }
+        else if(type != TYPE_OBJECT)
+        {
+            convertToObjectStorage();
+        }
+    }
+
+    private void store(int index, Object value)
+    {
+        if(null == value)
+        {
+            setNullBit(index, true);
+            clearSlot(index);
+            return;
+        }
+        setNullBit(index, false);
+        switch(type)
+        {
+            case TYPE_INT: intValues[index] = ((Integer)value).intValue(); break;
+            case TYPE_LONG: longValues[index] = ((Long)value).longValue(); break;
+            case TYPE_DOUBLE: doubleValues[index] = ((Double)value).doubleValue(); break;
+            case TYPE_BYTES: bytesValues[index] = (byte[])value; break;
+            case TYPE_OBJECT: objectValues[index] = value; break;
+        }
+    }
+
+    private void clearSlot(int index)
+    {
+        if(type == TYPE_BYTES && index < bytesValues.length) bytesValues[index] = null;
+        if(type == TYPE_OBJECT && index < objectValues.length) objectValues[index] = null;
+    }
+
+    private void convertToObjectStorage()
+    {
+        Object[] values = new Object[capacity()];
+        for(int ii = 0; ii < size; ii++)
+        {
+            values[ii] = get(ii);
+        }
+        intValues = null;
+        longValues = null;
+        doubleValues = null;
+        bytesValues = null;
+        objectValues = values;
+        type = TYPE_OBJECT;
+    }
+
+    private int determineType(Object value)
+    {
+        if(value instanceof Integer) return TYPE_INT;
+        if(value instanceof Long) return TYPE_LONG;
+        if(value instanceof Double) return TYPE_DOUBLE;
+        if(value instanceof byte[]) return TYPE_BYTES;
+        return TYPE_OBJECT;
+    }
+
+    private int capacity()
+    {
+        return nullBits.length * 64;
+    }
+
+    private void ensureCapacity(int minCapacity)
+    {
+        int capacity = capacity();
+        if(minCapacity <= capacity) return;
+        int newCapacity = Math.max(capacity + (capacity >> 1), minCapacity);
+        long[] newNullBits = new long[bitmapLength(newCapacity)];
+        System.arraycopy(nullBits, 0, newNullBits, 0, nullBits.length);
+        nullBits = newNullBits;
+        Object values = getValueArray();
+        if(null != values)
+        {
+            Object oldValues = values;
+            allocateValueArray(capacity());
+            System.arraycopy(oldValues, 0, getValueArray(), 0, size);
+        }
+    }
+
+    private void allocateValueArray(int capacity)
+    {
+        switch(type)
+        {
+            case TYPE_INT: intValues = new int[capacity]; break;
+            case TYPE_LONG: longValues = new long[capacity]; break;
+            case TYPE_DOUBLE: doubleValues = new double[capacity]; break;
+            case TYPE_BYTES: bytesValues = new byte[capacity][]; break;
+            case TYPE_OBJECT: objectValues = new Object[capacity]; break;
+        }
+    }
+
+    private Object getValueArray()
+    {
+        switch(type)
+        {
+            case TYPE_INT: return intValues;
+            case TYPE_LONG: return longValues;
+            case TYPE_DOUBLE: return doubleValues;
+            case TYPE_BYTES: return bytesValues;
+            case TYPE_OBJECT: return objectValues;
+        }
+        return null;
+    }
+
+    private boolean isNullBitSet(int index)
+    {
+        return (nullBits[index >> 6] & (1L << index)) != 0;
+    }
+
+    private void setNullBit(int index, boolean isNull)
+    {
+        if(isNull)
+        {
+            nullBits[index >> 6] |= (1L << index);
+        }
+        else
+        {
+            nullBits[index >> 6] &= ~(1L << index);
+        }
+    }
+
+    private int bitmapLength(int capacity)
+    {
+        return (capacity + 63) >> 6;
+    }
+
+    private void checkIndex(int index)
+    {
+        if(index < 0 || index >= size)
+        {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package com.mockrunner.jdbc;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Append-only <code>List</code> that can be filled by multiple threads
+ * without locking. Each thread appends to its own journal. Every
+ * element gets a sequence number, which is unique across all lists
+ * of this type. Reading the list merges the journals of all threads
+ * in the order of the sequence numbers, so the result does not depend
+ * on how the threads were scheduled once they have finished.
+ * The merged list is cached until the next element is added.
+ * Elements cannot be removed or replaced, but the list can be
+ * cleared. Elements that are added while the list is cleared
+ * may be lost.
+ */
+class ConcurrentJournalList extends AbstractList
+{
+    private final static AtomicLong sequence = new AtomicLong();
+
+    private volatile ThreadLocal threadJournal = new ThreadLocal();
+    private volatile ConcurrentLinkedQueue journals = new ConcurrentLinkedQueue();
+    private final AtomicLong modifications = new AtomicLong();
+    private volatile Snapshot snapshot = new Snapshot(0, Collections.EMPTY_LIST);
+
+    public boolean add(Object object)
+    {
+        ThreadLocal currentThreadJournal = threadJournal;
+        ThreadJournal journal = (ThreadJournal)currentThreadJournal.get();
+        if(null == journal)
+        {
+            journal = new ThreadJournal();
+            currentThreadJournal.set(journal);
+            journals.add(journal);
+        }
+        journal.add(new JournalEntry(sequence.incrementAndGet(), object));
+        modifications.incrementAndGet();
+        return true;
+    }
+
+    public synchronized void clear()
+    {
+        journals = new ConcurrentLinkedQueue();
+        threadJournal = new ThreadLocal();
+        modifications.incrementAndGet();
+    }
+
+    public Object get(int index)
+    {
+        return getSnapshot().get(index);
+    }
+
+    public int size()
+    {
+        return getSnapshot().size();
+    }
+
+    public Iterator iterator()
+    {
+        return getSnapshot().iterator();
+    }
+
+    private List getSnapshot()
+    {
+        long currentModifications = modifications.get();
+        Snapshot currentSnapshot = snapshot;
+        if(currentModifications == currentSnapshot.modifications)
+        {
+            return currentSnapshot.values;
+        }
+        List entries = new ArrayList();
+        Iterator iterator = journals.iterator();
+        while(iterator.hasNext())
+        {
+            ((ThreadJournal)iterator.next()).copyTo(entries);
+        }
+        Collections.sort(entries);
+        List values = new ArrayList(entries.size());
+        for(int ii = 0; ii < entries.size(); ii++)
+        {
+            values.add(((JournalEntry)entries.get(ii)).value);
+        }
+        List newValues = Collections.unmodifiableList(values);
+        snapshot = new Snapshot(currentModifications, newValues);
+        return newValues;
+    }
+    
+    private static class Snapshot
+    {
+        private final long modifications;
+        private final List values;
+
+        public Snapshot(long modifications, List values)
+        {
+            this.modifications = modifications;
+            this.values = values;
+        }
+    }
+
+    /**
+     * Journal of one thread. Only the owning thread writes. The
+     * size is published after the entry, so readers see complete
+     * entries without locking.
+     */
+    private static class ThreadJournal
+    {
+        private volatile JournalEntry[] entries = new JournalEntry[16];
+        private volatile int size = 0;
+
+        public void add(JournalEntry entry)
+        {
+            JournalEntry[] currentEntries = entries;
+            if(size == currentEntries.length)
+            {
+                JournalEntry[] newEntries = new JournalEntry[currentEntries.length * 2];
+                System.arraycopy(currentEntries, 0, newEntries, 0, size);
+                entries = newEntries;
+                currentEntries = newEntries;
+            }
+            currentEntries[size] = entry;
+            size = size + 1;
+        }
+
+        public void copyTo(List list)
+        {
+            int currentSize = size;
+            JournalEntry[] currentEntries = entries;
+            for(int ii = 0; ii < currentSize; ii++)
+            {
+                list.add(currentEntries[ii]);
+            }
+        }
+    }
+
+    private static class JournalEntry implements Comparable
+    {
+        private final long sequenceNumber;
+        private final Object value;
+
+        public JournalEntry(long sequenceNumber, Object value)
+        {
+            this.sequenceNumber = sequenceNumber;
+            this.value = value;
+        }
+
+        public int compareTo(Object object)
+        {
+            long otherSequenceNumber = ((JournalEntry)object).sequenceNumber;
+            if(sequenceNumber < otherSequenceNumber) return -1;
+            if(sequenceNumber > otherSequenceNumber) return 1;
+            return 0;
+        }
+    }
+}
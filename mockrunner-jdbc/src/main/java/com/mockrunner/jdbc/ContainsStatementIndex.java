@@ -0,0 +1,212 @@
+package com.mockrunner.jdbc;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * {@link SQLStatementIndex} for the default matching mode, where
+ * a prepared SQL string matches, if the executed SQL string contains it.
+ * The prepared SQL strings are compiled into an Aho-Corasick automaton,
+ * so all prepared strings contained in an executed SQL string are found
+ * with one pass over the executed SQL string, regardless of the number
+ * of prepared strings. The automaton is rebuilt lazily on the first lookup
+ * after strings have been added or removed. It is published through a
+ * <code>volatile</code> field, so an index that is not modified anymore
+ * can be read by multiple threads without locking.
+ */
+public class ContainsStatementIndex implements SQLStatementIndex
+{
+    private boolean caseSensitive;
+    private Set statements = new HashSet();
+    private volatile Node root;
+
+    public ContainsStatementIndex(boolean caseSensitive)
+    {
+        this.caseSensitive = caseSensitive;
+    }
+
+    public void add(String sql)
+    {
+        if(statements.add(sql))
+        {
+            root = null;
+        }
+    }
+
+    public void remove(String sql)
+    {
+        if(statements.remove(sql))
+        {
+            root = null;
+        }
+    }
+
+    public void clear()
+    {
+        statements.clear();
+        root = null;
+    }
+
+    public List getMatchingStatements(String query)
+    {
+        if(statements.isEmpty()) return new ArrayList();
+        Node currentRoot = root;
+        if(null == currentRoot)
+        {
+            currentRoot = buildAutomaton();
+            root = currentRoot;
+        }
+        String text = normalize(query);
+        Set result = new TreeSet();
+        collectOutput(currentRoot, currentRoot, result);
+        Node state = currentRoot;
+        for(int ii = 0; ii < text.length(); ii++)
+        {
+            state = state.getTransition(text.charAt(ii));
+            collectOutput(currentRoot, state, result);
+        }
+        return new ArrayList(result);
+    }
+
+    private void collectOutput(Node currentRoot, Node state, Set result)
+    {
+        Node current = state.getOutputNode();
+        while(null != current)
+        {
+            result.addAll(current.getStatements());
+            current = current.getFailure().getOutputNode();
+            if(current == currentRoot) break;
+        }
+    }
+
+    private Node buildAutomaton()
+    {
+        Node newRoot = new Node();
+        Iterator iterator = statements.iterator();
+        while(iterator.hasNext())
+        {
+            String sql = (String)iterator.next();
+            String pattern = normalize(sql);
+            Node current = newRoot;
+            for(int ii = 0; ii < pattern.length(); ii++)
+            {
+                current = current.getOrCreateChild(pattern.charAt(ii));
+            }
+            current.addStatement(sql);
+        }
+        newRoot.failure = newRoot;
+        newRoot.outputNode = newRoot.hasStatements() ? newRoot : null;
+        LinkedList queue = new LinkedList();
+        Iterator children = newRoot.children.values().iterator();
+        while(children.hasNext())
+        {
+            Node child = (Node)children.next();
+            child.failure = newRoot;
+            child.outputNode = child.hasStatements() ? child : null;
+            queue.add(child);
+        }
+        while(!queue.isEmpty())
+        {
+            Node current = (Node)queue.removeFirst();
+            Iterator entries = current.children.entrySet().iterator();
+            while(entries.hasNext())
+            {
+                Map.Entry entry = (Map.Entry)entries.next();
+                Character character = (Character)entry.getKey();
+                Node child = (Node)entry.getValue();
+                Node failure = current.failure;
+                while(failure != newRoot && null == failure.getChild(character))
+                {
+                    failure = failure.failure;
+                }
+                Node failureTarget = failure.getChild(character);
+                child.failure = (null != failureTarget) ? failureTarget : newRoot;
+                child.outputNode = child.hasStatements() ? child : child.failure.outputNode;
+                queue.add(child);
+            }
+        }
+        return newRoot;
+    }
+
+    private String normalize(String sql)
+    {
+        if(null == sql) sql = "";
+        if(caseSensitive) return sql;
+        return sql.toLowerCase();
+    }
+
+    private static class Node
+    {
+        private Map children = new HashMap();
+        private List statements = Collections.EMPTY_LIST;
+        private Node failure;
+        private Node outputNode;
+
+        public Node getChild(Character character)
+        {
+            return (Node)children.get(character);
+        }
+
+        public Node getOrCreateChild(char character)
+        {
+            Character key = Character.valueOf(character);
+            Node child = (Node)children.get(key);
+            if(null == child)
+            {
+                child = new Node();
+                children.put(key, child);
+            }
+            return child;
+        }
+
+        public Node getTransition(char character)
+        {
+            Character key = Character.valueOf(character);
+            Node current = this;
+            while(true)
+            {
+                Node child = current.getChild(key);
+                if(null != child) return child;
+                if(current == current.failure) return current;
+                current = current.failure;
+            }
+        }
+
+        public void addStatement(String sql)
+        {
+            if(statements.isEmpty())
+            {
+                statements = new ArrayList(1);
+            }
+            statements.add(sql);
+        }
+
+        public boolean hasStatements()
+        {
+            return !statements.isEmpty();
+        }
+
+        public List getStatements()
+        {
+            return statements;
+        }
+
+        public Node getFailure()
+        {
+            return failure;
+        }
+
+        public Node getOutputNode()
+        {
+            return outputNode;
+        }
+    }
+}
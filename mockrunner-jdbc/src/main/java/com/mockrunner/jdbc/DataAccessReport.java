@@ -0,0 +1,479 @@
+package com.mockrunner.jdbc;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.mockrunner.mock.jdbc.MockResultSet;
+import com.mockrunner.mock.jdbc.StreamingMockResultSet;
+
+/**
+ * Analyzes the executed SQL statements and the returned
+ * <code>ResultSet</code> objects for typical data access problems.
+ * <br><br>
+ * The executed statements are grouped by their shape
+ * (see {@link SQLUtil#getStatementShape}), so statements that only
+ * differ in their literals are counted together. A query shape that was
+ * executed at least as often as the N+1 threshold after another query
+ * was executed is reported as a possible N+1 query, i.e. a query that is
+ * executed once for every row of another query instead of fetching
+ * the data with one statement. Executions in a batch and statements
+ * that are not queries (see {@link SQLUtil#isSelect}) are not counted.
+ * <br><br>
+ * For every returned {@link com.mockrunner.mock.jdbc.MockResultSet} the
+ * number of read rows and columns is compared with the provided rows
+ * and columns. If the ratio of read rows or read columns is lower than
+ * the minimum read ratio, the <code>ResultSet</code> is reported as
+ * over-fetching. The rows of a
+ * {@link com.mockrunner.mock.jdbc.StreamingMockResultSet} are not known
+ * in advance, so only its columns are checked. Only result sets
+ * with enabled read tracking are analyzed (see
+ * {@link com.mockrunner.mock.jdbc.MockResultSet#setReadTracking}).
+ * <br><br>
+ * The report is a snapshot and does not change if more statements are
+ * executed. {@link #toString} returns a tab separated, line oriented
+ * representation of the report that can be processed by other tools.
+ * The result sets are only available if they are recorded by the
+ * result set handlers, i.e. not in the journal mode
+ * {@link AbstractResultSetHandler#JOURNAL_STATISTICS}.
+ */
+public class DataAccessReport
+{
+    private int nPlusOneThreshold;
+    private double minimumReadRatio;
+    private List statementShapes;
+    private List resultSetUsages;
+
+    /**
+     * Creates the report.
+     * @param statistics the {@link ExecutedStatementStatistics} objects of the
+     *        executed statements
+     * @param returnedResultSets the returned <code>ResultSet</code> objects, the
+     *        <code>List</code> may contain {@link com.mockrunner.mock.jdbc.MockResultSet}
+     *        and <code>MockResultSet[]</code> objects
+     * @param nPlusOneThreshold the number of executions of a query
+     *        shape that is reported as N+1 query
+     * @param minimumReadRatio the minimum ratio of read rows and columns
+     *        between <code>0</code> and <code>1</code>
+     * @throws IllegalArgumentException if the threshold is lower than <code>1</code>
+     *         or the ratio is not between <code>0</code> and <code>1</code>
+     */
+    public DataAccessReport(Collection statistics, List returnedResultSets, int nPlusOneThreshold, double minimumReadRatio)
+    {
+        if(nPlusOneThreshold < 1)
+        {
+            throw new IllegalArgumentException("nPlusOneThreshold must be greater than 0");
+        }
+        if(minimumReadRatio < 0 || minimumReadRatio > 1)
+        {
+            throw new IllegalArgumentException("minimumReadRatio must be between 0 and 1");
+        }
+        this.nPlusOneThreshold = nPlusOneThreshold;
+        this.minimumReadRatio = minimumReadRatio;
+        statementShapes = Collections.unmodifiableList(createStatementShapes(statistics));
+        resultSetUsages = Collections.unmodifiableList(createResultSetUsages(returnedResultSets));
+    }
+
+    /**
+     * Returns the N+1 threshold of this report.
+     * @return the N+1 threshold
+     */
+    public int getNPlusOneThreshold()
+    {
+        return nPlusOneThreshold;
+    }
+
+    /**
+     * Returns the minimum read ratio of this report.
+     * @return the minimum read ratio
+     */
+    public double getMinimumReadRatio()
+    {
+        return minimumReadRatio;
+    }
+
+    /**
+     * Returns the {@link StatementShape} objects of all executed statements
+     * in the order of their first execution.
+     * @return the <code>List</code> of {@link StatementShape} objects
+     */
+    public List getStatementShapes()
+    {
+        return statementShapes;
+    }
+
+    /**
+     * Returns the {@link StatementShape} objects that are reported as
+     * N+1 queries.
+     * @return the <code>List</code> of {@link StatementShape} objects
+     */
+    public List getNPlusOneStatementShapes()
+    {
+        List list = new ArrayList();
+        for(int ii = 0; ii < statementShapes.size(); ii++)
+        {
+            StatementShape shape = (StatementShape)statementShapes.get(ii);
+            if(shape.isNPlusOne()) list.add(shape);
+        }
+        return list;
+    }
+
+    /**
+     * Returns the {@link ResultSetUsage} objects of all returned
+     * <code>ResultSet</code> objects in the order they were returned.
+     * @return the <code>List</code> of {@link ResultSetUsage} objects
+     */
+    public List getResultSetUsages()
+    {
+        return resultSetUsages;
+    }
+
+    /**
+     * Returns the {@link ResultSetUsage} objects of the <code>ResultSet</code>
+     * objects that are reported as over-fetching.
+     * @return the <code>List</code> of {@link ResultSetUsage} objects
+     */
+    public List getOverFetchingResultSetUsages()
+    {
+        List list = new ArrayList();
+        for(int ii = 0; ii < resultSetUsages.size(); ii++)
+        {
+            ResultSetUsage usage = (ResultSetUsage)resultSetUsages.get(ii);
+            if(usage.isOverFetching()) list.add(usage);
+        }
+        return list;
+    }
+
+    /**
+     * Returns the report as text. Each line describes one statement shape
+     * or one <code>ResultSet</code>, the fields are separated by tabs:
+     * <ul>
+     * <li><code>shape</code>, number of executions, number of different SQL strings,
+     * <code>true</code> for N+1 queries, the shape</li>
+     * <li><code>resultset</code>, id, read rows, provided rows (<code>-1</code>
+     * if unknown), read columns, provided columns, <code>true</code> for
+     * over-fetching <code>ResultSet</code> objects, the names of the
+     * unread columns separated by commas</li>
+     * </ul>
+     * @return the report as text
+     */
+    public String toString()
+    {
+        StringBuffer buffer = new StringBuffer();
+        for(int ii = 0; ii < statementShapes.size(); ii++)
+        {
+            StatementShape shape = (StatementShape)statementShapes.get(ii);
+            buffer.append("shape\t").append(shape.getExecutionCount());
+            buffer.append('\t').append(shape.getSQLStatements().size());
+            buffer.append('\t').append(shape.isNPlusOne());
+            buffer.append('\t').append(shape.getShape()).append('\n');
+        }
+        for(int ii = 0; ii < resultSetUsages.size(); ii++)
+        {
+            ResultSetUsage usage = (ResultSetUsage)resultSetUsages.get(ii);
+            buffer.append("resultset\t").append(usage.getId());
+            buffer.append('\t').append(usage.getNumberRowsRead());
+            buffer.append('\t').append(usage.getNumberRowsProvided());
+            buffer.append('\t').append(usage.getNumberColumnsRead());
+            buffer.append('\t').append(usage.getNumberColumnsProvided());
+            buffer.append('\t').append(usage.isOverFetching());
+            buffer.append('\t');
+            List unreadColumns = usage.getUnreadColumnNames();
+            for(int yy = 0; yy < unreadColumns.size(); yy++)
+            {
+                if(yy > 0) buffer.append(',');
+                buffer.append(unreadColumns.get(yy));
+            }
+            buffer.append('\n');
+        }
+        return buffer.toString();
+    }
+
+    private List createStatementShapes(Collection statistics)
+    {
+        Map shapes = new LinkedHashMap();
+        Iterator iterator = statistics.iterator();
+        while(iterator.hasNext())
+        {
+            ExecutedStatementStatistics nextStatistics = (ExecutedStatementStatistics)iterator.next();
+            String sql = nextStatistics.getSQLStatement();
+            String shapeString = SQLUtil.getStatementShape(sql);
+            StatementShape shape = (StatementShape)shapes.get(shapeString);
+            if(null == shape)
+            {
+                shape = new StatementShape(shapeString);
+                shapes.put(shapeString, shape);
+            }
+            shape.add(nextStatistics);
+        }
+        List list = new ArrayList(shapes.values());
+        Collections.sort(list, new FirstExecutionComparator());
+        boolean queryExecuted = false;
+        for(int ii = 0; ii < list.size(); ii++)
+        {
+            StatementShape shape = (StatementShape)list.get(ii);
+            shape.followsQuery = queryExecuted;
+            if(shape.isQuery() && shape.executionCount > 0) queryExecuted = true;
+        }
+        return list;
+    }
+
+    private List createResultSetUsages(List returnedResultSets)
+    {
+        List list = new ArrayList();
+        for(int ii = 0; ii < returnedResultSets.size(); ii++)
+        {
+            Object object = returnedResultSets.get(ii);
+            if(object instanceof MockResultSet)
+            {
+                if(((MockResultSet)object).isReadTracking())
+                {
+                    list.add(new ResultSetUsage((MockResultSet)object));
+                }
+            }
+            else if(object instanceof MockResultSet[])
+            {
+                MockResultSet[] resultSets = (MockResultSet[])object;
+                for(int yy = 0; yy < resultSets.length; yy++)
+                {
+                    if(null != resultSets[yy] && resultSets[yy].isReadTracking())
+                    {
+                        list.add(new ResultSetUsage(resultSets[yy]));
+                    }
+                }
+            }
+        }
+        return list;
+    }
+
+    /**
+     * The executions of all SQL strings with the same shape.
+     */
+    public class StatementShape
+    {
+        private String shape;
+        private List sqlStatements;
+        private int executionCount;
+        private int batchExecutionCount;
+        private long firstExecutionNumber;
+        private boolean followsQuery;
+
+        private StatementShape(String shape)
+        {
+            this.shape = shape;
+            sqlStatements = new ArrayList();
+            executionCount = 0;
+            batchExecutionCount = 0;
+            firstExecutionNumber = -1;
+            followsQuery = false;
+        }
+
+        private void add(ExecutedStatementStatistics statistics)
+        {
+            sqlStatements.add(statistics.getSQLStatement());
+            executionCount += statistics.getExecutionCount();
+            batchExecutionCount += statistics.getBatchExecutionCount();
+            long executionNumber = statistics.getFirstExecutionNumber();
+            if(executionNumber >= 0 && (firstExecutionNumber < 0 || executionNumber < firstExecutionNumber))
+            {
+                firstExecutionNumber = executionNumber;
+            }
+        }
+
+        /**
+         * Returns the shape.
+         * @return the shape
+         */
+        public String getShape()
+        {
+            return shape;
+        }
+
+        /**
+         * Returns the different SQL strings with this shape.
+         * @return the <code>List</code> of SQL strings
+         */
+        public List getSQLStatements()
+        {
+            return Collections.unmodifiableList(sqlStatements);
+        }
+
+        /**
+         * Returns the number of executions of all SQL strings
+         * with this shape.
+         * @return the number of executions
+         */
+        public int getExecutionCount()
+        {
+            return executionCount;
+        }
+
+        /**
+         * Returns the number of executions of all SQL strings
+         * with this shape in a batch.
+         * @return the number of executions in a batch
+         */
+        public int getBatchExecutionCount()
+        {
+            return batchExecutionCount;
+        }
+
+        /**
+         * Returns if this shape is a query.
+         * @return <code>true</code> if this shape is a query,
+         *         <code>false</code> otherwise
+         */
+        public boolean isQuery()
+        {
+            return SQLUtil.isSelect(shape);
+        }
+
+        /**
+         * Returns if this shape is reported as N+1 query.
+         * @return <code>true</code> if this shape is a query, another
+         *         query was executed before and the number of executions
+         *         outside of a batch reaches the N+1 threshold,
+         *         <code>false</code> otherwise
+         */
+        public boolean isNPlusOne()
+        {
+            return followsQuery && isQuery() && executionCount - batchExecutionCount >= nPlusOneThreshold;
+        }
+
+        public String toString()
+        {
+            return "Shape: " + shape + ", executions: " + executionCount;
+        }
+    }
+
+    private class FirstExecutionComparator implements Comparator
+    {
+        public int compare(Object object1, Object object2)
+        {
+            long number1 = ((StatementShape)object1).firstExecutionNumber;
+            long number2 = ((StatementShape)object2).firstExecutionNumber;
+            if(number1 < 0) number1 = Long.MAX_VALUE;
+            if(number2 < 0) number2 = Long.MAX_VALUE;
+            if(number1 < number2) return -1;
+            if(number1 > number2) return 1;
+            return 0;
+        }
+    }
+
+    /**
+     * The read rows and columns of a returned <code>ResultSet</code>.
+     */
+    public class ResultSetUsage
+    {
+        private String id;
+        private int numberRowsRead;
+        private int numberRowsProvided;
+        private List columnNames;
+        private List readColumnNames;
+
+        private ResultSetUsage(MockResultSet resultSet)
+        {
+            id = resultSet.getId();
+            numberRowsRead = resultSet.getNumberRowsRead();
+            numberRowsProvided = (resultSet instanceof StreamingMockResultSet) ? -1 : resultSet.getRowCount();
+            columnNames = resultSet.getColumnNames();
+            readColumnNames = resultSet.getReadColumnNames();
+        }
+
+        /**
+         * Returns the id of the <code>ResultSet</code>.
+         * @return the id
+         */
+        public String getId()
+        {
+            return id;
+        }
+
+        /**
+         * Returns the number of read rows.
+         * @return the number of read rows
+         */
+        public int getNumberRowsRead()
+        {
+            return numberRowsRead;
+        }
+
+        /**
+         * Returns the number of provided rows.
+         * @return the number of provided rows or <code>-1</code>,
+         *         if the number is unknown
+         */
+        public int getNumberRowsProvided()
+        {
+            return numberRowsProvided;
+        }
+
+        /**
+         * Returns the number of read columns.
+         * @return the number of read columns
+         */
+        public int getNumberColumnsRead()
+        {
+            return readColumnNames.size();
+        }
+
+        /**
+         * Returns the number of provided columns.
+         * @return the number of provided columns
+         */
+        public int getNumberColumnsProvided()
+        {
+            return columnNames.size();
+        }
+
+        /**
+         * Returns the names of the read columns.
+         * @return the <code>List</code> of column names
+         */
+        public List getReadColumnNames()
+        {
+            return Collections.unmodifiableList(readColumnNames);
+        }
+
+        /**
+         * Returns the names of the provided columns that were not read.
+         * @return the <code>List</code> of column names
+         */
+        public List getUnreadColumnNames()
+        {
+            List list = new ArrayList(columnNames);
+            list.removeAll(readColumnNames);
+            return list;
+        }
+
+        /**
+         * Returns if the <code>ResultSet</code> is reported as over-fetching.
+         * @return <code>true</code> if the ratio of the read rows or the
+         *         read columns is lower than the minimum read ratio,
+         *         <code>false</code> otherwise
+         */
+        public boolean isOverFetching()
+        {
+            if(numberRowsProvided > 0 && numberRowsRead < minimumReadRatio * numberRowsProvided)
+            {
+                return true;
+            }
+            int numberColumnsProvided = getNumberColumnsProvided();
+            if(numberRowsRead > 0 && numberColumnsProvided > 0 && getNumberColumnsRead() < minimumReadRatio * numberColumnsProvided)
+            {
+                return true;
+            }
+            return false;
+        }
+
+        public String toString()
+        {
+            return "ResultSet " + id + ", rows read: " + numberRowsRead + " of " + numberRowsProvided + ", columns read: " + getNumberColumnsRead() + " of " + getNumberColumnsProvided();
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.mockrunner.jdbc;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * {@link SQLStatementIndex} for exact matching. The SQL strings are
+ * stored in a hash map with their normalized form as key, i.e. the
+ * lower case version of the string, if the index is not case
+ * sensitive. A lookup is a single hash map access.
+ */
+public class ExactMatchStatementIndex implements SQLStatementIndex
+{
+    private boolean caseSensitive;
+    private Map statements = new HashMap();
+
+    public ExactMatchStatementIndex(boolean caseSensitive)
+    {
+        this.caseSensitive = caseSensitive;
+    }
+
+    public void add(String sql)
+    {
+        String key = normalize(sql);
+        Set keys = (Set)statements.get(key);
+        if(null == keys)
+        {
+            keys = new TreeSet();
+            statements.put(key, keys);
+        }
+        keys.add(sql);
+    }
+
+    public void remove(String sql)
+    {
+        String key = normalize(sql);
+        Set keys = (Set)statements.get(key);
+        if(null == keys) return;
+        keys.remove(sql);
+        if(keys.isEmpty())
+        {
+            statements.remove(key);
+        }
+    }
+
+    public void clear()
+    {
+        statements.clear();
+    }
+
+    public List getMatchingStatements(String query)
+    {
+        Set keys = (Set)statements.get(normalize(query));
+        if(null == keys) return new ArrayList();
+        return new ArrayList(keys);
+    }
+
+    private String normalize(String sql)
+    {
+        if(null == sql) sql = "";
+        if(caseSensitive) return sql;
+        return sql.toLowerCase();
+    }
+}
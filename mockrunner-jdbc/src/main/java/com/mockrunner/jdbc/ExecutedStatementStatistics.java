@@ -0,0 +1,242 @@
+package com.mockrunner.jdbc;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Aggregated execution data for one SQL string. The statistics
+ * are collected by the result set handlers in the journal modes
+ * that do not record all executed statements and parameters
+ * (see {@link AbstractResultSetHandler#setJournalMode}) and
+ * if they are enabled with {@link AbstractResultSetHandler#setStatisticsEnabled}.
+ * Otherwise they are computed from the journal and contain no
+ * execution times and durations. The durations are the simulated
+ * latencies of the executions (see {@link AbstractResultSetHandler#prepareLatency}),
+ * measured with the {@link Clock} of the handler.
+ * The statistics can be updated by multiple threads.
+ */
+public class ExecutedStatementStatistics
+{
+    private final static AtomicLong executionNumber = new AtomicLong();
+    
+    private String sql;
+    private int executionCount;
+    private int batchExecutionCount;
+    private int parameterSetCount;
+    private long firstExecutionTime;
+    private long lastExecutionTime;
+    private long totalDuration;
+    private long maxDuration;
+    private long firstExecutionNumber;
+    private boolean statementShape;
+
+    public ExecutedStatementStatistics(String sql)
+    {
+        this.sql = sql;
+        executionCount = 0;
+        batchExecutionCount = 0;
+        parameterSetCount = 0;
+        firstExecutionTime = -1;
+        lastExecutionTime = -1;
+        totalDuration = 0;
+        maxDuration = 0;
+        firstExecutionNumber = -1;
+        statementShape = false;
+    }
+
+    /**
+     * Get the SQL string.
+     * @return the SQL string
+     */
+    public String getSQLStatement()
+    {
+        return sql;
+    }
+
+    /**
+     * Returns if the statistics also contain the executions of
+     * SQL strings that were recorded by their shape, because
+     * the limit of {@link AbstractResultSetHandler#setStatisticsSize}
+     * was reached. In this case {@link #getSQLStatement} returns the
+     * shape (see {@link SQLUtil#getStatementShape}).
+     * @return <code>true</code> if the statistics contain SQL strings
+     *         recorded by their shape, <code>false</code> otherwise
+     */
+    public synchronized boolean isStatementShape()
+    {
+        return statementShape;
+    }
+
+    /**
+     * Returns how often the SQL string was executed.
+     * @return the number of executions
+     */
+    public synchronized int getExecutionCount()
+    {
+        return executionCount;
+    }
+
+    /**
+     * Returns how often the SQL string was executed as part
+     * of a batch. The batch executions are included in
+     * {@link #getExecutionCount}.
+     * @return the number of executions in a batch
+     */
+    public synchronized int getBatchExecutionCount()
+    {
+        return batchExecutionCount;
+    }
+
+    /**
+     * Returns the number of parameter sets that were used when
+     * executing the SQL string with a <code>PreparedStatement</code>
+     * or <code>CallableStatement</code>.
+     * @return the number of parameter sets
+     */
+    public synchronized int getParameterSetCount()
+    {
+        return parameterSetCount;
+    }
+
+    /**
+     * Returns the total duration of all executions in milliseconds.
+     * A batch is counted with the duration of the whole batch.
+     * @return the total duration
+     */
+    public synchronized long getTotalDuration()
+    {
+        return totalDuration;
+    }
+
+    /**
+     * Returns the duration of the longest execution in milliseconds.
+     * @return the maximum duration
+     */
+    public synchronized long getMaxDuration()
+    {
+        return maxDuration;
+    }
+
+    /**
+     * Returns the average duration of an execution in milliseconds.
+     * @return the average duration or <code>0</code>,
+     *         if the SQL string was not executed
+     */
+    public synchronized double getAverageDuration()
+    {
+        if(executionCount <= 0) return 0;
+        return (double)totalDuration / executionCount;
+    }
+
+    /**
+     * Returns the time of the first execution in milliseconds
+     * (as returned by the {@link Clock} of the handler).
+     * @return the time of the first execution or <code>-1</code>,
+     *         if the SQL string was not executed
+     */
+    public synchronized long getFirstExecutionTime()
+    {
+        return firstExecutionTime;
+    }
+
+    /**
+     * Returns the time of the last execution in milliseconds
+     * (as returned by the {@link Clock} of the handler).
+     * @return the time of the last execution or <code>-1</code>,
+     *         if the SQL string was not executed
+     */
+    public synchronized long getLastExecutionTime()
+    {
+        return lastExecutionTime;
+    }
+
+    /**
+     * Returns a number that orders the first executions of all
+     * SQL strings, even if they happened in the same millisecond.
+     * A lower number means an earlier first execution.
+     * @return the number of the first execution or <code>-1</code>,
+     *         if the SQL string was not executed
+     */
+    public synchronized long getFirstExecutionNumber()
+    {
+        return firstExecutionNumber;
+    }
+
+    /**
+     * Adds the executions of the specified statistics
+     * to this statistics object.
+     * @param statistics the statistics to add
+     */
+    public synchronized void add(ExecutedStatementStatistics statistics)
+    {
+        executionCount += statistics.getExecutionCount();
+        batchExecutionCount += statistics.getBatchExecutionCount();
+        statementShape |= statistics.isStatementShape();
+        parameterSetCount += statistics.getParameterSetCount();
+        totalDuration += statistics.getTotalDuration();
+        maxDuration = Math.max(maxDuration, statistics.getMaxDuration());
+        long otherFirstExecutionTime = statistics.getFirstExecutionTime();
+        if(otherFirstExecutionTime >= 0 && (firstExecutionTime < 0 || otherFirstExecutionTime < firstExecutionTime))
+        {
+            firstExecutionTime = otherFirstExecutionTime;
+        }
+        long otherFirstExecutionNumber = statistics.getFirstExecutionNumber();
+        if(otherFirstExecutionNumber >= 0 && (firstExecutionNumber < 0 || otherFirstExecutionNumber < firstExecutionNumber))
+        {
+            firstExecutionNumber = otherFirstExecutionNumber;
+        }
+        long otherLastExecutionTime = statistics.getLastExecutionTime();
+        if(otherLastExecutionTime > lastExecutionTime)
+        {
+            lastExecutionTime = otherLastExecutionTime;
+        }
+    }
+
+    synchronized void setStatementShape(boolean statementShape)
+    {
+        this.statementShape = statementShape;
+    }
+
+    synchronized void addExecution(long time, long duration)
+    {
+        addExecutions(1, time, duration);
+    }
+
+    synchronized void addExecutions(int number, long time, long duration)
+    {
+        if(number <= 0) return;
+        if(time >= 0)
+        {
+            if(firstExecutionTime < 0)
+            {
+                firstExecutionTime = time;
+                firstExecutionNumber = executionNumber.incrementAndGet();
+            }
+            lastExecutionTime = time;
+        }
+        executionCount += number;
+        totalDuration += duration;
+        maxDuration = Math.max(maxDuration, duration);
+    }
+
+    synchronized void addBatchExecutions(int number, long time, long duration)
+    {
+        if(number <= 0) return;
+        addExecutions(number, time, duration);
+        batchExecutionCount += number;
+    }
+
+    synchronized void addParameterSet()
+    {
+        addParameterSets(1);
+    }
+
+    synchronized void addParameterSets(int number)
+    {
+        parameterSetCount += number;
+    }
+
+    public synchronized String toString()
+    {
+        return "SQL: " + sql + ", executions: " + executionCount + ", parameter sets: " + parameterSetCount + ", total duration: " + totalDuration;
+    }
+}
@@ -1,12 +1,23 @@
 package com.mockrunner.jdbc;
 
+import java.io.BufferedReader;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
 
+import com.mockrunner.base.NestedApplicationException;
 import com.mockrunner.mock.jdbc.MockResultSet;
+import com.mockrunner.mock.jdbc.StreamingMockResultSet;
 import com.mockrunner.util.common.FileUtil;
 import com.mockrunner.util.common.StringUtil;
 
@@ -23,6 +34,9 @@ import com.mockrunner.util.common.StringUtil;
  * (if not found) by calling <code>getResource</code>. Note that the
  * file must exist in the local file system and cannot be loaded from
  * inside a jar archive.
+ * With {@link #setStreaming} you can enable streaming mode for large files
+ * (default is <code>false</code>). In streaming mode the file is not read
+ * into memory, instead the rows are read while the cursor is moved.
  */
 public class FileResultSetFactory implements ResultSetFactory
 {
@@ -33,6 +47,7 @@ public class FileResultSetFactory implements ResultSetFactory
     private boolean useTemplates = false;
     private String templateMarker = null;
     private Map templates = null;
+    private boolean streaming = false;
 
     public FileResultSetFactory(String fileName)
     {
@@ -148,9 +163,36 @@ public class FileResultSetFactory implements ResultSetFactory
         templates.put("defaultInteger", "0");
         setTemplateConfiguration("$", templates);
     }
+    
+    /**
+     * Set this to <code>true</code> to stream the rows from the file.
+     * If streaming is enabled, {@link #create} returns a
+     * {@link com.mockrunner.mock.jdbc.StreamingMockResultSet}. The
+     * file is read with a buffered NIO channel reader and each row is
+     * parsed when the cursor reaches it. Only a window of rows is kept
+     * in memory. The <code>ResultSet</code> is forward only and read only.
+     * The file is read again for each clone of the <code>ResultSet</code>,
+     * i.e. each time a statement returns it.
+     * If the first line does not contain the column names, the number
+     * of columns is determined by the first row.
+     * The current settings of this factory (delimiter, templates etc.)
+     * are used for the created <code>ResultSet</code>. Changing the
+     * settings afterwards does not affect it.
+     * Default is <code>false</code>, i.e. the complete file is read
+     * into a {@link com.mockrunner.mock.jdbc.MockResultSet}.
+     * @param streaming set <code>true</code> to enable streaming
+     */
+    public void setStreaming(boolean streaming)
+    {
+        this.streaming = streaming;
+    }
 
     public MockResultSet create(String id)
     {
+        if(streaming)
+        {
+            return createStreamingResultSet(id);
+        }
         MockResultSet resultSet = new MockResultSet(id);
         File fileToRead = getFile();
         List<String> lines = FileUtil.getLinesFromFile(fileToRead);
@@ -176,22 +218,175 @@ public class FileResultSetFactory implements ResultSetFactory
         for(int ii = firstLineNumber; ii < lines.size(); ii++)
         {
             String line = lines.get(ii);
-            String[] values = StringUtil.split(line, delimiter, trim);
-            if(useTemplates)
-            {
-            	for(int yy = 0; yy < values.length; yy++)
-            	{
-            		if(null != values[yy])
-            		{
-                		if(values[yy].startsWith(templateMarker) && templates.containsKey(values[yy].substring(1)))
-                		{
-                			values[yy] = (String)templates.get(values[yy].substring(1));
-                		}
-            		}
-            	}
-            }
+            String[] values = parseLine(line, delimiter, trim, getActiveTemplateMarker(), templates);
             resultSet.addRow(values);
         }
         return resultSet;
     }
+    
+    private MockResultSet createStreamingResultSet(String id)
+    {
+        Map currentTemplates = null;
+        if(useTemplates)
+        {
+            currentTemplates = new HashMap(templates);
+        }
+        RowSource source = new FileRowSource(getFile(), delimiter, trim, firstLineContainsColumnNames, getActiveTemplateMarker(), currentTemplates);
+        return new StreamingMockResultSet(id, source);
+    }
+    
+    private String getActiveTemplateMarker()
+    {
+        if(useTemplates)
+        {
+            return templateMarker;
+        }
+        return null;
+    }
+    
+    private static String[] parseLine(String line, String delimiter, boolean trim, String templateMarker, Map templates)
+    {
+        String[] values = StringUtil.split(line, delimiter, trim);
+        if(null != templateMarker)
+        {
+            for(int yy = 0; yy < values.length; yy++)
+            {
+                if(null != values[yy])
+                {
+                    if(values[yy].startsWith(templateMarker) && templates.containsKey(values[yy].substring(1)))
+                    {
+                        values[yy] = (String)templates.get(values[yy].substring(1));
+                    }
+                }
+            }
+        }
+        return values;
+    }
+    
+    private static class FileRowSource implements RowSource
+    {
+        private File file;
+        private String delimiter;
+        private boolean trim;
+        private boolean firstLineContainsColumnNames;
+        private String templateMarker;
+        private Map templates;
+        private List columnNames;
+        
+        public FileRowSource(File file, String delimiter, boolean trim, boolean firstLineContainsColumnNames, String templateMarker, Map templates)
+        {
+            this.file = file;
+            this.delimiter = delimiter;
+            this.trim = trim;
+            this.firstLineContainsColumnNames = firstLineContainsColumnNames;
+            this.templateMarker = templateMarker;
+            this.templates = templates;
+        }
+        
+        public List getColumnNames()
+        {
+            if(null != columnNames) return columnNames;
+            columnNames = new ArrayList();
+            if(!firstLineContainsColumnNames) return columnNames;
+            BufferedReader reader = openReader();
+            try
+            {
+                String firstLine = reader.readLine();
+                if(null != firstLine)
+                {
+                    columnNames.addAll(Arrays.asList(StringUtil.split(firstLine, delimiter, trim)));
+                }
+            }
+            catch(IOException exc)
+            {
+                throw new NestedApplicationException(exc);
+            }
+            finally
+            {
+                closeReader(reader);
+            }
+            return columnNames;
+        }
+
+        public Iterator openRows()
+        {
+            return new FileRowIterator(openReader(), firstLineContainsColumnNames);
+        }
+
+        public void closeRows(Iterator rows)
+        {
+            closeReader(((FileRowIterator)rows).reader);
+        }
+        
+        private BufferedReader openReader()
+        {
+            try
+            {
+                FileInputStream stream = new FileInputStream(file);
+                return new BufferedReader(Channels.newReader(stream.getChannel(), Charset.defaultCharset().name()));
+            }
+            catch(FileNotFoundException exc)
+            {
+                throw new NestedApplicationException(exc);
+            }
+        }
+        
+        private void closeReader(BufferedReader reader)
+        {
+            try
+            {
+                reader.close();
+            }
+            catch(IOException exc)
+            {
+                throw new NestedApplicationException(exc);
+            }
+        }
+        
+        private class FileRowIterator implements Iterator
+        {
+            private BufferedReader reader;
+            private String nextLine;
+            
+            public FileRowIterator(BufferedReader reader, boolean skipFirstLine)
+            {
+                this.reader = reader;
+                if(skipFirstLine)
+                {
+                    readLine();
+                }
+                nextLine = readLine();
+            }
+            
+            public boolean hasNext()
+            {
+                return null != nextLine;
+            }
+
+            public Object next()
+            {
+                if(null == nextLine) throw new NoSuchElementException();
+                String line = nextLine;
+                nextLine = readLine();
+                return Arrays.asList(parseLine(line, delimiter, trim, templateMarker, templates));
+            }
+
+            public void remove()
+            {
+                throw new UnsupportedOperationException();
+            }
+            
+            private String readLine()
+            {
+                try
+                {
+                    return reader.readLine();
+                }
+                catch(IOException exc)
+                {
+                    throw new NestedApplicationException(exc);
+                }
+            }
+        }
+    }
 }
@@ -0,0 +1,40 @@
+package com.mockrunner.jdbc;
+
+/**
+ * A {@link LatencyProfile} with the same execution
+ * time for each execution.
+ */
+public class FixedLatencyProfile extends AbstractLatencyProfile
+{
+    private long executionLatency;
+    
+    /**
+     * Creates a profile with the specified execution time.
+     * @param executionLatency the execution time in milliseconds
+     */
+    public FixedLatencyProfile(long executionLatency)
+    {
+        this(executionLatency, 0);
+    }
+    
+    /**
+     * Creates a profile with the specified execution time
+     * and fetch time per row.
+     * @param executionLatency the execution time in milliseconds
+     * @param rowFetchLatency the fetch time per row in milliseconds
+     */
+    public FixedLatencyProfile(long executionLatency, long rowFetchLatency)
+    {
+        if(executionLatency < 0)
+        {
+            throw new IllegalArgumentException("executionLatency must be greater or equals 0");
+        }
+        this.executionLatency = executionLatency;
+        setRowFetchLatency(rowFetchLatency);
+    }
+
+    public long nextExecutionLatency()
+    {
+        return executionLatency;
+    }
+}
@@ -0,0 +1,140 @@
+package com.mockrunner.jdbc;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import com.mockrunner.mock.jdbc.MockResultSet;
+import com.mockrunner.mock.jdbc.StreamingMockResultSet;
+
+/**
+ * Can be used to create large synthetic <code>ResultSet</code> objects.
+ * The rows are not stored, they are created by a {@link RowGenerator}
+ * when the cursor is moved forward. The created <code>ResultSet</code>
+ * is a {@link com.mockrunner.mock.jdbc.StreamingMockResultSet}, i.e.
+ * it can only be read forward and only a window of rows of the
+ * fetch size is kept in memory. So the memory usage does not depend
+ * on the number of rows. The <code>ResultSet</code> can be prepared
+ * like any other <code>ResultSet</code>. Each executed statement
+ * reads the rows from the first row again.
+ * If no column names are specified, the columns are named
+ * <i>ColumnX</i> and the number of columns is determined
+ * by the first row.
+ */
+public class GeneratedResultSetFactory implements ResultSetFactory
+{
+    private List columnNames;
+    private int numberRows;
+    private RowGenerator generator;
+    
+    public GeneratedResultSetFactory(String[] columnNames, int numberRows, RowGenerator generator)
+    {
+        this(Arrays.asList((Object[])columnNames.clone()), numberRows, generator);
+    }
+    
+    public GeneratedResultSetFactory(List columnNames, int numberRows, RowGenerator generator)
+    {
+        if(numberRows < 0)
+        {
+            throw new IllegalArgumentException("numberRows must be greater or equals 0");
+        }
+        this.columnNames = Collections.unmodifiableList(columnNames);
+        this.numberRows = numberRows;
+        this.generator = generator;
+    }
+    
+    /**
+     * Returns the names of the columns.
+     * @return the names of the columns
+     */
+    public List getColumnNames()
+    {
+        return columnNames;
+    }
+    
+    /**
+     * Returns the number of rows of the created <code>ResultSet</code>.
+     * @return the number of rows
+     */
+    public int getNumberRows()
+    {
+        return numberRows;
+    }
+    
+    public MockResultSet create(String id)
+    {
+        return new StreamingMockResultSet(id, new GeneratedRowSource(columnNames, numberRows, generator));
+    }
+    
+    private static class GeneratedRowSource implements RowSource
+    {
+        private List columnNames;
+        private int numberRows;
+        private RowGenerator generator;
+        
+        public GeneratedRowSource(List columnNames, int numberRows, RowGenerator generator)
+        {
+            this.columnNames = columnNames;
+            this.numberRows = numberRows;
+            this.generator = generator;
+        }
+        
+        public List getColumnNames()
+        {
+            return columnNames;
+        }
+
+        public Iterator openRows()
+        {
+            return new GeneratedRowIterator(this);
+        }
+
+        public void closeRows(Iterator rows)
+        {
+            
+        }
+    }
+    
+    private static class GeneratedRowIterator implements Iterator
+    {
+        private GeneratedRowSource source;
+        private int rowNumber;
+        
+        public GeneratedRowIterator(GeneratedRowSource source)
+        {
+            this.source = source;
+            this.rowNumber = 0;
+        }
+        
+        public boolean hasNext()
+        {
+            return rowNumber < source.numberRows;
+        }
+
+        public Object next()
+        {
+            if(!hasNext())
+            {
+                throw new NoSuchElementException();
+            }
+            rowNumber++;
+            Object[] values = source.generator.generateRow(rowNumber, source.columnNames);
+            if(null == values)
+            {
+                throw new IllegalStateException("Row " + rowNumber + " is null");
+            }
+            if(!source.columnNames.isEmpty() && values.length != source.columnNames.size())
+            {
+                throw new IllegalStateException("Row " + rowNumber + " must contain " + source.columnNames.size() + " values");
+            }
+            return Arrays.asList(values);
+        }
+
+        public void remove()
+        {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.mockrunner.jdbc;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * A {@link LatencyProfile} that samples the execution times
+ * from a recorded histogram. Each execution time is returned
+ * with the probability of its frequency in the histogram.
+ * Use a fixed seed to get reproducible execution times.
+ */
+public class HistogramLatencyProfile extends AbstractLatencyProfile
+{
+    private long[] latencies;
+    private long[] cumulativeCounts;
+    private Random random;
+    
+    /**
+     * Creates a profile from a list of recorded execution times.
+     * Each recorded time has the same frequency.
+     * @param latencies the recorded execution times in milliseconds
+     */
+    public HistogramLatencyProfile(long[] latencies)
+    {
+        this(latencies, createCounts(latencies.length), new Random());
+    }
+    
+    /**
+     * Creates a profile from a histogram.
+     * @param latencies the execution times in milliseconds
+     * @param counts the frequency of the execution time with the same index
+     */
+    public HistogramLatencyProfile(long[] latencies, long[] counts)
+    {
+        this(latencies, counts, new Random());
+    }
+    
+    /**
+     * Creates a profile from a histogram and a random number
+     * generator with the specified seed.
+     * @param latencies the execution times in milliseconds
+     * @param counts the frequency of the execution time with the same index
+     * @param seed the seed
+     */
+    public HistogramLatencyProfile(long[] latencies, long[] counts, long seed)
+    {
+        this(latencies, counts, new Random(seed));
+    }
+    
+    private HistogramLatencyProfile(long[] latencies, long[] counts, Random random)
+    {
+        if(latencies.length != counts.length)
+        {
+            throw new IllegalArgumentException("latencies and counts must have the same length");
+        }
+        this.latencies = (long[])latencies.clone();
+        this.cumulativeCounts = new long[counts.length];
+        long total = 0;
+        for(int ii = 0; ii < counts.length; ii++)
+        {
+            if(counts[ii] < 0 || latencies[ii] < 0)
+            {
+                throw new IllegalArgumentException("latencies and counts must be greater or equals 0");
+            }
+            total += counts[ii];
+            cumulativeCounts[ii] = total;
+        }
+        if(total == 0)
+        {
+            throw new IllegalArgumentException("The histogram must not be empty");
+        }
+        this.random = random;
+    }
+    
+    private static long[] createCounts(int length)
+    {
+        long[] counts = new long[length];
+        Arrays.fill(counts, 1);
+        return counts;
+    }
+
+    public long nextExecutionLatency()
+    {
+        long total = cumulativeCounts[cumulativeCounts.length - 1];
+        long sample = (long)(random.nextDouble() * total);
+        int index = Arrays.binarySearch(cumulativeCounts, sample + 1);
+        if(index < 0) index = -index - 1;
+        while(index > 0 && cumulativeCounts[index - 1] == sample + 1) index--;
+        return latencies[index];
+    }
+}
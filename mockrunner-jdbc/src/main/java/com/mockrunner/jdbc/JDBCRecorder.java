@@ -0,0 +1,617 @@
+package com.mockrunner.jdbc;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.io.InputStream;
+import java.io.Reader;
+import java.sql.Blob;
+import java.sql.CallableStatement;
+import java.sql.Clob;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import javax.sql.DataSource;
+
+import com.mockrunner.base.NestedApplicationException;
+import com.mockrunner.mock.jdbc.MockConnection;
+import com.mockrunner.mock.jdbc.MockResultSet;
+import com.mockrunner.util.common.FileUtil;
+
+/**
+ * Records the <code>ResultSet</code> objects returned by a real
+ * database and replays them with the mock objects.
+ * Use {@link #wrapConnection} or {@link #wrapDataSource} to
+ * wrap the <code>Connection</code> or <code>DataSource</code>
+ * of a real driver. Each query executed with a wrapped
+ * <code>Statement</code>, <code>PreparedStatement</code> or
+ * <code>CallableStatement</code> is recorded as a {@link Fixture} with the SQL string, the
+ * parameters and a copy of the returned rows. The caller
+ * gets a {@link com.mockrunner.mock.jdbc.MockResultSet} with
+ * the copied rows, the <code>ResultSet</code> of the driver
+ * is closed. Write the fixtures with {@link #writeFixtures}
+ * and load them in later runs with {@link #replay}, which
+ * prepares them in the handlers of a
+ * {@link com.mockrunner.mock.jdbc.MockConnection}.
+ * <br><br>
+ * The fixture file stores the rows in the format of the
+ * {@link BinaryResultSetFactory}, so the column and parameter
+ * values must be of a type supported by the
+ * {@link BinaryResultSetWriter}. <code>Clob</code> and
+ * <code>Blob</code> values are recorded as <code>String</code>
+ * and <code>byte[]</code>. Parameters are copied when they are
+ * set and are only recorded for the <code>set</code> methods
+ * that take the parameter index as first argument, i.e. named
+ * parameters and output parameters of a <code>CallableStatement</code>
+ * are not recorded. If a statement returns multiple
+ * <code>ResultSet</code> objects, each of them is recorded as
+ * a separate fixture.
+ * <br><br>
+ * Please note that the replayed SQL strings are matched
+ * according to the settings of the handlers, e.g. you may want
+ * to call <code>setExactMatch(true)</code> on the handlers.
+ * This class is thread safe.
+ */
+public class JDBCRecorder
+{
+    final static int MAGIC = 0x4D524658;
+    final static int VERSION = 1;
+    final static byte STATEMENT = 0;
+    final static byte PREPARED_STATEMENT = 1;
+    final static byte CALLABLE_STATEMENT = 2;
+
+    private final List fixtures = new ArrayList();
+
+    /**
+     * Returns a <code>Connection</code> that delegates to the specified
+     * <code>Connection</code> and records the executed queries.
+     * @param connection the <code>Connection</code> of the real driver
+     * @return the recording <code>Connection</code>
+     */
+    public Connection wrapConnection(Connection connection)
+    {
+        return (Connection)Proxy.newProxyInstance(getClass().getClassLoader(), new Class[] {Connection.class}, new ConnectionHandler(connection));
+    }
+
+    /**
+     * Returns a <code>DataSource</code> that delegates to the specified
+     * <code>DataSource</code>. The returned connections record the
+     * executed queries.
+     * @param dataSource the <code>DataSource</code> of the real driver
+     * @return the recording <code>DataSource</code>
+     */
+    public DataSource wrapDataSource(DataSource dataSource)
+    {
+        return (DataSource)Proxy.newProxyInstance(getClass().getClassLoader(), new Class[] {DataSource.class}, new DataSourceHandler(dataSource));
+    }
+
+    /**
+     * Returns the recorded fixtures in the order of execution.
+     * @return the <code>List</code> of {@link Fixture} objects
+     */
+    public List getFixtures()
+    {
+        synchronized(fixtures)
+        {
+            return Collections.unmodifiableList(new ArrayList(fixtures));
+        }
+    }
+
+    /**
+     * Clears the recorded fixtures.
+     */
+    public void clearFixtures()
+    {
+        synchronized(fixtures)
+        {
+            fixtures.clear();
+        }
+    }
+
+    /**
+     * Writes the recorded fixtures to the specified file.
+     * An existing file will be overwritten.
+     * @param file the fixture file
+     * @throws IllegalArgumentException if a row or parameter
+     *         contains a value of an unsupported type
+     */
+    public void writeFixtures(File file)
+    {
+        writeFixtures(getFixtures(), file);
+    }
+
+    /**
+     * Writes the specified fixtures to the specified file.
+     * An existing file will be overwritten.
+     * @param fixtures the <code>List</code> of {@link Fixture} objects
+     * @param file the fixture file
+     * @throws IllegalArgumentException if a row or parameter
+     *         contains a value of an unsupported type
+     */
+    public static void writeFixtures(List fixtures, File file)
+    {
+        DataOutputStream stream = null;
+        try
+        {
+            stream = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+            stream.writeInt(MAGIC);
+            stream.writeInt(VERSION);
+            stream.writeInt(fixtures.size());
+            for(int ii = 0; ii < fixtures.size(); ii++)
+            {
+                writeFixture((Fixture)fixtures.get(ii), stream);
+            }
+            stream.close();
+            stream = null;
+        }
+        catch(IOException exc)
+        {
+            throw new NestedApplicationException("Failure while writing fixture file", exc);
+        }
+        finally
+        {
+            closeStream(stream);
+        }
+    }
+
+    /**
+     * Reads the fixtures from the specified file. The file can
+     * be specified like the file of a {@link BinaryResultSetFactory}.
+     * @param file the fixture file
+     * @return the <code>List</code> of {@link Fixture} objects
+     */
+    public static List readFixtures(File file)
+    {
+        FileInputStream stream = null;
+        try
+        {
+            stream = new FileInputStream(findFile(file));
+            FileChannel channel = stream.getChannel();
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return readFixtures(buffer);
+        }
+        catch(IOException exc)
+        {
+            throw new NestedApplicationException("Failure while reading fixture file", exc);
+        }
+        catch(BufferUnderflowException exc)
+        {
+            throw new NestedApplicationException("Fixture file is truncated", exc);
+        }
+        finally
+        {
+            closeStream(stream);
+        }
+    }
+
+    /**
+     * Reads the fixtures from the specified file and prepares them
+     * in the handlers of the specified connection. Fixtures recorded
+     * with a <code>PreparedStatement</code> are prepared in the
+     * {@link PreparedStatementResultSetHandler} with their parameters,
+     * fixtures recorded with a <code>CallableStatement</code> are
+     * prepared in the {@link CallableStatementResultSetHandler} with
+     * their parameters, fixtures recorded with a <code>Statement</code> are prepared
+     * in the {@link StatementResultSetHandler}.
+     * @param file the fixture file
+     * @param connection the <code>MockConnection</code>
+     */
+    public static void replay(File file, MockConnection connection)
+    {
+        replay(readFixtures(file), connection);
+    }
+
+    /**
+     * Prepares the specified fixtures in the handlers of the specified
+     * connection. See {@link #replay(File, MockConnection)}.
+     * @param fixtures the <code>List</code> of {@link Fixture} objects
+     * @param connection the <code>MockConnection</code>
+     */
+    public static void replay(List fixtures, MockConnection connection)
+    {
+        Iterator iterator = fixtures.iterator();
+        while(iterator.hasNext())
+        {
+            Fixture fixture = (Fixture)iterator.next();
+            if(fixture.isCallable())
+            {
+                connection.getCallableStatementResultSetHandler().prepareResultSet(fixture.getSQL(), fixture.getResultSet(), fixture.getParameters());
+            }
+            else if(fixture.isPrepared())
+            {
+                connection.getPreparedStatementResultSetHandler().prepareResultSet(fixture.getSQL(), fixture.getResultSet(), fixture.getParameters());
+            }
+            else
+            {
+                connection.getStatementResultSetHandler().prepareResultSet(fixture.getSQL(), fixture.getResultSet());
+            }
+        }
+    }
+
+    private static void writeFixture(Fixture fixture, DataOutputStream stream) throws IOException
+    {
+        stream.writeByte(getStatementType(fixture));
+        BinaryResultSetWriter.writeString(fixture.getSQL(), stream);
+        Map parameters = fixture.getParameters();
+        stream.writeInt(parameters.size());
+        Iterator keys = parameters.keySet().iterator();
+        while(keys.hasNext())
+        {
+            Integer index = (Integer)keys.next();
+            Object value = parameters.get(index);
+            stream.writeInt(index.intValue());
+            stream.writeBoolean(null == value);
+            if(null != value)
+            {
+                byte type = BinaryResultSetWriter.getValueType(value);
+                stream.writeByte(type);
+                BinaryResultSetWriter.writeValue(value, type, stream);
+            }
+        }
+        BinaryResultSetWriter.writeString(fixture.getResultSet().getId(), stream);
+        BinaryResultSetWriter.writeResultSet(fixture.getResultSet(), stream);
+    }
+
+    private static List readFixtures(ByteBuffer buffer) throws IOException
+    {
+        if(buffer.remaining() < 12 || buffer.getInt() != MAGIC)
+        {
+            throw new IOException("File is not a fixture file");
+        }
+        int version = buffer.getInt();
+        if(version != VERSION)
+        {
+            throw new IOException("Unsupported fixture file version " + version);
+        }
+        int size = buffer.getInt();
+        List fixtures = new ArrayList(size);
+        for(int ii = 0; ii < size; ii++)
+        {
+            byte statementType = buffer.get();
+            String sql = BinaryResultSetFactory.readString(buffer);
+            int numberParameters = buffer.getInt();
+            Map parameters = new HashMap();
+            for(int yy = 0; yy < numberParameters; yy++)
+            {
+                Integer index = new Integer(buffer.getInt());
+                boolean isNull = buffer.get() != 0;
+                parameters.put(index, isNull ? null : BinaryResultSetFactory.readValue(buffer, buffer.get()));
+            }
+            MockResultSet resultSet = new MockResultSet(BinaryResultSetFactory.readString(buffer));
+            BinaryResultSetFactory.readResultSet(buffer, resultSet);
+            fixtures.add(new Fixture(sql, statementType != STATEMENT, statementType == CALLABLE_STATEMENT, parameters, resultSet));
+        }
+        return fixtures;
+    }
+
+    private static byte getStatementType(Fixture fixture)
+    {
+        if(fixture.isCallable()) return CALLABLE_STATEMENT;
+        if(fixture.isPrepared()) return PREPARED_STATEMENT;
+        return STATEMENT;
+    }
+
+    private static File findFile(File file)
+    {
+        if(file.exists() && file.isFile())
+        {
+            return file;
+        }
+        try
+        {
+            return FileUtil.findFile(file.getPath());
+        }
+        catch(FileNotFoundException exc)
+        {
+            throw new RuntimeException("Could not find: " + file.getPath() + ". Current dir = " + System.getProperty("user.dir"));
+        }
+    }
+
+    private static void closeStream(Closeable stream)
+    {
+        if(null == stream) return;
+        try
+        {
+            stream.close();
+        }
+        catch(IOException exc)
+        {
+            throw new NestedApplicationException(exc);
+        }
+    }
+
+    private MockResultSet recordResultSet(String sql, boolean prepared, boolean callable, Map parameters, ResultSet resultSet) throws SQLException
+    {
+        MockResultSet mockResultSet;
+        synchronized(fixtures)
+        {
+            mockResultSet = new MockResultSet("recorded" + fixtures.size());
+        }
+        try
+        {
+            ResultSetMetaData metaData = resultSet.getMetaData();
+            int columnCount = metaData.getColumnCount();
+            List[] columns = new List[columnCount];
+            for(int ii = 0; ii < columnCount; ii++)
+            {
+                columns[ii] = new ArrayList();
+            }
+            while(resultSet.next())
+            {
+                for(int ii = 0; ii < columnCount; ii++)
+                {
+                    columns[ii].add(copyValue(resultSet.getObject(ii + 1)));
+                }
+            }
+            for(int ii = 0; ii < columnCount; ii++)
+            {
+                mockResultSet.addColumn(metaData.getColumnLabel(ii + 1), columns[ii]);
+            }
+        }
+        finally
+        {
+            resultSet.close();
+        }
+        synchronized(fixtures)
+        {
+            fixtures.add(new Fixture(sql, prepared, callable, parameters, mockResultSet));
+        }
+        return (MockResultSet)mockResultSet.clone();
+    }
+
+    private Object copyValue(Object value) throws SQLException
+    {
+        if(value instanceof Clob)
+        {
+            Clob clob = (Clob)value;
+            return clob.getSubString(1, (int)clob.length());
+        }
+        if(value instanceof Blob)
+        {
+            Blob blob = (Blob)value;
+            return blob.getBytes(1, (int)blob.length());
+        }
+        return value;
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable
+    {
+        try
+        {
+            return method.invoke(target, args);
+        }
+        catch(InvocationTargetException exc)
+        {
+            throw exc.getTargetException();
+        }
+    }
+
+    /**
+     * A recorded query.
+     */
+    public static class Fixture
+    {
+        private String sql;
+        private boolean prepared;
+        private boolean callable;
+        private Map parameters;
+        private MockResultSet resultSet;
+
+        public Fixture(String sql, boolean prepared, Map parameters, MockResultSet resultSet)
+        {
+            this(sql, prepared, false, parameters, resultSet);
+        }
+
+        public Fixture(String sql, boolean prepared, boolean callable, Map parameters, MockResultSet resultSet)
+        {
+            this.sql = sql;
+            this.prepared = prepared || callable;
+            this.callable = callable;
+            this.parameters = Collections.unmodifiableMap(new HashMap(parameters));
+            this.resultSet = resultSet;
+        }
+
+        /**
+         * Returns the SQL string.
+         * @return the SQL string
+         */
+        public String getSQL()
+        {
+            return sql;
+        }
+
+        /**
+         * Returns if the query was executed with a <code>PreparedStatement</code>
+         * or a <code>CallableStatement</code>.
+         * @return <code>true</code> for a <code>PreparedStatement</code>
+         *         or a <code>CallableStatement</code>,
+         *         <code>false</code> for a <code>Statement</code>
+         */
+        public boolean isPrepared()
+        {
+            return prepared;
+        }
+
+        /**
+         * Returns if the query was executed with a <code>CallableStatement</code>.
+         * @return <code>true</code> for a <code>CallableStatement</code>,
+         *         <code>false</code> otherwise
+         */
+        public boolean isCallable()
+        {
+            return callable;
+        }
+
+        /**
+         * Returns the parameters mapped by their <code>Integer</code> index.
+         * The <code>Map</code> is empty for a <code>Statement</code>.
+         * @return the parameters
+         */
+        public Map getParameters()
+        {
+            return parameters;
+        }
+
+        /**
+         * Returns the recorded rows.
+         * @return the <code>MockResultSet</code>
+         */
+        public MockResultSet getResultSet()
+        {
+            return resultSet;
+        }
+    }
+
+    private class DataSourceHandler implements InvocationHandler
+    {
+        private DataSource dataSource;
+
+        public DataSourceHandler(DataSource dataSource)
+        {
+            this.dataSource = dataSource;
+        }
+
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable
+        {
+            Object result = JDBCRecorder.invoke(dataSource, method, args);
+            if(method.getName().equals("getConnection"))
+            {
+                return wrapConnection((Connection)result);
+            }
+            return result;
+        }
+    }
+
+    private class ConnectionHandler implements InvocationHandler
+    {
+        private Connection connection;
+
+        public ConnectionHandler(Connection connection)
+        {
+            this.connection = connection;
+        }
+
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable
+        {
+            Object result = JDBCRecorder.invoke(connection, method, args);
+            String name = method.getName();
+            Class statementInterface = null;
+            if(name.equals("createStatement"))
+            {
+                statementInterface = Statement.class;
+            }
+            else if(name.equals("prepareStatement"))
+            {
+                statementInterface = PreparedStatement.class;
+            }
+            else if(name.equals("prepareCall"))
+            {
+                statementInterface = CallableStatement.class;
+            }
+            if(null == statementInterface) return result;
+            String sql = (null != args && args.length > 0 && args[0] instanceof String) ? (String)args[0] : null;
+            StatementHandler handler = new StatementHandler((Statement)result, (Connection)proxy, sql, CallableStatement.class == statementInterface);
+            return Proxy.newProxyInstance(JDBCRecorder.class.getClassLoader(), new Class[] {statementInterface}, handler);
+        }
+    }
+
+    private class StatementHandler implements InvocationHandler
+    {
+        private Statement statement;
+        private Connection connection;
+        private String preparedSQL;
+        private boolean callable;
+        private String lastSQL;
+        private Map parameters = new HashMap();
+        private MockResultSet currentResultSet;
+
+        public StatementHandler(Statement statement, Connection connection, String preparedSQL, boolean callable)
+        {
+            this.statement = statement;
+            this.connection = connection;
+            this.preparedSQL = preparedSQL;
+            this.callable = callable;
+            this.lastSQL = preparedSQL;
+        }
+
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable
+        {
+            String name = method.getName();
+            if(name.equals("getConnection"))
+            {
+                return connection;
+            }
+            if(name.equals("clearParameters"))
+            {
+                parameters.clear();
+            }
+            else if(name.startsWith("set") && null != args && args.length >= 2 && args[0] instanceof Integer)
+            {
+                Object value = name.equals("setNull") ? null : ParameterUtil.copyParameter(args[1]);
+                if(value instanceof InputStream || value instanceof Reader)
+                {
+                    args[1] = ParameterUtil.copyParameter(value);
+                }
+                parameters.put(args[0], value);
+            }
+            else if(name.startsWith("getMoreResults"))
+            {
+                currentResultSet = null;
+            }
+            else if(name.startsWith("execute"))
+            {
+                currentResultSet = null;
+                if(null != args && args.length > 0 && args[0] instanceof String)
+                {
+                    lastSQL = (String)args[0];
+                }
+            }
+            Object result = JDBCRecorder.invoke(statement, method, args);
+            if(name.equals("executeQuery"))
+            {
+                currentResultSet = record((Statement)proxy, (ResultSet)result);
+                return currentResultSet;
+            }
+            if(name.equals("getResultSet"))
+            {
+                if(null == currentResultSet && null != result)
+                {
+                    currentResultSet = record((Statement)proxy, (ResultSet)result);
+                }
+                return currentResultSet;
+            }
+            return result;
+        }
+
+        private MockResultSet record(Statement proxy, ResultSet resultSet) throws SQLException
+        {
+            boolean prepared = (null != preparedSQL);
+            Map recordedParameters = prepared ? parameters : Collections.EMPTY_MAP;
+            MockResultSet mockResultSet = recordResultSet(lastSQL, prepared, callable, recordedParameters, resultSet);
+            mockResultSet.setStatement(proxy);
+            return mockResultSet;
+        }
+    }
+}
@@ -14,8 +14,12 @@ import com.mockrunner.base.NestedApplicationException;
 import com.mockrunner.base.VerifyFailedException;
 import com.mockrunner.mock.jdbc.JDBCMockObjectFactory;
 import com.mockrunner.mock.jdbc.MockCallableStatement;
+import com.mockrunner.mock.jdbc.MockConnection;
+import com.mockrunner.mock.jdbc.MockDataSource;
+import com.mockrunner.mock.jdbc.MockPooledDataSource;
 import com.mockrunner.mock.jdbc.MockPreparedStatement;
 import com.mockrunner.mock.jdbc.MockResultSet;
+import com.mockrunner.mock.jdbc.ResultSetComparator;
 import com.mockrunner.mock.jdbc.MockSavepoint;
 import com.mockrunner.mock.jdbc.MockStatement;
 import com.mockrunner.util.common.StringUtil;
@@ -25,10 +29,14 @@ import com.mockrunner.util.common.StringUtil;
  */
 public class JDBCTestModule
 {
+    private final static int MAX_ROWS_IN_MESSAGE = 100;
+    
     private JDBCMockObjectFactory mockFactory;
     private boolean caseSensitive = false;
     private boolean exactMatch = false;
     private boolean useRegularExpressions = false;
+    private int nPlusOneThreshold = 10;
+    private double minimumReadRatio = 0.5;
       
     public JDBCTestModule(JDBCMockObjectFactory mockFactory)
     {
@@ -95,6 +103,65 @@ public class JDBCTestModule
         this.useRegularExpressions = useRegularExpressions;
     }
     
+    /**
+     * Sets the number of executions of queries with the same shape
+     * that are reported as N+1 query by {@link #getDataAccessReport}
+     * and {@link #verifyNoNPlusOneQueries}. Only queries that follow
+     * another query are reported, executions in a batch are not counted
+     * (see {@link DataAccessReport}). Default is <code>10</code>.
+     * @param nPlusOneThreshold the N+1 threshold
+     */
+    public void setNPlusOneThreshold(int nPlusOneThreshold)
+    {
+        this.nPlusOneThreshold = nPlusOneThreshold;
+    }
+    
+    /**
+     * Sets the minimum ratio of read rows and read columns of a returned
+     * <code>ResultSet</code>. <code>ResultSet</code> objects with a lower
+     * ratio are reported as over-fetching by {@link #getDataAccessReport}
+     * and {@link #verifyNoOverFetching}. Default is <code>0.5</code>.
+     * @param minimumReadRatio the minimum read ratio between <code>0</code>
+     *        and <code>1</code>
+     */
+    public void setMinimumReadRatio(double minimumReadRatio)
+    {
+        this.minimumReadRatio = minimumReadRatio;
+    }
+    
+    /**
+     * Enables or disables the data that is needed by {@link #getDataAccessReport},
+     * i.e. the {@link ExecutedStatementStatistics} (see {@link #setStatisticsEnabled})
+     * and the tracking of the read rows and columns of the returned
+     * <code>ResultSet</code> objects (see {@link AbstractResultSetHandler#setReadTrackingEnabled})
+     * for all statement types. Both are disabled by default, so the
+     * statements do not pay for the tracking if no report is needed.
+     * @param dataAccessTracking enable or disable the data access tracking
+     */
+    public void setDataAccessTracking(boolean dataAccessTracking)
+    {
+        setStatisticsEnabled(dataAccessTracking);
+        mockFactory.getMockConnection().getStatementResultSetHandler().setReadTrackingEnabled(dataAccessTracking);
+        mockFactory.getMockConnection().getPreparedStatementResultSetHandler().setReadTrackingEnabled(dataAccessTracking);
+        mockFactory.getMockConnection().getCallableStatementResultSetHandler().setReadTrackingEnabled(dataAccessTracking);
+    }
+    
+    /**
+     * Enables or disables the collection of {@link ExecutedStatementStatistics}
+     * in the journal mode {@link AbstractResultSetHandler#JOURNAL_FULL}
+     * for all statement types (see {@link AbstractResultSetHandler#setStatisticsEnabled}).
+     * {@link #getDataAccessReport} and {@link #verifyNoNPlusOneQueries}
+     * need the order of the executions and the batch executions,
+     * that are only recorded by the collected statistics.
+     * @param statisticsEnabled enable or disable the statistics
+     */
+    public void setStatisticsEnabled(boolean statisticsEnabled)
+    {
+        mockFactory.getMockConnection().getStatementResultSetHandler().setStatisticsEnabled(statisticsEnabled);
+        mockFactory.getMockConnection().getPreparedStatementResultSetHandler().setStatisticsEnabled(statisticsEnabled);
+        mockFactory.getMockConnection().getCallableStatementResultSetHandler().setStatisticsEnabled(statisticsEnabled);
+    }
+    
     /**
      * Returns the {@link StatementResultSetHandler}. 
      * The {@link StatementResultSetHandler}
@@ -164,6 +231,12 @@ public class JDBCTestModule
      * by calling an <code>execute</code> method of a {@link com.mockrunner.mock.jdbc.MockStatement},
      * {@link com.mockrunner.mock.jdbc.MockPreparedStatement} or
      * {@link com.mockrunner.mock.jdbc.MockCallableStatement}.
+     * The <code>List</code> is read from the journals of the result set
+     * handlers, so it depends on their journal mode (see
+     * {@link AbstractResultSetHandler#setJournalMode}).
+     * {@link #verifySQLStatementExecuted} and {@link #verifySQLStatementNotExecuted}
+     * use the {@link #getExecutedSQLStatementStatistics} instead, that
+     * are recorded in all journal modes.
      * @return the <code>List</code> of SQL statements
      */
     public List getExecutedSQLStatements()
@@ -175,6 +248,58 @@ public class JDBCTestModule
         return list;
     }
     
+    /**
+     * Returns the {@link ExecutedStatementStatistics} of all SQL statements
+     * that were executed by calling an <code>execute</code> method of a
+     * {@link com.mockrunner.mock.jdbc.MockStatement},
+     * {@link com.mockrunner.mock.jdbc.MockPreparedStatement} or
+     * {@link com.mockrunner.mock.jdbc.MockCallableStatement}.
+     * The keys are the corresponding SQL statements. If a statement
+     * was executed by more than one statement type, the statistics
+     * are combined.
+     * @return the <code>Map</code> of statistics
+     */
+    public Map getExecutedSQLStatementStatistics()
+    {
+        Map map = new TreeMap();
+        addStatistics(map, mockFactory.getMockConnection().getStatementResultSetHandler().getExecutedStatementStatistics());
+        addStatistics(map, mockFactory.getMockConnection().getPreparedStatementResultSetHandler().getExecutedStatementStatistics());
+        addStatistics(map, mockFactory.getMockConnection().getCallableStatementResultSetHandler().getExecutedStatementStatistics());
+        return map;
+    }
+    
+    private void addStatistics(Map map, Map statisticsMap)
+    {
+        Iterator iterator = statisticsMap.values().iterator();
+        while(iterator.hasNext())
+        {
+            ExecutedStatementStatistics statistics = (ExecutedStatementStatistics)iterator.next();
+            ExecutedStatementStatistics combined = (ExecutedStatementStatistics)map.get(statistics.getSQLStatement());
+            if(null == combined)
+            {
+                combined = new ExecutedStatementStatistics(statistics.getSQLStatement());
+                map.put(statistics.getSQLStatement(), combined);
+            }
+            combined.add(statistics);
+        }
+    }
+    
+    /**
+     * Returns a {@link DataAccessReport} of the executed statements
+     * and the returned <code>ResultSet</code> objects. The report
+     * groups the executed statements by their shape and contains
+     * the read rows and columns of the returned <code>ResultSet</code>
+     * objects. See {@link #setNPlusOneThreshold} and
+     * {@link #setMinimumReadRatio}. The data access tracking
+     * must be enabled with {@link #setDataAccessTracking} before
+     * the statements are executed.
+     * @return the {@link DataAccessReport}
+     */
+    public DataAccessReport getDataAccessReport()
+    {
+        return new DataAccessReport(getExecutedSQLStatementStatistics().values(), getReturnedResultSets(), nPlusOneThreshold, minimumReadRatio);
+    }
+    
     /**
      * @deprecated use {@link #getExecutedSQLStatementParameterMap}
      */
@@ -199,6 +324,28 @@ public class JDBCTestModule
         return map;
     }
     
+    private List getMatchingExecutedSQLStatementParameterSets(String sql)
+    {
+        SQLStatementMatcher matcher = new SQLStatementMatcher(caseSensitive, exactMatch, useRegularExpressions);
+        MockConnection connection = mockFactory.getMockConnection();
+        List preparedSets = connection.getPreparedStatementResultSetHandler().getExecutedStatementParameterSets(sql, matcher);
+        List callableSets = connection.getCallableStatementResultSetHandler().getExecutedStatementParameterSets(sql, matcher);
+        if(callableSets.isEmpty()) return preparedSets;
+        if(preparedSets.isEmpty()) return callableSets;
+        Map map = new TreeMap();
+        for(int ii = 0; ii < preparedSets.size(); ii++)
+        {
+            ParameterSets sets = (ParameterSets)preparedSets.get(ii);
+            map.put(sets.getSQLStatement(), sets);
+        }
+        for(int ii = 0; ii < callableSets.size(); ii++)
+        {
+            ParameterSets sets = (ParameterSets)callableSets.get(ii);
+            map.put(sets.getSQLStatement(), sets);
+        }
+        return new ArrayList(map.values());
+    }
+    
     /**
      * Returns the {@link ParameterSets} object for the specified SQL statement.
      * If more than one {@link ParameterSets} object is found, the first one
@@ -209,9 +356,7 @@ public class JDBCTestModule
      */
     public ParameterSets getExecutedSQLStatementParameterSets(String sql)
     {
-        Map map = getExecutedSQLStatementParameterMap();
-        SQLStatementMatcher matcher = new SQLStatementMatcher(caseSensitive, exactMatch, useRegularExpressions);
-        List list = matcher.getMatchingObjects(map, sql, false, false);
+        List list = getMatchingExecutedSQLStatementParameterSets(sql);
         if(list != null && list.size() > 0)
         {
             return (ParameterSets)list.get(0);
@@ -364,9 +509,8 @@ public class JDBCTestModule
      */
     public List getPreparedStatements(String sql)
     {
-        Map sqlStatements = mockFactory.getMockConnection().getPreparedStatementResultSetHandler().getPreparedStatementMap();
         SQLStatementMatcher matcher = new SQLStatementMatcher(caseSensitive, exactMatch, useRegularExpressions);
-        return matcher.getMatchingObjects(sqlStatements, sql, true, false); 
+        return mockFactory.getMockConnection().getPreparedStatementResultSetHandler().getPreparedStatements(sql, matcher);
     }
     
     /**
@@ -423,9 +567,8 @@ public class JDBCTestModule
      */
     public List getCallableStatements(String sql)
     {
-        Map sqlStatements = mockFactory.getMockConnection().getCallableStatementResultSetHandler().getCallableStatementMap();
         SQLStatementMatcher matcher = new SQLStatementMatcher(caseSensitive, exactMatch, useRegularExpressions);
-        return matcher.getMatchingObjects(sqlStatements, sql, true, false); 
+        return mockFactory.getMockConnection().getCallableStatementResultSetHandler().getCallableStatements(sql, matcher);
     }
     
     /**
@@ -601,13 +744,14 @@ public class JDBCTestModule
     
     /**
      * Verifies that an SQL statement was executed.
+     * Uses the {@link #getExecutedSQLStatementStatistics}, so the
+     * verification works in all journal modes.
      * @param sql the expected SQL string
      * @throws VerifyFailedException if verification fails
      */
     public void verifySQLStatementExecuted(String sql)
     {
-        SQLStatementMatcher matcher = new SQLStatementMatcher(caseSensitive, exactMatch, useRegularExpressions);
-        if(!matcher.contains(getExecutedSQLStatements(), sql, false))
+        if(!wasSQLStatementExecuted(sql))
         {
             throw new VerifyFailedException("Statement " + sql + " not executed.");
         }
@@ -615,18 +759,40 @@ public class JDBCTestModule
     
     /**
      * Verifies that an SQL statement was not executed.
+     * Uses the {@link #getExecutedSQLStatementStatistics}, so the
+     * verification works in all journal modes.
      * @param sql the SQL string
      * @throws VerifyFailedException if verification fails
      */
     public void verifySQLStatementNotExecuted(String sql)
     {
-        SQLStatementMatcher matcher = new SQLStatementMatcher(caseSensitive, exactMatch, useRegularExpressions);
-        if(matcher.contains(getExecutedSQLStatements(), sql, false))
+        if(wasSQLStatementExecuted(sql))
         {
             throw new VerifyFailedException("Statement " + sql + " was executed.");
         }
     }
     
+    private boolean wasSQLStatementExecuted(String sql)
+    {
+        List statements = new ArrayList();
+        List shapes = new ArrayList();
+        Iterator iterator = getExecutedSQLStatementStatistics().values().iterator();
+        while(iterator.hasNext())
+        {
+            ExecutedStatementStatistics statistics = (ExecutedStatementStatistics)iterator.next();
+            if(statistics.getExecutionCount() <= 0) continue;
+            statements.add(statistics.getSQLStatement());
+            if(statistics.isStatementShape())
+            {
+                shapes.add(statistics.getSQLStatement());
+            }
+        }
+        SQLStatementMatcher matcher = new SQLStatementMatcher(caseSensitive, exactMatch, useRegularExpressions);
+        if(matcher.contains(statements, sql, false)) return true;
+        if(shapes.isEmpty() || useRegularExpressions) return false;
+        return matcher.contains(shapes, SQLUtil.getStatementShape(sql), false);
+    }
+    
     /**
      * Verifies the number of parameters for the specified SQL statement.
      * If more than one SQL statement is found, this method uses the
@@ -747,8 +913,7 @@ public class JDBCTestModule
     private Map verifyAndGetParametersForSQL(String sql, int indexOfParameterSet)
     {
         verifySQLStatementExecuted(sql);
-        SQLStatementMatcher matcher = new SQLStatementMatcher(caseSensitive, exactMatch, useRegularExpressions);
-        List matchingParameterList = matcher.getMatchingObjects(getExecutedSQLStatementParameterMap(), sql, true, false);
+        List matchingParameterList = getMatchingExecutedSQLStatementParameterSets(sql);
         if(null == matchingParameterList || matchingParameterList.size() == 0)
         {
             throw new VerifyFailedException("No parameter sets for SQL " + sql + " found. Maybe the SQL has been executed by a regular " +
@@ -1130,6 +1295,132 @@ public class JDBCTestModule
         }
     }
     
+    /**
+     * Verifies the number of connections that were acquired from the
+     * {@link com.mockrunner.mock.jdbc.MockPooledDataSource}.
+     * @param number the expected number of acquisitions
+     * @throws VerifyFailedException if verification fails
+     */
+    public void verifyNumberConnectionAcquisitions(int number)
+    {
+        int actualNumber = getMockPooledDataSource().getAcquisitionCount();
+        if(actualNumber != number)
+        {
+            throw new VerifyFailedException("Connection was acquired " + actualNumber + " times, expected " + number);
+        }
+    }
+    
+    /**
+     * Verifies the maximum number of connections of the
+     * {@link com.mockrunner.mock.jdbc.MockPooledDataSource} that were
+     * in use at the same time.
+     * @param number the expected peak number of connections in use
+     * @throws VerifyFailedException if verification fails
+     */
+    public void verifyPeakConnectionsInUse(int number)
+    {
+        int actualNumber = getMockPooledDataSource().getPeakInUseCount();
+        if(actualNumber != number)
+        {
+            throw new VerifyFailedException(actualNumber + " connections were in use at the same time, expected " + number);
+        }
+    }
+    
+    /**
+     * Verifies that all connections were returned to the
+     * {@link com.mockrunner.mock.jdbc.MockPooledDataSource}.
+     * @throws VerifyFailedException if verification fails
+     */
+    public void verifyAllConnectionsReleased()
+    {
+        int inUseCount = getMockPooledDataSource().getInUseCount();
+        if(inUseCount > 0)
+        {
+            throw new VerifyFailedException(inUseCount + " connections were not returned to the pool");
+        }
+    }
+    
+    /**
+     * Verifies the number of connection acquisitions that failed
+     * because of a timeout.
+     * @param number the expected number of timeouts
+     * @throws VerifyFailedException if verification fails
+     */
+    public void verifyNumberConnectionTimeouts(int number)
+    {
+        int actualNumber = getMockPooledDataSource().getTimeoutCount();
+        if(actualNumber != number)
+        {
+            throw new VerifyFailedException("Acquiring a connection timed out " + actualNumber + " times, expected " + number);
+        }
+    }
+    
+    /**
+     * Verifies that no thread waited longer than the specified
+     * time for a connection of the {@link com.mockrunner.mock.jdbc.MockPooledDataSource}.
+     * @param maxWaitTime the maximum wait time in milliseconds
+     * @throws VerifyFailedException if verification fails
+     */
+    public void verifyMaxConnectionWaitTime(long maxWaitTime)
+    {
+        long actualWaitTime = getMockPooledDataSource().getMaxWaitTime();
+        if(actualWaitTime > maxWaitTime)
+        {
+            throw new VerifyFailedException("Waited " + actualWaitTime + " ms for a connection, expected at most " + maxWaitTime + " ms");
+        }
+    }
+    
+    /**
+     * Verifies that no query shape was executed as often as the
+     * N+1 threshold (see {@link #setNPlusOneThreshold}), i.e. that the
+     * tested code does not execute the same query for every row
+     * of another query.
+     * @throws VerifyFailedException if verification fails
+     */
+    public void verifyNoNPlusOneQueries()
+    {
+        List shapes = getDataAccessReport().getNPlusOneStatementShapes();
+        if(!shapes.isEmpty())
+        {
+            StringBuffer message = new StringBuffer("Possible N+1 queries:");
+            for(int ii = 0; ii < shapes.size(); ii++)
+            {
+                DataAccessReport.StatementShape shape = (DataAccessReport.StatementShape)shapes.get(ii);
+                message.append("\n").append(shape.getShape()).append(" (").append(shape.getExecutionCount()).append(" executions)");
+            }
+            throw new VerifyFailedException(message.toString());
+        }
+    }
+    
+    /**
+     * Verifies that the tested code read enough rows and columns of
+     * every returned <code>ResultSet</code> (see {@link #setMinimumReadRatio}).
+     * @throws VerifyFailedException if verification fails
+     */
+    public void verifyNoOverFetching()
+    {
+        List usages = getDataAccessReport().getOverFetchingResultSetUsages();
+        if(!usages.isEmpty())
+        {
+            StringBuffer message = new StringBuffer("Over-fetching ResultSet objects:");
+            for(int ii = 0; ii < usages.size(); ii++)
+            {
+                message.append("\n").append(usages.get(ii));
+            }
+            throw new VerifyFailedException(message.toString());
+        }
+    }
+    
+    private MockPooledDataSource getMockPooledDataSource()
+    {
+        MockDataSource dataSource = mockFactory.getMockDataSource();
+        if(!(dataSource instanceof MockPooledDataSource))
+        {
+            throw new VerifyFailedException("No pooled data source in use, call JDBCMockObjectFactory.enablePooledDataSource");
+        }
+        return (MockPooledDataSource)dataSource;
+    }
+    
     /**
      * Verifies the number of <code>commit</code> calls.
      * Makes only sense, if the <code>Connection</code> is not in
@@ -1558,20 +1849,37 @@ public class JDBCTestModule
     
     /**
      * Verifies that a <code>ResultSet</code> is equal to another one.
-     * Compares all the rows with {@link com.mockrunner.mock.jdbc.MockResultSet#isEqual}.
+     * Compares all the rows like {@link com.mockrunner.mock.jdbc.MockResultSet#isEqual}
+     * using a {@link com.mockrunner.mock.jdbc.ResultSetComparator}. The message of the
+     * exception contains the first differing cells and, for small <code>ResultSet</code>
+     * objects, the data of both <code>ResultSet</code> objects.
      * @param source the source <code>ResultSet</code>
      * @param target the target <code>ResultSet</code>
      * @throws VerifyFailedException if verification fails
      */
     public void verifyResultSetEquals(MockResultSet source, MockResultSet target)
     {
-        if(!source.isEqual(target))
+        if(null == target)
         {
-            StringBuffer buffer = new StringBuffer("Source data:\n");  
-            buffer.append(source.toString());
-            buffer.append("\n");
-            buffer.append("Target data:\n");
-            buffer.append(target.toString());
+            throw new VerifyFailedException("Mismatch in ResultSet data. Target is null.");
+        }
+        List differences = new ResultSetComparator().compare(source, target);
+        if(!differences.isEmpty())
+        {
+            StringBuffer buffer = new StringBuffer();
+            for(int ii = 0; ii < differences.size(); ii++)
+            {
+                buffer.append(differences.get(ii));
+                buffer.append("\n");
+            }
+            if(source.getRowCount() <= MAX_ROWS_IN_MESSAGE && target.getRowCount() <= MAX_ROWS_IN_MESSAGE)
+            {
+                buffer.append("Source data:\n");  
+                buffer.append(source.toString());
+                buffer.append("\n");
+                buffer.append("Target data:\n");
+                buffer.append(target.toString());
+            }
             throw new VerifyFailedException("Mismatch in ResultSet data.\n" + buffer.toString());
         }
     }
@@ -0,0 +1,28 @@
+package com.mockrunner.jdbc;
+
+/**
+ * Describes the simulated latency of a statement. Latency
+ * profiles are prepared with {@link AbstractResultSetHandler#prepareLatency}
+ * and {@link AbstractResultSetHandler#prepareGlobalLatency}.
+ * All times are in milliseconds. Implementations must be
+ * thread safe.
+ */
+public interface LatencyProfile
+{
+    /**
+     * Returns the time the next execution of a statement takes.
+     * This method is called once for each execution.
+     * @return the execution time
+     */
+    public long nextExecutionLatency();
+    
+    /**
+     * Returns the time it takes to fetch one row of a 
+     * returned <code>ResultSet</code>. The rows are fetched
+     * in blocks of the fetch size of the <code>ResultSet</code>,
+     * i.e. the time for a block is spent when the cursor
+     * is moved to the first row of the block.
+     * @return the fetch time per row
+     */
+    public long getRowFetchLatency();
+}
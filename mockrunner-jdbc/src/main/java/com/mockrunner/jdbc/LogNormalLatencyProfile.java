@@ -0,0 +1,61 @@
+package com.mockrunner.jdbc;
+
+import java.util.Random;
+
+/**
+ * A {@link LatencyProfile} with log-normal distributed
+ * execution times, which is a good approximation for the
+ * response times of a database. The distribution is
+ * specified by its median and the standard deviation
+ * of the logarithm (<i>sigma</i>). With a <i>sigma</i>
+ * of 0.5 the 99th percentile is about three times the median.
+ * Use a fixed seed to get reproducible execution times.
+ */
+public class LogNormalLatencyProfile extends AbstractLatencyProfile
+{
+    private double median;
+    private double sigma;
+    private Random random;
+    
+    /**
+     * Creates a profile with the specified distribution.
+     * @param median the median execution time in milliseconds
+     * @param sigma the standard deviation of the logarithm of the execution time
+     */
+    public LogNormalLatencyProfile(double median, double sigma)
+    {
+        this(median, sigma, new Random());
+    }
+    
+    /**
+     * Creates a profile with the specified distribution and
+     * a random number generator with the specified seed.
+     * @param median the median execution time in milliseconds
+     * @param sigma the standard deviation of the logarithm of the execution time
+     * @param seed the seed
+     */
+    public LogNormalLatencyProfile(double median, double sigma, long seed)
+    {
+        this(median, sigma, new Random(seed));
+    }
+    
+    private LogNormalLatencyProfile(double median, double sigma, Random random)
+    {
+        if(median < 0)
+        {
+            throw new IllegalArgumentException("median must be greater or equals 0");
+        }
+        if(sigma < 0)
+        {
+            throw new IllegalArgumentException("sigma must be greater or equals 0");
+        }
+        this.median = median;
+        this.sigma = sigma;
+        this.random = random;
+    }
+
+    public long nextExecutionLatency()
+    {
+        return Math.round(median * Math.exp(sigma * random.nextGaussian()));
+    }
+}
@@ -0,0 +1,206 @@
+package com.mockrunner.jdbc;
+
+import java.util.AbstractList;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Stores the parameter sets of an executed batch column by column.
+ * The parameter values are copied with {@link ParameterUtil#copyParameter}
+ * when the block is created. The elements of this <code>List</code> are
+ * read only <code>Map</code> views of the parameter sets, so a batch is
+ * recorded without creating a <code>Map</code> for each parameter set.
+ */
+class ParameterBlock extends AbstractList
+{
+    private final static Object ABSENT = new Object();
+    
+    private List keys;
+    private Map keyIndexes;
+    private Object[][] columns;
+    private int[] rowSizes;
+    
+    /**
+     * Creates a block with copies of the specified parameter sets.
+     * @param parameterSets the <code>List</code> of parameter <code>Map</code> objects
+     */
+    public ParameterBlock(List parameterSets)
+    {
+        keys = new ArrayList();
+        keyIndexes = new HashMap();
+        int numberRows = parameterSets.size();
+        List columnList = new ArrayList();
+        rowSizes = new int[numberRows];
+        for(int ii = 0; ii < numberRows; ii++)
+        {
+            Map parameters = (Map)parameterSets.get(ii);
+            Iterator iterator = parameters.entrySet().iterator();
+            while(iterator.hasNext())
+            {
+                Map.Entry entry = (Map.Entry)iterator.next();
+                Integer keyIndex = (Integer)keyIndexes.get(entry.getKey());
+                if(null == keyIndex)
+                {
+                    keyIndex = new Integer(keys.size());
+                    keys.add(entry.getKey());
+                    keyIndexes.put(entry.getKey(), keyIndex);
+                    Object[] column = new Object[numberRows];
+                    for(int yy = 0; yy < numberRows; yy++)
+                    {
+                        column[yy] = ABSENT;
+                    }
+                    columnList.add(column);
+                }
+                ((Object[])columnList.get(keyIndex.intValue()))[ii] = ParameterUtil.copyParameter(entry.getValue());
+            }
+            rowSizes[ii] = parameters.size();
+        }
+        columns = (Object[][])columnList.toArray(new Object[columnList.size()][]);
+    }
+
+    public Object get(int index)
+    {
+        if(index < 0 || index >= rowSizes.length)
+        {
+            throw new IndexOutOfBoundsException("Index " + index + " invalid for size " + rowSizes.length);
+        }
+        return new RowMap(index);
+    }
+
+    public int size()
+    {
+        return rowSizes.length;
+    }
+    
+    private class RowMap extends AbstractMap
+    {
+        private int row;
+        
+        public RowMap(int row)
+        {
+            this.row = row;
+        }
+        
+        public boolean containsKey(Object key)
+        {
+            Integer keyIndex = (Integer)keyIndexes.get(key);
+            return (null != keyIndex) && (ABSENT != columns[keyIndex.intValue()][row]);
+        }
+
+        public Object get(Object key)
+        {
+            Integer keyIndex = (Integer)keyIndexes.get(key);
+            if(null == keyIndex) return null;
+            Object value = columns[keyIndex.intValue()][row];
+            return (ABSENT == value) ? null : value;
+        }
+        
+        public int size()
+        {
+            return rowSizes[row];
+        }
+
+        public Set entrySet()
+        {
+            return new AbstractSet()
+            {
+                public Iterator iterator()
+                {
+                    return new EntryIterator(row);
+                }
+
+                public int size()
+                {
+                    return rowSizes[row];
+                }
+            };
+        }
+    }
+    
+    private class EntryIterator implements Iterator
+    {
+        private int row;
+        private int nextColumn;
+        
+        public EntryIterator(int row)
+        {
+            this.row = row;
+            this.nextColumn = findColumn(0);
+        }
+        
+        private int findColumn(int start)
+        {
+            int column = start;
+            while(column < columns.length && ABSENT == columns[column][row])
+            {
+                column++;
+            }
+            return column;
+        }
+
+        public boolean hasNext()
+        {
+            return nextColumn < columns.length;
+        }
+
+        public Object next()
+        {
+            if(!hasNext()) throw new NoSuchElementException();
+            Map.Entry entry = new ImmutableEntry(keys.get(nextColumn), columns[nextColumn][row]);
+            nextColumn = findColumn(nextColumn + 1);
+            return entry;
+        }
+
+        public void remove()
+        {
+            throw new UnsupportedOperationException();
+        }
+    }
+    
+    private static class ImmutableEntry implements Map.Entry
+    {
+        private Object key;
+        private Object value;
+        
+        public ImmutableEntry(Object key, Object value)
+        {
+            this.key = key;
+            this.value = value;
+        }
+
+        public Object getKey()
+        {
+            return key;
+        }
+
+        public Object getValue()
+        {
+            return value;
+        }
+
+        public Object setValue(Object value)
+        {
+            throw new UnsupportedOperationException();
+        }
+        
+        public boolean equals(Object obj)
+        {
+            if(!(obj instanceof Map.Entry)) return false;
+            Map.Entry other = (Map.Entry)obj;
+            return (null == key ? null == other.getKey() : key.equals(other.getKey())) &&
+                   (null == value ? null == other.getValue() : value.equals(other.getValue()));
+        }
+        
+        public int hashCode()
+        {
+            return (null == key ? 0 : key.hashCode()) ^ (null == value ? 0 : value.hashCode());
+        }
+    }
+}
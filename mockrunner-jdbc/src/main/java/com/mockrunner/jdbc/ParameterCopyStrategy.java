@@ -0,0 +1,20 @@
+package com.mockrunner.jdbc;
+
+/**
+ * Copies parameters of a specific type. Used by
+ * {@link ParameterUtil#copyParameter} when snapshotting
+ * <code>PreparedStatement</code> parameters and when cloning
+ * <code>ResultSet</code> values. Custom strategies can be
+ * registered with {@link ParameterUtil#registerCopyStrategy}.
+ * Implementations must be thread safe.
+ */
+public interface ParameterCopyStrategy
+{
+    /**
+     * Returns a copy of the specified parameter. Immutable
+     * parameters may be returned unchanged.
+     * @param source the parameter to copy, never <code>null</code>
+     * @return a copy of the parameter
+     */
+    public Object copy(Object source);
+}
@@ -25,6 +25,12 @@ public class ParameterSets
 		this.sql = sql;
 	}
 	
+	ParameterSets(String sql, List parameterSets)
+	{
+		this.parameterSets = parameterSets;
+		this.sql = sql;
+	}
+	
 	/**
 	 * Get the SQL string.
 	 * @return the SQL string
@@ -62,4 +68,9 @@ public class ParameterSets
 		if(indexOfParameterSet >= getNumberParameterSets()) return null;
 		return (Map)parameterSets.get(indexOfParameterSet);
 	}
+	
+	List getParameterSetList()
+	{
+		return parameterSets;
+	}
 }
@@ -2,10 +2,17 @@ package com.mockrunner.jdbc;
 
 import java.io.InputStream;
 import java.io.Reader;
+import java.lang.reflect.Method;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
 
 import com.mockrunner.mock.jdbc.MockResultSet;
 import com.mockrunner.util.common.ArrayUtil;
-import com.mockrunner.util.common.MethodUtil;
 import com.mockrunner.util.common.StreamUtil;
 
 /**
@@ -14,6 +21,29 @@ import com.mockrunner.util.common.StreamUtil;
  */
 public class ParameterUtil
 {
+    private final static ParameterCopyStrategy IDENTITY_STRATEGY = new IdentityCopyStrategy();
+    private final static ParameterCopyStrategy ARRAY_STRATEGY = new ArrayCopyStrategy();
+    private final static ParameterCopyStrategy STREAM_STRATEGY = new StreamCopyStrategy();
+    private final static ParameterCopyStrategy READER_STRATEGY = new ReaderCopyStrategy();
+    private final static Set immutableTypes = new HashSet();
+    private final static Map registeredStrategies = new LinkedHashMap();
+    private static volatile ClassValue strategyCache = createStrategyCache();
+    
+    static
+    {
+        immutableTypes.add(String.class);
+        immutableTypes.add(Integer.class);
+        immutableTypes.add(Long.class);
+        immutableTypes.add(Short.class);
+        immutableTypes.add(Byte.class);
+        immutableTypes.add(Double.class);
+        immutableTypes.add(Float.class);
+        immutableTypes.add(Boolean.class);
+        immutableTypes.add(Character.class);
+        immutableTypes.add(BigInteger.class);
+        immutableTypes.add(BigDecimal.class);
+    }
+    
     /**
      * Copies a parameter of a <code>PreparedStatement</code>,
      * <code>CallableStatement</code> or a <code>ResultSet</code> value.
@@ -21,36 +51,120 @@ public class ParameterUtil
      * and arrays are copied into new allocated streams or arrays.
      * All other objects are cloned by calling the clone method. 
      * If the object is not cloneable, it is returned unchanged.
+     * Strings and the wrapper types are always returned unchanged.
+     * The strategy for copying is determined once for each class.
+     * Use {@link #registerCopyStrategy} to change the strategy for
+     * a class.
      * @param source the parameter to copy
      * @return a copy of the parameter
      */
     public static Object copyParameter(Object source)
     {
         if(null == source) return null;
-        if(source.getClass().isArray())
+        return getCopyStrategy(source.getClass()).copy(source);
+    }
+    
+    /**
+     * Registers a strategy for copying parameters of the specified type
+     * and its subtypes. Registered strategies take precedence over the
+     * default behaviour of {@link #copyParameter}. If a class matches
+     * more than one registered type, the strategy of the type that
+     * was registered first is used.
+     * @param type the type of the parameters
+     * @param strategy the strategy
+     */
+    public static void registerCopyStrategy(Class type, ParameterCopyStrategy strategy)
+    {
+        synchronized(registeredStrategies)
         {
-            return ArrayUtil.copyArray(source);
+            registeredStrategies.put(type, strategy);
+            strategyCache = createStrategyCache();
         }
-        if(source instanceof InputStream)
+    }
+    
+    /**
+     * Removes the strategy for the specified type.
+     * @param type the type of the parameters
+     */
+    public static void removeCopyStrategy(Class type)
+    {
+        synchronized(registeredStrategies)
         {
-            return StreamUtil.copyStream((InputStream)source);
+            registeredStrategies.remove(type);
+            strategyCache = createStrategyCache();
         }
-        if(source instanceof Reader)
+    }
+    
+    /**
+     * Removes all registered strategies.
+     */
+    public static void clearCopyStrategies()
+    {
+        synchronized(registeredStrategies)
         {
-            return StreamUtil.copyReader((Reader)source);
+            registeredStrategies.clear();
+            strategyCache = createStrategyCache();
+        }
+    }
+    
+    private static ParameterCopyStrategy getCopyStrategy(Class type)
+    {
+        return (ParameterCopyStrategy)strategyCache.get(type);
+    }
+    
+    private static ClassValue createStrategyCache()
+    {
+        return new ClassValue()
+        {
+            protected Object computeValue(Class type)
+            {
+                synchronized(registeredStrategies)
+                {
+                    return resolveCopyStrategy(type);
+                }
+            }
+        };
+    }
+    
+    private static ParameterCopyStrategy resolveCopyStrategy(Class type)
+    {
+        Iterator iterator = registeredStrategies.entrySet().iterator();
+        while(iterator.hasNext())
+        {
+            Map.Entry entry = (Map.Entry)iterator.next();
+            if(((Class)entry.getKey()).isAssignableFrom(type))
+            {
+                return (ParameterCopyStrategy)entry.getValue();
+            }
+        }
+        if(immutableTypes.contains(type))
+        {
+            return IDENTITY_STRATEGY;
+        }
+        if(type.isArray())
+        {
+            return ARRAY_STRATEGY;
+        }
+        if(InputStream.class.isAssignableFrom(type))
+        {
+            return STREAM_STRATEGY;
+        }
+        if(Reader.class.isAssignableFrom(type))
+        {
+            return READER_STRATEGY;
         }
-        if(source instanceof Cloneable)
+        if(Cloneable.class.isAssignableFrom(type))
         {
             try
             {
-                return MethodUtil.invoke(source, "clone");
+                return new CloneCopyStrategy(type.getMethod("clone", null));
             }
-            catch(Exception exc)
+            catch(NoSuchMethodException exc)
             {
-                return source;
+                return IDENTITY_STRATEGY;
             }
         }
-        return source;
+        return IDENTITY_STRATEGY;
     }
     
     /**
@@ -94,5 +208,58 @@ public class ParameterUtil
         }
         return source.equals(target);
     }
+    
+    private static class IdentityCopyStrategy implements ParameterCopyStrategy
+    {
+        public Object copy(Object source)
+        {
+            return source;
+        }
+    }
+    
+    private static class ArrayCopyStrategy implements ParameterCopyStrategy
+    {
+        public Object copy(Object source)
+        {
+            return ArrayUtil.copyArray(source);
+        }
+    }
+    
+    private static class StreamCopyStrategy implements ParameterCopyStrategy
+    {
+        public Object copy(Object source)
+        {
+            return StreamUtil.copyStream((InputStream)source);
+        }
+    }
+    
+    private static class ReaderCopyStrategy implements ParameterCopyStrategy
+    {
+        public Object copy(Object source)
+        {
+            return StreamUtil.copyReader((Reader)source);
+        }
+    }
+    
+    private static class CloneCopyStrategy implements ParameterCopyStrategy
+    {
+        private Method cloneMethod;
+        
+        public CloneCopyStrategy(Method cloneMethod)
+        {
+            this.cloneMethod = cloneMethod;
+        }
+        
+        public Object copy(Object source)
+        {
+            try
+            {
+                return cloneMethod.invoke(source, null);
+            }
+            catch(Exception exc)
+            {
+                return source;
+            }
+        }
+    }
 }
-
@@ -2,24 +2,73 @@ package com.mockrunner.jdbc;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.TreeMap;
 
 import com.mockrunner.mock.jdbc.MockPreparedStatement;
+import com.mockrunner.mock.jdbc.MockResultSet;
 
 /**
  * Concrete handler for {@link MockPreparedStatement}.
+ * Queries without a prepared <code>ResultSet</code> are evaluated
+ * by the {@link QueryEngine} (see {@link #getQueryEngine}).
  */
 public class PreparedStatementResultSetHandler extends AbstractParameterResultSetHandler
 { 
     private List preparedStatements;
     private Map preparedStatementMap;
+    private QueryEngine queryEngine;
     
     public PreparedStatementResultSetHandler()
     {
         preparedStatements = new ArrayList();
-        preparedStatementMap = new TreeMap();
+        preparedStatementMap = new SQLStatementMap();
+        queryEngine = new QueryEngine();
+    }
+    
+    /**
+     * Returns the {@link QueryEngine} of this handler. Register
+     * tables with the engine to evaluate simple <i>select</i>
+     * statements against them, instead of preparing a
+     * <code>ResultSet</code> for each statement and each
+     * combination of parameters.
+     * @return the {@link QueryEngine}
+     */
+    public QueryEngine getQueryEngine()
+    {
+        return queryEngine;
+    }
+    
+    /**
+     * Sets the {@link QueryEngine} of this handler, e.g. to share
+     * the registered tables with another handler. Set <code>null</code>
+     * to disable the evaluation of statements.
+     * @param queryEngine the {@link QueryEngine}
+     */
+    public void setQueryEngine(QueryEngine queryEngine)
+    {
+        this.queryEngine = queryEngine;
+    }
+    
+    /**
+     * Returns the <code>ResultSet</code> objects prepared for the specified
+     * SQL string and parameters. If there are none and no
+     * <code>ResultSet</code> is prepared for the SQL string
+     * without parameters, the statement is evaluated by the
+     * {@link QueryEngine}.
+     * @param sql the SQL string
+     * @param parameters the parameters
+     * @return the corresponding <code>MockResultSet[]</code>
+     */
+    public MockResultSet[] getResultSets(String sql, Map parameters)
+    {
+        MockResultSet[] resultSets = super.getResultSets(sql, parameters);
+        if(null != resultSets || null == queryEngine) return resultSets;
+        if(null != getResultSets(sql)) return null;
+        MockResultSet resultSet = queryEngine.executeQuery(sql, parameters);
+        if(null == resultSet) return null;
+        return new MockResultSet[] {resultSet};
     }
     
     /**
@@ -33,8 +82,7 @@ public class PreparedStatementResultSetHandler extends AbstractParameterResultSe
         List list = (List)preparedStatementMap.get(statement.getSQL());
         if(null == list)
         {
-            list = new ArrayList();
-            preparedStatementMap.put(statement.getSQL(), list);
+            list = (List)getOrPut(preparedStatementMap, statement.getSQL(), createStatementList(Collections.EMPTY_LIST));
         }
         list.add(statement);
         preparedStatements.add(statement);
@@ -57,9 +105,38 @@ public class PreparedStatementResultSetHandler extends AbstractParameterResultSe
      */
     public Map getPreparedStatementMap()
     {
-        return Collections.unmodifiableMap(preparedStatementMap);
+        return getSortedMap(preparedStatementMap);
+    }
+    
+    /**
+     * Returns all prepared statements with an SQL string that is matched by
+     * the specified SQL string, ordered by their SQL strings. Uses an index
+     * of the SQL strings instead of comparing the specified SQL string with
+     * the SQL string of every prepared statement (except for regular
+     * expressions).
+     * @param sql the SQL string
+     * @param matcher the {@link SQLStatementMatcher} with the match parameters
+     * @return the <code>List</code> of {@link MockPreparedStatement} objects
+     */
+    public List getPreparedStatements(String sql, SQLStatementMatcher matcher)
+    {
+        return getMatchingValues(preparedStatementMap, matcher, sql);
     }
 
+    public void setConcurrent(boolean concurrent)
+    {
+        super.setConcurrent(concurrent);
+        preparedStatements = createStatementList(preparedStatements);
+        Map newStatementMap = createStatementMap(Collections.EMPTY_MAP);
+        Iterator iterator = preparedStatementMap.entrySet().iterator();
+        while(iterator.hasNext())
+        {
+            Map.Entry entry = (Map.Entry)iterator.next();
+            newStatementMap.put(entry.getKey(), createStatementList((List)entry.getValue()));
+        }
+        preparedStatementMap = newStatementMap;
+    }
+    
     /**
      * Clears all prepared statements
      */
@@ -0,0 +1,525 @@
+package com.mockrunner.jdbc;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.mockrunner.mock.jdbc.MockResultSet;
+import com.mockrunner.mock.jdbc.StreamingMockResultSet;
+import com.mockrunner.util.common.CaseAwareMap;
+
+/**
+ * Evaluates simple <i>select</i> statements against registered tables.
+ * Instead of preparing a <code>ResultSet</code> for each query and
+ * each combination of parameters, a test can register the tables
+ * once and the <code>ResultSet</code> objects are created when
+ * the statements are executed.
+ * Supported are statements of the form
+ * <i>select * | column [[as] alias], ... from table [alias]
+ * [where column = value [and column = value ...]]
+ * [order by column [asc | desc], ...]</i>.
+ * Values are <i>?</i> placeholders or string and number literals.
+ * Table and column names are case insensitive and qualifiers
+ * like <i>t.column</i> are ignored. Values are equal if their
+ * string representations are equal. If one of the values is a
+ * <code>Number</code>, they are equal if they have the same numeric
+ * value, so the <code>String</code> <i>"1"</i> matches the
+ * <code>Integer</code> <i>1</i> and the number literal <i>1</i>, but
+ * not the <code>String</code> <i>"1.0"</i> or the string literal <i>'01'</i>.
+ * The equality conditions are answered with hash indexes that are
+ * built when a column is used in a condition for the first time.
+ * The {@link PreparedStatementResultSetHandler} uses the
+ * engine, if there's no prepared <code>ResultSet</code> for a statement.
+ * Tables must be registered before statements are executed.
+ * The parsed statements are cached, the cache holds the
+ * {@link #PARSED_STATEMENT_CACHE_SIZE} most recently used statements.
+ */
+public class QueryEngine
+{
+    /**
+     * The maximum number of cached parsed statements.
+     */
+    public final static int PARSED_STATEMENT_CACHE_SIZE = 1000;
+    
+    private final static Object UNSUPPORTED = new Object();
+    
+    private Map tables = new ConcurrentHashMap();
+    private Map parsedStatements = new LinkedHashMap(16, 0.75f, true)
+    {
+        protected boolean removeEldestEntry(Map.Entry eldest)
+        {
+            return size() > PARSED_STATEMENT_CACHE_SIZE;
+        }
+    };
+    
+    /**
+     * Registers a table. The data of the specified <code>ResultSet</code>
+     * is copied, so later changes of the <code>ResultSet</code> are
+     * not visible. The rows of a {@link StreamingMockResultSet} are
+     * read once from its {@link RowSource} and kept in memory.
+     * An existing table with the same name is replaced.
+     * @param tableName the name of the table
+     * @param resultSet the data of the table
+     */
+    public void registerTable(String tableName, MockResultSet resultSet)
+    {
+        tables.put(tableName.toLowerCase(), new Table(resultSet));
+    }
+    
+    /**
+     * Registers a table with the data created by the specified factory,
+     * e.g. a {@link FileResultSetFactory}.
+     * @param tableName the name of the table
+     * @param factory the factory
+     */
+    public void registerTable(String tableName, ResultSetFactory factory)
+    {
+        registerTable(tableName, factory.create(tableName));
+    }
+    
+    /**
+     * Registers a table with the data of the specified
+     * {@link StringValuesTable}. The name of the table is the
+     * name of the {@link StringValuesTable}.
+     * @param table the {@link StringValuesTable}
+     */
+    public void registerTable(StringValuesTable table)
+    {
+        registerTable(table.getName(), new ArrayResultSetFactory(table));
+    }
+    
+    /**
+     * Removes the table with the specified name.
+     * @param tableName the name of the table
+     */
+    public void removeTable(String tableName)
+    {
+        tables.remove(tableName.toLowerCase());
+    }
+    
+    /**
+     * Removes all tables.
+     */
+    public void clearTables()
+    {
+        tables.clear();
+    }
+    
+    /**
+     * Returns if a table with the specified name is registered.
+     * @param tableName the name of the table
+     * @return <code>true</code> if the table is registered,
+     *         <code>false</code> otherwise
+     */
+    public boolean hasTable(String tableName)
+    {
+        return tables.containsKey(tableName.toLowerCase());
+    }
+    
+    /**
+     * Returns if the engine can evaluate the specified SQL string,
+     * i.e. if the SQL string is a supported <i>select</i> statement
+     * and the table is registered.
+     * @param sql the SQL string
+     * @return <code>true</code> if the engine can evaluate the SQL string,
+     *         <code>false</code> otherwise
+     */
+    public boolean canExecute(String sql)
+    {
+        if(tables.isEmpty()) return false;
+        SimpleSelect select = getParsedStatement(sql);
+        return (null != select) && hasTable(select.getTableName());
+    }
+    
+    /**
+     * Evaluates the specified <i>select</i> statement. The parameters map
+     * the parameter index (an <code>Integer</code> starting with 1)
+     * to the value of the corresponding <i>?</i> placeholder. 
+     * Returns <code>null</code>, if the SQL string is not supported, the table
+     * is not registered or a column does not exist. The id of the returned
+     * <code>ResultSet</code> is the name of the table.
+     * @param sql the SQL string
+     * @param parameters the parameters
+     * @return the <code>ResultSet</code> or <code>null</code>
+     */
+    public MockResultSet executeQuery(String sql, Map parameters)
+    {
+        if(tables.isEmpty()) return null;
+        SimpleSelect select = getParsedStatement(sql);
+        if(null == select) return null;
+        Table table = (Table)tables.get(select.getTableName().toLowerCase());
+        if(null == table) return null;
+        return table.select(select, parameters);
+    }
+    
+    private SimpleSelect getParsedStatement(String sql)
+    {
+        Object select;
+        synchronized(parsedStatements)
+        {
+            select = parsedStatements.get(sql);
+        }
+        if(null == select)
+        {
+            select = SimpleSelect.parse(sql);
+            if(null == select) select = UNSUPPORTED;
+            synchronized(parsedStatements)
+            {
+                parsedStatements.put(sql, select);
+            }
+        }
+        return (UNSUPPORTED == select) ? null : (SimpleSelect)select;
+    }
+    
+    private static BigDecimal getDecimal(Object value)
+    {
+        try
+        {
+            return new BigDecimal(value.toString()).stripTrailingZeros();
+        }
+        catch(NumberFormatException exc)
+        {
+            return null;
+        }
+    }
+    
+    private static boolean isEqual(Object value, Object conditionValue)
+    {
+        if(null == value || null == conditionValue) return false;
+        if(value instanceof Number || conditionValue instanceof Number)
+        {
+            BigDecimal decimal = getDecimal(value);
+            BigDecimal conditionDecimal = getDecimal(conditionValue);
+            if(null != decimal && null != conditionDecimal)
+            {
+                return decimal.equals(conditionDecimal);
+            }
+        }
+        return value.toString().equals(conditionValue.toString());
+    }
+    
+    /**
+     * Key of the hash indexes for values that are not numbers
+     * but have a numeric string representation. Numbers are
+     * indexed with their <code>BigDecimal</code> value, all
+     * values with their string representation.
+     */
+    private static class NumericStringKey
+    {
+        private BigDecimal value;
+        
+        public NumericStringKey(BigDecimal value)
+        {
+            this.value = value;
+        }
+        
+        public boolean equals(Object object)
+        {
+            return (object instanceof NumericStringKey) && value.equals(((NumericStringKey)object).value);
+        }
+        
+        public int hashCode()
+        {
+            return value.hashCode();
+        }
+    }
+    
+    private static class Table
+    {
+        private String id;
+        private List columnNames;
+        private Map columnIndexes;
+        private List[] columns;
+        private int rowCount;
+        private Map[] hashIndexes;
+        
+        public Table(MockResultSet resultSet)
+        {
+            id = resultSet.getId();
+            columnNames = new ArrayList(resultSet.getColumnNames());
+            columnIndexes = new CaseAwareMap(false);
+            columns = new List[columnNames.size()];
+            for(int ii = 0; ii < columns.length; ii++)
+            {
+                if(!columnIndexes.containsKey(columnNames.get(ii)))
+                {
+                    columnIndexes.put(columnNames.get(ii), new Integer(ii));
+                }
+            }
+            if(resultSet instanceof StreamingMockResultSet)
+            {
+                readRows(((StreamingMockResultSet)resultSet).getRowSource());
+            }
+            else
+            {
+                rowCount = resultSet.getRowCount();
+                for(int ii = 0; ii < columns.length; ii++)
+                {
+                    columns[ii] = new ArrayList(resultSet.getColumn(ii + 1));
+                }
+            }
+            hashIndexes = new Map[columns.length];
+        }
+        
+        private void readRows(RowSource rowSource)
+        {
+            for(int ii = 0; ii < columns.length; ii++)
+            {
+                columns[ii] = new ArrayList();
+            }
+            rowCount = 0;
+            Iterator rows = rowSource.openRows();
+            try
+            {
+                while(rows.hasNext())
+                {
+                    List row = (List)rows.next();
+                    for(int ii = 0; ii < columns.length; ii++)
+                    {
+                        columns[ii].add((ii < row.size()) ? row.get(ii) : null);
+                    }
+                    rowCount++;
+                }
+            }
+            finally
+            {
+                rowSource.closeRows(rows);
+            }
+        }
+        
+        public MockResultSet select(SimpleSelect select, Map parameters)
+        {
+            int[] conditionColumns = getColumnIndexes(select.getConditionColumns());
+            int[] orderColumns = getColumnIndexes(select.getOrderColumns());
+            int[] selectColumns = getColumnIndexes(select.getSelectColumns());
+            if(null == conditionColumns || null == orderColumns || null == selectColumns) return null;
+            Object[] conditionValues = new Object[conditionColumns.length];
+            for(int ii = 0; ii < conditionValues.length; ii++)
+            {
+                Object value = select.getConditionValues().get(ii);
+                if(value instanceof SimpleSelect.Placeholder)
+                {
+                    value = parameters.get(new Integer(((SimpleSelect.Placeholder)value).getIndex()));
+                }
+                if(null == value) return createResultSet(select, selectColumns, Collections.EMPTY_LIST);
+                conditionValues[ii] = value;
+            }
+            List rows = findRows(conditionColumns, conditionValues);
+            if(orderColumns.length > 0)
+            {
+                rows = new ArrayList(rows);
+                Collections.sort(rows, new RowComparator(orderColumns, select.getOrderAscending()));
+            }
+            return createResultSet(select, selectColumns, rows);
+        }
+        
+        private List findRows(int[] conditionColumns, Object[] conditionValues)
+        {
+            if(conditionColumns.length == 0)
+            {
+                List rows = new ArrayList(rowCount);
+                for(int ii = 0; ii < rowCount; ii++)
+                {
+                    rows.add(new Integer(ii));
+                }
+                return rows;
+            }
+            List candidates = null;
+            int candidateCondition = -1;
+            for(int ii = 0; ii < conditionColumns.length; ii++)
+            {
+                List rows = getCandidateRows(getHashIndex(conditionColumns[ii]), conditionValues[ii]);
+                if(rows.isEmpty()) return Collections.EMPTY_LIST;
+                if(null == candidates || rows.size() < candidates.size())
+                {
+                    candidates = rows;
+                    candidateCondition = ii;
+                }
+            }
+            List result = new ArrayList(candidates.size());
+            for(int ii = 0; ii < candidates.size(); ii++)
+            {
+                Integer row = (Integer)candidates.get(ii);
+                if(matches(row.intValue(), conditionColumns, conditionValues, candidateCondition))
+                {
+                    result.add(row);
+                }
+            }
+            return result;
+        }
+        
+        private boolean matches(int row, int[] conditionColumns, Object[] conditionValues, int skippedCondition)
+        {
+            for(int ii = 0; ii < conditionColumns.length; ii++)
+            {
+                if(ii == skippedCondition) continue;
+                if(!isEqual(columns[conditionColumns[ii]].get(row), conditionValues[ii])) return false;
+            }
+            return true;
+        }
+        
+        private List getCandidateRows(Map index, Object conditionValue)
+        {
+            BigDecimal decimal = getDecimal(conditionValue);
+            List rows = (List)index.get(conditionValue.toString());
+            List numericRows = null;
+            if(null != decimal && conditionValue instanceof Number)
+            {
+                rows = (List)index.get(decimal);
+                numericRows = (List)index.get(new NumericStringKey(decimal));
+            }
+            else if(null != decimal)
+            {
+                numericRows = (List)index.get(decimal);
+            }
+            if(null == rows) rows = Collections.EMPTY_LIST;
+            if(null == numericRows) return rows;
+            return mergeRows(rows, numericRows);
+        }
+        
+        private List mergeRows(List rows1, List rows2)
+        {
+            List result = new ArrayList(rows1.size() + rows2.size());
+            int index1 = 0;
+            int index2 = 0;
+            while(index1 < rows1.size() || index2 < rows2.size())
+            {
+                if(index2 >= rows2.size() || (index1 < rows1.size() && ((Integer)rows1.get(index1)).intValue() < ((Integer)rows2.get(index2)).intValue()))
+                {
+                    result.add(rows1.get(index1++));
+                }
+                else
+                {
+                    result.add(rows2.get(index2++));
+                }
+            }
+            return result;
+        }
+        
+        private synchronized Map getHashIndex(int column)
+        {
+            if(null != hashIndexes[column]) return hashIndexes[column];
+            Map index = new HashMap();
+            for(int ii = 0; ii < rowCount; ii++)
+            {
+                Object value = columns[column].get(ii);
+                if(null == value) continue;
+                BigDecimal decimal = getDecimal(value);
+                if(null == decimal)
+                {
+                    addToIndex(index, value.toString(), ii);
+                }
+                else if(value instanceof Number)
+                {
+                    addToIndex(index, decimal, ii);
+                }
+                else
+                {
+                    addToIndex(index, value.toString(), ii);
+                    addToIndex(index, new NumericStringKey(decimal), ii);
+                }
+            }
+            hashIndexes[column] = index;
+            return index;
+        }
+        
+        private void addToIndex(Map index, Object key, int row)
+        {
+            List rows = (List)index.get(key);
+            if(null == rows)
+            {
+                rows = new ArrayList(1);
+                index.put(key, rows);
+            }
+            rows.add(new Integer(row));
+        }
+        
+        private int[] getColumnIndexes(List names)
+        {
+            int[] indexes = new int[names.size()];
+            for(int ii = 0; ii < indexes.length; ii++)
+            {
+                Integer index = (Integer)columnIndexes.get(names.get(ii));
+                if(null == index) return null;
+                indexes[ii] = index.intValue();
+            }
+            return indexes;
+        }
+        
+        private MockResultSet createResultSet(SimpleSelect select, int[] selectColumns, List rows)
+        {
+            MockResultSet resultSet = new MockResultSet(id);
+            List labels = select.getSelectLabels();
+            if(selectColumns.length == 0)
+            {
+                selectColumns = new int[columns.length];
+                labels = columnNames;
+                for(int ii = 0; ii < selectColumns.length; ii++)
+                {
+                    selectColumns[ii] = ii;
+                }
+            }
+            for(int ii = 0; ii < selectColumns.length; ii++)
+            {
+                List column = columns[selectColumns[ii]];
+                List values = new ArrayList(rows.size());
+                for(int yy = 0; yy < rows.size(); yy++)
+                {
+                    values.add(column.get(((Integer)rows.get(yy)).intValue()));
+                }
+                resultSet.addColumn((String)labels.get(ii), values);
+            }
+            return resultSet;
+        }
+        
+        private class RowComparator implements Comparator
+        {
+            private int[] orderColumns;
+            private List orderAscending;
+            
+            public RowComparator(int[] orderColumns, List orderAscending)
+            {
+                this.orderColumns = orderColumns;
+                this.orderAscending = orderAscending;
+            }
+            
+            public int compare(Object row1, Object row2)
+            {
+                for(int ii = 0; ii < orderColumns.length; ii++)
+                {
+                    List column = columns[orderColumns[ii]];
+                    int result = compareValues(column.get(((Integer)row1).intValue()), column.get(((Integer)row2).intValue()));
+                    if(result != 0)
+                    {
+                        return ((Boolean)orderAscending.get(ii)).booleanValue() ? result : -result;
+                    }
+                }
+                return ((Integer)row1).compareTo((Integer)row2);
+            }
+            
+            private int compareValues(Object value1, Object value2)
+            {
+                if(null == value1) return (null == value2) ? 0 : -1;
+                if(null == value2) return 1;
+                BigDecimal decimal1 = getDecimal(value1);
+                BigDecimal decimal2 = getDecimal(value2);
+                if(null != decimal1 && null != decimal2)
+                {
+                    return decimal1.compareTo(decimal2);
+                }
+                if(value1 instanceof Comparable && value1.getClass().equals(value2.getClass()))
+                {
+                    return ((Comparable)value1).compareTo(value2);
+                }
+                return value1.toString().compareTo(value2.toString());
+            }
+        }
+    }
+}
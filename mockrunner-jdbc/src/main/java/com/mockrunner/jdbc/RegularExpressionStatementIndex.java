@@ -0,0 +1,77 @@
+package com.mockrunner.jdbc;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.apache.oro.text.regex.Pattern;
+import org.apache.oro.text.regex.Perl5Matcher;
+
+import com.mockrunner.base.NestedApplicationException;
+import com.mockrunner.util.common.PatternCache;
+
+/**
+ * {@link SQLStatementIndex} for regular expression matching.
+ * The prepared SQL strings are regular expressions that must
+ * match the executed SQL string. Every expression is compiled
+ * only once, when it is used for the first time, and the compiled
+ * pattern is kept in the index. Compilation goes through the shared
+ * {@link PatternCache}, so expressions that are also used by
+ * {@link SQLStatementMatcher#doStringsMatch} are compiled only once.
+ * Like {@link SQLStatementMatcher}, this index throws a
+ * {@link NestedApplicationException} when a lookup encounters
+ * a malformed expression.
+ */
+public class RegularExpressionStatementIndex implements SQLStatementIndex
+{
+    private boolean caseSensitive;
+    private Map patterns = new TreeMap();
+
+    public RegularExpressionStatementIndex(boolean caseSensitive)
+    {
+        this.caseSensitive = caseSensitive;
+    }
+
+    public void add(String sql)
+    {
+        if(!patterns.containsKey(sql))
+        {
+            patterns.put(sql, null);
+        }
+    }
+
+    public void remove(String sql)
+    {
+        patterns.remove(sql);
+    }
+
+    public void clear()
+    {
+        patterns.clear();
+    }
+
+    public List getMatchingStatements(String query)
+    {
+        if(null == query) query = "";
+        List result = new ArrayList();
+        Perl5Matcher matcher = new Perl5Matcher();
+        Iterator entries = patterns.entrySet().iterator();
+        while(entries.hasNext())
+        {
+            Map.Entry entry = (Map.Entry)entries.next();
+            Pattern pattern = (Pattern)entry.getValue();
+            if(null == pattern)
+            {
+                pattern = PatternCache.getInstance().getPerl5Pattern((String)entry.getKey(), caseSensitive);
+                entry.setValue(pattern);
+            }
+            if(matcher.matches(query, pattern))
+            {
+                result.add(entry.getKey());
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,76 @@
+package com.mockrunner.jdbc;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+
+/**
+ * A <code>List</code> with a fixed capacity. If the list is full,
+ * adding an element removes the oldest element. Elements can only
+ * be appended. A capacity of <code>0</code> discards all elements.
+ * The array grows with the number of elements up to the capacity,
+ * so unused capacity does not take memory.
+ */
+class RingBufferList extends AbstractList
+{
+    private final static int INITIAL_SIZE = 16;
+    
+    private int capacity;
+    private Object[] elements;
+    private int start;
+    private int size;
+
+    public RingBufferList(int capacity)
+    {
+        if(capacity < 0)
+        {
+            throw new IllegalArgumentException("capacity must be greater or equals 0");
+        }
+        this.capacity = capacity;
+        elements = new Object[Math.min(capacity, INITIAL_SIZE)];
+        start = 0;
+        size = 0;
+    }
+
+    public boolean add(Object object)
+    {
+        if(capacity == 0) return true;
+        if(size == elements.length && size < capacity)
+        {
+            elements = Arrays.copyOf(elements, (int)Math.min((long)capacity, 2L * elements.length));
+        }
+        if(size < elements.length)
+        {
+            elements[(start + size) % elements.length] = object;
+            size++;
+        }
+        else
+        {
+            elements[start] = object;
+            start = (start + 1) % elements.length;
+        }
+        modCount++;
+        return true;
+    }
+
+    public Object get(int index)
+    {
+        if(index < 0 || index >= size)
+        {
+            throw new IndexOutOfBoundsException("Index " + index + " invalid for size " + size);
+        }
+        return elements[(start + index) % elements.length];
+    }
+
+    public int size()
+    {
+        return size;
+    }
+
+    public void clear()
+    {
+        elements = new Object[Math.min(capacity, INITIAL_SIZE)];
+        start = 0;
+        size = 0;
+        modCount++;
+    }
+}
@@ -0,0 +1,27 @@
+package com.mockrunner.jdbc;
+
+import java.util.List;
+
+/**
+ * Creates the rows of a <code>ResultSet</code> created by a
+ * {@link GeneratedResultSetFactory}. The rows are created on demand
+ * while the cursor is moved forward, so a <code>ResultSet</code>
+ * can have millions of rows without keeping them in memory.
+ * The same row may be requested multiple times, because the
+ * <code>ResultSet</code> is cloned whenever a statement is executed
+ * and each clone starts with the first row. Implementations
+ * should return the same values for the same row and must be thread
+ * safe, if statements are executed by multiple threads.
+ */
+public interface RowGenerator
+{
+    /**
+     * Returns the values of the specified row. The returned array must 
+     * contain one value for each column and must not be modified after
+     * it has been returned.
+     * @param rowNumber the number of the row, starting with 1
+     * @param columnNames the names of the columns
+     * @return the values of the row
+     */
+    public Object[] generateRow(int rowNumber, List columnNames);
+}
@@ -0,0 +1,40 @@
+package com.mockrunner.jdbc;
+
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Provides the rows of a {@link com.mockrunner.mock.jdbc.StreamingMockResultSet}.
+ * The rows are not kept in memory by the <code>ResultSet</code>, they are
+ * requested from this source while the cursor is moved forward.
+ * A <code>RowSource</code> can be read multiple times. Each call of
+ * {@link #openRows} must start a new iteration with the first row,
+ * because the <code>ResultSet</code> is cloned whenever a statement
+ * is executed.
+ */
+public interface RowSource
+{
+    /**
+     * Returns the names of the columns. If the returned <code>List</code>
+     * is empty, the columns get the names <i>ColumnX</i> where <i>X</i>
+     * is the column index and the number of columns is determined
+     * by the first row.
+     * @return the <code>List</code> of column names
+     */
+    public List getColumnNames();
+
+    /**
+     * Starts a new iteration over the rows. The returned <code>Iterator</code>
+     * must return each row as a <code>List</code> of column values.
+     * @return the <code>Iterator</code> over the rows
+     */
+    public Iterator openRows();
+
+    /**
+     * Releases the resources of an iteration that was started with
+     * {@link #openRows}. This method is called when the <code>ResultSet</code>
+     * is closed or when all rows are read.
+     * @param rows the <code>Iterator</code> returned by {@link #openRows}
+     */
+    public void closeRows(Iterator rows);
+}
@@ -0,0 +1,45 @@
+package com.mockrunner.jdbc;
+
+import java.util.List;
+
+/**
+ * Lookup index for prepared SQL strings. An index is maintained
+ * by {@link SQLStatementMap} and is used by {@link SQLStatementMatcher}
+ * to find the prepared SQL strings that match an executed SQL string
+ * without comparing the executed SQL string with every prepared one.
+ * An index implements exactly one matching mode. Use
+ * {@link SQLStatementMatcher#createStatementIndex} to get the index
+ * that corresponds to the match parameters of a matcher.
+ * Implementations must return the same strings (and in the same order)
+ * as a linear scan with {@link SQLStatementMatcher#doStringsMatch}
+ * over the natural order of the added strings would return.
+ */
+public interface SQLStatementIndex
+{
+    /**
+     * Adds a prepared SQL string to this index. Adding a string
+     * that is already part of the index has no effect.
+     * @param sql the SQL string
+     */
+    public void add(String sql);
+
+    /**
+     * Removes a prepared SQL string from this index.
+     * @param sql the SQL string
+     */
+    public void remove(String sql);
+
+    /**
+     * Removes all SQL strings from this index.
+     */
+    public void clear();
+
+    /**
+     * Returns all prepared SQL strings that match the specified
+     * executed SQL string. The strings are returned in their
+     * natural order.
+     * @param query the executed SQL string
+     * @return the <code>List</code> of matching prepared SQL strings
+     */
+    public List getMatchingStatements(String query);
+}
@@ -0,0 +1,211 @@
+package com.mockrunner.jdbc;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * <code>TreeMap</code> with SQL strings as keys that maintains
+ * a {@link SQLStatementIndex} for its keys. The result set handlers
+ * use this class to store the prepared result sets, update counts etc.
+ * {@link SQLStatementMatcher#getMatchingObjects} recognizes this
+ * <code>Map</code> and uses the index instead of comparing the
+ * query string with every key.
+ * The index is created lazily for the match parameters of the
+ * matcher that uses it and it's recreated, if the match parameters
+ * change. A second index is maintained for lookups in the opposite
+ * direction, i.e. for keys that contain the query string, which
+ * is used to find created statements by their SQL string. It is kept up to date by <code>put</code>, <code>putAll</code>,
+ * <code>remove</code> and <code>clear</code>. Please note that modifications
+ * through the key, value or entry views are not tracked, so don't
+ * modify the map that way.
+ * The index is created while holding the lock of this map and is
+ * published through a <code>volatile</code> field, so a map that is not
+ * modified anymore can be read by multiple threads without locking.
+ */
+public class SQLStatementMap extends TreeMap
+{
+    private volatile IndexEntry index;
+    private volatile IndexEntry reverseIndex;
+
+    public Object put(Object key, Object value)
+    {
+        if(!containsKey(key))
+        {
+            IndexEntry currentIndex = index;
+            if(null != currentIndex) currentIndex.index.add((String)key);
+            IndexEntry currentReverseIndex = reverseIndex;
+            if(null != currentReverseIndex) currentReverseIndex.index.add((String)key);
+        }
+        return super.put(key, value);
+    }
+
+    public void putAll(Map map)
+    {
+        super.putAll(map);
+        invalidateIndex();
+    }
+
+    public Object remove(Object key)
+    {
+        if(containsKey(key))
+        {
+            IndexEntry currentIndex = index;
+            if(null != currentIndex) currentIndex.index.remove((String)key);
+            IndexEntry currentReverseIndex = reverseIndex;
+            if(null != currentReverseIndex) currentReverseIndex.index.remove((String)key);
+        }
+        return super.remove(key);
+    }
+
+    public void clear()
+    {
+        super.clear();
+        IndexEntry currentIndex = index;
+        if(null != currentIndex)
+        {
+            currentIndex.index.clear();
+        }
+        IndexEntry currentReverseIndex = reverseIndex;
+        if(null != currentReverseIndex)
+        {
+            currentReverseIndex.index.clear();
+        }
+    }
+
+    public Object clone()
+    {
+        SQLStatementMap copy = (SQLStatementMap)super.clone();
+        copy.invalidateIndex();
+        return copy;
+    }
+
+    /**
+     * Returns the keys that match the specified query string using
+     * the match parameters of the specified matcher. The keys are
+     * returned in their natural order.
+     * @param matcher the {@link SQLStatementMatcher}
+     * @param query the query string
+     * @return the <code>List</code> of matching keys
+     */
+    public List getMatchingKeys(SQLStatementMatcher matcher, String query)
+    {
+        return getStatementIndex(matcher).getMatchingStatements(query);
+    }
+
+    /**
+     * Returns the keys that are matched by the specified query string
+     * using the match parameters of the specified matcher, i.e. the
+     * keys are used as <i>source</i> and the query string as <i>query</i>
+     * in {@link SQLStatementMatcher#doStringsMatch}. The keys are
+     * returned in their natural order. If the matcher uses regular
+     * expressions, all keys are compared with the query string.
+     * @param matcher the {@link SQLStatementMatcher}
+     * @param query the query string
+     * @return the <code>List</code> of matching keys
+     */
+    public List getKeysMatchedBy(SQLStatementMatcher matcher, String query)
+    {
+        SQLStatementIndex currentIndex = getReverseStatementIndex(matcher);
+        if(null != currentIndex)
+        {
+            return currentIndex.getMatchingStatements(query);
+        }
+        List keys = new ArrayList();
+        Iterator iterator = keySet().iterator();
+        while(iterator.hasNext())
+        {
+            String key = (String)iterator.next();
+            if(matcher.doStringsMatch(key, query))
+            {
+                keys.add(key);
+            }
+        }
+        return keys;
+    }
+
+    /**
+     * Returns the index for the match parameters of the
+     * specified matcher. Creates the index, if necessary.
+     * @param matcher the {@link SQLStatementMatcher}
+     * @return the {@link SQLStatementIndex}
+     */
+    protected SQLStatementIndex getStatementIndex(SQLStatementMatcher matcher)
+    {
+        IndexEntry currentIndex = index;
+        if(null != currentIndex && matcher.equals(currentIndex.matcher))
+        {
+            return currentIndex.index;
+        }
+        synchronized(this)
+        {
+            currentIndex = index;
+            if(null == currentIndex || !matcher.equals(currentIndex.matcher))
+            {
+                SQLStatementIndex newIndex = matcher.createStatementIndex();
+                Iterator keys = keySet().iterator();
+                while(keys.hasNext())
+                {
+                    newIndex.add((String)keys.next());
+                }
+                currentIndex = new IndexEntry(matcher, newIndex);
+                index = currentIndex;
+            }
+            return currentIndex.index;
+        }
+    }
+
+    /**
+     * Returns the index for lookups in the opposite direction for the
+     * match parameters of the specified matcher. Creates the index,
+     * if necessary. Returns <code>null</code>, if the match parameters
+     * cannot be indexed in this direction.
+     * @param matcher the {@link SQLStatementMatcher}
+     * @return the {@link SQLStatementIndex} or <code>null</code>
+     */
+    protected SQLStatementIndex getReverseStatementIndex(SQLStatementMatcher matcher)
+    {
+        IndexEntry currentIndex = reverseIndex;
+        if(null != currentIndex && matcher.equals(currentIndex.matcher))
+        {
+            return currentIndex.index;
+        }
+        synchronized(this)
+        {
+            currentIndex = reverseIndex;
+            if(null == currentIndex || !matcher.equals(currentIndex.matcher))
+            {
+                SQLStatementIndex newIndex = matcher.createReverseStatementIndex();
+                if(null == newIndex) return null;
+                Iterator keys = keySet().iterator();
+                while(keys.hasNext())
+                {
+                    newIndex.add((String)keys.next());
+                }
+                currentIndex = new IndexEntry(matcher, newIndex);
+                reverseIndex = currentIndex;
+            }
+            return currentIndex.index;
+        }
+    }
+
+    private void invalidateIndex()
+    {
+        index = null;
+        reverseIndex = null;
+    }
+
+    private static class IndexEntry
+    {
+        private final SQLStatementMatcher matcher;
+        private final SQLStatementIndex index;
+
+        public IndexEntry(SQLStatementMatcher matcher, SQLStatementIndex index)
+        {
+            this.matcher = matcher;
+            this.index = index;
+        }
+    }
+}
@@ -45,6 +45,9 @@ public class SQLStatementMatcher
      * specified query string using the method {@link #doStringsMatch}.
      * If the strings match, the corresponding object from the <code>Map</code>
      * is added to the resulting <code>List</code>.
+     * If <i>dataMap</i> is a {@link SQLStatementMap}, the matching keys
+     * are determined using the indexes of the {@link SQLStatementMap}.
+     * The result is the same.
      * @param dataMap the source <code>Map</code>
      * @param query the query string that must match the keys in <i>dataMap</i>
      * @param queryContainsMapData only matters if <i>isExactMatch</i> is <code>false</code>,
@@ -55,6 +58,10 @@ public class SQLStatementMatcher
     public List getMatchingObjects(Map dataMap, String query, boolean resolveCollection, boolean queryContainsMapData)
 	{
 		if(null == query) query = "";
+		if(dataMap instanceof SQLStatementMap)
+		{
+		    return getMatchingObjects((SQLStatementMap)dataMap, query, resolveCollection, queryContainsMapData);
+		}
 		Iterator iterator = dataMap.keySet().iterator();
 		ArrayList resultList = new ArrayList();
 		while(iterator.hasNext())
@@ -87,6 +94,71 @@ public class SQLStatementMatcher
 		return resultList;
 	}
     
+    private List getMatchingObjects(SQLStatementMap dataMap, String query, boolean resolveCollection, boolean queryContainsMapData)
+    {
+        List keys = queryContainsMapData ? dataMap.getMatchingKeys(this, query) : dataMap.getKeysMatchedBy(this, query);
+        ArrayList resultList = new ArrayList(keys.size());
+        for(int ii = 0; ii < keys.size(); ii++)
+        {
+            Object matchingObject = dataMap.get(keys.get(ii));
+            if(resolveCollection && (matchingObject instanceof Collection))
+            {
+                resultList.addAll((Collection)matchingObject);
+            }
+            else
+            {
+                resultList.add(matchingObject);
+            }
+        }
+        return resultList;
+    }
+    
+    /**
+     * Creates a {@link SQLStatementIndex} that finds the same
+     * matching strings as this matcher, if the strings of the
+     * index are compared with the query string using
+     * {@link #doStringsMatch}, i.e. the index strings
+     * are used as <i>query</i> and the query string is
+     * used as <i>source</i>.
+     * @return the {@link SQLStatementIndex}
+     */
+    public SQLStatementIndex createStatementIndex()
+    {
+        if(exactMatch)
+        {
+            return new ExactMatchStatementIndex(caseSensitive);
+        }
+        if(useRegularExpressions)
+        {
+            return new RegularExpressionStatementIndex(caseSensitive);
+        }
+        return new ContainsStatementIndex(caseSensitive);
+    }
+    
+    /**
+     * Creates a {@link SQLStatementIndex} that finds the same
+     * matching strings as this matcher, if the strings of the
+     * index are used as <i>source</i> and the query string is
+     * used as <i>query</i> in {@link #doStringsMatch}. This is
+     * the direction used to look up created statements by their
+     * SQL string. Regular expressions cannot be indexed in this
+     * direction, so this method returns <code>null</code>, if
+     * regular expressions are enabled.
+     * @return the {@link SQLStatementIndex} or <code>null</code>
+     */
+    public SQLStatementIndex createReverseStatementIndex()
+    {
+        if(exactMatch)
+        {
+            return new ExactMatchStatementIndex(caseSensitive);
+        }
+        if(useRegularExpressions)
+        {
+            return null;
+        }
+        return new SubstringStatementIndex(caseSensitive);
+    }
+    
     /**
      * Compares all elements in the specified <code>Collection</code> with the
      * specified query string using the method {@link #doStringsMatch}.
@@ -139,6 +211,21 @@ public class SQLStatementMatcher
         }
     }
 
+    public boolean equals(Object object)
+    {
+        if(null == object) return false;
+        if(!object.getClass().equals(this.getClass())) return false;
+        SQLStatementMatcher other = (SQLStatementMatcher)object;
+        return (caseSensitive == other.caseSensitive) && (exactMatch == other.exactMatch) && (useRegularExpressions == other.useRegularExpressions);
+    }
+
+    public int hashCode()
+    {
+        int hashCode = caseSensitive ? 1 : 0;
+        hashCode = (hashCode * 2) + (exactMatch ? 1 : 0);
+        return (hashCode * 2) + (useRegularExpressions ? 1 : 0);
+    }
+
     private boolean doSimpleMatch(String source, String query)
     {
         if(exactMatch)
@@ -2,12 +2,15 @@ package com.mockrunner.jdbc;
 
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.regex.Pattern;
 
 /**
  * Simple util class for SQL statements
  */
 public class SQLUtil
 {
+    private final static Pattern PARAMETER_LIST_PATTERN = Pattern.compile("\\( \\?(?: , \\?)+ \\)");
+    
     /**
      * Returns if the specified SQL string is a select, i.e.
      * contains the string <i>select</i> (case insensitive).
@@ -32,4 +35,119 @@ public class SQLUtil
             throw new SQLException("fetchDirection must be either FETCH_FORWARD, FETCH_REVERSE or FETCH_UNKNOWN");
         }
     }
+    
+    /**
+     * Returns the shape of the specified SQL string. Statements that
+     * only differ in their literals, parameter lists, comments,
+     * whitespace or case have the same shape. String and numeric
+     * literals are replaced by <i>?</i>, lists of parameters like
+     * <i>in (?, ?, ?)</i> are reduced to one parameter, keywords and
+     * identifiers are converted to lower case (quoted identifiers
+     * are not changed) and the tokens are separated by one space.
+     * E.g. the shape of <i>SELECT * FROM customer WHERE id IN (1, 2)</i>
+     * is <i>select * from customer where id in ( ? )</i>.
+     * @param sql the SQL string
+     * @return the shape of the SQL string
+     */
+    public static String getStatementShape(String sql)
+    {
+        StringBuffer buffer = new StringBuffer(sql.length());
+        int length = sql.length();
+        int index = 0;
+        boolean lastTokenIsOperand = false;
+        while(index < length)
+        {
+            char next = sql.charAt(index);
+            int end = index + 1;
+            String token = null;
+            if(Character.isWhitespace(next))
+            {
+                index = end;
+                continue;
+            }
+            if('-' == next && end < length && '-' == sql.charAt(end))
+            {
+                end = sql.indexOf('\n', end);
+                index = (-1 == end) ? length : end;
+                continue;
+            }
+            if('/' == next && end < length && '*' == sql.charAt(end))
+            {
+                end = sql.indexOf("*/", end + 1);
+                index = (-1 == end) ? length : end + 2;
+                continue;
+            }
+            if('\'' == next)
+            {
+                end = skipQuoted(sql, index, '\'');
+                token = "?";
+            }
+            else if('"' == next)
+            {
+                end = skipQuoted(sql, index, '"');
+                token = sql.substring(index, end);
+            }
+            else if(isNumberStart(sql, index) || ('-' == next && !lastTokenIsOperand && isNumberStart(sql, end)))
+            {
+                while(end < length && (Character.isLetterOrDigit(sql.charAt(end)) || '.' == sql.charAt(end))) end++;
+                token = "?";
+            }
+            else if(Character.isLetter(next) || '_' == next)
+            {
+                while(end < length && isIdentifierPart(sql.charAt(end))) end++;
+                token = sql.substring(index, end).toLowerCase();
+            }
+            else if(isOperator(next))
+            {
+                while(end < length && isOperator(sql.charAt(end))) end++;
+                token = sql.substring(index, end);
+            }
+            else
+            {
+                token = String.valueOf(next);
+            }
+            if(buffer.length() > 0) buffer.append(' ');
+            buffer.append(token);
+            lastTokenIsOperand = "?".equals(token) || ")".equals(token) || Character.isLetterOrDigit(token.charAt(token.length() - 1)) || '"' == next;
+            index = end;
+        }
+        return PARAMETER_LIST_PATTERN.matcher(buffer).replaceAll("( ? )");
+    }
+    
+    private static int skipQuoted(String sql, int index, char quote)
+    {
+        int end = index + 1;
+        while(end < sql.length())
+        {
+            if(quote == sql.charAt(end))
+            {
+                if(end + 1 < sql.length() && quote == sql.charAt(end + 1))
+                {
+                    end += 2;
+                    continue;
+                }
+                return end + 1;
+            }
+            end++;
+        }
+        return end;
+    }
+    
+    private static boolean isNumberStart(String sql, int index)
+    {
+        if(index >= sql.length()) return false;
+        char character = sql.charAt(index);
+        if(Character.isDigit(character)) return true;
+        return '.' == character && index + 1 < sql.length() && Character.isDigit(sql.charAt(index + 1));
+    }
+    
+    private static boolean isIdentifierPart(char character)
+    {
+        return Character.isLetterOrDigit(character) || '_' == character || '$' == character || '#' == character;
+    }
+    
+    private static boolean isOperator(char character)
+    {
+        return '<' == character || '>' == character || '=' == character || '!' == character || '|' == character;
+    }
 }
@@ -0,0 +1,353 @@
+package com.mockrunner.jdbc;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A parsed <i>select</i> statement of the form
+ * <i>select columns from table [where column = value [and ...]]
+ * [order by column [asc|desc], ...]</i> that can be evaluated by the
+ * {@link QueryEngine}. Values are literals or <i>?</i> placeholders.
+ */
+class SimpleSelect
+{
+    private final static Pattern TOKEN_PATTERN = Pattern.compile("\\s*('(?:[^']|'')*'|\\?|[A-Za-z_][A-Za-z0-9_$#.]*|-?[0-9]+(?:\\.[0-9]+)?|<>|!=|<=|>=|[=,*();<>])");
+
+    private String tableName;
+    private List selectColumns;
+    private List selectLabels;
+    private List conditionColumns;
+    private List conditionValues;
+    private List orderColumns;
+    private List orderAscending;
+    
+    private SimpleSelect()
+    {
+        selectColumns = new ArrayList();
+        selectLabels = new ArrayList();
+        conditionColumns = new ArrayList();
+        conditionValues = new ArrayList();
+        orderColumns = new ArrayList();
+        orderAscending = new ArrayList();
+    }
+    
+    /**
+     * Parses the specified SQL string. Returns <code>null</code>, if
+     * the SQL string is not a supported <i>select</i> statement.
+     * @param sql the SQL string
+     * @return the parsed statement or <code>null</code>
+     */
+    public static SimpleSelect parse(String sql)
+    {
+        List tokens = tokenize(sql);
+        if(null == tokens) return null;
+        SimpleSelect select = new SimpleSelect();
+        Parser parser = new Parser(tokens);
+        if(!select.parseStatement(parser)) return null;
+        return select;
+    }
+    
+    /**
+     * Returns the name of the table.
+     * @return the name of the table
+     */
+    public String getTableName()
+    {
+        return tableName;
+    }
+    
+    /**
+     * Returns the selected column names. An empty <code>List</code>
+     * means that all columns are selected.
+     * @return the selected column names
+     */
+    public List getSelectColumns()
+    {
+        return selectColumns;
+    }
+    
+    /**
+     * Returns the labels of the selected columns. The label is the
+     * alias, if specified, otherwise the column name.
+     * @return the labels of the selected columns
+     */
+    public List getSelectLabels()
+    {
+        return selectLabels;
+    }
+    
+    /**
+     * Returns the column names of the equality conditions.
+     * @return the column names of the conditions
+     */
+    public List getConditionColumns()
+    {
+        return conditionColumns;
+    }
+    
+    /**
+     * Returns the values of the equality conditions. Placeholders are
+     * represented by {@link Placeholder} objects.
+     * @return the values of the conditions
+     */
+    public List getConditionValues()
+    {
+        return conditionValues;
+    }
+    
+    /**
+     * Returns the column names of the <i>order by</i> clause.
+     * @return the column names of the <i>order by</i> clause
+     */
+    public List getOrderColumns()
+    {
+        return orderColumns;
+    }
+    
+    /**
+     * Returns a <code>Boolean</code> for each column of the
+     * <i>order by</i> clause, <code>true</code> for ascending order.
+     * @return the sort directions
+     */
+    public List getOrderAscending()
+    {
+        return orderAscending;
+    }
+    
+    private boolean parseStatement(Parser parser)
+    {
+        if(!parser.acceptKeyword("select")) return false;
+        if(!parseSelectList(parser)) return false;
+        if(!parser.acceptKeyword("from")) return false;
+        String table = parser.nextIdentifier();
+        if(null == table) return false;
+        tableName = table;
+        if(parser.acceptKeyword("as"))
+        {
+            if(null == parser.nextIdentifier()) return false;
+        }
+        else if(parser.isIdentifier() && !parser.isKeyword())
+        {
+            parser.nextIdentifier();
+        }
+        if(parser.acceptKeyword("where"))
+        {
+            do
+            {
+                if(!parseCondition(parser)) return false;
+            }
+            while(parser.acceptKeyword("and"));
+        }
+        if(parser.acceptKeyword("order"))
+        {
+            if(!parser.acceptKeyword("by")) return false;
+            do
+            {
+                String column = parser.nextIdentifier();
+                if(null == column) return false;
+                orderColumns.add(stripQualifier(column));
+                boolean ascending = true;
+                if(parser.acceptKeyword("desc"))
+                {
+                    ascending = false;
+                }
+                else
+                {
+                    parser.acceptKeyword("asc");
+                }
+                orderAscending.add(Boolean.valueOf(ascending));
+            }
+            while(parser.accept(","));
+        }
+        parser.accept(";");
+        return parser.isAtEnd();
+    }
+    
+    private boolean parseSelectList(Parser parser)
+    {
+        if(parser.accept("*")) return true;
+        do
+        {
+            String column = parser.nextIdentifier();
+            if(null == column || isKeyword(column)) return false;
+            column = stripQualifier(column);
+            if(column.endsWith(".*")) return false;
+            String label = column;
+            if(parser.acceptKeyword("as"))
+            {
+                label = parser.nextIdentifier();
+                if(null == label) return false;
+            }
+            else if(parser.isIdentifier() && !parser.isKeyword())
+            {
+                label = parser.nextIdentifier();
+            }
+            selectColumns.add(column);
+            selectLabels.add(label);
+        }
+        while(parser.accept(","));
+        return true;
+    }
+    
+    private boolean parseCondition(Parser parser)
+    {
+        if(parser.isIdentifier())
+        {
+            String column = parser.nextIdentifier();
+            if(!parser.accept("=")) return false;
+            Object value = parser.nextValue();
+            if(null == value) return false;
+            addCondition(column, value);
+            return true;
+        }
+        Object value = parser.nextValue();
+        if(null == value || !parser.accept("=")) return false;
+        String column = parser.nextIdentifier();
+        if(null == column) return false;
+        addCondition(column, value);
+        return true;
+    }
+    
+    private void addCondition(String column, Object value)
+    {
+        conditionColumns.add(stripQualifier(column));
+        conditionValues.add(value);
+    }
+    
+    private static String stripQualifier(String identifier)
+    {
+        int index = identifier.lastIndexOf('.');
+        if(index < 0 || index == identifier.length() - 1) return identifier;
+        return identifier.substring(index + 1);
+    }
+    
+    private static boolean isKeyword(String token)
+    {
+        String lowerCase = token.toLowerCase();
+        return lowerCase.equals("select") || lowerCase.equals("from") || lowerCase.equals("where") || 
+               lowerCase.equals("and") || lowerCase.equals("or") || lowerCase.equals("order") ||
+               lowerCase.equals("by") || lowerCase.equals("as") || lowerCase.equals("asc") || 
+               lowerCase.equals("desc") || lowerCase.equals("group") || lowerCase.equals("having") ||
+               lowerCase.equals("join") || lowerCase.equals("inner") || lowerCase.equals("left") || 
+               lowerCase.equals("right") || lowerCase.equals("on") || lowerCase.equals("union") ||
+               lowerCase.equals("limit") || lowerCase.equals("distinct");
+    }
+    
+    private static List tokenize(String sql)
+    {
+        List tokens = new ArrayList();
+        Matcher matcher = TOKEN_PATTERN.matcher(sql);
+        int position = 0;
+        while(position < sql.length())
+        {
+            if(!matcher.find(position) || matcher.start() != position)
+            {
+                if(sql.substring(position).trim().length() == 0) break;
+                return null;
+            }
+            tokens.add(matcher.group(1));
+            position = matcher.end();
+        }
+        return tokens;
+    }
+    
+    /**
+     * Marks a <i>?</i> placeholder in a condition.
+     */
+    static class Placeholder
+    {
+        private int index;
+        
+        public Placeholder(int index)
+        {
+            this.index = index;
+        }
+        
+        /**
+         * Returns the parameter index, starting with 1.
+         * @return the parameter index
+         */
+        public int getIndex()
+        {
+            return index;
+        }
+    }
+    
+    private static class Parser
+    {
+        private List tokens;
+        private int position;
+        private int placeholderCount;
+        
+        public Parser(List tokens)
+        {
+            this.tokens = tokens;
+            this.position = 0;
+            this.placeholderCount = 0;
+        }
+        
+        public boolean isAtEnd()
+        {
+            return position >= tokens.size();
+        }
+        
+        public boolean accept(String token)
+        {
+            if(isAtEnd() || !tokens.get(position).equals(token)) return false;
+            position++;
+            return true;
+        }
+        
+        public boolean acceptKeyword(String keyword)
+        {
+            if(isAtEnd() || !((String)tokens.get(position)).equalsIgnoreCase(keyword)) return false;
+            position++;
+            return true;
+        }
+        
+        public boolean isIdentifier()
+        {
+            if(isAtEnd()) return false;
+            char first = ((String)tokens.get(position)).charAt(0);
+            return Character.isLetter(first) || first == '_';
+        }
+        
+        public boolean isKeyword()
+        {
+            return !isAtEnd() && SimpleSelect.isKeyword((String)tokens.get(position));
+        }
+        
+        public String nextIdentifier()
+        {
+            if(!isIdentifier()) return null;
+            return (String)tokens.get(position++);
+        }
+        
+        public Object nextValue()
+        {
+            if(isAtEnd()) return null;
+            String token = (String)tokens.get(position);
+            if(token.equals("?"))
+            {
+                position++;
+                placeholderCount++;
+                return new Placeholder(placeholderCount);
+            }
+            if(token.startsWith("'"))
+            {
+                position++;
+                return token.substring(1, token.length() - 1).replaceAll("''", "'");
+            }
+            char first = token.charAt(0);
+            if(Character.isDigit(first) || first == '-')
+            {
+                position++;
+                return new BigDecimal(token);
+            }
+            return null;
+        }
+    }
+}
@@ -38,6 +38,12 @@ public class StatementResultSetHandler extends AbstractResultSetHandler
         return Collections.unmodifiableList(statements);
     }
 
+    public void setConcurrent(boolean concurrent)
+    {
+        super.setConcurrent(concurrent);
+        statements = createStatementList(statements);
+    }
+
     /**
      * Clears the <code>List</code> of statements.
      */
@@ -0,0 +1,136 @@
+package com.mockrunner.jdbc;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * {@link SQLStatementIndex} that finds the SQL strings containing
+ * the query string. This is the opposite direction of the
+ * {@link ContainsStatementIndex} and is used to look up
+ * created statements by a part of their SQL string, e.g. by
+ * {@link JDBCTestModule#getPreparedStatements(String)}.
+ * Every SQL string is split into its three character substrings
+ * (trigrams). A lookup only checks the SQL strings that contain
+ * the least frequent trigram of the query string. Query strings
+ * with less than three characters are compared with every
+ * SQL string.
+ */
+public class SubstringStatementIndex implements SQLStatementIndex
+{
+    private final static int GRAM_LENGTH = 3;
+
+    private boolean caseSensitive;
+    private Map statements = new TreeMap();
+    private Map grams = new HashMap();
+
+    public SubstringStatementIndex(boolean caseSensitive)
+    {
+        this.caseSensitive = caseSensitive;
+    }
+
+    public void add(String sql)
+    {
+        if(null == sql) sql = "";
+        if(statements.containsKey(sql)) return;
+        String normalized = normalize(sql);
+        statements.put(sql, normalized);
+        Iterator iterator = getGrams(normalized).iterator();
+        while(iterator.hasNext())
+        {
+            Object gram = iterator.next();
+            Set keys = (Set)grams.get(gram);
+            if(null == keys)
+            {
+                keys = new HashSet();
+                grams.put(gram, keys);
+            }
+            keys.add(sql);
+        }
+    }
+
+    public void remove(String sql)
+    {
+        if(null == sql) sql = "";
+        String normalized = (String)statements.remove(sql);
+        if(null == normalized) return;
+        Iterator iterator = getGrams(normalized).iterator();
+        while(iterator.hasNext())
+        {
+            Object gram = iterator.next();
+            Set keys = (Set)grams.get(gram);
+            keys.remove(sql);
+            if(keys.isEmpty())
+            {
+                grams.remove(gram);
+            }
+        }
+    }
+
+    public void clear()
+    {
+        statements.clear();
+        grams.clear();
+    }
+
+    public List getMatchingStatements(String query)
+    {
+        String normalizedQuery = normalize(query);
+        if(normalizedQuery.length() < GRAM_LENGTH)
+        {
+            return getContainingStatements(statements.keySet(), normalizedQuery);
+        }
+        Set candidates = null;
+        Iterator iterator = getGrams(normalizedQuery).iterator();
+        while(iterator.hasNext())
+        {
+            Set keys = (Set)grams.get(iterator.next());
+            if(null == keys) return new ArrayList();
+            if(null == candidates || keys.size() < candidates.size())
+            {
+                candidates = keys;
+            }
+        }
+        List result = getContainingStatements(candidates, normalizedQuery);
+        Collections.sort(result);
+        return result;
+    }
+
+    private List getContainingStatements(Set keys, String normalizedQuery)
+    {
+        List result = new ArrayList();
+        Iterator iterator = keys.iterator();
+        while(iterator.hasNext())
+        {
+            String sql = (String)iterator.next();
+            if(((String)statements.get(sql)).indexOf(normalizedQuery) != -1)
+            {
+                result.add(sql);
+            }
+        }
+        return result;
+    }
+
+    private Set getGrams(String normalized)
+    {
+        Set result = new HashSet();
+        for(int ii = 0; ii + GRAM_LENGTH <= normalized.length(); ii++)
+        {
+            result.add(normalized.substring(ii, ii + GRAM_LENGTH));
+        }
+        return result;
+    }
+
+    private String normalize(String sql)
+    {
+        if(null == sql) sql = "";
+        if(caseSensitive) return sql;
+        return sql.toLowerCase();
+    }
+}
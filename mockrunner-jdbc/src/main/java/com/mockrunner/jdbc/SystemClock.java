@@ -0,0 +1,19 @@
+package com.mockrunner.jdbc;
+
+/**
+ * The default {@link Clock}. Uses the system time and
+ * really waits when sleeping.
+ */
+public class SystemClock implements Clock
+{
+    public long currentTimeMillis()
+    {
+        return System.currentTimeMillis();
+    }
+
+    public void sleep(long millis) throws InterruptedException
+    {
+        if(millis <= 0) return;
+        Thread.sleep(millis);
+    }
+}
@@ -0,0 +1,110 @@
+package com.mockrunner.jdbc;
+
+/**
+ * A {@link Clock} that does not depend on the system time.
+ * By default the time is advanced by the specified time
+ * when a thread sleeps, so the sleeping thread returns 
+ * immediately. If multiple threads sleep, the time is advanced
+ * by the sum of the sleep times.
+ * If automatic advancing is disabled (see {@link #setAutoAdvance}),
+ * sleeping threads wait until the time is advanced with
+ * {@link #advance}. This can be used to test timeouts and
+ * cancelling of statements that are executed by another thread.
+ */
+public class VirtualClock implements Clock
+{
+    private long currentTime;
+    private boolean autoAdvance = true;
+    private int sleepingThreads = 0;
+    
+    public VirtualClock()
+    {
+        this(0);
+    }
+    
+    /**
+     * Creates a clock with the specified start time.
+     * @param startTime the start time in milliseconds
+     */
+    public VirtualClock(long startTime)
+    {
+        this.currentTime = startTime;
+    }
+    
+    /**
+     * Set if the time is advanced automatically when a thread sleeps.
+     * Default is <code>true</code>.
+     * @param autoAdvance enable or disable automatic advancing
+     */
+    public synchronized void setAutoAdvance(boolean autoAdvance)
+    {
+        this.autoAdvance = autoAdvance;
+    }
+    
+    /**
+     * Returns if the time is advanced automatically when a thread sleeps.
+     * @return <code>true</code> if the time is advanced automatically,
+     *         <code>false</code> otherwise
+     */
+    public synchronized boolean isAutoAdvance()
+    {
+        return autoAdvance;
+    }
+    
+    /**
+     * Advances the time and wakes up the threads whose sleep time has
+     * passed.
+     * @param millis the time in milliseconds
+     */
+    public synchronized void advance(long millis)
+    {
+        if(millis < 0)
+        {
+            throw new IllegalArgumentException("millis must be greater or equals 0");
+        }
+        currentTime += millis;
+        notifyAll();
+    }
+    
+    /**
+     * Returns the number of threads that are currently waiting
+     * for the time to be advanced.
+     * @return the number of sleeping threads
+     */
+    public synchronized int getNumberSleepingThreads()
+    {
+        return sleepingThreads;
+    }
+
+    public synchronized long currentTimeMillis()
+    {
+        return currentTime;
+    }
+
+    public synchronized void sleep(long millis) throws InterruptedException
+    {
+        if(Thread.interrupted())
+        {
+            throw new InterruptedException();
+        }
+        if(millis <= 0) return;
+        if(autoAdvance)
+        {
+            advance(millis);
+            return;
+        }
+        long wakeUpTime = currentTime + millis;
+        sleepingThreads++;
+        try
+        {
+            while(currentTime < wakeUpTime)
+            {
+                wait();
+            }
+        }
+        finally
+        {
+            sleepingThreads--;
+        }
+    }
+}
@@ -1,11 +1,23 @@
 package com.mockrunner.jdbc;
 
+import java.io.BufferedInputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 
 import org.jdom.Document;
 import org.jdom.Element;
@@ -13,6 +25,8 @@ import org.jdom.input.SAXBuilder;
 
 import com.mockrunner.base.NestedApplicationException;
 import com.mockrunner.mock.jdbc.MockResultSet;
+import com.mockrunner.mock.jdbc.StreamingMockResultSet;
+import com.mockrunner.util.common.CollectionUtil;
 import com.mockrunner.util.common.FileUtil;
 
 /**
@@ -27,6 +41,11 @@ import com.mockrunner.util.common.FileUtil;
  * (if not found) by calling <code>getResource</code>. Note that the
  * file must exist in the local file system and cannot be loaded from
  * inside a jar archive.
+ * By default the file is parsed into a JDOM <code>Document</code>.
+ * With {@link #setUseStAXParser} the file is read with a StAX pull parser
+ * instead and the rows are added one by one, without building the
+ * complete document in memory. With {@link #setStreaming} the rows are 
+ * not read into memory at all but parsed while the cursor is moved.
  */
 public class XMLResultSetFactory implements ResultSetFactory 
 {
@@ -37,6 +56,9 @@ public class XMLResultSetFactory implements ResultSetFactory
     private String fileName = null;
     private boolean trim = true;
     private int dialect = SYBASE_DIALECT;
+    private boolean useStAXParser = false;
+    private boolean columnarStorage = false;
+    private boolean streaming = false;
     
     public XMLResultSetFactory(String fileName)
     {
@@ -58,6 +80,10 @@ public class XMLResultSetFactory implements ResultSetFactory
      */
     public MockResultSet create(String id) 
     {
+        if(streaming)
+        {
+            return createStreamingResultSet(id);
+        }
         MockResultSet resultSet;
         
         switch (dialect) 
@@ -145,6 +171,75 @@ public class XMLResultSetFactory implements ResultSetFactory
         return dialect;
     }
     
+    /**
+     * Set if the file should be parsed with a StAX pull parser.
+     * If this is <code>true</code>, no JDOM <code>Document</code> is
+     * built and the rows are added to the <code>ResultSet</code>
+     * while the file is read. This is faster and needs less memory
+     * for big files. Default is <code>false</code>.
+     * @param useStAXParser set <code>true</code> to use the StAX parser
+     */
+    public void setUseStAXParser(boolean useStAXParser)
+    {
+        this.useStAXParser = useStAXParser;
+    }
+    
+    /**
+     * Get whether or not the StAX parser is used.
+     * @return <code>true</code> if the StAX parser is used
+     */
+    public boolean getUseStAXParser()
+    {
+        return useStAXParser;
+    }
+    
+    /**
+     * Set if the created <code>ResultSet</code> should use columnar
+     * storage. See {@link com.mockrunner.mock.jdbc.MockResultSet#setColumnarStorage}.
+     * Default is <code>false</code>.
+     * @param columnarStorage set <code>true</code> to enable columnar storage
+     */
+    public void setColumnarStorage(boolean columnarStorage)
+    {
+        this.columnarStorage = columnarStorage;
+    }
+    
+    /**
+     * Get whether or not the created <code>ResultSet</code> uses
+     * columnar storage.
+     * @return <code>true</code> if columnar storage is used
+     */
+    public boolean getColumnarStorage()
+    {
+        return columnarStorage;
+    }
+    
+    /**
+     * Set this to <code>true</code> to stream the rows from the file.
+     * If streaming is enabled, {@link #create} returns a
+     * {@link com.mockrunner.mock.jdbc.StreamingMockResultSet}. 
+     * The file is read with a StAX pull parser and each row is parsed 
+     * when the cursor reaches it. The <code>ResultSet</code> is forward 
+     * only and read only. The file is read again for each clone of the 
+     * <code>ResultSet</code>, i.e. each time a statement returns it. 
+     * The current dialect and trim setting are used for the created 
+     * <code>ResultSet</code>. Default is <code>false</code>.
+     * @param streaming set <code>true</code> to enable streaming
+     */
+    public void setStreaming(boolean streaming)
+    {
+        this.streaming = streaming;
+    }
+    
+    /**
+     * Get whether or not streaming is enabled.
+     * @return <code>true</code> if streaming is enabled
+     */
+    public boolean getStreaming()
+    {
+        return streaming;
+    }
+    
     /**
      * Return a MockResultSet with proper column names and 
      * rows based on the XML <code>Document</code>.
@@ -153,7 +248,12 @@ public class XMLResultSetFactory implements ResultSetFactory
      */
     public MockResultSet createSybaseResultSet(String id) 
     {
+       if(useStAXParser)
+       {
+           return createStAXResultSet(id, SYBASE_DIALECT);
+       }
        MockResultSet resultSet = new MockResultSet(id);
+       resultSet.setColumnarStorage(columnarStorage);
        SAXBuilder builder = new SAXBuilder();
        Document doc = null;
        File fileToParse = getXMLFile();
@@ -169,6 +269,9 @@ public class XMLResultSetFactory implements ResultSetFactory
            Iterator ri = rows.iterator();
            boolean firstIteration = true;
            int colNum = 0;
+           List columnNames = new ArrayList();
+           List columnValues = new ArrayList();
+           int rowCount = 0;
            while (ri.hasNext()) 
            {
                Element cRow = (Element)ri.next();
@@ -182,7 +285,8 @@ public class XMLResultSetFactory implements ResultSetFactory
                    while (ci.hasNext()) 
                    {
                        Element ccRow = (Element)ci.next();
-                       resultSet.addColumn(ccRow.getName());
+                       columnNames.add(ccRow.getName());
+                       columnValues.add(new ArrayList());
                        colNum++;
                    }
                    firstIteration = false;
@@ -196,8 +300,9 @@ public class XMLResultSetFactory implements ResultSetFactory
                    cRowValues[curCol] = value;
                    curCol++;
                }
-               resultSet.addRow(cRowValues);
+               addRowToColumns(columnValues, cRowValues, rowCount++);
            }
+           addColumns(resultSet, columnNames, columnValues);
        } 
        catch(Exception exc) 
        {
@@ -214,7 +319,12 @@ public class XMLResultSetFactory implements ResultSetFactory
      */
     public MockResultSet createSquirrelResultSet(String id) 
     {
+       if(useStAXParser)
+       {
+           return createStAXResultSet(id, SQUIRREL_DIALECT);
+       }
        MockResultSet resultSet = new MockResultSet(id);
+       resultSet.setColumnarStorage(columnarStorage);
        SAXBuilder builder = new SAXBuilder();
        Document doc = null;
        File fileToParse = getXMLFile();
@@ -245,18 +355,22 @@ public class XMLResultSetFactory implements ResultSetFactory
                columnNameMap.put(new Integer(columnNumber), columnName);
            }
            offset = 0;
+           List columnNames = new ArrayList();
+           List columnValues = new ArrayList();
            for (int ii=0; ii<columnNameMap.size(); ii++)
            {
                while (true) {
                    String name = (String)columnNameMap.get(new Integer(ii + offset));
                    if (name==null) {
                        offset++;
-                       resultSet.addColumn("unknown."+offset);
+                       columnNames.add("unknown."+offset);
+                       columnValues.add(new ArrayList());
                        continue;
                    }
                    else 
                    {
-                       resultSet.addColumn(name);
+                       columnNames.add(name);
+                       columnValues.add(new ArrayList());
                        break;
                    }
                }
@@ -265,6 +379,7 @@ public class XMLResultSetFactory implements ResultSetFactory
            
            List rows = root.getChild("rows").getChildren("row");
            Iterator ri = rows.iterator();
+           int rowCount = 0;
            while (ri.hasNext())
            {
                Element cRow = (Element)ri.next();
@@ -278,8 +393,9 @@ public class XMLResultSetFactory implements ResultSetFactory
                    int curCol = crValue.getAttribute("columnNumber").getIntValue();
                    cRowValues[curCol] = value;
                }
-               resultSet.addRow(cRowValues);
+               addRowToColumns(columnValues, cRowValues, rowCount++);
            }
+           addColumns(resultSet, columnNames, columnValues);
        } 
        catch(Exception exc) 
        {
@@ -287,4 +403,471 @@ public class XMLResultSetFactory implements ResultSetFactory
        }
        return resultSet;
     }
+
+    private MockResultSet createStAXResultSet(String id, int parseDialect)
+    {
+        MockResultSet resultSet = new MockResultSet(id);
+        resultSet.setColumnarStorage(columnarStorage);
+        XMLRowReader reader = new XMLRowReader(getCheckedXMLFile(), parseDialect, trim);
+        try
+        {
+            List columnNames = reader.getColumnNames();
+            List columnValues = new ArrayList();
+            for(int ii = 0; ii < columnNames.size(); ii++)
+            {
+                columnValues.add(new ArrayList());
+            }
+            int rowCount = 0;
+            String[] nextRow = reader.nextRow();
+            while(null != nextRow)
+            {
+                addRowToColumns(columnValues, nextRow, rowCount++);
+                nextRow = reader.nextRow();
+            }
+            addColumns(resultSet, columnNames, columnValues);
+        }
+        catch(Exception exc)
+        {
+            throw new NestedApplicationException("Failure while reading from XML file", exc);
+        }
+        finally
+        {
+            reader.close();
+        }
+        return resultSet;
+    }
+
+    /**
+     * Adds the values of a row to the column lists. Like
+     * {@link MockResultSet#addRow(Object[])}, missing columns
+     * are added and short rows are filled with <code>null</code>.
+     */
+    private void addRowToColumns(List columnValues, Object[] row, int rowCount)
+    {
+        for(int ii = 0; ii < row.length; ii++)
+        {
+            if(ii >= columnValues.size())
+            {
+                List column = new ArrayList();
+                CollectionUtil.fillList(column, rowCount);
+                columnValues.add(column);
+            }
+            ((List)columnValues.get(ii)).add(row[ii]);
+        }
+        for(int ii = row.length; ii < columnValues.size(); ii++)
+        {
+            ((List)columnValues.get(ii)).add(null);
+        }
+    }
+    
+    /**
+     * Adds the collected columns to the <code>ResultSet</code>. Each column
+     * is added once, because {@link MockResultSet#addRow(Object[])} copies
+     * the data of the <code>ResultSet</code> for every row.
+     */
+    private void addColumns(MockResultSet resultSet, List columnNames, List columnValues)
+    {
+        for(int ii = 0; ii < columnValues.size(); ii++)
+        {
+            List column = (List)columnValues.get(ii);
+            if(ii < columnNames.size())
+            {
+                resultSet.addColumn((String)columnNames.get(ii), column);
+            }
+            else
+            {
+                resultSet.addColumn(column);
+            }
+        }
+    }
+
+    private MockResultSet createStreamingResultSet(String id)
+    {
+        int parseDialect = (SQUIRREL_DIALECT == dialect) ? SQUIRREL_DIALECT : SYBASE_DIALECT;
+        RowSource source = new XMLRowSource(getCheckedXMLFile(), parseDialect, trim);
+        return new StreamingMockResultSet(id, source);
+    }
+
+    private File getCheckedXMLFile()
+    {
+        File fileToParse = getXMLFile();
+        if(null == fileToParse)
+        {
+            throw new RuntimeException("File " + fileName + " not found.");
+        }
+        return fileToParse;
+    }
+
+    private static class XMLRowSource implements RowSource
+    {
+        private File file;
+        private int dialect;
+        private boolean trim;
+        private List columnNames;
+
+        public XMLRowSource(File file, int dialect, boolean trim)
+        {
+            this.file = file;
+            this.dialect = dialect;
+            this.trim = trim;
+        }
+
+        public List getColumnNames()
+        {
+            if(null != columnNames) return columnNames;
+            XMLRowReader reader = new XMLRowReader(file, dialect, trim);
+            try
+            {
+                columnNames = reader.getColumnNames();
+            }
+            catch(XMLStreamException exc)
+            {
+                throw new NestedApplicationException("Failure while reading from XML file", exc);
+            }
+            finally
+            {
+                reader.close();
+            }
+            return columnNames;
+        }
+
+        public Iterator openRows()
+        {
+            return new XMLRowIterator(new XMLRowReader(file, dialect, trim));
+        }
+
+        public void closeRows(Iterator rows)
+        {
+            ((XMLRowIterator)rows).reader.close();
+        }
+
+        private static class XMLRowIterator implements Iterator
+        {
+            private XMLRowReader reader;
+            private String[] nextRow;
+
+            public XMLRowIterator(XMLRowReader reader)
+            {
+                this.reader = reader;
+                nextRow = readRow();
+            }
+
+            public boolean hasNext()
+            {
+                return null != nextRow;
+            }
+
+            public Object next()
+            {
+                if(null == nextRow) throw new NoSuchElementException();
+                String[] row = nextRow;
+                nextRow = readRow();
+                return Arrays.asList(row);
+            }
+
+            public void remove()
+            {
+                throw new UnsupportedOperationException();
+            }
+
+            private String[] readRow()
+            {
+                try
+                {
+                    return reader.nextRow();
+                }
+                catch(XMLStreamException exc)
+                {
+                    reader.close();
+                    throw new NestedApplicationException("Failure while reading from XML file", exc);
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads the rows of both dialects with a StAX pull parser.
+     * Only the current row is held in memory.
+     */
+    private static class XMLRowReader
+    {
+        private static XMLInputFactory inputFactory;
+
+        private int dialect;
+        private boolean trim;
+        private InputStream stream;
+        private XMLStreamReader reader;
+        private List columnNames;
+        private int maxColumnNumber;
+        private String[] pendingRow;
+        private boolean inRows;
+        private boolean finished;
+
+        public XMLRowReader(File file, int dialect, boolean trim)
+        {
+            this.dialect = dialect;
+            this.trim = trim;
+            try
+            {
+                stream = new BufferedInputStream(new FileInputStream(file));
+                reader = createStreamReader(stream);
+                moveToRootElement();
+            }
+            catch(Exception exc)
+            {
+                close();
+                throw new NestedApplicationException("Failure while reading from XML file", exc);
+            }
+        }
+
+        private static synchronized XMLStreamReader createStreamReader(InputStream stream) throws XMLStreamException
+        {
+            if(null == inputFactory)
+            {
+                inputFactory = XMLInputFactory.newInstance();
+                inputFactory.setProperty(XMLInputFactory.IS_COALESCING, Boolean.TRUE);
+            }
+            return inputFactory.createXMLStreamReader(stream);
+        }
+
+        public List getColumnNames() throws XMLStreamException
+        {
+            if(null != columnNames) return columnNames;
+            if(SQUIRREL_DIALECT == dialect)
+            {
+                readSquirrelColumns();
+            }
+            else
+            {
+                pendingRow = readSybaseRow();
+                if(null == columnNames)
+                {
+                    columnNames = new ArrayList();
+                }
+            }
+            return columnNames;
+        }
+
+        public String[] nextRow() throws XMLStreamException
+        {
+            getColumnNames();
+            if(null != pendingRow)
+            {
+                String[] row = pendingRow;
+                pendingRow = null;
+                return row;
+            }
+            if(SQUIRREL_DIALECT == dialect)
+            {
+                return readSquirrelRow();
+            }
+            return readSybaseRow();
+        }
+
+        public void close()
+        {
+            try
+            {
+                if(null != reader) reader.close();
+                if(null != stream) stream.close();
+            }
+            catch(XMLStreamException exc)
+            {
+                throw new NestedApplicationException(exc);
+            }
+            catch(IOException exc)
+            {
+                throw new NestedApplicationException(exc);
+            }
+            finally
+            {
+                reader = null;
+                stream = null;
+            }
+        }
+
+        private String[] readSybaseRow() throws XMLStreamException
+        {
+            if(!nextChildElement("row")) return null;
+            List names = new ArrayList();
+            List values = new ArrayList();
+            while(nextChildElement(null))
+            {
+                names.add(reader.getLocalName());
+                values.add(readText());
+            }
+            if(null == columnNames)
+            {
+                columnNames = names;
+            }
+            if(values.size() > columnNames.size())
+            {
+                throw new XMLStreamException("Row contains more values than columns", reader.getLocation());
+            }
+            String[] row = new String[columnNames.size()];
+            return (String[])values.toArray(row);
+        }
+
+        private void readSquirrelColumns() throws XMLStreamException
+        {
+            if(!nextChildElement("columns"))
+            {
+                throw new XMLStreamException("No columns element found");
+            }
+            Map columnNameMap = new HashMap();
+            maxColumnNumber = 0;
+            while(nextChildElement("column"))
+            {
+                int columnNumber = getIntAttribute("number");
+                if(columnNumber > maxColumnNumber)
+                {
+                    maxColumnNumber = columnNumber;
+                }
+                String columnName = null;
+                while(nextChildElement(null))
+                {
+                    if(null == columnName && "name".equals(reader.getLocalName()))
+                    {
+                        columnName = readText();
+                    }
+                    else
+                    {
+                        skipElement();
+                    }
+                }
+                columnNameMap.put(new Integer(columnNumber), columnName);
+            }
+            columnNames = new ArrayList();
+            int offset = 0;
+            for(int ii = 0; ii < columnNameMap.size(); ii++)
+            {
+                String name = (String)columnNameMap.get(new Integer(ii + offset));
+                while(null == name)
+                {
+                    offset++;
+                    columnNames.add("unknown." + offset);
+                    name = (String)columnNameMap.get(new Integer(ii + offset));
+                }
+                columnNames.add(name);
+            }
+        }
+
+        private String[] readSquirrelRow() throws XMLStreamException
+        {
+            if(finished) return null;
+            if(!inRows)
+            {
+                if(!nextChildElement("rows"))
+                {
+                    throw new XMLStreamException("No rows element found");
+                }
+                inRows = true;
+            }
+            if(!nextChildElement("row"))
+            {
+                finished = true;
+                return null;
+            }
+            String[] row = new String[maxColumnNumber + 1];
+            while(nextChildElement(null))
+            {
+                int columnNumber = getIntAttribute("columnNumber");
+                row[columnNumber] = readText();
+            }
+            return row;
+        }
+
+        private void moveToRootElement() throws XMLStreamException
+        {
+            while(reader.hasNext())
+            {
+                if(XMLStreamConstants.START_ELEMENT == reader.next()) return;
+            }
+            throw new XMLStreamException("No root element found");
+        }
+
+        /**
+         * Moves to the next child element of the current element and
+         * skips all children with another name. Returns <code>false</code>
+         * and moves to the end of the current element, if there is
+         * no such child. A <code>null</code> name matches all children.
+         */
+        private boolean nextChildElement(String name) throws XMLStreamException
+        {
+            if(null == reader) return false;
+            while(reader.hasNext())
+            {
+                int event = reader.next();
+                if(XMLStreamConstants.START_ELEMENT == event)
+                {
+                    if(null == name || name.equals(reader.getLocalName())) return true;
+                    skipElement();
+                }
+                else if(XMLStreamConstants.END_ELEMENT == event)
+                {
+                    return false;
+                }
+            }
+            return false;
+        }
+
+        private void skipElement() throws XMLStreamException
+        {
+            int depth = 1;
+            while(depth > 0)
+            {
+                int event = reader.next();
+                if(XMLStreamConstants.START_ELEMENT == event) depth++;
+                else if(XMLStreamConstants.END_ELEMENT == event) depth--;
+            }
+        }
+
+        /**
+         * Returns the text of the current element, like JDOM <code>getText</code>.
+         * The text of nested elements is ignored.
+         */
+        private String readText() throws XMLStreamException
+        {
+            StringBuffer text = new StringBuffer();
+            while(true)
+            {
+                int event = reader.next();
+                if(XMLStreamConstants.START_ELEMENT == event)
+                {
+                    skipElement();
+                }
+                else if(XMLStreamConstants.END_ELEMENT == event)
+                {
+                    break;
+                }
+                else if(isTextEvent(event))
+                {
+                    text.append(reader.getText());
+                }
+            }
+            return trim ? text.toString().trim() : text.toString();
+        }
+
+        private boolean isTextEvent(int event)
+        {
+            return XMLStreamConstants.CHARACTERS == event || XMLStreamConstants.CDATA == event || XMLStreamConstants.SPACE == event || XMLStreamConstants.ENTITY_REFERENCE == event;
+        }
+
+        private int getIntAttribute(String name) throws XMLStreamException
+        {
+            String value = reader.getAttributeValue(null, name);
+            if(null == value)
+            {
+                throw new XMLStreamException("Attribute " + name + " not found", reader.getLocation());
+            }
+            try
+            {
+                return Integer.parseInt(value.trim());
+            }
+            catch(NumberFormatException exc)
+            {
+                throw new XMLStreamException("Attribute " + name + " is not a number", reader.getLocation(), exc);
+            }
+        }
+    }
 }
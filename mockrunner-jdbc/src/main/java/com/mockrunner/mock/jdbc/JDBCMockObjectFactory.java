@@ -20,19 +20,63 @@ import com.mockrunner.base.NestedApplicationException;
  * from the JDBC <code>DriverManager</code> and registers
  * the {@link MockDriver}. All drivers are preserved and
  * can be restored with {@link #restoreDrivers}.
+ * <br>
+ * Since the <code>DriverManager</code> is global, factories
+ * created by tests that run concurrently in the same JVM would
+ * replace each others driver. For this case, the factory can be
+ * created in routing mode. In routing mode, the
+ * {@link RoutingMockDriver} is registered instead of the
+ * {@link MockDriver} and the connection of this factory is bound
+ * to the current thread. Other threads don't inherit the binding,
+ * see {@link RoutingMockDriver}. The other drivers are not removed
+ * in routing mode, the {@link RoutingMockDriver} is registered in
+ * addition to them by the first factory in routing mode and removed
+ * when the last one calls {@link #restoreDrivers}. It only accepts URLs
+ * of threads with a bound connection (or URLs with a registered tag),
+ * so the <code>DriverManager</code> uses the other drivers for
+ * all other connections.
+ * Routing mode is enabled by default, if the system property
+ * <code>com.mockrunner.jdbc.routing</code> is set to <code>true</code>.
+ * Don't mix factories in routing mode and in normal mode
+ * in concurrently running tests.
  */
 public class JDBCMockObjectFactory
 {
+    /**
+     * The system property that enables the routing mode by default.
+     */
+    public final static String ROUTING_PROPERTY = "com.mockrunner.jdbc.routing";
+    
+    private final static Object routingLock = new Object();
+    private static int numberRoutingFactories = 0;
+    
     private MockDataSource dataSource;
     private MockDriver driver;
     private MockConnection connection;
     private Set preservedDrivers;
+    private boolean routing;
+    private boolean routingRegistered;
     
     /**
-     * Creates a new set of mock objects.
+     * Creates a new set of mock objects. Routing mode is
+     * enabled, if the system property <code>com.mockrunner.jdbc.routing</code>
+     * is set to <code>true</code>.
      */
     public JDBCMockObjectFactory()
     {
+        this(Boolean.getBoolean(ROUTING_PROPERTY));
+    }
+    
+    /**
+     * Creates a new set of mock objects.
+     * @param routing <code>true</code> to register the
+     *        {@link RoutingMockDriver} and bind the connection
+     *        to the current thread, <code>false</code> to
+     *        register the {@link MockDriver} of this factory
+     */
+    public JDBCMockObjectFactory(boolean routing)
+    {
+        this.routing = routing;
         dataSource = createMockDataSource();
         driver = createMockDriver();
         connection = createMockConnection();
@@ -96,13 +140,67 @@ public class JDBCMockObjectFactory
         }
     }
     
+    private void registerRoutingMockDriver()
+    {
+        RoutingMockDriver.getInstance().bindConnection(connection);
+        if(routingRegistered) return;
+        synchronized(routingLock)
+        {
+            if(numberRoutingFactories == 0)
+            {
+                try
+                {
+                    DriverManager.registerDriver(RoutingMockDriver.getInstance());
+                }
+                catch(SQLException exc)
+                {
+                    throw new NestedApplicationException(exc);
+                }
+            }
+            numberRoutingFactories++;
+            routingRegistered = true;
+        }
+    }
+    
+    private void restoreRoutingDrivers()
+    {
+        RoutingMockDriver routingDriver = RoutingMockDriver.getInstance();
+        if(routingDriver.getBoundConnection() == connection)
+        {
+            routingDriver.unbindConnection();
+        }
+        if(!routingRegistered) return;
+        synchronized(routingLock)
+        {
+            routingRegistered = false;
+            numberRoutingFactories--;
+            if(numberRoutingFactories > 0) return;
+            try
+            {
+                DriverManager.deregisterDriver(routingDriver);
+            }
+            catch(SQLException exc)
+            {
+                throw new NestedApplicationException(exc);
+            }
+        }
+    }
+    
     /**
      * Removes all JDBC drivers from the <code>DriveManager</code> and
      * registers the mock driver. The removed drivers are preserved and
      * can be restored with {@link #restoreDrivers}.
+     * In routing mode, no driver is removed, the {@link RoutingMockDriver}
+     * is registered (if it's not already registered) and the connection
+     * of this factory is bound to the current thread.
      */
     public void registerMockDriver()
     {
+        if(routing)
+        {
+            registerRoutingMockDriver();
+            return;
+        }
         try
         {
             preserveDrivers();
@@ -121,9 +219,17 @@ public class JDBCMockObjectFactory
      * {@link MockDriver} is guaranteed to be the only one)
      * you can use this method to restore the original drivers.
      * Automatically called by {@link com.mockrunner.base.BaseTestCase#tearDown}.
+     * In routing mode, the connection of this factory is unbound from the
+     * current thread and the {@link RoutingMockDriver} is removed when the
+     * last factory in routing mode calls this method.
      */
     public void restoreDrivers()
     {
+        if(routing)
+        {
+            restoreRoutingDrivers();
+            return;
+        }
         deregisterMockDrivers();
         try
         {
@@ -170,6 +276,35 @@ public class JDBCMockObjectFactory
         return new MockDataSource();
     }
 
+    /**
+     * Creates the {@link com.mockrunner.mock.jdbc.MockPooledDataSource} using <code>new</code>.
+     * This method can be overridden to return a subclass of {@link com.mockrunner.mock.jdbc.MockPooledDataSource}.
+     * @param maxPoolSize the maximum number of connections
+     * @return the {@link com.mockrunner.mock.jdbc.MockPooledDataSource}
+     */
+    public MockPooledDataSource createMockPooledDataSource(int maxPoolSize)
+    {
+        return new MockPooledDataSource(maxPoolSize);
+    }
+    
+    /**
+     * Replaces the {@link com.mockrunner.mock.jdbc.MockDataSource} with a
+     * {@link com.mockrunner.mock.jdbc.MockPooledDataSource}. The pooled
+     * connections share the handlers of the {@link com.mockrunner.mock.jdbc.MockConnection}
+     * of this factory. Since pooled connections are usually used by multiple
+     * threads, the concurrent mode of the connection is enabled.
+     * @param maxPoolSize the maximum number of connections
+     * @return the {@link com.mockrunner.mock.jdbc.MockPooledDataSource}
+     */
+    public MockPooledDataSource enablePooledDataSource(int maxPoolSize)
+    {
+        MockPooledDataSource pooledDataSource = createMockPooledDataSource(maxPoolSize);
+        pooledDataSource.setupConnection(connection);
+        connection.setConcurrent(true);
+        dataSource = pooledDataSource;
+        return pooledDataSource;
+    }
+
     /**
      * Returns the {@link com.mockrunner.mock.jdbc.MockDataSource}.
      * @return the {@link com.mockrunner.mock.jdbc.MockDataSource}
@@ -188,6 +323,15 @@ public class JDBCMockObjectFactory
         return driver;
     }
 
+    /**
+     * Returns if this factory is in routing mode.
+     * @return <code>true</code> if this factory is in routing mode
+     */
+    public boolean isRouting()
+    {
+        return routing;
+    }
+
     /**
      * Returns the {@link com.mockrunner.mock.jdbc.MockConnection}.
      * @return the {@link com.mockrunner.mock.jdbc.MockConnection}
@@ -6,34 +6,41 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.sql.Blob;
 import java.sql.SQLException;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Arrays;
 
 import com.mockrunner.base.NestedApplicationException;
 import com.mockrunner.util.common.ArrayUtil;
-import com.mockrunner.util.common.CollectionUtil;
 
 /**
  * Mock implementation of <code>Blob</code>.
+ * The data is stored in a growable byte array. The streams returned
+ * by {@link #getBinaryStream()} read the data without copying it.
+ * The data is copied when the <code>Blob</code> is modified while
+ * such a stream exists, so a stream always returns the data at the
+ * time it was created.
  */
 public class MockBlob implements Blob, Cloneable
 {
-    private List blobData;
+    private byte[] blobData;
+    private int length;
+    private boolean dataShared;
     private boolean wasFreeCalled;
-    
+
     public MockBlob(byte[] data)
     {
-        blobData = ArrayUtil.getListFromByteArray(data);
+        blobData = (byte[])data.clone();
+        length = data.length;
+        dataShared = false;
         wasFreeCalled = false;
     }
-    
+
     public long length() throws SQLException
     {
         if(wasFreeCalled)
         {
             throw new SQLException("free() was called");
         }
-        return blobData.size();
+        return length;
     }
 
     public byte[] getBytes(long pos, int length) throws SQLException
@@ -43,7 +50,11 @@ public class MockBlob implements Blob, Cloneable
             throw new SQLException("free() was called");
         }
         length = verifyAndFixLength(pos, length);
-        return ArrayUtil.getByteArrayFromList(blobData, (int)(pos - 1), length);
+        if(length == 0) return new byte[0];
+        int index = verifyIndex(pos);
+        byte[] bytes = new byte[length];
+        System.arraycopy(blobData, index, bytes, 0, length);
+        return bytes;
     }
 
     public InputStream getBinaryStream() throws SQLException
@@ -52,7 +63,8 @@ public class MockBlob implements Blob, Cloneable
         {
             throw new SQLException("free() was called");
         }
-        return new ByteArrayInputStream(ArrayUtil.getByteArrayFromList(blobData));
+        dataShared = true;
+        return new ByteArrayInputStream(blobData, 0, length);
     }
 
     public InputStream getBinaryStream(long pos, long length) throws SQLException
@@ -62,7 +74,10 @@ public class MockBlob implements Blob, Cloneable
             throw new SQLException("free() was called");
         }
         length = verifyAndFixLength(pos, (int)length);
-        return new ByteArrayInputStream(ArrayUtil.getByteArrayFromList(blobData, (int)(pos - 1), (int)length));
+        if(this.length == 0) return new ByteArrayInputStream(new byte[0]);
+        int index = verifyIndex(pos);
+        dataShared = true;
+        return new ByteArrayInputStream(blobData, index, (int)length);
     }
 
     public long position(byte[] pattern, long start) throws SQLException
@@ -71,8 +86,7 @@ public class MockBlob implements Blob, Cloneable
         {
             throw new SQLException("free() was called");
         }
-        byte[] data = ArrayUtil.getByteArrayFromList(blobData);
-        int index = ArrayUtil.indexOf(data, pattern, (int)(start - 1));
+        int index = ArrayUtil.indexOf(blobData, length, pattern, (int)(start - 1));
         if(-1 != index) index += 1;
         return index;
     }
@@ -84,12 +98,7 @@ public class MockBlob implements Blob, Cloneable
 
     public int setBytes(long pos, byte[] bytes) throws SQLException
     {
-        if(wasFreeCalled)
-        {
-            throw new SQLException("free() was called");
-        }
-        ArrayUtil.addBytesToList(bytes, blobData, (int)(pos - 1));
-        return bytes.length;
+        return setBytes(pos, bytes, 0, bytes.length);
     }
 
     public int setBytes(long pos, byte[] bytes, int offset, int len) throws SQLException
@@ -98,7 +107,7 @@ public class MockBlob implements Blob, Cloneable
         {
             throw new SQLException("free() was called");
         }
-        ArrayUtil.addBytesToList(bytes, offset, len, blobData, (int)(pos - 1));
+        writeBytes((int)(pos - 1), bytes, offset, len);
         return len;
     }
 
@@ -117,9 +126,16 @@ public class MockBlob implements Blob, Cloneable
         {
             throw new SQLException("free() was called");
         }
-        blobData = CollectionUtil.truncateList(blobData, (int)len);
+        if(len < 0)
+        {
+            throw new IllegalArgumentException("len must be greater or equals 0");
+        }
+        if(len >= length) return;
+        prepareWrite(length);
+        Arrays.fill(blobData, (int)len, length, (byte)0);
+        length = (int)len;
     }
-    
+
     public void free() throws SQLException
     {
         wasFreeCalled = true;
@@ -141,27 +157,45 @@ public class MockBlob implements Blob, Cloneable
         if(!obj.getClass().equals(this.getClass())) return false;
         MockBlob other = (MockBlob)obj;
         if(wasFreeCalled != other.wasFreeCalled()) return false;
-        return blobData.equals(other.blobData);
+        if(length != other.length) return false;
+        for(int ii = 0; ii < length; ii++)
+        {
+            if(blobData[ii] != other.blobData[ii]) return false;
+        }
+        return true;
     }
 
     public int hashCode()
     {
-        int hashCode = blobData.hashCode();
+        int hashCode = 1;
+        for(int ii = 0; ii < length; ii++)
+        {
+            hashCode = (31 * hashCode) + blobData[ii];
+        }
         hashCode = (31 * hashCode) + (wasFreeCalled ? 31 : 62);
         return hashCode;
     }
 
     public String toString()
     {
-        return "Blob data: " + blobData.toString();     
+        StringBuffer buffer = new StringBuffer("Blob data: [");
+        for(int ii = 0; ii < length; ii++)
+        {
+            if(ii > 0) buffer.append(", ");
+            buffer.append(blobData[ii]);
+        }
+        buffer.append("]");
+        return buffer.toString();
     }
-    
+
     public Object clone()
     {
         try
         {
             MockBlob blob = (MockBlob)super.clone();
-            blob.blobData = new ArrayList(blobData);
+            blob.blobData = new byte[length];
+            System.arraycopy(blobData, 0, blob.blobData, 0, length);
+            blob.dataShared = false;
             return blob;
         }
         catch(CloneNotSupportedException exc)
@@ -169,34 +203,78 @@ public class MockBlob implements Blob, Cloneable
             throw new NestedApplicationException(exc);
         }
     }
-    
+
     private int verifyAndFixLength(long pos, int length)
     {
         if(length < 0)
         {
             throw new IllegalArgumentException("length must be greater or equals 0");
         }
-        if((length + (pos - 1)) > blobData.size())
+        if((length + (pos - 1)) > this.length)
         {
-            return blobData.size() - (int)(pos - 1);
+            return this.length - (int)(pos - 1);
         }
         return length;
     }
-    
+
+    private int verifyIndex(long pos)
+    {
+        int index = (int)(pos - 1);
+        if(index >= length)
+        {
+            throw new IndexOutOfBoundsException("Position " + index + " invalid in Blob of size " + length);
+        }
+        return index;
+    }
+
+    private void writeBytes(int index, byte[] bytes, int offset, int len)
+    {
+        if(index < 0)
+        {
+            throw new IndexOutOfBoundsException("Position " + index + " invalid in Blob of size " + length);
+        }
+        int end = index + len;
+        prepareWrite(end);
+        System.arraycopy(bytes, offset, blobData, index, len);
+        if(end > length)
+        {
+            length = end;
+        }
+    }
+
+    private void prepareWrite(int end)
+    {
+        if(!dataShared && end <= blobData.length) return;
+        int capacity = blobData.length;
+        if(end > capacity)
+        {
+            capacity = Math.max(end, capacity + (capacity >> 1) + 1);
+        }
+        byte[] newData = new byte[capacity];
+        System.arraycopy(blobData, 0, newData, 0, length);
+        blobData = newData;
+        dataShared = false;
+    }
+
     private class BlobOutputStream extends OutputStream
-    {  
+    {
         private int index;
-        
+
         public BlobOutputStream(int index)
         {
             this.index = index;
         }
-        
+
         public void write(int byteValue) throws IOException
         {
-            byte[] bytes = new byte[] {(byte)byteValue};
-            ArrayUtil.addBytesToList(bytes, blobData, index);
+            writeBytes(index, new byte[] {(byte)byteValue}, 0, 1);
             index++;
         }
+
+        public void write(byte[] bytes, int offset, int len) throws IOException
+        {
+            writeBytes(index, bytes, offset, len);
+            index += len;
+        }
     }
 }
@@ -5,31 +5,50 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.Reader;
-import java.io.StringReader;
 import java.io.UnsupportedEncodingException;
 import java.io.Writer;
 import java.sql.Clob;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
 
 import com.mockrunner.base.NestedApplicationException;
 
 /**
  * Mock implementation of <code>Clob</code>.
+ * The data is stored in chunks of fixed size, so a position
+ * can be found without copying or scanning the data. The readers 
+ * returned by {@link #getCharacterStream()} read the chunks directly.
+ * A chunk is copied when the <code>Clob</code> is modified while
+ * such a reader exists, so a reader always returns the data at the 
+ * time it was created. Clones share the chunks in the same way.
+ * Creating a reader or a clone only sets a flag, so multiple threads
+ * can read and clone a <code>Clob</code> at the same time. Apart from
+ * that this class is not thread safe.
  */
 public class MockClob implements Clob, Cloneable
 {
-    private StringBuffer clobData;
+    private final static int CHUNK_SIZE = 4096;
+    
+    private List chunks;
+    private BitSet sharedChunks;
+    private volatile boolean allChunksShared;
+    private int length;
     private boolean wasFreeCalled;
     
     public MockClob(String data)
     {
-        clobData = new StringBuffer(data);
+        chunks = new ArrayList();
+        sharedChunks = new BitSet();
+        length = 0;
+        writeChars(0, data.toCharArray(), 0, data.length());
         wasFreeCalled = false;
     }
 
     public long length() throws SQLException
     {
-        return clobData.length();
+        return length;
     }
 
     public void truncate(long len) throws SQLException
@@ -38,7 +57,7 @@ public class MockClob implements Clob, Cloneable
         {
             throw new SQLException("free() was called");
         }
-        clobData.setLength((int)len);
+        setLength((int)len);
     }
 
     public InputStream getAsciiStream() throws SQLException
@@ -49,7 +68,7 @@ public class MockClob implements Clob, Cloneable
         }
         try
         {
-            return new ByteArrayInputStream(clobData.toString().getBytes("ISO-8859-1"));
+            return new ByteArrayInputStream(getData().getBytes("ISO-8859-1"));
         } 
         catch(UnsupportedEncodingException exc)
         {
@@ -72,7 +91,7 @@ public class MockClob implements Clob, Cloneable
         {
             throw new SQLException("free() was called");
         }
-        return new StringReader(clobData.toString());
+        return new ClobReader(0, length);
     }
 
     public Reader getCharacterStream(long pos, long length) throws SQLException
@@ -82,7 +101,9 @@ public class MockClob implements Clob, Cloneable
             throw new SQLException("free() was called");
         }
         length = verifyAndFixLength(pos, (int)length);
-        return new StringReader(getSubString(pos, (int)length));
+        int index = (int)(pos - 1);
+        verifyRange(index, (int)length);
+        return new ClobReader(index, index + (int)length);
     }
 
     public Writer setCharacterStream(long pos) throws SQLException
@@ -101,7 +122,11 @@ public class MockClob implements Clob, Cloneable
             throw new SQLException("free() was called");
         }
         length = verifyAndFixLength(pos, length);
-        return clobData.substring((int)(pos - 1), (int)(pos - 1) + length);
+        int index = (int)(pos - 1);
+        verifyRange(index, length);
+        char[] chars = new char[length];
+        readChars(index, chars, 0, length);
+        return new String(chars);
     }
 
     public int setString(long pos, String str) throws SQLException
@@ -115,8 +140,9 @@ public class MockClob implements Clob, Cloneable
         {
             throw new SQLException("free() was called");
         }
-        str = str.substring(offset, offset + len);
-        clobData.replace((int)(pos - 1), (int)(pos - 1) + str.length(), str);
+        char[] chars = new char[len];
+        str.getChars(offset, offset + len, chars, 0);
+        writeChars((int)(pos - 1), chars, 0, len);
         return len;
     }
 
@@ -126,7 +152,7 @@ public class MockClob implements Clob, Cloneable
         {
             throw new SQLException("free() was called");
         }
-        int index = clobData.toString().indexOf(searchstr, (int)(start - 1));
+        int index = getData().indexOf(searchstr, (int)(start - 1));
         if(-1 != index) index += 1;
         return index;
     }
@@ -157,19 +183,28 @@ public class MockClob implements Clob, Cloneable
         if(!obj.getClass().equals(this.getClass())) return false;
         MockClob other = (MockClob)obj;
         if(wasFreeCalled != other.wasFreeCalled()) return false;
-        return clobData.toString().equals(other.clobData.toString());
+        if(length != other.length) return false;
+        for(int ii = 0; ii < length; ii++)
+        {
+            if(charAt(ii) != other.charAt(ii)) return false;
+        }
+        return true;
     }
 
     public int hashCode()
     {
-        int hashCode = clobData.toString().hashCode();
+        int hashCode = 0;
+        for(int ii = 0; ii < length; ii++)
+        {
+            hashCode = (31 * hashCode) + charAt(ii);
+        }
         hashCode = (31 * hashCode) + (wasFreeCalled ? 31 : 62);
         return hashCode;
     }
 
     public String toString()
     {
-        return "Clob data: " + clobData.toString();
+        return "Clob data: " + getData();
     }
     
     public Object clone()
@@ -177,7 +212,10 @@ public class MockClob implements Clob, Cloneable
         try
         {
             MockClob clone = (MockClob)super.clone();
-            clone.clobData = new StringBuffer(clobData.toString());
+            clone.chunks = new ArrayList(chunks);
+            clone.sharedChunks = new BitSet();
+            clone.allChunksShared = true;
+            allChunksShared = true;
             return clone;
         }
         catch(CloneNotSupportedException exc)
@@ -192,13 +230,193 @@ public class MockClob implements Clob, Cloneable
         {
             throw new IllegalArgumentException("length must be greater or equals 0");
         }
-        if((length + (pos - 1)) > clobData.length())
+        if((length + (pos - 1)) > this.length)
         {
-            return clobData.length() - (int)(pos - 1);
+            return this.length - (int)(pos - 1);
         }
         return length;
     }
     
+    private void verifyRange(int index, int len)
+    {
+        if(index < 0 || len < 0 || index + len > length)
+        {
+            throw new StringIndexOutOfBoundsException("Range " + index + " to " + (index + len) + " invalid in Clob of length " + length);
+        }
+    }
+    
+    private String getData()
+    {
+        char[] chars = new char[length];
+        readChars(0, chars, 0, length);
+        return new String(chars);
+    }
+    
+    private char charAt(int index)
+    {
+        char[] chunk = (char[])chunks.get(index / CHUNK_SIZE);
+        return chunk[index % CHUNK_SIZE];
+    }
+    
+    private void readChars(int index, char[] dest, int offset, int len)
+    {
+        readChars(chunks, index, dest, offset, len);
+    }
+    
+    private static void readChars(List chunks, int index, char[] dest, int offset, int len)
+    {
+        while(len > 0)
+        {
+            char[] chunk = (char[])chunks.get(index / CHUNK_SIZE);
+            int chunkOffset = index % CHUNK_SIZE;
+            int count = Math.min(len, CHUNK_SIZE - chunkOffset);
+            System.arraycopy(chunk, chunkOffset, dest, offset, count);
+            index += count;
+            offset += count;
+            len -= count;
+        }
+    }
+    
+    private void writeChars(int index, char[] source, int offset, int len)
+    {
+        if(index < 0 || index > length)
+        {
+            throw new StringIndexOutOfBoundsException("Position " + index + " invalid in Clob of length " + length);
+        }
+        ensureCapacity(index + len);
+        while(len > 0)
+        {
+            char[] chunk = getWritableChunk(index / CHUNK_SIZE);
+            int chunkOffset = index % CHUNK_SIZE;
+            int count = Math.min(len, CHUNK_SIZE - chunkOffset);
+            System.arraycopy(source, offset, chunk, chunkOffset, count);
+            index += count;
+            offset += count;
+            len -= count;
+        }
+        if(index > length)
+        {
+            length = index;
+        }
+    }
+    
+    private void setLength(int newLength)
+    {
+        if(newLength < 0)
+        {
+            throw new StringIndexOutOfBoundsException(newLength);
+        }
+        if(newLength >= length)
+        {
+            ensureCapacity(newLength);
+            length = newLength;
+            return;
+        }
+        int chunkCount = (newLength + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        while(chunks.size() > chunkCount)
+        {
+            chunks.remove(chunks.size() - 1);
+        }
+        if(sharedChunks.length() > chunkCount)
+        {
+            sharedChunks.clear(chunkCount, sharedChunks.length());
+        }
+        int chunkOffset = newLength % CHUNK_SIZE;
+        if(chunkOffset > 0)
+        {
+            char[] chunk = getWritableChunk(chunkCount - 1);
+            for(int ii = chunkOffset; ii < CHUNK_SIZE; ii++)
+            {
+                chunk[ii] = 0;
+            }
+        }
+        length = newLength;
+    }
+    
+    private void ensureCapacity(int capacity)
+    {
+        while(chunks.size() * CHUNK_SIZE < capacity)
+        {
+            chunks.add(new char[CHUNK_SIZE]);
+        }
+    }
+    
+    private char[] getWritableChunk(int chunkIndex)
+    {
+        if(allChunksShared)
+        {
+            sharedChunks.set(0, chunks.size());
+            allChunksShared = false;
+        }
+        char[] chunk = (char[])chunks.get(chunkIndex);
+        if(sharedChunks.get(chunkIndex))
+        {
+            chunk = (char[])chunk.clone();
+            chunks.set(chunkIndex, chunk);
+            sharedChunks.clear(chunkIndex);
+        }
+        return chunk;
+    }
+    
+    private class ClobReader extends Reader
+    {
+        private List readerChunks;
+        private int position;
+        private int end;
+        private int mark;
+        
+        public ClobReader(int position, int end)
+        {
+            readerChunks = new ArrayList(chunks);
+            allChunksShared = true;
+            this.position = position;
+            this.end = end;
+            this.mark = position;
+        }
+        
+        public int read(char[] cbuf, int off, int len) throws IOException
+        {
+            if(len == 0) return 0;
+            if(position >= end) return -1;
+            int count = Math.min(len, end - position);
+            readChars(readerChunks, position, cbuf, off, count);
+            position += count;
+            return count;
+        }
+        
+        public long skip(long count) throws IOException
+        {
+            long skipped = Math.max(0, Math.min(count, end - position));
+            position += (int)skipped;
+            return skipped;
+        }
+        
+        public boolean ready() throws IOException
+        {
+            return true;
+        }
+        
+        public boolean markSupported()
+        {
+            return true;
+        }
+        
+        public void mark(int readAheadLimit) throws IOException
+        {
+            mark = position;
+        }
+        
+        public void reset() throws IOException
+        {
+            position = mark;
+        }
+        
+        public void close() throws IOException
+        {
+            
+        }
+    }
+    
     private class ClobWriter extends Writer
     {  
         private int index;
@@ -220,15 +438,12 @@ public class MockClob implements Clob, Cloneable
 
         public void write(char[] cbuf, int off, int len) throws IOException
         {
-            try
+            if(wasFreeCalled)
             {
-                setString(index + 1, new String(cbuf, off, len));
+                throw new IOException("free() was called");
             }
-            catch(SQLException exc)
-            {
-                throw new IOException(exc.getMessage());
-            }
-            index++;
+            writeChars(index, cbuf, off, len);
+            index += len;
         }
     }
     
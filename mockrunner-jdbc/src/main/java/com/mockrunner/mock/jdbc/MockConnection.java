@@ -52,9 +52,23 @@ public class MockConnection implements Connection
     
     public MockConnection()
     {
-        statementHandler = new StatementResultSetHandler();
-        preparedStatementHandler = new PreparedStatementResultSetHandler();
-        callableStatementHandler = new CallableStatementResultSetHandler();
+        this(new StatementResultSetHandler(), new PreparedStatementResultSetHandler(), new CallableStatementResultSetHandler());
+    }
+    
+    /**
+     * Creates a connection that uses the specified handlers.
+     * Connections that share their handlers return the same
+     * prepared results and record their executed statements
+     * together.
+     * @param statementHandler the {@link StatementResultSetHandler}
+     * @param preparedStatementHandler the {@link PreparedStatementResultSetHandler}
+     * @param callableStatementHandler the {@link CallableStatementResultSetHandler}
+     */
+    public MockConnection(StatementResultSetHandler statementHandler, PreparedStatementResultSetHandler preparedStatementHandler, CallableStatementResultSetHandler callableStatementHandler)
+    {
+        this.statementHandler = statementHandler;
+        this.preparedStatementHandler = preparedStatementHandler;
+        this.callableStatementHandler = callableStatementHandler;
         metaData = new MockDatabaseMetaData();
         ((MockDatabaseMetaData)metaData).setConnection(this);
         closed = false;
@@ -102,36 +116,51 @@ public class MockConnection implements Connection
         this.metaData = metaData;
     }
     
-    public int getNumberCommits()
+    public synchronized int getNumberCommits()
     {
         return numberCommits;
     }
     
-    public int getNumberRollbacks()
+    public synchronized int getNumberRollbacks()
     {
         return numberRollbacks;
     }
     
-    public Map getSavepointMap()
+    public synchronized Map getSavepointMap()
     {
-        return Collections.unmodifiableMap(savepoints);
+        return Collections.unmodifiableMap(new HashMap(savepoints));
     }
     
-    public void resetNumberCommits()
+    public synchronized void resetNumberCommits()
     {
         numberCommits = 0;
     }
     
-    public void resetNumberRollbacks()
+    public synchronized void resetNumberRollbacks()
     {
         numberRollbacks = 0;
     }
     
-    public void resetSavepointMap()
+    public synchronized void resetSavepointMap()
     {
         savepoints.clear();
     }
     
+    /**
+     * Enables or disables the concurrent mode of the
+     * <code>ResultSet</code> handlers of this connection.
+     * Enable the concurrent mode, if this connection is used
+     * by multiple threads at the same time.
+     * See {@link com.mockrunner.jdbc.AbstractResultSetHandler#setConcurrent}.
+     * @param concurrent enable or disable concurrent mode
+     */
+    public void setConcurrent(boolean concurrent)
+    {
+        statementHandler.setConcurrent(concurrent);
+        preparedStatementHandler.setConcurrent(concurrent);
+        callableStatementHandler.setConcurrent(concurrent);
+    }
+    
     public StatementResultSetHandler getStatementResultSetHandler()
     {
         return statementHandler;
@@ -365,7 +394,7 @@ public class MockConnection implements Connection
         return setSavepoint("");
     }
     
-    public Savepoint setSavepoint(String name) throws SQLException
+    public synchronized Savepoint setSavepoint(String name) throws SQLException
     {
         MockSavepoint savePoint = new MockSavepoint(name, savepointCount);
         savepoints.put(new Integer(savePoint.getSavepointId()), savePoint);
@@ -404,7 +433,7 @@ public class MockConnection implements Connection
         this.schema = schema;
     }
 
-    public void releaseSavepoint(Savepoint savepoint) throws SQLException
+    public synchronized void releaseSavepoint(Savepoint savepoint) throws SQLException
     {
         MockSavepoint currentSavepoint = (MockSavepoint)savepoints.get(new Integer(savepoint.getSavepointId()));
         if(currentSavepoint.isReleased())
@@ -415,17 +444,17 @@ public class MockConnection implements Connection
         currentSavepoint.setReleased(true);
     }
     
-    public void commit() throws SQLException
+    public synchronized void commit() throws SQLException
     {
         numberCommits++;
     }
     
-    public void rollback() throws SQLException
+    public synchronized void rollback() throws SQLException
     {
         numberRollbacks++;
     }
     
-    public void rollback(Savepoint savepoint) throws SQLException
+    public synchronized void rollback(Savepoint savepoint) throws SQLException
     {
         MockSavepoint currentSavepoint = (MockSavepoint)savepoints.get(new Integer(savepoint.getSavepointId()));
         if(currentSavepoint.isReleased())
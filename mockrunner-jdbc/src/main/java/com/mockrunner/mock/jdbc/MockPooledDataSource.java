@@ -0,0 +1,489 @@
+package com.mockrunner.mock.jdbc;
+
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+import com.mockrunner.base.NestedApplicationException;
+
+/**
+ * Mock implementation of a pooled <code>DataSource</code>.
+ * In contrast to {@link MockDataSource}, which always returns the same
+ * connection, this class returns distinct connections from a pool
+ * with a maximum size. The connections share the <code>ResultSet</code>
+ * handlers of the connection that was set up with {@link #setupConnection},
+ * so they return the same prepared results and all executed statements
+ * can be verified using the set up connection. Commits, rollbacks and
+ * <code>Savepoint</code> objects are delegated to the set up connection
+ * as well, so transactions of all pooled connections can be verified.
+ * Closing a connection closes the statements created on it and returns
+ * it to the pool. Returned connections are reset to the auto commit mode, read only mode, transaction isolation,
+ * holdability, catalog and schema of the set up connection.
+ * If all connections are in use, {@link #getConnection()} blocks until
+ * a connection is returned or the acquisition timeout expires.
+ * The pool records the number of acquisitions, the peak number of
+ * connections in use, the number of timeouts and the time spent
+ * waiting for a connection.
+ * If the connections are used by multiple threads, enable the
+ * concurrent mode of the set up connection
+ * (see {@link MockConnection#setConcurrent}).
+ */
+public class MockPooledDataSource extends MockDataSource
+{
+    private int maxPoolSize;
+    private long acquisitionTimeout;
+    private List connections;
+    private LinkedList idleConnections;
+    private int inUseCount;
+    private int peakInUseCount;
+    private int acquisitionCount;
+    private int timeoutCount;
+    private long totalWaitTime;
+    private long maxWaitTime;
+    
+    public MockPooledDataSource()
+    {
+        this(10);
+    }
+    
+    public MockPooledDataSource(int maxPoolSize)
+    {
+        setMaxPoolSize(maxPoolSize);
+        acquisitionTimeout = 30000;
+        connections = new ArrayList();
+        idleConnections = new LinkedList();
+        resetStatistics();
+    }
+    
+    /**
+     * Sets the maximum number of connections. If the pool
+     * is reduced, idle connections are removed from the pool.
+     * If it is reduced below the number of connections in use,
+     * the connections are removed when they are returned.
+     * Default is <code>10</code>.
+     * @param maxPoolSize the maximum number of connections
+     */
+    public synchronized void setMaxPoolSize(int maxPoolSize)
+    {
+        if(maxPoolSize <= 0)
+        {
+            throw new IllegalArgumentException("maxPoolSize must be greater than 0");
+        }
+        this.maxPoolSize = maxPoolSize;
+        if(null != connections)
+        {
+            while(connections.size() > maxPoolSize && !idleConnections.isEmpty())
+            {
+                connections.remove(idleConnections.removeLast());
+            }
+        }
+        notifyAll();
+    }
+    
+    /**
+     * Returns the maximum number of connections.
+     * @return the maximum number of connections
+     */
+    public synchronized int getMaxPoolSize()
+    {
+        return maxPoolSize;
+    }
+    
+    /**
+     * Sets the time in milliseconds {@link #getConnection()} waits for
+     * a connection, if all connections are in use. If no connection is
+     * returned in time, an <code>SQLException</code> is thrown.
+     * <code>0</code> fails immediately. Default is <code>30000</code>.
+     * @param acquisitionTimeout the timeout in milliseconds
+     */
+    public synchronized void setAcquisitionTimeout(long acquisitionTimeout)
+    {
+        if(acquisitionTimeout < 0)
+        {
+            throw new IllegalArgumentException("acquisitionTimeout must be greater or equals 0");
+        }
+        this.acquisitionTimeout = acquisitionTimeout;
+    }
+    
+    /**
+     * Returns the acquisition timeout in milliseconds.
+     * @return the acquisition timeout
+     */
+    public synchronized long getAcquisitionTimeout()
+    {
+        return acquisitionTimeout;
+    }
+    
+    public Connection getConnection() throws SQLException
+    {
+        return acquireConnection();
+    }
+
+    public Connection getConnection(String username, String password) throws SQLException
+    {
+        return acquireConnection();
+    }
+    
+    /**
+     * Returns all connections of the pool, including the connections
+     * that are currently in use.
+     * @return the <code>List</code> of {@link MockConnection} objects
+     */
+    public synchronized List getPooledConnections()
+    {
+        return Collections.unmodifiableList(new ArrayList(connections));
+    }
+    
+    /**
+     * Returns the number of connections that are currently in use.
+     * @return the number of connections in use
+     */
+    public synchronized int getInUseCount()
+    {
+        return inUseCount;
+    }
+    
+    /**
+     * Returns the maximum number of connections that were in use
+     * at the same time.
+     * @return the peak number of connections in use
+     */
+    public synchronized int getPeakInUseCount()
+    {
+        return peakInUseCount;
+    }
+    
+    /**
+     * Returns how often a connection was acquired.
+     * @return the number of acquisitions
+     */
+    public synchronized int getAcquisitionCount()
+    {
+        return acquisitionCount;
+    }
+    
+    /**
+     * Returns how often the acquisition of a connection
+     * failed because of a timeout.
+     * @return the number of timeouts
+     */
+    public synchronized int getTimeoutCount()
+    {
+        return timeoutCount;
+    }
+    
+    /**
+     * Returns the total time in milliseconds that was spent waiting
+     * for a connection. Includes the acquisitions that timed out.
+     * @return the total wait time
+     */
+    public synchronized long getTotalWaitTime()
+    {
+        return totalWaitTime;
+    }
+    
+    /**
+     * Returns the longest time in milliseconds that was spent
+     * waiting for a connection.
+     * @return the maximum wait time
+     */
+    public synchronized long getMaxWaitTime()
+    {
+        return maxWaitTime;
+    }
+    
+    /**
+     * Resets the recorded acquisition statistics. The number
+     * of connections in use is not changed.
+     */
+    public synchronized void resetStatistics()
+    {
+        peakInUseCount = inUseCount;
+        acquisitionCount = 0;
+        timeoutCount = 0;
+        totalWaitTime = 0;
+        maxWaitTime = 0;
+    }
+    
+    /**
+     * Creates a pooled connection. The connection shares the handlers
+     * of the specified connection. This method can be overridden to
+     * return a subclass of {@link MockConnection}. The {@link MockConnection#close}
+     * method of the returned connection must call {@link #releaseConnection}.
+     * @param template the connection that was set up
+     * @return the pooled connection
+     */
+    protected MockConnection createPooledConnection(MockConnection template)
+    {
+        return new PooledMockConnection(template);
+    }
+    
+    /**
+     * Returns a connection to the pool and resets the
+     * connection state.
+     * @param connection the connection
+     */
+    protected synchronized void releaseConnection(MockConnection connection)
+    {
+        if(!connections.contains(connection) || idleConnections.contains(connection)) return;
+        if(connection instanceof PooledMockConnection)
+        {
+            ((PooledMockConnection)connection).reset();
+        }
+        inUseCount--;
+        if(connections.size() > maxPoolSize)
+        {
+            connections.remove(connection);
+        }
+        else
+        {
+            idleConnections.addLast(connection);
+        }
+        notifyAll();
+    }
+    
+    private synchronized Connection acquireConnection() throws SQLException
+    {
+        long start = System.currentTimeMillis();
+        long deadline = start + acquisitionTimeout;
+        while(idleConnections.isEmpty() && connections.size() >= maxPoolSize)
+        {
+            long remaining = deadline - System.currentTimeMillis();
+            if(remaining <= 0)
+            {
+                timeoutCount++;
+                recordWaitTime(System.currentTimeMillis() - start);
+                throw new SQLException("Timeout after " + acquisitionTimeout + " ms while waiting for a connection, all " + connections.size() + " connections are in use");
+            }
+            try
+            {
+                wait(remaining);
+            }
+            catch(InterruptedException exc)
+            {
+                Thread.currentThread().interrupt();
+                throw new SQLException("Interrupted while waiting for a connection");
+            }
+        }
+        MockConnection connection;
+        if(idleConnections.isEmpty())
+        {
+            connection = createPooledConnection(getTemplateConnection());
+            connections.add(connection);
+        }
+        else
+        {
+            connection = (MockConnection)idleConnections.removeFirst();
+        }
+        if(connection instanceof PooledMockConnection)
+        {
+            ((PooledMockConnection)connection).open();
+        }
+        inUseCount++;
+        peakInUseCount = Math.max(peakInUseCount, inUseCount);
+        acquisitionCount++;
+        recordWaitTime(System.currentTimeMillis() - start);
+        return connection;
+    }
+    
+    private void recordWaitTime(long waitTime)
+    {
+        totalWaitTime += waitTime;
+        maxWaitTime = Math.max(maxWaitTime, waitTime);
+    }
+    
+    private MockConnection getTemplateConnection()
+    {
+        MockConnection template = getMockConnection();
+        if(null == template)
+        {
+            template = new MockConnection();
+            setupConnection(template);
+        }
+        return template;
+    }
+    
+    private class PooledMockConnection extends MockConnection
+    {
+        private MockConnection template;
+        private boolean pooledConnectionClosed;
+        private List openStatements;
+        
+        public PooledMockConnection(MockConnection template)
+        {
+            super(template.getStatementResultSetHandler(), template.getPreparedStatementResultSetHandler(), template.getCallableStatementResultSetHandler());
+            this.template = template;
+            pooledConnectionClosed = false;
+            openStatements = new ArrayList();
+            reset();
+        }
+        
+        public synchronized void open()
+        {
+            pooledConnectionClosed = false;
+        }
+        
+        public void reset()
+        {
+            try
+            {
+                setAutoCommit(template.getAutoCommit());
+                setReadOnly(template.isReadOnly());
+                setTransactionIsolation(template.getTransactionIsolation());
+                setHoldability(template.getHoldability());
+                setCatalog(template.getCatalog());
+                setSchema(template.getSchema());
+            }
+            catch(SQLException exc)
+            {
+                throw new NestedApplicationException(exc);
+            }
+        }
+        
+        public int getNumberCommits()
+        {
+            return template.getNumberCommits();
+        }
+        
+        public int getNumberRollbacks()
+        {
+            return template.getNumberRollbacks();
+        }
+        
+        public Map getSavepointMap()
+        {
+            return template.getSavepointMap();
+        }
+        
+        public void resetNumberCommits()
+        {
+            template.resetNumberCommits();
+        }
+        
+        public void resetNumberRollbacks()
+        {
+            template.resetNumberRollbacks();
+        }
+        
+        public void resetSavepointMap()
+        {
+            template.resetSavepointMap();
+        }
+        
+        public Savepoint setSavepoint() throws SQLException
+        {
+            return template.setSavepoint();
+        }
+        
+        public Savepoint setSavepoint(String name) throws SQLException
+        {
+            return template.setSavepoint(name);
+        }
+        
+        public void releaseSavepoint(Savepoint savepoint) throws SQLException
+        {
+            template.releaseSavepoint(savepoint);
+        }
+        
+        public void commit() throws SQLException
+        {
+            template.commit();
+        }
+        
+        public void rollback() throws SQLException
+        {
+            template.rollback();
+        }
+        
+        public void rollback(Savepoint savepoint) throws SQLException
+        {
+            template.rollback(savepoint);
+        }
+        
+        public Statement createStatement() throws SQLException
+        {
+            return (Statement)addOpenStatement(super.createStatement());
+        }
+        
+        public Statement createStatement(int resultSetType, int resultSetConcurrency) throws SQLException
+        {
+            return (Statement)addOpenStatement(super.createStatement(resultSetType, resultSetConcurrency));
+        }
+        
+        public Statement createStatement(int resultSetType, int resultSetConcurrency, int resultSetHoldability) throws SQLException
+        {
+            return (Statement)addOpenStatement(super.createStatement(resultSetType, resultSetConcurrency, resultSetHoldability));
+        }
+        
+        public CallableStatement prepareCall(String sql) throws SQLException
+        {
+            return (CallableStatement)addOpenStatement(super.prepareCall(sql));
+        }
+        
+        public CallableStatement prepareCall(String sql, int resultSetType, int resultSetConcurrency) throws SQLException
+        {
+            return (CallableStatement)addOpenStatement(super.prepareCall(sql, resultSetType, resultSetConcurrency));
+        }
+        
+        public CallableStatement prepareCall(String sql, int resultSetType, int resultSetConcurrency, int resultSetHoldability) throws SQLException
+        {
+            return (CallableStatement)addOpenStatement(super.prepareCall(sql, resultSetType, resultSetConcurrency, resultSetHoldability));
+        }
+        
+        public PreparedStatement prepareStatement(String sql) throws SQLException
+        {
+            return (PreparedStatement)addOpenStatement(super.prepareStatement(sql));
+        }
+        
+        public PreparedStatement prepareStatement(String sql, int resultSetType, int resultSetConcurrency) throws SQLException
+        {
+            return (PreparedStatement)addOpenStatement(super.prepareStatement(sql, resultSetType, resultSetConcurrency));
+        }
+        
+        public PreparedStatement prepareStatement(String sql, int resultSetType, int resultSetConcurrency, int resultSetHoldability) throws SQLException
+        {
+            return (PreparedStatement)addOpenStatement(super.prepareStatement(sql, resultSetType, resultSetConcurrency, resultSetHoldability));
+        }
+        
+        public PreparedStatement prepareStatement(String sql, int autoGeneratedKeys) throws SQLException
+        {
+            return (PreparedStatement)addOpenStatement(super.prepareStatement(sql, autoGeneratedKeys));
+        }
+        
+        private synchronized Statement addOpenStatement(Statement statement)
+        {
+            openStatements.add(statement);
+            return statement;
+        }
+        
+        public void close() throws SQLException
+        {
+            Statement[] statements;
+            synchronized(this)
+            {
+                if(pooledConnectionClosed) return;
+                pooledConnectionClosed = true;
+                statements = (Statement[])openStatements.toArray(new Statement[openStatements.size()]);
+                openStatements.clear();
+            }
+            for(int ii = 0; ii < statements.length; ii++)
+            {
+                statements[ii].close();
+            }
+            releaseConnection(this);
+        }
+        
+        public synchronized boolean isClosed() throws SQLException
+        {
+            return pooledConnectionClosed;
+        }
+    }
+}
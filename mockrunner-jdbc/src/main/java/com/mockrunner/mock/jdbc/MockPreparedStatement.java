@@ -161,6 +161,7 @@ public class MockPreparedStatement extends MockStatement implements PreparedStat
     
     protected ResultSet executeQuery(Map params) throws SQLException
     {
+        simulateLatency(getSQL());
         SQLException exception = resultSetHandler.getSQLException(sql, params);
         if(null != exception)
         {
@@ -177,7 +178,7 @@ public class MockPreparedStatement extends MockStatement implements PreparedStat
             MockResultSet[] results = resultSetHandler.getResultSets(getSQL(), params);
             if(null != results)
             {
-                resultSetHandler.addExecutedStatement(getSQL());
+                resultSetHandler.addExecutedStatement(getSQL(), getCurrentExecutionDuration());
                 return cloneAndSetMultipleResultSets(results, params);
             }
         }
@@ -187,11 +188,11 @@ public class MockPreparedStatement extends MockStatement implements PreparedStat
             if(null == result)
             	return new MockResultSet(String.valueOf(Math.random()));
             else {
-                resultSetHandler.addExecutedStatement(getSQL());
+                resultSetHandler.addExecutedStatement(getSQL(), getCurrentExecutionDuration());
                 return cloneAndSetSingleResultSet(result, params);
             }
         }
-        ResultSet superResultSet = super.executeQuery(getSQL());
+        ResultSet superResultSet = super.executeQueryWithoutLatency(getSQL());
         setGeneratedKeysResultSet(sql, params);
         return superResultSet;
     }
@@ -231,6 +232,7 @@ public class MockPreparedStatement extends MockStatement implements PreparedStat
     
     protected int executeUpdate(Map params) throws SQLException
     {
+        simulateLatency(getSQL());
         SQLException exception = resultSetHandler.getSQLException(sql, params);
         if(null != exception)
         {
@@ -247,7 +249,7 @@ public class MockPreparedStatement extends MockStatement implements PreparedStat
             Integer[] updateCounts = resultSetHandler.getUpdateCounts(getSQL(), params);
             if(null != updateCounts)
             {
-                resultSetHandler.addExecutedStatement(getSQL());
+                resultSetHandler.addExecutedStatement(getSQL(), getCurrentExecutionDuration());
                 return setMultipleUpdateCounts((int[])ArrayUtil.convertToPrimitiveArray(updateCounts), params);
             }
         }
@@ -256,11 +258,11 @@ public class MockPreparedStatement extends MockStatement implements PreparedStat
             Integer updateCount = resultSetHandler.getUpdateCount(getSQL(), params);
             if(null != updateCount)
             {
-                resultSetHandler.addExecutedStatement(getSQL());
+                resultSetHandler.addExecutedStatement(getSQL(), getCurrentExecutionDuration());
                 return setSingleUpdateCount(updateCount.intValue(), params);
             }
         }
-        int superUpdateCount = super.executeUpdate(getSQL());
+        int superUpdateCount = super.executeUpdateWithoutLatency(getSQL());
         setGeneratedKeysResultSet(sql, params);
         return superUpdateCount;
     }
@@ -288,29 +290,69 @@ public class MockPreparedStatement extends MockStatement implements PreparedStat
         return executeBatch(this.batchParameters);
     }
     
+    /**
+     * Executes the specified parameter sets as a batch. The SQL string
+     * is matched only once for the whole batch, the parameter sets are
+     * matched in bulk (see {@link AbstractParameterResultSetHandler#getBatchUpdateCounts})
+     * and the executed parameter sets are recorded as one block. The latency
+     * is simulated once for the batch.
+     * @param batchParams the <code>List</code> of parameter <code>Map</code> objects
+     * @return the update counts
+     * @throws SQLException if a command of the batch fails
+     */
     protected int[] executeBatch(List batchParams) throws SQLException
     {
+        if(isQuery(getSQL()))
+        {
+            return executeQueryBatch(batchParams);
+        }
         int[] results = new int[batchParams.size()];
+        if(results.length == 0) return results;
+        simulateLatency(getSQL());
+        SQLException[] exceptions = resultSetHandler.getBatchSQLExceptions(getSQL(), batchParams);
+        int[] updateCounts = resultSetHandler.getBatchUpdateCounts(getSQL(), batchParams);
+        List executedParams = new ArrayList(results.length);
+        int lastExecuted = -1;
         SQLException exception = null;
         for(int ii = 0; ii < results.length; ii++)
         {
-            if(isQuery(getSQL()))
+            if(null != exceptions[ii])
             {
-                exception = prepareFailedResult(results, ii, "SQL " + getSQL() + " in the list of batches returned a ResultSet.", null);
+                exception = prepareFailedResult(results, ii, null, exceptions[ii]);
+                if(!resultSetHandler.getContinueProcessingOnBatchFailure()) break;
             }
             else
             {
-                try
-                {
-                    Map currentParameters = (Map)batchParams.get(ii);
-                    results[ii] = executeUpdate(currentParameters);
-                } 
-                catch(SQLException exc)
-                {
-                    exception = prepareFailedResult(results, ii, null, exc);
-                }
+                results[ii] = updateCounts[ii];
+                executedParams.add(batchParams.get(ii));
+                lastExecuted = ii;
+            }
+        }
+        resultSetHandler.addParameterSetsForExecutedBatch(getSQL(), executedParams);
+        resultSetHandler.addExecutedStatements(getSQL(), executedParams.size(), getCurrentExecutionDuration());
+        if(lastExecuted >= 0)
+        {
+            setSingleUpdateCount(results[lastExecuted], (Map)batchParams.get(lastExecuted));
+        }
+        if(null != exception)
+        {
+            if(!resultSetHandler.getContinueProcessingOnBatchFailure())
+            {
+                throw exception;
             }
-            if(null != exception && !resultSetHandler.getContinueProcessingOnBatchFailure())
+            throw new BatchUpdateException(exception.getMessage(), exception.getSQLState(), exception.getErrorCode(), results);
+        }
+        return results;
+    }
+    
+    private int[] executeQueryBatch(List batchParams) throws SQLException
+    {
+        int[] results = new int[batchParams.size()];
+        SQLException exception = null;
+        for(int ii = 0; ii < results.length; ii++)
+        {
+            exception = prepareFailedResult(results, ii, "SQL " + getSQL() + " in the list of batches returned a ResultSet.", null);
+            if(!resultSetHandler.getContinueProcessingOnBatchFailure())
             {
                 throw exception;
             }
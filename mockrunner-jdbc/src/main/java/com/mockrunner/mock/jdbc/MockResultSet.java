@@ -6,6 +6,7 @@ import java.io.Reader;
 import java.io.StringReader;
 import java.io.UnsupportedEncodingException;
 import java.math.BigDecimal;
+import java.math.BigInteger;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.sql.Array;
@@ -25,13 +26,19 @@ import java.sql.Time;
 import java.sql.Timestamp;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Calendar;
 import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import com.mockrunner.base.NestedApplicationException;
+import com.mockrunner.jdbc.Clock;
+import com.mockrunner.jdbc.ColumnVector;
 import com.mockrunner.jdbc.ParameterUtil;
 import com.mockrunner.jdbc.SQLUtil;
 import com.mockrunner.util.common.CaseAwareMap;
@@ -59,9 +66,13 @@ public class MockResultSet implements ResultSet, Cloneable
     private Map columnMapCopy;
     private Map insertRow;
     private List columnNameList;
+    private List columnList;
+    private List columnListCopy;
     private List updatedRows;
     private List deletedRows;
     private List insertedRows;
+    private boolean flagsShared;
+    private Map sharedColumns;
     private int cursor;
     private boolean isCursorInInsertRow;
     private boolean wasNull;
@@ -75,6 +86,13 @@ public class MockResultSet implements ResultSet, Cloneable
     private ResultSetMetaData resultSetMetaData;
     private boolean closed;
     private boolean columnsCaseSensitive;
+    private boolean columnarStorage;
+    private long rowFetchLatency = 0;
+    private Clock clock;
+    private boolean readTracking;
+    private int numberRowsRead;
+    private BitSet readColumnIndices;
+    private Set readColumnNames;
     
     public MockResultSet(String id)
     {
@@ -96,9 +114,12 @@ public class MockResultSet implements ResultSet, Cloneable
         updatedRows = new ArrayList();
         deletedRows = new ArrayList();
         insertedRows = new ArrayList();
+        flagsShared = false;
+        sharedColumns = new IdentityHashMap();
         cursor = -1;
         wasNull = false;
         closed = false;
+        resetReadTracking();
         isCursorInInsertRow = false;
         isDatabaseView = false;
         resultSetMetaData = null;
@@ -117,26 +138,73 @@ public class MockResultSet implements ResultSet, Cloneable
         this.columnsCaseSensitive = columnsCaseSensitive;
         init();
     }
+    
+    /**
+     * Set if the column data is stored in columnar format. Default is
+     * <code>false</code>. If set to <code>true</code>, each column is
+     * stored in a {@link com.mockrunner.jdbc.ColumnVector}, i.e. columns
+     * that only contain <code>Integer</code>, <code>Long</code>,
+     * <code>Double</code> or <code>byte[]</code> values are kept in
+     * primitive arrays instead of <code>List</code> objects with
+     * wrapper objects. The numeric <code>get</code> methods read such
+     * columns without creating wrapper objects. This reduces memory
+     * consumption and speeds up large <code>ResultSet</code> objects.
+     * The data of the <code>ResultSet</code> is preserved when
+     * switching this attribute.
+     * @param columnarStorage use columnar storage
+     */
+    public void setColumnarStorage(boolean columnarStorage)
+    {
+        if(this.columnarStorage == columnarStorage) return;
+        this.columnarStorage = columnarStorage;
+        columnMap = convertColumnDataMap(columnMap);
+        columnMapCopy = convertColumnDataMap(columnMapCopy);
+        sharedColumns.clear();
+        indexColumns();
+    }
+    
+    /**
+     * Returns if the column data is stored in columnar format.
+     * See {@link #setColumnarStorage}.
+     * @return <code>true</code> if columnar storage is used,
+     *         <code>false</code> otherwise
+     */
+    public boolean isColumnarStorage()
+    {
+        return columnarStorage;
+    }
 
     /**
      * Copies this <code>ResultSet</code>. The data of the
      * <code>ResultSet</code> is copied using the
      * {@link com.mockrunner.jdbc.ParameterUtil#copyParameter}
-     * method.
+     * method. The copy is done lazily. The copy and this
+     * <code>ResultSet</code> share the column data until one
+     * of them modifies a column (e.g. with an <code>update</code>
+     * method, {@link #insertRow} or {@link #deleteRow}). Only the
+     * modified column is copied then. A column that contains
+     * mutable objects (e.g. a <code>Blob</code> or a <code>byte[]</code>)
+     * is copied as well, when one of these objects is read for the
+     * first time. So reading strings and numbers from a copy does
+     * not copy any data.
+     * Cloning is synchronized, so a prepared <code>ResultSet</code>
+     * can be cloned by statements of multiple threads.
      * @return a copy of this <code>ResultSet</code>
      */
-    public Object clone()
+    public synchronized Object clone()
     {
         try
         {       
             MockResultSet copy = (MockResultSet)super.clone();
             copy.columnNameList = new ArrayList(columnNameList);
-            copy.updatedRows = new ArrayList(updatedRows);
-            copy.deletedRows = new ArrayList(deletedRows);
-            copy.insertedRows = new ArrayList(insertedRows);
+            flagsShared = true;
+            copy.flagsShared = true;
             copy.insertRow = copyColumnDataMap(insertRow);
-            copy.columnMap = copyColumnDataMap(columnMap);
-            copy.columnMapCopy = copyColumnDataMap(columnMapCopy);
+            copy.columnMap = shareColumnDataMap(columnMap);
+            copy.columnMapCopy = shareColumnDataMap(columnMapCopy);
+            copy.sharedColumns = new IdentityHashMap(sharedColumns);
+            copy.indexColumns();
+            copy.resetReadTracking();
             if(null != resultSetMetaData && resultSetMetaData instanceof MockResultSetMetaData)
             {
                 copy.resultSetMetaData = (ResultSetMetaData)((MockResultSetMetaData)resultSetMetaData).clone();
@@ -171,6 +239,101 @@ public class MockResultSet implements ResultSet, Cloneable
         return closed;
     }
     
+    /**
+     * Enables or disables the tracking of the read rows and columns
+     * (see {@link #getNumberRowsRead} and {@link #getReadColumnNames}).
+     * A copy created with {@link #clone} keeps the setting.
+     * The statements enable the tracking of the returned copies if
+     * it is enabled for their <code>ResultSet</code> handler (see
+     * {@link com.mockrunner.jdbc.AbstractResultSetHandler#setReadTrackingEnabled}).
+     * Default is <code>false</code>.
+     * @param readTracking enable or disable the read tracking
+     */
+    public void setReadTracking(boolean readTracking)
+    {
+        this.readTracking = readTracking;
+    }
+    
+    /**
+     * Returns if the read rows and columns are tracked.
+     * @return <code>true</code> if the read rows and columns are tracked,
+     *         <code>false</code> otherwise
+     */
+    public boolean isReadTracking()
+    {
+        return readTracking;
+    }
+    
+    /**
+     * Returns the number of rows that were read, i.e. the highest row
+     * number the cursor was positioned on. Moving the cursor to the
+     * last row counts all rows as read, because a driver has to fetch
+     * them. A copy created with {@link #clone} starts with no rows read.
+     * Always <code>0</code>, if the read tracking is disabled
+     * (see {@link #setReadTracking}).
+     * @return the number of read rows
+     */
+    public int getNumberRowsRead()
+    {
+        return numberRowsRead;
+    }
+    
+    /**
+     * Returns the names of the columns that were read with one of the
+     * <code>get</code> methods in the order of the columns. A copy
+     * created with {@link #clone} starts with no columns read.
+     * Always empty, if the read tracking is disabled
+     * (see {@link #setReadTracking}).
+     * @return the <code>List</code> of read column names
+     */
+    public List getReadColumnNames()
+    {
+        List list = new ArrayList();
+        for(int ii = 0; ii < columnNameList.size(); ii++)
+        {
+            String columnName = (String)columnNameList.get(ii);
+            if(readColumnIndices.get(ii) || isColumnNameRead(columnName))
+            {
+                list.add(columnName);
+            }
+        }
+        return list;
+    }
+    
+    private boolean isColumnNameRead(String columnName)
+    {
+        if(readColumnNames.isEmpty()) return false;
+        if(columnsCaseSensitive) return readColumnNames.contains(columnName);
+        Iterator names = readColumnNames.iterator();
+        while(names.hasNext())
+        {
+            if(columnName.equalsIgnoreCase((String)names.next())) return true;
+        }
+        return false;
+    }
+    
+    private void resetReadTracking()
+    {
+        numberRowsRead = 0;
+        readColumnIndices = new BitSet();
+        readColumnNames = new HashSet();
+    }
+    
+    void trackColumnRead(int columnIndex)
+    {
+        if(!readTracking) return;
+        readColumnIndices.set(columnIndex - 1);
+    }
+    
+    private void trackRowRead()
+    {
+        if(!readTracking) return;
+        if(isCurrentRowValid() && cursor >= numberRowsRead)
+        {
+            numberRowsRead = cursor + 1;
+        }
+    }
+    
     /**
      * Sets the <code>ResultSetMetaData</code> for this <code>ResultSet</code>.
      * The specified object will be returned when calling {@link #getMetaData}.
@@ -203,7 +366,10 @@ public class MockResultSet implements ResultSet, Cloneable
             resultSetConcurrency = statement.getResultSetConcurrency();
             resultSetHoldability = statement.getResultSetHoldability();
             fetchSize = statement.getFetchSize();
-            cursorName = ((MockStatement)statement).getCursorName();
+            if(statement instanceof MockStatement)
+            {
+                cursorName = ((MockStatement)statement).getCursorName();
+            }
         }
         catch(SQLException exc)
         {
@@ -211,6 +377,42 @@ public class MockResultSet implements ResultSet, Cloneable
         }
     }
     
+    /**
+     * Sets the time it takes to fetch one row. The rows are fetched
+     * in blocks of the fetch size (or one by one if the fetch size
+     * is 0). The time for a block is spent when the cursor is moved
+     * to the first row of the block with {@link #next}.
+     * Statements call this method for the returned <code>ResultSet</code>
+     * objects, if a {@link com.mockrunner.jdbc.LatencyProfile} is prepared.
+     * @param rowFetchLatency the fetch time per row in milliseconds
+     * @param clock the {@link com.mockrunner.jdbc.Clock} used to wait
+     */
+    public void setRowFetchLatency(long rowFetchLatency, Clock clock)
+    {
+        this.rowFetchLatency = rowFetchLatency;
+        this.clock = clock;
+    }
+    
+    /**
+     * Waits for the fetch time of the specified number of rows.
+     * Does nothing, if no fetch time is set.
+     * @param numberRows the number of fetched rows
+     * @throws SQLException if the thread is interrupted while waiting
+     */
+    protected void simulateFetch(int numberRows) throws SQLException
+    {
+        if(rowFetchLatency <= 0 || numberRows <= 0 || null == clock) return;
+        try
+        {
+            clock.sleep(rowFetchLatency * numberRows);
+        }
+        catch(InterruptedException exc)
+        {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Thread was interrupted while fetching rows");
+        }
+    }
+    
     /**
      * Sets the cursor name. It's not possible to set
      * this in a real <code>ResultSet</code>.
@@ -318,7 +520,7 @@ public class MockResultSet implements ResultSet, Cloneable
         {   
            Object nextValue = values.get(ii);
            String nextColumnName = (String)columnNameList.get(ii);
-           List nextColumnList = (List)columnMap.get(nextColumnName);
+           List nextColumnList = getWritableColumn(columnMap, nextColumnName);
            nextColumnList.add(nextValue);
         }
         adjustColumns();
@@ -419,7 +621,7 @@ public class MockResultSet implements ResultSet, Cloneable
      */
     public void addColumn(String columnName, List values)
     {
-        List column = new ArrayList(values);
+        List column = createColumnList(values);
         columnMap.put(columnName, column);
         columnNameList.add(columnName);
         adjustColumns();
@@ -447,7 +649,17 @@ public class MockResultSet implements ResultSet, Cloneable
     {
         return columnMapCopy.size();
     }
-    
+
+    /**
+     * Returns the names of the columns in the order of
+     * the column indices.
+     * @return the column names as <code>List</code>
+     */
+    public List getColumnNames()
+    {
+        return new ArrayList(columnNameList);
+    }
+
     /**
      * Returns if the row with the specified number was inserted
      * The first row has the number 1.
@@ -607,58 +819,28 @@ public class MockResultSet implements ResultSet, Cloneable
      * the same type (and cannot be equal according to the 
      * {@link com.mockrunner.jdbc.ParameterUtil#compareParameter} method) they
      * will be converted to a string with the <code>toString()</code> method before
-     * comparison.
+     * comparison. Large <code>ResultSet</code> objects are compared in parallel.
+     * Use {@link ResultSetComparator} to get the differing cells.
      * @return <code>true</code> if the two <code>ResultSet</code> objects are equal,
      *         <code>false</code> otherwise
      */
     public boolean isEqual(MockResultSet resultSet)
     {
-        if(null == resultSet) return false;
-        Map thisMap;
-        Map otherMap;
+        return new ResultSetComparator().isEqual(this, resultSet);
+    }
+    
+    /**
+     * Returns the column data used for comparisons, depending on
+     * the setting of <i>databaseView</i>.
+     * @return the column data
+     */
+    Map getComparisonColumnMap()
+    {
         if(isDatabaseView)
         {
-            thisMap = columnMap;    
+            return columnMap;
         }
-        else
-        {
-            thisMap = columnMapCopy;  
-        }
-        if(resultSet.isDatabaseView)
-        {
-            otherMap = resultSet.columnMap;
-        }
-        else
-        {
-            otherMap = resultSet.columnMapCopy;
-        }
-        Iterator keys = thisMap.keySet().iterator();
-        while(keys.hasNext())
-        {
-            String currentKey = (String)keys.next();
-            List thisList =  (List)thisMap.get(currentKey);
-            List otherList =  (List)otherMap.get(currentKey);
-            if(null == otherList) return false;
-            if(thisList.size() != otherList.size()) return false;
-            for(int ii = 0; ii < thisList.size(); ii++)
-            {
-                Object source = thisList.get(ii);
-                Object target = otherList.get(ii);
-                if(null != source && null != target)
-                {
-                    if(!source.getClass().isAssignableFrom(target.getClass()) && !target.getClass().isAssignableFrom(source.getClass()))
-                    {
-                        source = source.toString();
-                        target = target.toString();
-                    }
-                }
-                if(!ParameterUtil.compareParameter(source, target))
-                {
-                    return false;
-                }    
-            }
-        }
-        return true;
+        return columnMapCopy;
     }
     
     /**
@@ -681,16 +863,7 @@ public class MockResultSet implements ResultSet, Cloneable
         for(int ii = 0; ii < columnNameList.size(); ii++)
         {
             String nextColumnName = (String)columnNameList.get(ii);
-            List nextColumnList;
-            if(isDatabaseView)
-            {
-                nextColumnList = (List)columnMap.get(nextColumnName);
-            }
-            else
-            {
-                nextColumnList = (List)columnMapCopy.get(nextColumnName);
-            }
-            list.add(nextColumnList.get(index));
+            list.add(getValue(getCurrentColumnMap(), nextColumnName, index));
         }
         return list;
     }
@@ -723,16 +896,12 @@ public class MockResultSet implements ResultSet, Cloneable
     public List getColumn(String name)
     {
         List list = new ArrayList();
-        List columnList;
-        if(isDatabaseView)
-        {
-            columnList = (List)columnMap.get(name);
-        }
-        else
+        List columnList = (List)getCurrentColumnMap().get(name);
+        if(null == columnList) return null;
+        if(isShared(columnList) && containsMutableValues(columnList))
         {
-            columnList = (List)columnMapCopy.get(name);
+            columnList = getWritableColumn(getCurrentColumnMap(), name);
         }
-        if(null == columnList) return null;
         list.addAll(columnList);
         return list;
     }
@@ -749,10 +918,15 @@ public class MockResultSet implements ResultSet, Cloneable
     
     public Object getObject(int columnIndex) throws SQLException
     {
-        checkColumnBounds(columnIndex);
-        checkRowBounds();
-        String columnName = (String)columnNameList.get(columnIndex - 1);
-        return getObject(columnName);
+        List column = getColumnForRead(columnIndex);
+        Object value = column.get(cursor);
+        if(!isImmutable(value) && isShared(column))
+        {
+            String columnName = (String)columnNameList.get(columnIndex - 1);
+            value = getWritableColumn(getCurrentColumnMap(), columnName).get(cursor);
+        }
+        wasNull = (null == value);
+        return value;
     }
     
     public Object getObject(String columnName) throws SQLException
@@ -760,16 +934,8 @@ public class MockResultSet implements ResultSet, Cloneable
         checkColumnName(columnName);
         checkRowBounds();
         if(rowDeleted()) throw new SQLException("row was deleted");
-        List column;
-        if(isDatabaseView)
-        {
-            column = (List)columnMap.get(columnName);
-        }
-        else
-        {
-            column = (List)columnMapCopy.get(columnName);
-        }
-        Object value = column.get(cursor);
+        if(readTracking) readColumnNames.add(columnName);
+        Object value = getValue(getCurrentColumnMap(), columnName, cursor);
         wasNull = (null == value);
         return value;
     }
@@ -842,6 +1008,12 @@ public class MockResultSet implements ResultSet, Cloneable
 
     public byte getByte(int columnIndex) throws SQLException
     {
+        ColumnVector vector = getNumericColumnVector(columnIndex);
+        if(null != vector)
+        {
+            wasNull = vector.isNull(cursor);
+            return (byte)vector.getInt(cursor);
+        }
         Object value = getObject(columnIndex);
         if(null != value)
         {
@@ -864,6 +1036,12 @@ public class MockResultSet implements ResultSet, Cloneable
 
     public short getShort(int columnIndex) throws SQLException
     {
+        ColumnVector vector = getNumericColumnVector(columnIndex);
+        if(null != vector)
+        {
+            wasNull = vector.isNull(cursor);
+            return (short)vector.getInt(cursor);
+        }
         Object value = getObject(columnIndex);
         if(null != value)
         {
@@ -886,6 +1064,12 @@ public class MockResultSet implements ResultSet, Cloneable
 
     public int getInt(int columnIndex) throws SQLException
     {
+        ColumnVector vector = getNumericColumnVector(columnIndex);
+        if(null != vector)
+        {
+            wasNull = vector.isNull(cursor);
+            return vector.getInt(cursor);
+        }
         Object value = getObject(columnIndex);
         if(null != value)
         {
@@ -908,6 +1092,12 @@ public class MockResultSet implements ResultSet, Cloneable
 
     public long getLong(int columnIndex) throws SQLException
     {
+        ColumnVector vector = getNumericColumnVector(columnIndex);
+        if(null != vector)
+        {
+            wasNull = vector.isNull(cursor);
+            return vector.getLong(cursor);
+        }
         Object value = getObject(columnIndex);
         if(null != value)
         {
@@ -930,6 +1120,12 @@ public class MockResultSet implements ResultSet, Cloneable
 
     public float getFloat(int columnIndex) throws SQLException
     {
+        ColumnVector vector = getNumericColumnVector(columnIndex);
+        if(null != vector)
+        {
+            wasNull = vector.isNull(cursor);
+            return (float)vector.getDouble(cursor);
+        }
         Object value = getObject(columnIndex);
         if(null != value)
         {
@@ -952,6 +1148,12 @@ public class MockResultSet implements ResultSet, Cloneable
     
     public double getDouble(int columnIndex) throws SQLException
     {
+        ColumnVector vector = getNumericColumnVector(columnIndex);
+        if(null != vector)
+        {
+            wasNull = vector.isNull(cursor);
+            return vector.getDouble(cursor);
+        }
         Object value = getObject(columnIndex);
         if(null != value)
         {
@@ -1513,18 +1715,29 @@ public class MockResultSet implements ResultSet, Cloneable
     {
         if(isCursorInInsertRow) throw new SQLException("cursor is in insert row");
         if(getRowCount() == 0) return false;
+        simulateFetchForRow(cursor + 1);
         cursor++;
         adjustCursor();
+        trackRowRead();
         return isCurrentRowValid();
     }
 
 
+    private void simulateFetchForRow(int row) throws SQLException
+    {
+        if(rowFetchLatency <= 0 || row < 0 || row >= getRowCount()) return;
+        int blockSize = (fetchSize > 0) ? fetchSize : 1;
+        if(row % blockSize != 0) return;
+        simulateFetch(Math.min(blockSize, getRowCount() - row));
+    }
+
     public boolean first() throws SQLException
     {
         if(isCursorInInsertRow) throw new SQLException("cursor is in insert row");
         checkResultSetType();
         if(getRowCount() == 0) return false;
         cursor = 0;
+        trackRowRead();
         return true;
     }
 
@@ -1534,6 +1747,7 @@ public class MockResultSet implements ResultSet, Cloneable
         checkResultSetType();
         if(getRowCount() == 0) return false;
         cursor = getRowCount() - 1;
+        trackRowRead();
         return true;
     }
     
@@ -1545,6 +1759,7 @@ public class MockResultSet implements ResultSet, Cloneable
         if(row > 0) cursor = row - 1;
         if(row < 0) cursor = getRowCount() + row;
         adjustCursor();
+        trackRowRead();
         return isCurrentRowValid();
     }
 
@@ -1555,6 +1770,7 @@ public class MockResultSet implements ResultSet, Cloneable
         if(getRowCount() == 0) return false;
         cursor += rows;
         adjustCursor();
+        trackRowRead();
         return isCurrentRowValid();
     }
 
@@ -1583,11 +1799,10 @@ public class MockResultSet implements ResultSet, Cloneable
             return;
         }
         this.fetchDirection = fetchDirection;
-        Iterator columns = columnMapCopy.values().iterator();
-        while(columns.hasNext())
+        for(int ii = 0; ii < columnNameList.size(); ii++)
         {
-            List column = (List)columns.next();
-            Collections.reverse(column);
+            String nextColumnName = (String)columnNameList.get(ii);
+            Collections.reverse(getWritableColumn(columnMapCopy, nextColumnName));
         }
         if(-1 != cursor) cursor = getRowCount() - cursor - 1;
     }
@@ -1669,7 +1884,7 @@ public class MockResultSet implements ResultSet, Cloneable
         }
         else
         {
-            List column = (List)columnMapCopy.get(columnName);
+            List column = getWritableColumn(columnMapCopy, columnName);
             column.set(cursor, value);
         }
     }
@@ -2116,6 +2331,7 @@ public class MockResultSet implements ResultSet, Cloneable
         checkResultSetConcurrency();
         checkRowBounds();
         updateRow(cursor, true);
+        ensureFlagsWritable();
         updatedRows.set(cursor, new Boolean(true));
     }
 
@@ -2125,6 +2341,7 @@ public class MockResultSet implements ResultSet, Cloneable
         checkResultSetConcurrency();
         checkRowBounds();
         deleteRow(cursor);
+        ensureFlagsWritable();
         deletedRows.set(cursor, new Boolean(true));
     }
 
@@ -2139,6 +2356,7 @@ public class MockResultSet implements ResultSet, Cloneable
         if(rowDeleted()) throw new SQLException("row was deleted");
         checkRowBounds();
         updateRow(cursor, false);
+        ensureFlagsWritable();
         updatedRows.set(cursor, new Boolean(false));
     }
 
@@ -2171,6 +2389,30 @@ public class MockResultSet implements ResultSet, Cloneable
         }
     }
     
+    private List getColumnForRead(int columnIndex) throws SQLException
+    {
+        checkColumnBounds(columnIndex);
+        checkRowBounds();
+        if(rowDeleted()) throw new SQLException("row was deleted");
+        trackColumnRead(columnIndex);
+        if(isDatabaseView)
+        {
+            return (List)columnList.get(columnIndex - 1);
+        }
+        return (List)columnListCopy.get(columnIndex - 1);
+    }
+    
+    private ColumnVector getNumericColumnVector(int columnIndex) throws SQLException
+    {
+        if(!columnarStorage) return null;
+        List column = getColumnForRead(columnIndex);
+        if(column instanceof ColumnVector && ((ColumnVector)column).isNumeric())
+        {
+            return (ColumnVector)column;
+        }
+        return null;
+    }
+    
     private void checkColumnBounds(int columnIndex) throws SQLException
     {
         if(!(columnIndex - 1 < columnNameList.size()))
@@ -2223,12 +2465,13 @@ public class MockResultSet implements ResultSet, Cloneable
         while(columnNames.hasNext())
         {
             String currentColumnName = (String)columnNames.next();
-            List copyColumn = (List)columnMapCopy.get(currentColumnName);
-            List databaseColumn = (List)columnMap.get(currentColumnName);
+            List copyColumn = getWritableColumn(columnMapCopy, currentColumnName);
+            List databaseColumn = getWritableColumn(columnMap, currentColumnName);
             List sourceColumn = (List)insertRow.get(currentColumnName);
             copyColumn.add(index, ParameterUtil.copyParameter(sourceColumn.get(0)));
             databaseColumn.add(index, ParameterUtil.copyParameter(sourceColumn.get(0)));  
         }
+        ensureFlagsWritable();
         updatedRows.add(index, new Boolean(false));
         deletedRows.add(index, new Boolean(false));
         insertedRows.add(index, new Boolean(true));
@@ -2240,8 +2483,8 @@ public class MockResultSet implements ResultSet, Cloneable
         while(columnNames.hasNext())
         {
             String currentColumnName = (String)columnNames.next();
-            List copyColumn = (List)columnMapCopy.get(currentColumnName);
-            List databaseColumn = (List)columnMap.get(currentColumnName);
+            List copyColumn = getWritableColumn(columnMapCopy, currentColumnName);
+            List databaseColumn = getWritableColumn(columnMap, currentColumnName);
             copyColumn.set(index, null);
             databaseColumn.set(index, null);
         }
@@ -2258,12 +2501,12 @@ public class MockResultSet implements ResultSet, Cloneable
             if(toDatabase)
             {
                 sourceColumn = (List)columnMapCopy.get(currentColumnName);
-                targetColumn = (List)columnMap.get(currentColumnName);
+                targetColumn = getWritableColumn(columnMap, currentColumnName);
             }
             else
             {
                 sourceColumn = (List)columnMap.get(currentColumnName);
-                targetColumn = (List)columnMapCopy.get(currentColumnName);
+                targetColumn = getWritableColumn(columnMapCopy, currentColumnName);
             } 
             targetColumn.set(index, ParameterUtil.copyParameter(sourceColumn.get(index)));
         }
@@ -2290,16 +2533,21 @@ public class MockResultSet implements ResultSet, Cloneable
             List nextColumn = (List)columns.next();
             rowCount = Math.max(rowCount, nextColumn.size());
         }
-        columns = columnMap.values().iterator();
-        while(columns.hasNext())
+        for(int ii = 0; ii < columnNameList.size(); ii++)
         {
-            List nextColumn = (List)columns.next();
-            CollectionUtil.fillList(nextColumn, rowCount);
+            String nextColumnName = (String)columnNameList.get(ii);
+            List nextColumn = (List)columnMap.get(nextColumnName);
+            if(nextColumn.size() < rowCount)
+            {
+                CollectionUtil.fillList(getWritableColumn(columnMap, nextColumnName), rowCount);
+            }
         }
     }
     
     private void adjustFlags()
     {
+        if(insertedRows.size() >= getRowCount()) return;
+        ensureFlagsWritable();
         for(int ii = updatedRows.size(); ii < getRowCount(); ii++)
         {
             updatedRows.add(new Boolean(false));
@@ -2328,7 +2576,123 @@ public class MockResultSet implements ResultSet, Cloneable
     
     private void copyColumnMap()
     {
+        if(null != columnMapCopy)
+        {
+            Iterator columns = columnMapCopy.values().iterator();
+            while(columns.hasNext())
+            {
+                sharedColumns.remove(columns.next());
+            }
+        }
         columnMapCopy = copyColumnDataMap(columnMap);
+        indexColumns();
+    }
+    
+    private Map getCurrentColumnMap()
+    {
+        if(isDatabaseView)
+        {
+            return columnMap;
+        }
+        return columnMapCopy;
+    }
+    
+    private Object getValue(Map columnMap, String columnName, int index)
+    {
+        List column = (List)columnMap.get(columnName);
+        Object value = column.get(index);
+        if(isImmutable(value) || !isShared(column)) return value;
+        return getWritableColumn(columnMap, columnName).get(index);
+    }
+    
+    private boolean isShared(List column)
+    {
+        return sharedColumns.containsKey(column);
+    }
+    
+    private List getWritableColumn(Map columnMap, String columnName)
+    {
+        List column = (List)columnMap.get(columnName);
+        if(!isShared(column)) return column;
+        List copy = copyColumnData(column);
+        sharedColumns.remove(column);
+        columnMap.put(columnName, copy);
+        indexColumns();
+        return copy;
+    }
+    
+    private void ensureFlagsWritable()
+    {
+        if(!flagsShared) return;
+        updatedRows = new ArrayList(updatedRows);
+        deletedRows = new ArrayList(deletedRows);
+        insertedRows = new ArrayList(insertedRows);
+        flagsShared = false;
+    }
+    
+    private Map shareColumnDataMap(Map columnMap)
+    {
+        Map shared = createCaseAwareMap();
+        Iterator columns = columnMap.keySet().iterator();
+        while(columns.hasNext())
+        {
+            String nextKey = (String)columns.next();
+            List nextColumnList = (List)columnMap.get(nextKey);
+            sharedColumns.put(nextColumnList, Boolean.TRUE);
+            shared.put(nextKey, nextColumnList);
+        }
+        return shared;
+    }
+    
+    private boolean containsMutableValues(List column)
+    {
+        if(column instanceof ColumnVector && ((ColumnVector)column).isNumeric()) return false;
+        for(int ii = 0; ii < column.size(); ii++)
+        {
+            if(!isImmutable(column.get(ii))) return true;
+        }
+        return false;
+    }
+    
+    private boolean isImmutable(Object value)
+    {
+        return null == value || value instanceof String || value instanceof Integer ||
+               value instanceof Long || value instanceof Double || value instanceof Boolean ||
+               value instanceof Float || value instanceof Short || value instanceof Byte ||
+               value instanceof Character || value instanceof BigDecimal || value instanceof BigInteger;
+    }
+    
+    private void indexColumns()
+    {
+        columnList = new ArrayList(columnNameList.size());
+        columnListCopy = new ArrayList(columnNameList.size());
+        for(int ii = 0; ii < columnNameList.size(); ii++)
+        {
+            String nextColumnName = (String)columnNameList.get(ii);
+            columnList.add(columnMap.get(nextColumnName));
+            columnListCopy.add(columnMapCopy.get(nextColumnName));
+        }
+    }
+    
+    private Map convertColumnDataMap(Map columnMap)
+    {
+        Map converted = createCaseAwareMap();
+        Iterator columns = columnMap.keySet().iterator();
+        while(columns.hasNext())
+        {
+            String nextKey = (String)columns.next();
+            converted.put(nextKey, createColumnList((List)columnMap.get(nextKey)));
+        }
+        return converted;
+    }
+    
+    private List createColumnList(List values)
+    {
+        if(columnarStorage)
+        {
+            return new ColumnVector(values);
+        }
+        return new ArrayList(values);
     }
     
     private String determineValidColumnName()
@@ -2348,19 +2712,28 @@ public class MockResultSet implements ResultSet, Cloneable
         Iterator columns = columnMap.keySet().iterator();
         while(columns.hasNext())
         {
-            List copyList = new ArrayList();
             String nextKey = (String)columns.next();
             List nextColumnList = (List)columnMap.get(nextKey);
-            for(int ii = 0; ii < nextColumnList.size(); ii++)
-            {
-                Object copyParameter = ParameterUtil.copyParameter(nextColumnList.get(ii));
-                copyList.add(copyParameter);
-            }
-            copy.put(nextKey, copyList);
+            copy.put(nextKey, copyColumnData(nextColumnList));
         }
         return copy;
     }
     
+    private List copyColumnData(List column)
+    {
+        if(column instanceof ColumnVector)
+        {
+            return ((ColumnVector)column).copy();
+        }
+        List copyList = new ArrayList(column.size());
+        for(int ii = 0; ii < column.size(); ii++)
+        {
+            Object copyParameter = ParameterUtil.copyParameter(column.get(ii));
+            copyList.add(copyParameter);
+        }
+        return copyList;
+    }
+    
     private Map createCaseAwareMap()
     {
         return new CaseAwareMap(columnsCaseSensitive);
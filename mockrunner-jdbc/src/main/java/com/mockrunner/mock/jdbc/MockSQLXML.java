@@ -48,26 +48,43 @@ import com.mockrunner.util.common.StreamUtil;
 /**
  * Mock implementation of <code>MockSQLXML</code>.
  * Uses JDOM for XML handling.
+ * <br><br>
+ * The parsers, factories and outputters are not created per instance.
+ * They are created when they are needed for the first time and
+ * cached per thread, so they are shared by all instances used by
+ * the same thread. The <code>create</code> methods are called whenever
+ * such an object is needed and may be overridden to provide custom
+ * implementations.
+ * <br><br>
+ * The parsed document and its string and byte representations are
+ * cached, so each of them is computed at most once for the same
+ * content. Content that is written with a stream or a
+ * <code>Result</code> can still change after the write method
+ * returned and is converted whenever it is read. A W3C document
+ * passed to the constructor is converted when it is read for the
+ * first time, later changes of the document are not reflected.
  */
 public class MockSQLXML implements SQLXML, Cloneable
 {
-    private DocumentBuilder domParser;
-    private SAXParser saxParser;
-    private XMLOutputFactory outputFactory;
-    private XMLInputFactory inputFactory;
-    private SAXBuilder jdomParser;
-    private DOMBuilder jdomDOMBuilder;
-    private XMLOutputter xmlPrintOutputter;
-    private DOMOutputter domOutputter;
-    private XMLOutputter xmlCompareOutputter;
+    private final static ThreadLocal xmlObjects = new ThreadLocal()
+    {
+        protected Object initialValue()
+        {
+            return new XMLObjects();
+        }
+    };
+    
     private Object content;
+    private Document jdomDocument;
+    private String printString;
+    private byte[] printBytes;
+    private String compareString;
     private boolean wasFreeCalled;
     private boolean wasWriteMethodCalled;
     private boolean wasReadMethodCalled;
 
     public MockSQLXML()
     {
-        createXMLObjects();
         content = null;
         wasFreeCalled = false;
         wasWriteMethodCalled = false;
@@ -76,7 +93,6 @@ public class MockSQLXML implements SQLXML, Cloneable
     
     public MockSQLXML(String stringContent)
     {
-        createXMLObjects();
         content = stringContent;
         wasFreeCalled = false;
         wasWriteMethodCalled = false;
@@ -85,7 +101,6 @@ public class MockSQLXML implements SQLXML, Cloneable
     
     public MockSQLXML(Reader readerContent)
     {
-        createXMLObjects();
         content = StreamUtil.getReaderAsString(readerContent);
         wasFreeCalled = false;
         wasWriteMethodCalled = false;
@@ -94,7 +109,6 @@ public class MockSQLXML implements SQLXML, Cloneable
     
     public MockSQLXML(InputStream inputStreamContent)
     {
-        createXMLObjects();
         content = StreamUtil.getStreamAsByteArray(inputStreamContent);
         wasFreeCalled = false;
         wasWriteMethodCalled = false;
@@ -103,30 +117,36 @@ public class MockSQLXML implements SQLXML, Cloneable
     
     public MockSQLXML(org.w3c.dom.Document documentContent)
     {
-        createXMLObjects();
         content = documentContent;
         wasFreeCalled = false;
         wasWriteMethodCalled = false;
         wasReadMethodCalled = false;
     }
     
+    /**
+     * Returns the <code>DocumentBuilder</code> used to create
+     * W3C documents. The default implementation returns the
+     * instance cached for the current thread.
+     * @return the <code>DocumentBuilder</code>
+     */
     protected DocumentBuilder createDocumentBuilder()
     {
-        try
-        {
-            return DocumentBuilderFactory.newInstance().newDocumentBuilder();
-        } 
-        catch(ParserConfigurationException exc)
-        {
-            throw new NestedApplicationException(exc);
-        }
+        return getXMLObjects().getDocumentBuilder();
     }
     
+    /**
+     * Returns the <code>SAXParser</code> that provides the
+     * <code>XMLReader</code> of a <code>SAXSource</code>. The reader
+     * is handed out to the caller, so the default implementation
+     * creates a new parser with the factory cached for the
+     * current thread.
+     * @return the <code>SAXParser</code>
+     */
     protected SAXParser createSAXParser()
     {
         try
         {
-            return SAXParserFactory.newInstance().newSAXParser();
+            return getXMLObjects().getSAXParserFactory().newSAXParser();
         } 
         catch(Exception exc)
         {
@@ -134,44 +154,81 @@ public class MockSQLXML implements SQLXML, Cloneable
         }
     }
     
+    /**
+     * Returns the <code>XMLOutputFactory</code> used for
+     * <code>StAXResult</code> objects. The default implementation
+     * returns the instance cached for the current thread.
+     * @return the <code>XMLOutputFactory</code>
+     */
     protected XMLOutputFactory createXMLOutputFactory()
     {
-        return XMLOutputFactory.newInstance();
+        return getXMLObjects().getXMLOutputFactory();
     }
     
+    /**
+     * Returns the <code>XMLInputFactory</code> used for
+     * <code>StAXSource</code> objects. The default implementation
+     * returns the instance cached for the current thread.
+     * @return the <code>XMLInputFactory</code>
+     */
     protected XMLInputFactory createXMLInputFactory()
     {
-        return XMLInputFactory.newInstance();
+        return getXMLObjects().getXMLInputFactory();
     }
     
+    /**
+     * Returns the JDOM <code>SAXBuilder</code> used to parse the
+     * content. The default implementation returns the instance
+     * cached for the current thread.
+     * @return the <code>SAXBuilder</code>
+     */
     protected SAXBuilder createJDOMSAXBuilder()
     {
-        SAXBuilder builder = new SAXBuilder();
-        builder.setValidation(false);
-        return builder;
+        return getXMLObjects().getJDOMSAXBuilder();
     }
     
+    /**
+     * Returns the JDOM <code>DOMBuilder</code> used to convert
+     * W3C documents. The default implementation returns the instance
+     * cached for the current thread.
+     * @return the <code>DOMBuilder</code>
+     */
     protected DOMBuilder createJDOMDOMBuilder()
     {
-        return new DOMBuilder();
+        return getXMLObjects().getJDOMDOMBuilder();
     }
     
+    /**
+     * Returns the <code>XMLOutputter</code> used to print the
+     * content. The default implementation returns the instance
+     * cached for the current thread.
+     * @return the <code>XMLOutputter</code>
+     */
     protected XMLOutputter createJDOMXMLPrintOutputter()
     {
-        return new XMLOutputter(Format.getPrettyFormat());
+        return getXMLObjects().getJDOMXMLPrintOutputter();
     }
     
+    /**
+     * Returns the <code>XMLOutputter</code> used to compare the
+     * content in {@link #equals} and {@link #hashCode}. The default
+     * implementation returns the instance cached for the current thread.
+     * @return the <code>XMLOutputter</code>
+     */
     protected XMLOutputter createJDOMXMLCompareOutputter()
     {
-        Format format = Format.getCompactFormat();
-        format.setOmitDeclaration(true);
-        format.setOmitEncoding(true);
-        return new XMLOutputter(format);
+        return getXMLObjects().getJDOMXMLCompareOutputter();
     }
     
+    /**
+     * Returns the <code>DOMOutputter</code> used to convert the
+     * content to a W3C document. The default implementation returns
+     * the instance cached for the current thread.
+     * @return the <code>DOMOutputter</code>
+     */
     protected DOMOutputter createJDOMDOMOutputter()
     {
-        return new DOMOutputter();
+        return getXMLObjects().getJDOMDOMOutputter();
     }
     
     /**
@@ -290,7 +347,7 @@ public class MockSQLXML implements SQLXML, Cloneable
             }
             if(SAXSource.class.equals(sourceClass))
             {
-                return new SAXSource(saxParser.getXMLReader(), new InputSource(contentToInputStream()));
+                return new SAXSource(createSAXParser().getXMLReader(), new InputSource(contentToInputStream()));
             }
             if(StAXSource.class.equals(sourceClass))
             {
@@ -322,7 +379,7 @@ public class MockSQLXML implements SQLXML, Cloneable
     {
         verifyWrite();
         wasWriteMethodCalled = true;
-        content = new ByteArrayOutputStream();
+        setContent(new ByteArrayOutputStream());
         return (OutputStream)content;
     }
 
@@ -330,7 +387,7 @@ public class MockSQLXML implements SQLXML, Cloneable
     {
         verifyWrite();
         wasWriteMethodCalled = true;
-        content = new StringWriter();
+        setContent(new StringWriter());
         return (Writer)content;
     }
 
@@ -340,18 +397,18 @@ public class MockSQLXML implements SQLXML, Cloneable
         wasWriteMethodCalled = true;
         if(null == resultClass || StreamResult.class.equals(resultClass))
         {
-            content = new ByteArrayOutputStream();
+            setContent(new ByteArrayOutputStream());
             return new StreamResult((OutputStream)content);
         }
         if(DOMResult.class.equals(resultClass))
         {
-            org.w3c.dom.Document document = domParser.newDocument();
-            content = new DOMResult(document);
+            org.w3c.dom.Document document = createDocumentBuilder().newDocument();
+            setContent(new DOMResult(document));
             return (DOMResult)content;
         }
         if(SAXResult.class.equals(resultClass))
         {
-            content = new SAXHandler();
+            setContent(new SAXHandler());
             return new SAXResult((SAXHandler)content);
         }
         if(StAXResult.class.equals(resultClass))
@@ -360,13 +417,13 @@ public class MockSQLXML implements SQLXML, Cloneable
             ByteArrayOutputStream outStream = new ByteArrayOutputStream();
             try
             {
-                xmlWriter = outputFactory.createXMLStreamWriter(outStream);
+                xmlWriter = createXMLOutputFactory().createXMLStreamWriter(outStream);
             } 
             catch(XMLStreamException exc)
             {
                 throw new SQLException(exc);
             }
-            content = new StreamWriterOutputStreamMapping(xmlWriter, outStream);
+            setContent(new StreamWriterOutputStreamMapping(xmlWriter, outStream));
             return new StAXResult(xmlWriter);
         }
         throw new SQLException(resultClass.getName() + " not supported as Result");
@@ -376,7 +433,7 @@ public class MockSQLXML implements SQLXML, Cloneable
     {
         verifyWrite();
         wasWriteMethodCalled = true;
-        content = value;
+        setContent(value);
     }
     
     public void free() throws SQLException
@@ -425,11 +482,9 @@ public class MockSQLXML implements SQLXML, Cloneable
         if(null == content || null == otherSQLXML.content) return false;
         try
         {
-            Document thisContent = contentToJDOMDocument();
-            Document otherContent = otherSQLXML.contentToJDOMDocument();
-            if(null == thisContent || null == otherContent) return false;
-            String thisContentAsString = xmlCompareOutputter.outputString(thisContent);
-            String otherContentAsString = xmlCompareOutputter.outputString(otherContent);
+            String thisContentAsString = contentToCompareString();
+            String otherContentAsString = otherSQLXML.contentToCompareString();
+            if(null == thisContentAsString || null == otherContentAsString) return false;
             return thisContentAsString.equals(otherContentAsString);
         } 
         catch(Exception exc)
@@ -445,10 +500,9 @@ public class MockSQLXML implements SQLXML, Cloneable
         {
             try
             {
-                Document document = contentToJDOMDocument();
-                if(null == document) return hashCode;
-                String documentAsString = xmlCompareOutputter.outputString(document);
-                if(null != documentAsString) hashCode = (31 * hashCode) + documentAsString.hashCode();
+                String documentAsString = contentToCompareString();
+                if(null == documentAsString) return hashCode;
+                hashCode = (31 * hashCode) + documentAsString.hashCode();
             } 
             catch(Exception exc)
             {
@@ -464,25 +518,19 @@ public class MockSQLXML implements SQLXML, Cloneable
         try
         {
             MockSQLXML other = (MockSQLXML)super.clone();
-            other.domParser = createDocumentBuilder();
-            other.saxParser = createSAXParser();
-            other.outputFactory = createXMLOutputFactory();
-            other.inputFactory = createXMLInputFactory();
-            other.jdomParser = createJDOMSAXBuilder();
-            other.jdomDOMBuilder = createJDOMDOMBuilder();
-            other.xmlPrintOutputter = createJDOMXMLPrintOutputter();
-            other.domOutputter = createJDOMDOMOutputter();
-            other.xmlCompareOutputter = createJDOMXMLCompareOutputter();
             if(null != content)
             {
                 try
                 {
                     Document document = contentToJDOMDocument();
-                    other.content = document.clone();
+                    other.setContent(document.clone());
+                    other.printString = printString;
+                    other.printBytes = printBytes;
+                    other.compareString = compareString;
                 } 
                 catch(Exception exc)
                 {
-                    other.content = null;
+                    other.setContent(null);
                 }
             }
             return other;
@@ -515,17 +563,27 @@ public class MockSQLXML implements SQLXML, Cloneable
         return buffer.toString();
     }
     
-    private void createXMLObjects()
+    private XMLObjects getXMLObjects()
     {
-        domParser = createDocumentBuilder();
-        saxParser = createSAXParser();
-        outputFactory = createXMLOutputFactory();
-        inputFactory = createXMLInputFactory();
-        jdomParser = createJDOMSAXBuilder();
-        jdomDOMBuilder = createJDOMDOMBuilder();
-        xmlPrintOutputter = createJDOMXMLPrintOutputter();
-        domOutputter = createJDOMDOMOutputter();
-        xmlCompareOutputter = createJDOMXMLCompareOutputter();
+        return (XMLObjects)xmlObjects.get();
+    }
+    
+    private void setContent(Object content)
+    {
+        this.content = content;
+        jdomDocument = null;
+        printString = null;
+        printBytes = null;
+        compareString = null;
+    }
+    
+    /**
+     * Content written with a stream or a <code>Result</code> may still
+     * change, all other content is converted only once.
+     */
+    private boolean isContentCacheable()
+    {
+        return (content instanceof String) || (content instanceof byte[]) || (content instanceof Document) || (content instanceof org.w3c.dom.Document) || (content instanceof StreamWriterOutputStreamMapping);
     }
 
     private void verifyWrite() throws SQLException
@@ -550,6 +608,18 @@ public class MockSQLXML implements SQLXML, Cloneable
     
     private Document contentToJDOMDocument() throws Exception
     {
+        if(null != jdomDocument) return jdomDocument;
+        Document jdomDocument = parseContent();
+        if(isContentCacheable())
+        {
+            this.jdomDocument = jdomDocument;
+        }
+        return jdomDocument;
+    }
+    
+    private Document parseContent() throws Exception
+    {
+        SAXBuilder jdomParser = createJDOMSAXBuilder();
         Document jdomDocument = null;
         if(content instanceof Document)
         {
@@ -573,7 +643,7 @@ public class MockSQLXML implements SQLXML, Cloneable
         }
         else if(content instanceof org.w3c.dom.Document)
         {
-            jdomDocument = jdomDOMBuilder.build((org.w3c.dom.Document)content);
+            jdomDocument = createJDOMDOMBuilder().build((org.w3c.dom.Document)content);
         }
         else if(content instanceof DOMResult)
         {
@@ -585,10 +655,10 @@ public class MockSQLXML implements SQLXML, Cloneable
             }
             else
             {
-                document = domParser.newDocument(); 
+                document = createDocumentBuilder().newDocument(); 
                 document.appendChild(document.importNode(node, true));
             }
-            jdomDocument = jdomDOMBuilder.build(document);
+            jdomDocument = createJDOMDOMBuilder().build(document);
         }
         else if(content instanceof SAXHandler)
         {
@@ -607,33 +677,62 @@ public class MockSQLXML implements SQLXML, Cloneable
     
     private String contentToString() throws Exception
     {
+        if(null != printString) return printString;
         Document jdomDocument = contentToJDOMDocument();
-        if(null != jdomDocument)
+        if(null == jdomDocument) return null;
+        String printString = createJDOMXMLPrintOutputter().outputString(jdomDocument);
+        if(isContentCacheable())
         {
-            return xmlPrintOutputter.outputString(jdomDocument);
+            this.printString = printString;
         }
-        return null;
+        return printString;
     }
     
-    private Reader contentToReader() throws Exception
+    private byte[] contentToBytes() throws Exception
     {
+        if(null != printBytes) return printBytes;
         Document jdomDocument = contentToJDOMDocument();
-        if(null != jdomDocument)
+        if(null == jdomDocument) return null;
+        ByteArrayOutputStream outStream = new ByteArrayOutputStream();
+        createJDOMXMLPrintOutputter().output(jdomDocument, outStream);
+        outStream.flush();
+        byte[] printBytes = outStream.toByteArray();
+        if(isContentCacheable())
+        {
+            this.printBytes = printBytes;
+        }
+        return printBytes;
+    }
+    
+    private String contentToCompareString() throws Exception
+    {
+        if(null != compareString) return compareString;
+        Document jdomDocument = contentToJDOMDocument();
+        if(null == jdomDocument) return null;
+        String compareString = createJDOMXMLCompareOutputter().outputString(jdomDocument);
+        if(isContentCacheable())
+        {
+            this.compareString = compareString;
+        }
+        return compareString;
+    }
+    
+    private Reader contentToReader() throws Exception
+    {
+        String printString = contentToString();
+        if(null != printString)
         {
-            return new StringReader(xmlPrintOutputter.outputString(jdomDocument));
+            return new StringReader(printString);
         }
         return null;
     }
     
     private InputStream contentToInputStream() throws Exception
     {
-        Document jdomDocument = contentToJDOMDocument();
-        if(null != jdomDocument)
+        byte[] printBytes = contentToBytes();
+        if(null != printBytes)
         {
-            ByteArrayOutputStream outStream = new ByteArrayOutputStream();
-            xmlPrintOutputter.output(jdomDocument, outStream);
-            outStream.flush();
-            return new ByteArrayInputStream(outStream.toByteArray());
+            return new ByteArrayInputStream(printBytes);
         }
         return null;
     }
@@ -643,21 +742,17 @@ public class MockSQLXML implements SQLXML, Cloneable
         Document jdomDocument = contentToJDOMDocument();
         if(null != jdomDocument)
         {
-            return domOutputter.output(jdomDocument);
+            return createJDOMDOMOutputter().output(jdomDocument);
         }
         return null;
     }
     
     private XMLStreamReader contentToXMLStreamReader() throws Exception
     {
-        Document jdomDocument = contentToJDOMDocument();
-        if(null != jdomDocument)
+        byte[] printBytes = contentToBytes();
+        if(null != printBytes)
         {
-            ByteArrayOutputStream outStream = new ByteArrayOutputStream();
-            xmlPrintOutputter.output(jdomDocument, outStream);
-            outStream.flush();
-            InputStream inStream = new ByteArrayInputStream(outStream.toByteArray());
-            return inputFactory.createXMLStreamReader(inStream);
+            return createXMLInputFactory().createXMLStreamReader(new ByteArrayInputStream(printBytes));
         }
         return null;
     }
@@ -683,4 +778,109 @@ public class MockSQLXML implements SQLXML, Cloneable
             return outputStream;
         } 
     }
+    
+    private static class XMLObjects
+    {
+        private DocumentBuilder documentBuilder;
+        private SAXParserFactory saxParserFactory;
+        private XMLOutputFactory outputFactory;
+        private XMLInputFactory inputFactory;
+        private SAXBuilder jdomParser;
+        private DOMBuilder jdomDOMBuilder;
+        private XMLOutputter xmlPrintOutputter;
+        private XMLOutputter xmlCompareOutputter;
+        private DOMOutputter domOutputter;
+        
+        public DocumentBuilder getDocumentBuilder()
+        {
+            if(null == documentBuilder)
+            {
+                try
+                {
+                    documentBuilder = DocumentBuilderFactory.newInstance().newDocumentBuilder();
+                } 
+                catch(ParserConfigurationException exc)
+                {
+                    throw new NestedApplicationException(exc);
+                }
+            }
+            return documentBuilder;
+        }
+        
+        public SAXParserFactory getSAXParserFactory()
+        {
+            if(null == saxParserFactory)
+            {
+                saxParserFactory = SAXParserFactory.newInstance();
+            }
+            return saxParserFactory;
+        }
+        
+        public XMLOutputFactory getXMLOutputFactory()
+        {
+            if(null == outputFactory)
+            {
+                outputFactory = XMLOutputFactory.newInstance();
+            }
+            return outputFactory;
+        }
+        
+        public XMLInputFactory getXMLInputFactory()
+        {
+            if(null == inputFactory)
+            {
+                inputFactory = XMLInputFactory.newInstance();
+            }
+            return inputFactory;
+        }
+        
+        public SAXBuilder getJDOMSAXBuilder()
+        {
+            if(null == jdomParser)
+            {
+                jdomParser = new SAXBuilder();
+                jdomParser.setValidation(false);
+            }
+            return jdomParser;
+        }
+        
+        public DOMBuilder getJDOMDOMBuilder()
+        {
+            if(null == jdomDOMBuilder)
+            {
+                jdomDOMBuilder = new DOMBuilder();
+            }
+            return jdomDOMBuilder;
+        }
+        
+        public XMLOutputter getJDOMXMLPrintOutputter()
+        {
+            if(null == xmlPrintOutputter)
+            {
+                xmlPrintOutputter = new XMLOutputter(Format.getPrettyFormat());
+            }
+            return xmlPrintOutputter;
+        }
+        
+        public XMLOutputter getJDOMXMLCompareOutputter()
+        {
+            if(null == xmlCompareOutputter)
+            {
+                Format format = Format.getCompactFormat();
+                format.setOmitDeclaration(true);
+                format.setOmitEncoding(true);
+                xmlCompareOutputter = new XMLOutputter(format);
+            }
+            return xmlCompareOutputter;
+        }
+        
+        public DOMOutputter getJDOMDOMOutputter()
+        {
+            if(null == domOutputter)
+            {
+                domOutputter = new DOMOutputter();
+            }
+            return domOutputter;
+        }
+    }
 }
@@ -4,6 +4,7 @@ import java.sql.BatchUpdateException;
 import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
 import java.sql.SQLWarning;
 import java.sql.Statement;
 import java.util.ArrayList;
@@ -11,6 +12,7 @@ import java.util.List;
 
 import com.mockrunner.base.NestedApplicationException;
 import com.mockrunner.jdbc.AbstractResultSetHandler;
+import com.mockrunner.jdbc.LatencyProfile;
 import com.mockrunner.jdbc.SQLUtil;
 import com.mockrunner.util.common.ArrayUtil;
 
@@ -39,6 +41,11 @@ public class MockStatement implements Statement
     private boolean poolable = false;
     private boolean closeOnCompletition = false;
     private Connection connection;
+    private LatencyProfile currentLatencyProfile = null;
+    private long currentExecutionDuration = 0;
+    private final Object executionLock = new Object();
+    private Thread executingThread = null;
+    private boolean cancelled = false;
     
     public MockStatement(Connection connection)
     {
@@ -94,6 +101,7 @@ public class MockStatement implements Statement
         this.currentUpdateCounts = null;
         this.currentResultSets = resultSets;
         this.currentResultSetIndex = 0;
+        prepareRowFetchLatency(resultSets);
         this.currentUpdateCountIndex = 0;
     }
     
@@ -106,19 +114,118 @@ public class MockStatement implements Statement
         this.currentUpdateCountIndex = 0;
     }
     
+    private void prepareRowFetchLatency(ResultSet[] resultSets)
+    {
+        if(null == resultSets || null == currentLatencyProfile) return;
+        long rowFetchLatency = currentLatencyProfile.getRowFetchLatency();
+        if(rowFetchLatency <= 0) return;
+        for(int ii = 0; ii < resultSets.length; ii++)
+        {
+            if(resultSets[ii] instanceof MockResultSet)
+            {
+                ((MockResultSet)resultSets[ii]).setRowFetchLatency(rowFetchLatency, resultSetHandler.getClock());
+            }
+        }
+    }
+    
+    /**
+     * Simulates the latency prepared for the specified SQL string
+     * (see {@link com.mockrunner.jdbc.AbstractResultSetHandler#prepareLatency}).
+     * Waits for the execution time using the <code>Clock</code> of
+     * the <code>ResultSet</code> handler. If the execution time exceeds the
+     * query timeout, this method waits for the timeout and throws
+     * an <code>SQLTimeoutException</code>. If the statement is cancelled
+     * with {@link #cancel} while waiting, an <code>SQLException</code>
+     * with the SQL state <i>HY008</i> is thrown.
+     * @param sql the SQL string
+     * @throws SQLException if the statement times out or is cancelled
+     */
+    protected void simulateLatency(String sql) throws SQLException
+    {
+        currentExecutionDuration = 0;
+        currentLatencyProfile = resultSetHandler.getLatencyProfile(sql);
+        if(null == currentLatencyProfile) return;
+        long latency = currentLatencyProfile.nextExecutionLatency();
+        long timeout = querySeconds * 1000L;
+        boolean timedOut = (querySeconds > 0) && (latency > timeout);
+        if(timedOut) latency = timeout;
+        synchronized(executionLock)
+        {
+            executingThread = Thread.currentThread();
+            cancelled = false;
+        }
+        boolean interrupted = false;
+        long startTime = resultSetHandler.getClock().currentTimeMillis();
+        try
+        {
+            resultSetHandler.getClock().sleep(latency);
+        }
+        catch(InterruptedException exc)
+        {
+            interrupted = true;
+        }
+        currentExecutionDuration = resultSetHandler.getClock().currentTimeMillis() - startTime;
+        boolean wasCancelled;
+        synchronized(executionLock)
+        {
+            executingThread = null;
+            wasCancelled = cancelled;
+            cancelled = false;
+        }
+        if(wasCancelled)
+        {
+            Thread.interrupted();
+            throw new SQLException("Statement " + sql + " was cancelled", "HY008");
+        }
+        if(interrupted)
+        {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Thread was interrupted while executing statement " + sql);
+        }
+        if(timedOut)
+        {
+            throw new SQLTimeoutException("Statement " + sql + " exceeded the query timeout of " + querySeconds + " seconds", "HYT00");
+        }
+    }
+    
+    /**
+     * Returns the latency that was simulated by the last call
+     * of {@link #simulateLatency} in milliseconds, measured with
+     * the <code>Clock</code> of the <code>ResultSet</code> handler.
+     * Returns <code>0</code>, if no latency was prepared.
+     * @return the duration of the current execution
+     */
+    protected long getCurrentExecutionDuration()
+    {
+        return currentExecutionDuration;
+    }
+    
     public String getCursorName()
     {
         return cursorName;
     }
     
     public ResultSet executeQuery(String sql) throws SQLException
+    {
+        simulateLatency(sql);
+        return executeQueryWithoutLatency(sql);
+    }
+    
+    /**
+     * Executes the specified query without simulating the latency.
+     * Used by subclasses that already simulated the latency.
+     * @param sql the SQL string
+     * @return the <code>ResultSet</code>
+     * @throws SQLException if the statement is prepared to throw an exception
+     */
+    protected ResultSet executeQueryWithoutLatency(String sql) throws SQLException
     {
         SQLException exception = resultSetHandler.getSQLException(sql);
         if(null != exception)
         {
             throw exception;
         }
-        resultSetHandler.addExecutedStatement(sql);
+        resultSetHandler.addExecutedStatement(sql, getCurrentExecutionDuration());
         if(resultSetHandler.hasMultipleResultSets(sql))
         {
             MockResultSet[] results = resultSetHandler.getResultSets(sql);
@@ -186,13 +293,26 @@ public class MockStatement implements Statement
     }
 
     public int executeUpdate(String sql) throws SQLException
+    {
+        simulateLatency(sql);
+        return executeUpdateWithoutLatency(sql);
+    }
+    
+    /**
+     * Executes the specified update without simulating the latency.
+     * Used by subclasses that already simulated the latency.
+     * @param sql the SQL string
+     * @return the update count
+     * @throws SQLException if the statement is prepared to throw an exception
+     */
+    protected int executeUpdateWithoutLatency(String sql) throws SQLException
     {
         SQLException exception = resultSetHandler.getSQLException(sql);
         if(null != exception)
         {
             throw exception;
         }
-        resultSetHandler.addExecutedStatement(sql);
+        resultSetHandler.addExecutedStatement(sql, getCurrentExecutionDuration());
         if(resultSetHandler.hasMultipleUpdateCounts(sql))
         {
             Integer[] returnValues = resultSetHandler.getUpdateCounts(sql);
@@ -405,9 +525,23 @@ public class MockStatement implements Statement
         this.querySeconds = querySeconds;
     }
 
+    /**
+     * Cancels the execution of this statement, if another thread
+     * currently waits for the simulated latency of this statement.
+     * The executing thread throws an <code>SQLException</code> with
+     * the SQL state <i>HY008</i>.
+     * Does nothing if the statement is not executing.
+     */
     public void cancel() throws SQLException
     {
-
+        synchronized(executionLock)
+        {
+            if(null != executingThread)
+            {
+                cancelled = true;
+                executingThread.interrupt();
+            }
+        }
     }
 
     public SQLWarning getWarnings() throws SQLException
@@ -585,6 +719,7 @@ public class MockStatement implements Statement
         if(null == resultSet) return null;
         MockResultSet clone = (MockResultSet)resultSet.clone();
         clone.setStatement(this);
+        if(resultSetHandler.isReadTrackingEnabled()) clone.setReadTracking(true);
         return clone;
     }
     
@@ -598,6 +733,7 @@ public class MockStatement implements Statement
             {
                 clonedResultsSets[ii] = (MockResultSet)resultSets[ii].clone();
                 clonedResultsSets[ii].setStatement(this);
+                if(resultSetHandler.isReadTrackingEnabled()) clonedResultsSets[ii].setReadTracking(true);
             }
         }
         return clonedResultsSets;
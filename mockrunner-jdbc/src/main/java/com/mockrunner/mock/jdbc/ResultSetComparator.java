@@ -0,0 +1,362 @@
+package com.mockrunner.mock.jdbc;
+
+import java.io.InputStream;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import com.mockrunner.jdbc.ColumnVector;
+import com.mockrunner.jdbc.ParameterUtil;
+
+/**
+ * Compares the data of two {@link MockResultSet} objects and reports
+ * the differing cells. The cells are compared like
+ * {@link MockResultSet#isEqual} does it, i.e. with
+ * {@link com.mockrunner.jdbc.ParameterUtil#compareParameter} and, if the
+ * values are not of the same type, by their <code>toString()</code> values.
+ * Like {@link MockResultSet#isEqual}, only the columns of the first
+ * <code>ResultSet</code> are compared.
+ * <br><br>
+ * Large <code>ResultSet</code> objects are split into chunks of rows
+ * (see {@link #setChunkSize}) that are compared in parallel using a
+ * shared <code>ForkJoinPool</code>. Columns that share their data
+ * (e.g. the columns of a cloned <code>ResultSet</code> that were not
+ * modified) are not compared cell by cell. The comparison of a chunk stops
+ * after the maximum number of differences (see {@link #setMaxDifferences})
+ * is found, so the reported differences are always the first ones,
+ * ordered by row and column.
+ */
+public class ResultSetComparator
+{
+    private static ForkJoinPool pool;
+
+    private int maxDifferences = 10;
+    private int chunkSize = 10000;
+    private boolean parallel = true;
+
+    /**
+     * Sets the maximum number of reported differences.
+     * Default is 10.
+     * @param maxDifferences the maximum number of differences
+     */
+    public void setMaxDifferences(int maxDifferences)
+    {
+        if(maxDifferences < 1)
+        {
+            throw new IllegalArgumentException("maxDifferences must be at least 1");
+        }
+        this.maxDifferences = maxDifferences;
+    }
+
+    /**
+     * Sets the number of rows that are compared by one task.
+     * <code>ResultSet</code> objects with less rows are compared
+     * in the calling thread. Default is 10000.
+     * @param chunkSize the number of rows per task
+     */
+    public void setChunkSize(int chunkSize)
+    {
+        if(chunkSize < 1)
+        {
+            throw new IllegalArgumentException("chunkSize must be at least 1");
+        }
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Sets if the chunks are compared in parallel. If this is
+     * set to <code>false</code>, all chunks are compared in the
+     * calling thread. Default is <code>true</code>.
+     * @param parallel compare the chunks in parallel
+     */
+    public void setParallel(boolean parallel)
+    {
+        this.parallel = parallel;
+    }
+
+    /**
+     * Returns if the specified <code>ResultSet</code> objects are equal.
+     * Stops at the first difference.
+     * @param source the first <code>ResultSet</code>
+     * @param target the second <code>ResultSet</code>
+     * @return <code>true</code> if the two <code>ResultSet</code> objects are equal,
+     *         <code>false</code> otherwise
+     */
+    public boolean isEqual(MockResultSet source, MockResultSet target)
+    {
+        if(null == source || null == target) return false;
+        return compare(source, target, 1, true).isEmpty();
+    }
+
+    /**
+     * Compares the specified <code>ResultSet</code> objects and returns
+     * the first differences, ordered by row and column. Returns an empty
+     * <code>List</code>, if the <code>ResultSet</code> objects are equal.
+     * If a column of the first <code>ResultSet</code> is missing in the
+     * second one or if the columns have a different number of rows,
+     * the difference is reported with row number 0 before the differing
+     * cells.
+     * @param source the first <code>ResultSet</code>
+     * @param target the second <code>ResultSet</code>
+     * @return the <code>List</code> of {@link Difference} objects
+     */
+    public List compare(MockResultSet source, MockResultSet target)
+    {
+        return compare(source, target, maxDifferences, false);
+    }
+
+    private List compare(MockResultSet source, MockResultSet target, int maxDifferences, boolean stopOnDifference)
+    {
+        Map sourceMap = source.getComparisonColumnMap();
+        Map targetMap = target.getComparisonColumnMap();
+        List columnDifferences = new ArrayList();
+        List names = new ArrayList();
+        List sourceColumns = new ArrayList();
+        List targetColumns = new ArrayList();
+        int numberRows = 0;
+        Iterator keys = sourceMap.keySet().iterator();
+        while(keys.hasNext())
+        {
+            String name = (String)keys.next();
+            List sourceColumn = (List)sourceMap.get(name);
+            List targetColumn = (List)targetMap.get(name);
+            if(null == targetColumn)
+            {
+                columnDifferences.add(new Difference(0, name, "column missing"));
+                continue;
+            }
+            if(sourceColumn.size() != targetColumn.size())
+            {
+                columnDifferences.add(new Difference(0, name, "expected " + sourceColumn.size() + " rows, but was " + targetColumn.size()));
+            }
+            if(sourceColumn == targetColumn && !containsStreams(sourceColumn)) continue;
+            names.add(name);
+            sourceColumns.add(sourceColumn);
+            targetColumns.add(targetColumn);
+            numberRows = Math.max(numberRows, Math.min(sourceColumn.size(), targetColumn.size()));
+        }
+        if(columnDifferences.size() >= maxDifferences)
+        {
+            return columnDifferences.subList(0, maxDifferences);
+        }
+        int remaining = maxDifferences - columnDifferences.size();
+        Comparison comparison = new Comparison(names, sourceColumns, targetColumns, numberRows, remaining, stopOnDifference);
+        if(!parallel || comparison.numberChunks <= 1)
+        {
+            for(int ii = 0; ii < comparison.numberChunks; ii++)
+            {
+                comparison.compareChunk(ii);
+            }
+        }
+        else
+        {
+            getPool().invoke(new ChunkTask(comparison, 0, comparison.numberChunks));
+        }
+        List differences = columnDifferences;
+        for(int ii = 0; ii < comparison.numberChunks && differences.size() < maxDifferences; ii++)
+        {
+            List chunkDifferences = comparison.chunkDifferences[ii];
+            if(null == chunkDifferences) continue;
+            differences.addAll(chunkDifferences.subList(0, Math.min(chunkDifferences.size(), maxDifferences - differences.size())));
+        }
+        return differences;
+    }
+
+    private boolean containsStreams(List column)
+    {
+        if(column instanceof ColumnVector && ((ColumnVector)column).isNumeric()) return false;
+        for(int ii = 0; ii < column.size(); ii++)
+        {
+            Object value = column.get(ii);
+            if(value instanceof InputStream || value instanceof Reader) return true;
+        }
+        return false;
+    }
+
+    private synchronized static ForkJoinPool getPool()
+    {
+        if(null == pool)
+        {
+            pool = new ForkJoinPool();
+        }
+        return pool;
+    }
+
+    private static boolean areValuesEqual(Object source, Object target)
+    {
+        if(source == target && !(source instanceof InputStream) && !(source instanceof Reader))
+        {
+            return true;
+        }
+        if(null != source && null != target)
+        {
+            if(!source.getClass().isAssignableFrom(target.getClass()) && !target.getClass().isAssignableFrom(source.getClass()))
+            {
+                source = source.toString();
+                target = target.toString();
+            }
+        }
+        return ParameterUtil.compareParameter(source, target);
+    }
+
+    private class Comparison
+    {
+        private List names;
+        private List[] sourceColumns;
+        private List[] targetColumns;
+        private int numberRows;
+        private int maxDifferences;
+        private boolean stopOnDifference;
+        private int numberChunks;
+        private List[] chunkDifferences;
+        private volatile boolean stopped;
+
+        public Comparison(List names, List sourceColumns, List targetColumns, int numberRows, int maxDifferences, boolean stopOnDifference)
+        {
+            this.stopOnDifference = stopOnDifference;
+            this.names = names;
+            this.sourceColumns = (List[])sourceColumns.toArray(new List[sourceColumns.size()]);
+            this.targetColumns = (List[])targetColumns.toArray(new List[targetColumns.size()]);
+            this.numberRows = numberRows;
+            this.maxDifferences = maxDifferences;
+            numberChunks = (numberRows + chunkSize - 1) / chunkSize;
+            chunkDifferences = new List[numberChunks];
+        }
+
+        public void compareChunk(int chunk)
+        {
+            if(stopped) return;
+            int start = chunk * chunkSize;
+            int end = Math.min(start + chunkSize, numberRows);
+            List differences = null;
+            for(int ii = start; ii < end; ii++)
+            {
+                for(int yy = 0; yy < sourceColumns.length; yy++)
+                {
+                    List sourceColumn = sourceColumns[yy];
+                    List targetColumn = targetColumns[yy];
+                    if(ii >= sourceColumn.size() || ii >= targetColumn.size()) continue;
+                    Object source = sourceColumn.get(ii);
+                    Object target = targetColumn.get(ii);
+                    if(areValuesEqual(source, target)) continue;
+                    if(null == differences)
+                    {
+                        differences = new ArrayList();
+                        chunkDifferences[chunk] = differences;
+                    }
+                    differences.add(new Difference(ii + 1, (String)names.get(yy), source, target));
+                    if(differences.size() >= maxDifferences)
+                    {
+                        if(stopOnDifference || chunk == 0) stopped = true;
+                        return;
+                    }
+                }
+                if(stopped) return;
+            }
+        }
+    }
+
+    private class ChunkTask extends RecursiveAction
+    {
+        private Comparison comparison;
+        private int start;
+        private int end;
+
+        public ChunkTask(Comparison comparison, int start, int end)
+        {
+            this.comparison = comparison;
+            this.start = start;
+            this.end = end;
+        }
+
+        protected void compute()
+        {
+            if(end - start == 1)
+            {
+                comparison.compareChunk(start);
+                return;
+            }
+            int middle = (start + end) >>> 1;
+            invokeAll(new ChunkTask(comparison, start, middle), new ChunkTask(comparison, middle, end));
+        }
+    }
+
+    /**
+     * A difference between two <code>ResultSet</code> objects.
+     */
+    public static class Difference
+    {
+        private int row;
+        private String columnName;
+        private Object sourceValue;
+        private Object targetValue;
+        private String description;
+
+        private Difference(int row, String columnName, Object sourceValue, Object targetValue)
+        {
+            this.row = row;
+            this.columnName = columnName;
+            this.sourceValue = sourceValue;
+            this.targetValue = targetValue;
+            this.description = "expected " + sourceValue + ", but was " + targetValue;
+        }
+
+        private Difference(int row, String columnName, String description)
+        {
+            this.row = row;
+            this.columnName = columnName;
+            this.description = description;
+        }
+
+        /**
+         * Returns the number of the row. The first row has the
+         * number 1. Differences of the whole column, e.g. a missing
+         * column, have the row number 0.
+         * @return the number of the row
+         */
+        public int getRow()
+        {
+            return row;
+        }
+
+        /**
+         * Returns the name of the column.
+         * @return the name of the column
+         */
+        public String getColumnName()
+        {
+            return columnName;
+        }
+
+        /**
+         * Returns the value of the first <code>ResultSet</code>.
+         * @return the value of the first <code>ResultSet</code>
+         */
+        public Object getSourceValue()
+        {
+            return sourceValue;
+        }
+
+        /**
+         * Returns the value of the second <code>ResultSet</code>.
+         * @return the value of the second <code>ResultSet</code>
+         */
+        public Object getTargetValue()
+        {
+            return targetValue;
+        }
+
+        public String toString()
+        {
+            if(0 == row)
+            {
+                return "Column " + columnName + ": " + description;
+            }
+            return "Row " + row + ", column " + columnName + ": " + description;
+        }
+    }
+}
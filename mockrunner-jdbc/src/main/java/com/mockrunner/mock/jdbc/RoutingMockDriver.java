@@ -0,0 +1,249 @@
+package com.mockrunner.mock.jdbc;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+
+/**
+ * Mock implementation of a JDBC <code>Driver</code> that
+ * dispatches <code>connect</code> calls to different connections.
+ * This driver allows multiple tests to use the
+ * <code>DriverManager</code> concurrently in the same JVM,
+ * e.g. if test classes are executed in parallel.
+ * There is only one instance of this driver per JVM
+ * which can be obtained with {@link #getInstance}.
+ * <br>
+ * A connection is selected as follows:
+ * <ul>
+ * <li>If the URL has the form <code>jdbc:mockrunner:&lt;tag&gt;</code>
+ * and a connection was registered for the tag with
+ * {@link #registerConnection}, this connection is returned. The tag
+ * ends at the first <code>;</code> or <code>?</code>.</li>
+ * <li>Otherwise, if a connection was bound to the current thread
+ * with {@link #bindConnection}, this connection is returned.</li>
+ * <li>Otherwise the default connection set with {@link #setupConnection}
+ * is returned. If there's no default connection, <code>null</code> is
+ * returned and the <code>DriverManager</code> will try the next driver.</li>
+ * </ul>
+ * {@link #acceptsURL} only accepts a URL, if a connection would be
+ * returned, so this driver can be registered in addition to the
+ * drivers of real databases.
+ * {@link JDBCMockObjectFactory} uses this driver and binds its
+ * connection to the current thread, if it's created in routing mode.
+ * <br>
+ * The binding is not inherited by other threads. Threads started by
+ * a test and pooled threads, e.g. of an <code>ExecutorService</code>
+ * or the common <code>ForkJoinPool</code>, must bind the connection
+ * explicitly or execute tasks that are wrapped with {@link #wrap(Runnable)}
+ * or {@link #wrap(Callable)}. Otherwise they use a tagged connection
+ * or the default connection.
+ */
+public class RoutingMockDriver extends MockDriver
+{
+    /**
+     * The URL prefix for tagged connections.
+     */
+    public final static String URL_PREFIX = "jdbc:mockrunner:";
+
+    private final static RoutingMockDriver instance = new RoutingMockDriver();
+
+    private final ThreadLocal boundConnection = new ThreadLocal();
+    private final Map taggedConnections = new HashMap();
+
+    /**
+     * Returns the JVM wide instance of this driver.
+     * @return the <code>RoutingMockDriver</code>
+     */
+    public static RoutingMockDriver getInstance()
+    {
+        return instance;
+    }
+
+    private RoutingMockDriver()
+    {
+
+    }
+
+    /**
+     * Binds the specified connection to the current thread.
+     * The binding is not inherited by threads created by
+     * the current thread.
+     * @param connection the connection
+     */
+    public void bindConnection(Connection connection)
+    {
+        boundConnection.set(connection);
+    }
+
+    /**
+     * Removes the connection bound to the current thread.
+     */
+    public void unbindConnection()
+    {
+        boundConnection.remove();
+    }
+
+    /**
+     * Returns the connection bound to the current thread or
+     * <code>null</code>, if no connection is bound.
+     * @return the connection bound to the current thread
+     */
+    public Connection getBoundConnection()
+    {
+        return (Connection)boundConnection.get();
+    }
+
+    /**
+     * Returns a <code>Runnable</code> that executes the specified
+     * <code>Runnable</code> with the connection that is bound to the
+     * current thread. The binding of the executing thread is restored
+     * afterwards, so the returned <code>Runnable</code> can be passed
+     * to pooled threads.
+     * @param runnable the <code>Runnable</code>
+     * @return the wrapped <code>Runnable</code>
+     */
+    public Runnable wrap(final Runnable runnable)
+    {
+        final Connection connection = getBoundConnection();
+        return new Runnable()
+        {
+            public void run()
+            {
+                Connection previousConnection = getBoundConnection();
+                setBoundConnection(connection);
+                try
+                {
+                    runnable.run();
+                }
+                finally
+                {
+                    setBoundConnection(previousConnection);
+                }
+            }
+        };
+    }
+
+    /**
+     * Returns a <code>Callable</code> that executes the specified
+     * <code>Callable</code> with the connection that is bound to the
+     * current thread. The binding of the executing thread is restored
+     * afterwards, so the returned <code>Callable</code> can be passed
+     * to pooled threads.
+     * @param callable the <code>Callable</code>
+     * @return the wrapped <code>Callable</code>
+     */
+    public Callable wrap(final Callable callable)
+    {
+        final Connection connection = getBoundConnection();
+        return new Callable()
+        {
+            public Object call() throws Exception
+            {
+                Connection previousConnection = getBoundConnection();
+                setBoundConnection(connection);
+                try
+                {
+                    return callable.call();
+                }
+                finally
+                {
+                    setBoundConnection(previousConnection);
+                }
+            }
+        };
+    }
+
+    /**
+     * Registers a connection for the specified tag. The connection
+     * is returned for URLs of the form <code>jdbc:mockrunner:&lt;tag&gt;</code>
+     * regardless of the current thread.
+     * @param tag the tag
+     * @param connection the connection
+     */
+    public void registerConnection(String tag, Connection connection)
+    {
+        if(null == tag || tag.length() == 0)
+        {
+            throw new IllegalArgumentException("tag must not be empty");
+        }
+        synchronized(taggedConnections)
+        {
+            taggedConnections.put(tag, connection);
+        }
+    }
+
+    /**
+     * Removes the connection registered for the specified tag.
+     * @param tag the tag
+     */
+    public void removeConnection(String tag)
+    {
+        synchronized(taggedConnections)
+        {
+            taggedConnections.remove(tag);
+        }
+    }
+
+    /**
+     * Removes all connections registered for tags.
+     */
+    public void clearConnections()
+    {
+        synchronized(taggedConnections)
+        {
+            taggedConnections.clear();
+        }
+    }
+
+    public boolean acceptsURL(String url) throws SQLException
+    {
+        return null != connect(url, null);
+    }
+
+    public Connection connect(String url, Properties info) throws SQLException
+    {
+        String tag = getTag(url);
+        if(null != tag)
+        {
+            synchronized(taggedConnections)
+            {
+                Connection connection = (Connection)taggedConnections.get(tag);
+                if(null != connection) return connection;
+            }
+        }
+        Connection connection = getBoundConnection();
+        if(null != connection) return connection;
+        return super.connect(url, info);
+    }
+
+    private void setBoundConnection(Connection connection)
+    {
+        if(null == connection)
+        {
+            boundConnection.remove();
+        }
+        else
+        {
+            boundConnection.set(connection);
+        }
+    }
+
+    private String getTag(String url)
+    {
+        if(null == url || !url.startsWith(URL_PREFIX)) return null;
+        int end = url.length();
+        for(int ii = URL_PREFIX.length(); ii < url.length(); ii++)
+        {
+            char currentChar = url.charAt(ii);
+            if(currentChar == ';' || currentChar == '?')
+            {
+                end = ii;
+                break;
+            }
+        }
+        return url.substring(URL_PREFIX.length(), end);
+    }
+}
@@ -0,0 +1,405 @@
+package com.mockrunner.mock.jdbc;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.mockrunner.jdbc.RowSource;
+import com.mockrunner.util.common.CaseAwareMap;
+
+/**
+ * Forward only, read only <code>ResultSet</code> that reads its rows
+ * from a {@link com.mockrunner.jdbc.RowSource} while the cursor is
+ * moved forward. Only a window of rows is kept in memory. The size of
+ * the window is the fetch size (or 100, if no fetch size is set).
+ * Use this class for very large <code>ResultSet</code> objects, e.g. when
+ * replaying big data files with the {@link com.mockrunner.jdbc.FileResultSetFactory}.
+ * The rows cannot be modified and the cursor can only be moved
+ * with {@link #next}. The methods that access the complete data
+ * of a {@link MockResultSet}, like {@link #getRow(int)}, {@link #getColumn(int)},
+ * {@link #getRowCount} or {@link #isEqual}, do not see the streamed rows.
+ * A clone of this class starts reading with the first row again.
+ * The rows are requested from the <code>RowSource</code> when the
+ * first row is read and released when all rows are read or the
+ * <code>ResultSet</code> is closed. Closing a <code>ResultSet</code>
+ * also closes the clones created from it that have not read all rows,
+ * so the resources of abandoned clones are released.
+ */
+public class StreamingMockResultSet extends MockResultSet
+{
+    private final static int DEFAULT_WINDOW_SIZE = 100;
+
+    private RowSource rowSource;
+    private boolean columnsCaseSensitive;
+    private Map columnIndexMap;
+    private int columnCount;
+    private Iterator rows;
+    private boolean rowsExhausted;
+    private List window;
+    private int windowPosition;
+    private List currentRow;
+    private int rowNumber;
+    private boolean isAfterLast;
+    private boolean wasNull;
+    private StreamingMockResultSet parent;
+    private Set openClones;
+
+    public StreamingMockResultSet(String id, RowSource rowSource)
+    {
+        super(id);
+        this.rowSource = rowSource;
+        columnsCaseSensitive = false;
+        super.setResultSetType(ResultSet.TYPE_FORWARD_ONLY);
+        super.setResultSetConcurrency(ResultSet.CONCUR_READ_ONLY);
+        initColumns();
+        resetCursor();
+        openClones = Collections.synchronizedSet(new HashSet());
+    }
+
+    /**
+     * Returns the {@link com.mockrunner.jdbc.RowSource} of this
+     * <code>ResultSet</code>.
+     * @return the <code>RowSource</code>
+     */
+    public RowSource getRowSource()
+    {
+        return rowSource;
+    }
+
+    public void setColumnsCaseSensitive(boolean columnsCaseSensitive)
+    {
+        super.setColumnsCaseSensitive(columnsCaseSensitive);
+        this.columnsCaseSensitive = columnsCaseSensitive;
+        initColumns();
+    }
+
+    /**
+     * Columnar storage is not supported. This method does nothing.
+     * @param columnarStorage ignored
+     */
+    public void setColumnarStorage(boolean columnarStorage)
+    {
+
+    }
+
+    /**
+     * This <code>ResultSet</code> is always <code>TYPE_FORWARD_ONLY</code>.
+     * This method does nothing.
+     * @param resultSetType ignored
+     */
+    public void setResultSetType(int resultSetType)
+    {
+
+    }
+
+    /**
+     * This <code>ResultSet</code> is always <code>CONCUR_READ_ONLY</code>.
+     * This method does nothing.
+     * @param resultSetConcurrency ignored
+     */
+    public void setResultSetConcurrency(int resultSetConcurrency)
+    {
+
+    }
+
+    /**
+     * Sets the <code>Statement</code> for this <code>ResultSet</code>.
+     * The <code>ResultSet</code> takes the fetch size, the holdability and
+     * the cursor name from the specified <code>Statement</code>. The
+     * result set type and the result set concurrency are not changed.
+     * @param statement the statement
+     */
+    public void setStatement(Statement statement)
+    {
+        super.setStatement(statement);
+        super.setResultSetType(ResultSet.TYPE_FORWARD_ONLY);
+        super.setResultSetConcurrency(ResultSet.CONCUR_READ_ONLY);
+    }
+
+    /**
+     * Copies this <code>ResultSet</code>. The copy uses the same
+     * {@link com.mockrunner.jdbc.RowSource} and starts reading
+     * with the first row. The copy is closed when this
+     * <code>ResultSet</code> is closed.
+     * @return a copy of this <code>ResultSet</code>
+     */
+    public Object clone()
+    {
+        StreamingMockResultSet copy = (StreamingMockResultSet)super.clone();
+        copy.resetCursor();
+        copy.parent = this;
+        copy.openClones = Collections.synchronizedSet(new HashSet());
+        return copy;
+    }
+
+    public void close() throws SQLException
+    {
+        super.close();
+        closeRows();
+        window.clear();
+        currentRow = null;
+        closeClones();
+    }
+
+    public boolean wasNull() throws SQLException
+    {
+        return wasNull;
+    }
+
+    public Object getObject(int columnIndex) throws SQLException
+    {
+        checkCurrentRow();
+        if(columnIndex < 1 || columnIndex > columnCount)
+        {
+            throw new SQLException("Index " + columnIndex + " out of bounds");
+        }
+        trackColumnRead(columnIndex);
+        Object value = null;
+        if(columnIndex <= currentRow.size())
+        {
+            value = currentRow.get(columnIndex - 1);
+        }
+        wasNull = (null == value);
+        return value;
+    }
+
+    public Object getObject(String columnName) throws SQLException
+    {
+        return getObject(findColumn(columnName));
+    }
+
+    public int findColumn(String columnName) throws SQLException
+    {
+        Integer index = (Integer)columnIndexMap.get(columnName);
+        if(null == index)
+        {
+            throw new SQLException("No column with name " + columnName + " found");
+        }
+        return index.intValue();
+    }
+
+    public boolean next() throws SQLException
+    {
+        if(isAfterLast) return false;
+        if(!fillWindow())
+        {
+            isAfterLast = true;
+            currentRow = null;
+            return false;
+        }
+        currentRow = (List)window.get(windowPosition);
+        window.set(windowPosition, null);
+        windowPosition++;
+        rowNumber++;
+        return true;
+    }
+
+    /**
+     * Returns the number of rows read with {@link #next}.
+     * @return the number of read rows
+     */
+    public int getNumberRowsRead()
+    {
+        return rowNumber;
+    }
+
+    public int getRow() throws SQLException
+    {
+        if(null == currentRow) return 0;
+        return rowNumber;
+    }
+
+    public boolean isBeforeFirst() throws SQLException
+    {
+        return (rowNumber == 0) && !isAfterLast && fillWindow();
+    }
+
+    public boolean isAfterLast() throws SQLException
+    {
+        return isAfterLast && (rowNumber > 0);
+    }
+
+    public boolean isFirst() throws SQLException
+    {
+        return (null != currentRow) && (rowNumber == 1);
+    }
+
+    public boolean isLast() throws SQLException
+    {
+        return (null != currentRow) && !fillWindow();
+    }
+
+    public void beforeFirst() throws SQLException
+    {
+        throwForwardOnlyException();
+    }
+
+    public void afterLast() throws SQLException
+    {
+        throwForwardOnlyException();
+    }
+
+    public boolean first() throws SQLException
+    {
+        throwForwardOnlyException();
+        return false;
+    }
+
+    public boolean last() throws SQLException
+    {
+        throwForwardOnlyException();
+        return false;
+    }
+
+    public boolean absolute(int row) throws SQLException
+    {
+        throwForwardOnlyException();
+        return false;
+    }
+
+    public boolean relative(int rows) throws SQLException
+    {
+        throwForwardOnlyException();
+        return false;
+    }
+
+    public boolean previous() throws SQLException
+    {
+        throwForwardOnlyException();
+        return false;
+    }
+
+    public boolean rowUpdated() throws SQLException
+    {
+        checkCurrentRow();
+        return false;
+    }
+
+    public boolean rowInserted() throws SQLException
+    {
+        checkCurrentRow();
+        return false;
+    }
+
+    public boolean rowDeleted() throws SQLException
+    {
+        checkCurrentRow();
+        return false;
+    }
+
+    private void initColumns()
+    {
+        columnIndexMap = new CaseAwareMap(columnsCaseSensitive);
+        List columnNames = rowSource.getColumnNames();
+        if(columnNames.isEmpty())
+        {
+            columnCount = determineColumnCount();
+            for(int ii = 1; ii <= columnCount; ii++)
+            {
+                addColumn();
+                columnIndexMap.put("Column" + ii, new Integer(ii));
+            }
+            return;
+        }
+        columnCount = columnNames.size();
+        for(int ii = 0; ii < columnCount; ii++)
+        {
+            String nextColumnName = (String)columnNames.get(ii);
+            addColumn(nextColumnName);
+            if(!columnIndexMap.containsKey(nextColumnName))
+            {
+                columnIndexMap.put(nextColumnName, new Integer(ii + 1));
+            }
+        }
+    }
+
+    private int determineColumnCount()
+    {
+        Iterator firstRows = rowSource.openRows();
+        try
+        {
+            if(!firstRows.hasNext()) return 0;
+            return ((List)firstRows.next()).size();
+        }
+        finally
+        {
+            rowSource.closeRows(firstRows);
+        }
+    }
+
+    private void resetCursor()
+    {
+        rows = null;
+        rowsExhausted = false;
+        window = new ArrayList();
+        windowPosition = 0;
+        currentRow = null;
+        rowNumber = 0;
+        isAfterLast = false;
+        wasNull = false;
+    }
+
+    private boolean fillWindow() throws SQLException
+    {
+        if(windowPosition < window.size()) return true;
+        window.clear();
+        windowPosition = 0;
+        if(rowsExhausted || isClosed()) return false;
+        if(null == rows)
+        {
+            rows = rowSource.openRows();
+            if(null != parent) parent.openClones.add(this);
+        }
+        int windowSize = getFetchSize() > 0 ? getFetchSize() : DEFAULT_WINDOW_SIZE;
+        while(window.size() < windowSize && rows.hasNext())
+        {
+            window.add(rows.next());
+        }
+        simulateFetch(window.size());
+        if(!rows.hasNext())
+        {
+            closeRows();
+            rowsExhausted = true;
+        }
+        return !window.isEmpty();
+    }
+
+    private void closeRows()
+    {
+        if(null != rows)
+        {
+            rowSource.closeRows(rows);
+            rows = null;
+            if(null != parent) parent.openClones.remove(this);
+        }
+    }
+
+    private void closeClones() throws SQLException
+    {
+        Object[] clones = openClones.toArray();
+        for(int ii = 0; ii < clones.length; ii++)
+        {
+            ((StreamingMockResultSet)clones[ii]).close();
+        }
+    }
+
+    private void checkCurrentRow() throws SQLException
+    {
+        if(null == currentRow)
+        {
+            throw new SQLException("Current row invalid");
+        }
+    }
+
+    private void throwForwardOnlyException() throws SQLException
+    {
+        throw new SQLException("ResultSet is TYPE_FORWARD_ONLY");
+    }
+}
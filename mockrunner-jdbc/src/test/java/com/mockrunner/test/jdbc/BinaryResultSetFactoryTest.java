@@ -0,0 +1,156 @@
+package com.mockrunner.test.jdbc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import com.mockrunner.jdbc.BinaryResultSetFactory;
+import com.mockrunner.jdbc.BinaryResultSetWriter;
+import com.mockrunner.jdbc.FileResultSetFactory;
+import com.mockrunner.mock.jdbc.MockResultSet;
+
+public class BinaryResultSetFactoryTest
+{
+    @Test
+    public void testWriteAndCreate() throws Exception
+    {
+        MockResultSet resultSet = new MockResultSet("id");
+        resultSet.addColumn("string", new Object[] {"a", null, "\u00e4\u00f6\u00fc"});
+        resultSet.addColumn("int", new Object[] {new Integer(1), new Integer(-2), null});
+        resultSet.addColumn("long", new Object[] {new Long(Long.MAX_VALUE), null, new Long(3)});
+        resultSet.addColumn("double", new Object[] {new Double(1.5), new Double(2.5), new Double(-3.5)});
+        resultSet.addColumn("bytes", new Object[] {new byte[] {1, 2, 3}, new byte[0], null});
+        resultSet.addColumn("mixed", new Object[] {Boolean.TRUE, new BigDecimal("12.345"), new Short((short)7)});
+        Timestamp timestamp = new Timestamp(1000);
+        timestamp.setNanos(123456789);
+        resultSet.addColumn("date", new Object[] {new Date(0), new Time(1000), timestamp});
+        resultSet.addColumn("empty", new ArrayList());
+        File file = createTempFile();
+        BinaryResultSetWriter.write(resultSet, file);
+        MockResultSet loaded = new BinaryResultSetFactory(file).create("loaded");
+        assertEquals("loaded", loaded.getId());
+        assertEquals(Arrays.asList(new String[] {"string", "int", "long", "double", "bytes", "mixed", "date", "empty"}), loaded.getColumnNames());
+        assertEquals(3, loaded.getRowCount());
+        assertTrue(loaded.isEqual(resultSet));
+        assertEquals("\u00e4\u00f6\u00fc", loaded.getColumn("string").get(2));
+        assertEquals(new Integer(-2), loaded.getColumn("int").get(1));
+        assertNull(loaded.getColumn("long").get(1));
+        assertEquals(new BigDecimal("12.345"), loaded.getColumn("mixed").get(1));
+        assertEquals(timestamp, loaded.getColumn("date").get(2));
+        assertNull(loaded.getColumn("empty").get(0));
+        BinaryResultSetFactory factory = new BinaryResultSetFactory(file);
+        factory.setColumnarStorage(true);
+        loaded = factory.create("loaded");
+        assertTrue(loaded.isColumnarStorage());
+        assertTrue(loaded.isEqual(resultSet));
+        loaded.next();
+        assertEquals(1, loaded.getInt("int"));
+    }
+
+    @Test
+    public void testConvert() throws Exception
+    {
+        File source = createTempFile();
+        FileWriter writer = new FileWriter(source);
+        writer.write("id;name\n");
+        writer.write("1;Entry1\n");
+        writer.write("2;Entry2\n");
+        writer.close();
+        FileResultSetFactory sourceFactory = new FileResultSetFactory(source);
+        sourceFactory.setFirstLineContainsColumnNames(true);
+        File target = createTempFile();
+        BinaryResultSetWriter.convert(sourceFactory, target);
+        MockResultSet loaded = new BinaryResultSetFactory(target).create("");
+        assertTrue(loaded.isEqual(sourceFactory.create("")));
+        loaded.next();
+        loaded.next();
+        assertEquals("Entry2", loaded.getString("name"));
+    }
+
+    @Test
+    public void testConvertStreaming() throws Exception
+    {
+        File source = createTempFile();
+        FileWriter writer = new FileWriter(source);
+        writer.write("id;name\n");
+        writer.write("1;Entry1\n");
+        writer.write("2\n");
+        writer.close();
+        FileResultSetFactory sourceFactory = new FileResultSetFactory(source);
+        sourceFactory.setFirstLineContainsColumnNames(true);
+        sourceFactory.setStreaming(true);
+        File target = createTempFile();
+        BinaryResultSetWriter.convert(sourceFactory, target);
+        MockResultSet loaded = new BinaryResultSetFactory(target).create("");
+        assertEquals(Arrays.asList(new String[] {"id", "name"}), loaded.getColumnNames());
+        assertEquals(2, loaded.getRowCount());
+        assertEquals("Entry1", loaded.getColumn("name").get(0));
+        assertEquals("2", loaded.getColumn("id").get(1));
+        assertNull(loaded.getColumn("name").get(1));
+    }
+
+    @Test
+    public void testUnsupportedType() throws Exception
+    {
+        MockResultSet resultSet = new MockResultSet("id");
+        resultSet.addColumn("column", new Object[] {new Object()});
+        File file = createTempFile();
+        try
+        {
+            BinaryResultSetWriter.write(resultSet, file);
+            fail();
+        }
+        catch(IllegalArgumentException exc)
+        {
+            //should throw exception
+        }
+        assertFalse(file.exists());
+    }
+
+    @Test
+    public void testInvalidFile() throws Exception
+    {
+        File file = createTempFile();
+        FileWriter writer = new FileWriter(file);
+        writer.write("id;name\n");
+        writer.close();
+        try
+        {
+            new BinaryResultSetFactory(file).create("");
+            fail();
+        }
+        catch(RuntimeException exc)
+        {
+            //should throw exception
+        }
+        try
+        {
+            new BinaryResultSetFactory("nonexisting.bin").create("");
+            fail();
+        }
+        catch(RuntimeException exc)
+        {
+            //should throw exception
+        }
+    }
+
+    private File createTempFile() throws Exception
+    {
+        File file = File.createTempFile("snapshot", ".bin");
+        file.deleteOnExit();
+        return file;
+    }
+}
@@ -0,0 +1,117 @@
+package com.mockrunner.test.jdbc;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import com.mockrunner.jdbc.ColumnVector;
+
+public class ColumnVectorTest extends TestCase
+{
+    public void testPrimitiveStorage()
+    {
+        ColumnVector vector = new ColumnVector();
+        assertEquals(ColumnVector.TYPE_EMPTY, vector.getType());
+        vector.add(null);
+        assertEquals(ColumnVector.TYPE_EMPTY, vector.getType());
+        assertTrue(vector.isNumeric());
+        vector.add(new Integer(1));
+        vector.add(new Integer(2));
+        assertEquals(ColumnVector.TYPE_INT, vector.getType());
+        assertEquals(3, vector.size());
+        assertNull(vector.get(0));
+        assertTrue(vector.isNull(0));
+        assertEquals(0, vector.getInt(0));
+        assertEquals(new Integer(1), vector.get(1));
+        assertEquals(2, vector.getInt(2));
+        assertEquals(2, vector.getLong(2));
+        assertEquals(2.0, vector.getDouble(2), 0);
+        vector = new ColumnVector(Arrays.asList(new Object[] {new Double(1.5), null, new Double(-2.7)}));
+        assertEquals(ColumnVector.TYPE_DOUBLE, vector.getType());
+        assertEquals(1, vector.getInt(0));
+        assertEquals(-2, vector.getLong(2));
+        assertEquals(new Double(-2.7), vector.get(2));
+        vector = new ColumnVector(Arrays.asList(new Object[] {new byte[] {1, 2}, null}));
+        assertEquals(ColumnVector.TYPE_BYTES, vector.getType());
+        assertFalse(vector.isNumeric());
+        assertTrue(Arrays.equals(new byte[] {1, 2}, (byte[])vector.get(0)));
+        try
+        {
+            vector.getInt(0);
+            fail();
+        }
+        catch(IllegalStateException exc)
+        {
+            //expected exception
+        }
+    }
+    
+    public void testFallbackToObjectStorage()
+    {
+        ColumnVector vector = new ColumnVector(Arrays.asList(new Object[] {new Integer(1), null, new Integer(3)}));
+        vector.add(new Long(4));
+        assertEquals(ColumnVector.TYPE_OBJECT, vector.getType());
+        assertFalse(vector.isNumeric());
+        assertEquals(Arrays.asList(new Object[] {new Integer(1), null, new Integer(3), new Long(4)}), vector);
+        vector.set(1, "2");
+        assertEquals("2", vector.get(1));
+        vector = new ColumnVector(Arrays.asList(new Object[] {new Long(1), new Long(2)}));
+        vector.set(0, "x");
+        assertEquals(Arrays.asList(new Object[] {"x", new Long(2)}), vector);
+    }
+    
+    public void testInsertRemoveAndGrow()
+    {
+        ColumnVector vector = new ColumnVector(1);
+        List expected = new ArrayList();
+        for(int ii = 0; ii < 200; ii++)
+        {
+            Object value = (ii % 3 == 0) ? null : new Integer(ii);
+            vector.add(value);
+            expected.add(value);
+        }
+        assertEquals(expected, vector);
+        vector.add(0, new Integer(-1));
+        expected.add(0, new Integer(-1));
+        vector.add(100, null);
+        expected.add(100, null);
+        assertEquals(expected, vector);
+        assertEquals(expected.remove(0), vector.remove(0));
+        assertEquals(expected.remove(150), vector.remove(150));
+        assertEquals(expected, vector);
+        Collections.reverse(vector);
+        Collections.reverse(expected);
+        assertEquals(expected, vector);
+        vector.clear();
+        assertEquals(0, vector.size());
+        assertEquals(ColumnVector.TYPE_EMPTY, vector.getType());
+        try
+        {
+            vector.get(0);
+            fail();
+        }
+        catch(IndexOutOfBoundsException exc)
+        {
+            //expected exception
+        }
+    }
+    
+    public void testCopy()
+    {
+        ColumnVector vector = new ColumnVector(Arrays.asList(new Object[] {new Integer(1), new Integer(2)}));
+        ColumnVector copy = vector.copy();
+        copy.set(0, new Integer(5));
+        assertEquals(new Integer(1), vector.get(0));
+        assertEquals(new Integer(5), copy.get(0));
+        byte[] bytes = new byte[] {1, 2, 3};
+        vector = new ColumnVector(Arrays.asList(new Object[] {bytes}));
+        copy = vector.copy();
+        assertNotSame(bytes, copy.get(0));
+        assertTrue(Arrays.equals(bytes, (byte[])copy.get(0)));
+        ColumnVector clone = (ColumnVector)vector.clone();
+        assertSame(bytes, clone.get(0));
+    }
+}
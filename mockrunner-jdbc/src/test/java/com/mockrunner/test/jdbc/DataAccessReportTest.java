@@ -0,0 +1,255 @@
+package com.mockrunner.test.jdbc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.mockrunner.base.VerifyFailedException;
+import com.mockrunner.jdbc.AbstractResultSetHandler;
+import com.mockrunner.jdbc.DataAccessReport;
+import com.mockrunner.jdbc.JDBCTestModule;
+import com.mockrunner.jdbc.SQLUtil;
+import com.mockrunner.mock.jdbc.JDBCMockObjectFactory;
+import com.mockrunner.mock.jdbc.MockConnection;
+import com.mockrunner.mock.jdbc.MockResultSet;
+
+public class DataAccessReportTest
+{
+    private JDBCMockObjectFactory mockfactory;
+    private JDBCTestModule module;
+    private MockConnection connection;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        mockfactory = new JDBCMockObjectFactory();
+        module = new JDBCTestModule(mockfactory);
+        connection = mockfactory.getMockConnection();
+        module.setDataAccessTracking(true);
+    }
+
+    @Test
+    public void testStatementShape()
+    {
+        assertEquals("select * from customer where id = ?", SQLUtil.getStatementShape("SELECT *  FROM Customer\nWHERE id = 42"));
+        assertEquals("select * from customer where id = ?", SQLUtil.getStatementShape("select * from customer where id=?"));
+        assertEquals("select name from customer where name = ? and id in ( ? )", SQLUtil.getStatementShape("select name from customer where name = 'O''Brien' and id in (1, 2.5, 3)"));
+        assertEquals("select name from customer where id in ( ? )", SQLUtil.getStatementShape("select name from customer where id in (?,?,?) -- comment"));
+        assertEquals("select \"Name\" from t1 where a <> ? or b >= ?", SQLUtil.getStatementShape("select /* hint */ \"Name\" from t1 where a <> -1 or b >= .5"));
+        assertEquals("select a - ? from t where b = ?", SQLUtil.getStatementShape("select a - 1 from t where b = -2"));
+        assertEquals("", SQLUtil.getStatementShape("  "));
+    }
+
+    @Test
+    public void testNPlusOneQueries() throws Exception
+    {
+        Statement statement = connection.createStatement();
+        statement.executeQuery("select * from orders");
+        for(int ii = 0; ii < 5; ii++)
+        {
+            statement.executeQuery("select * from item where order_id = " + ii);
+        }
+        connection.getPreparedStatementResultSetHandler().prepareResultSet("select * from customer", new MockResultSet("customer"), new Object[0]);
+        PreparedStatement preparedStatement = connection.prepareStatement("select * from customer where id = ?");
+        for(int ii = 0; ii < 4; ii++)
+        {
+            preparedStatement.setInt(1, ii);
+            preparedStatement.executeQuery();
+        }
+        module.setNPlusOneThreshold(5);
+        DataAccessReport report = module.getDataAccessReport();
+        assertEquals(3, report.getStatementShapes().size());
+        List shapes = report.getNPlusOneStatementShapes();
+        assertEquals(1, shapes.size());
+        DataAccessReport.StatementShape shape = (DataAccessReport.StatementShape)shapes.get(0);
+        assertEquals("select * from item where order_id = ?", shape.getShape());
+        assertEquals(5, shape.getExecutionCount());
+        assertEquals(5, shape.getSQLStatements().size());
+        try
+        {
+            module.verifyNoNPlusOneQueries();
+            fail();
+        }
+        catch(VerifyFailedException exc)
+        {
+            assertTrue(exc.getMessage().indexOf("select * from item where order_id = ?") >= 0);
+        }
+        module.setNPlusOneThreshold(6);
+        module.verifyNoNPlusOneQueries();
+        module.setNPlusOneThreshold(4);
+        assertEquals(2, module.getDataAccessReport().getNPlusOneStatementShapes().size());
+        connection.getStatementResultSetHandler().setJournalMode(AbstractResultSetHandler.JOURNAL_STATISTICS);
+        statement.executeQuery("select * from item where order_id = 7");
+        module.setNPlusOneThreshold(6);
+        assertEquals(6, ((DataAccessReport.StatementShape)module.getDataAccessReport().getNPlusOneStatementShapes().get(0)).getExecutionCount());
+    }
+
+    @Test
+    public void testNPlusOneIgnoresBatchesAndUpdates() throws Exception
+    {
+        Statement statement = connection.createStatement();
+        for(int ii = 0; ii < 10; ii++)
+        {
+            statement.executeQuery("select * from orders where id = " + ii);
+        }
+        PreparedStatement preparedStatement = connection.prepareStatement("insert into item values(?)");
+        for(int ii = 0; ii < 10; ii++)
+        {
+            preparedStatement.setInt(1, ii);
+            preparedStatement.addBatch();
+        }
+        preparedStatement.executeBatch();
+        for(int ii = 0; ii < 10; ii++)
+        {
+            statement.executeUpdate("update item set amount = " + ii);
+        }
+        module.verifyNoNPlusOneQueries();
+        DataAccessReport report = module.getDataAccessReport();
+        assertEquals(3, report.getStatementShapes().size());
+        DataAccessReport.StatementShape shape = (DataAccessReport.StatementShape)report.getStatementShapes().get(1);
+        assertEquals("insert into item values ( ? )", shape.getShape());
+        assertEquals(10, shape.getExecutionCount());
+        assertEquals(10, shape.getBatchExecutionCount());
+        assertFalse(shape.isQuery());
+        connection.getPreparedStatementResultSetHandler().prepareResultSet("select", new MockResultSet("item"), new Object[0]);
+        preparedStatement = connection.prepareStatement("select * from item where order_id = ?");
+        for(int ii = 0; ii < 10; ii++)
+        {
+            preparedStatement.setInt(1, ii);
+            preparedStatement.executeQuery();
+        }
+        List shapes = module.getDataAccessReport().getNPlusOneStatementShapes();
+        assertEquals(1, shapes.size());
+        assertEquals("select * from item where order_id = ?", ((DataAccessReport.StatementShape)shapes.get(0)).getShape());
+    }
+
+    @Test
+    public void testOverFetching() throws Exception
+    {
+        MockResultSet resultSet = new MockResultSet("customers");
+        resultSet.addColumn("id", new Object[] {new Integer(1), new Integer(2), new Integer(3), new Integer(4)});
+        resultSet.addColumn("name", new Object[] {"a", "b", "c", "d"});
+        resultSet.addColumn("address", new Object[] {"x", "y", "z", "w"});
+        resultSet.addColumn("phone", new Object[] {"1", "2", "3", "4"});
+        connection.getStatementResultSetHandler().prepareResultSet("select * from customer", resultSet);
+        Statement statement = connection.createStatement(ResultSet.TYPE_SCROLL_INSENSITIVE, ResultSet.CONCUR_READ_ONLY);
+        ResultSet returned = statement.executeQuery("select * from customer");
+        while(returned.next())
+        {
+            returned.getInt(1);
+            returned.getString("NAME");
+        }
+        module.verifyNoOverFetching();
+        returned = statement.executeQuery("select * from customer");
+        returned.next();
+        returned.getInt("id");
+        returned.getString("name");
+        DataAccessReport report = module.getDataAccessReport();
+        assertEquals(2, report.getResultSetUsages().size());
+        List usages = report.getOverFetchingResultSetUsages();
+        assertEquals(1, usages.size());
+        DataAccessReport.ResultSetUsage usage = (DataAccessReport.ResultSetUsage)usages.get(0);
+        assertEquals("customers", usage.getId());
+        assertEquals(1, usage.getNumberRowsRead());
+        assertEquals(4, usage.getNumberRowsProvided());
+        assertEquals(2, usage.getNumberColumnsRead());
+        assertEquals(Arrays.asList(new String[] {"address", "phone"}), usage.getUnreadColumnNames());
+        try
+        {
+            module.verifyNoOverFetching();
+            fail();
+        }
+        catch(VerifyFailedException exc)
+        {
+            //should throw exception
+        }
+        returned.last();
+        assertFalse(((DataAccessReport.ResultSetUsage)module.getDataAccessReport().getResultSetUsages().get(1)).isOverFetching());
+        returned = statement.executeQuery("select * from customer");
+        returned.next();
+        returned.next();
+        returned.getString("id");
+        module.setMinimumReadRatio(0.25);
+        module.verifyNoOverFetching();
+        module.setMinimumReadRatio(1);
+        assertEquals(3, module.getDataAccessReport().getOverFetchingResultSetUsages().size());
+        assertEquals(0, resultSet.getNumberRowsRead());
+        assertTrue(resultSet.getReadColumnNames().isEmpty());
+    }
+
+    @Test
+    public void testTrackingDisabled() throws Exception
+    {
+        module.setDataAccessTracking(false);
+        MockResultSet resultSet = new MockResultSet("customers");
+        resultSet.addColumn("id", new Object[] {new Integer(1), new Integer(2)});
+        connection.getStatementResultSetHandler().prepareResultSet("select", resultSet);
+        Statement statement = connection.createStatement();
+        MockResultSet returned = (MockResultSet)statement.executeQuery("select * from customer");
+        assertFalse(returned.isReadTracking());
+        returned.next();
+        returned.getInt("id");
+        assertEquals(0, returned.getNumberRowsRead());
+        assertTrue(returned.getReadColumnNames().isEmpty());
+        assertTrue(module.getDataAccessReport().getResultSetUsages().isEmpty());
+        module.verifyNoOverFetching();
+        connection.getStatementResultSetHandler().setReadTrackingEnabled(true);
+        returned = (MockResultSet)statement.executeQuery("select * from customer");
+        assertTrue(returned.isReadTracking());
+        returned.next();
+        returned.getInt("id");
+        assertEquals(1, returned.getNumberRowsRead());
+        assertEquals(Arrays.asList(new String[] {"id"}), returned.getReadColumnNames());
+        assertEquals(1, module.getDataAccessReport().getResultSetUsages().size());
+    }
+
+    @Test
+    public void testToString() throws Exception
+    {
+        MockResultSet resultSet = new MockResultSet("customers");
+        resultSet.addColumn("id", new Object[] {new Integer(1), new Integer(2)});
+        resultSet.addColumn("name", new Object[] {"a", "b"});
+        connection.getStatementResultSetHandler().prepareResultSet("select", resultSet);
+        ResultSet returned = connection.createStatement().executeQuery("select * from customer where id < 3");
+        returned.next();
+        returned.getString(2);
+        String[] lines = module.getDataAccessReport().toString().split("\n");
+        assertEquals(2, lines.length);
+        assertEquals("shape\t1\t1\tfalse\tselect * from customer where id < ?", lines[0]);
+        assertEquals("resultset\tcustomers\t1\t2\t1\t2\tfalse\tid", lines[1]);
+    }
+
+    @Test
+    public void testInvalidArguments() throws Exception
+    {
+        try
+        {
+            new DataAccessReport(new ArrayList(), new ArrayList(), 0, 0.5);
+            fail();
+        }
+        catch(IllegalArgumentException exc)
+        {
+            //should throw exception
+        }
+        try
+        {
+            new DataAccessReport(new ArrayList(), new ArrayList(), 1, 1.5);
+            fail();
+        }
+        catch(IllegalArgumentException exc)
+        {
+            //should throw exception
+        }
+    }
+}
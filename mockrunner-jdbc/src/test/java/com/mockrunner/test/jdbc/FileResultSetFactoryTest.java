@@ -1,9 +1,13 @@
 package com.mockrunner.test.jdbc;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import java.io.File;
+import java.io.FileWriter;
+import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.HashMap;
 import java.util.Map;
@@ -12,6 +16,7 @@ import org.junit.Test;
 
 import com.mockrunner.jdbc.FileResultSetFactory;
 import com.mockrunner.mock.jdbc.MockResultSet;
+import com.mockrunner.mock.jdbc.StreamingMockResultSet;
 
 public class FileResultSetFactoryTest
 {
@@ -158,6 +163,70 @@ public class FileResultSetFactoryTest
         assertEquals("template2", resultSet.getObject("TestColumn3"));
     }
     
+    @Test
+    public void testCreateStreaming() throws Exception
+    {
+        File file = File.createTempFile("streaming", ".txt");
+        file.deleteOnExit();
+        FileWriter writer = new FileWriter(file);
+        writer.write("TestColumn1; TestColumn2 ;TestColumn3\n");
+        writer.write("1;2;$defaultInteger\n");
+        writer.write("Entry1;;Entry3\n");
+        writer.write(" 25.3 ;26.7;12.3\n");
+        writer.close();
+        FileResultSetFactory factory = new FileResultSetFactory(file);
+        factory.setFirstLineContainsColumnNames(true);
+        factory.setUseTemplates(true);
+        factory.setStreaming(true);
+        MockResultSet resultSet = factory.create("");
+        assertTrue(resultSet instanceof StreamingMockResultSet);
+        assertEquals(ResultSet.TYPE_FORWARD_ONLY, resultSet.getType());
+        assertEquals(3, resultSet.getColumnCount());
+        resultSet.setFetchSize(2);
+        assertTrue(resultSet.isBeforeFirst());
+        assertTrue(resultSet.next());
+        assertTrue(resultSet.isFirst());
+        assertEquals(1, resultSet.getInt("TestColumn1"));
+        assertEquals(2, resultSet.getLong("testcolumn2"));
+        assertEquals("0", resultSet.getString(3));
+        assertTrue(resultSet.next());
+        assertEquals("Entry1", resultSet.getObject(1));
+        assertEquals(null, resultSet.getString(2));
+        assertTrue(resultSet.wasNull());
+        assertFalse(resultSet.isLast());
+        MockResultSet clone = (MockResultSet)resultSet.clone();
+        assertTrue(resultSet.next());
+        assertTrue(resultSet.isLast());
+        assertEquals(3, resultSet.getRow());
+        assertEquals(26.7, resultSet.getDouble(2), 0.01);
+        assertEquals(25.3, resultSet.getDouble("TestColumn1"), 0.01);
+        assertFalse(resultSet.next());
+        assertTrue(resultSet.isAfterLast());
+        assertEquals(0, resultSet.getRow());
+        assertTrue(clone.next());
+        assertEquals("1", clone.getString(1));
+        try
+        {
+            clone.previous();
+            fail();
+        } 
+        catch(SQLException exc)
+        {
+            //should throw exception
+        }
+        clone.close();
+        assertFalse(clone.next());
+        factory.setFirstLineContainsColumnNames(false);
+        factory.setUseTemplates(false);
+        resultSet = factory.create("");
+        assertEquals(3, resultSet.getColumnCount());
+        resultSet.next();
+        assertEquals("TestColumn1", resultSet.getString("Column1"));
+        resultSet.next();
+        assertEquals("$defaultInteger", resultSet.getString(3));
+        resultSet.close();
+    }
+    
 //    @Test
     public void testGetFile()
     {
@@ -0,0 +1,121 @@
+package com.mockrunner.test.jdbc;
+
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import com.mockrunner.jdbc.GeneratedResultSetFactory;
+import com.mockrunner.jdbc.RowGenerator;
+import com.mockrunner.jdbc.StatementResultSetHandler;
+import com.mockrunner.mock.jdbc.JDBCMockObjectFactory;
+import com.mockrunner.mock.jdbc.MockConnection;
+import com.mockrunner.mock.jdbc.MockResultSet;
+import com.mockrunner.mock.jdbc.MockStatement;
+import com.mockrunner.mock.jdbc.PolyResultSet;
+import com.mockrunner.mock.jdbc.StreamingMockResultSet;
+
+public class GeneratedResultSetFactoryTest extends TestCase
+{
+    public void testMillionRows() throws Exception
+    {
+        TestRowGenerator generator = new TestRowGenerator();
+        GeneratedResultSetFactory factory = new GeneratedResultSetFactory(new String[] {"id", "name"}, 1000000, generator);
+        MockResultSet resultSet = factory.create("generated");
+        assertTrue(resultSet instanceof StreamingMockResultSet);
+        assertEquals("generated", resultSet.getId());
+        assertEquals(2, resultSet.getMetaData().getColumnCount());
+        assertEquals(0, generator.generatedRows);
+        resultSet.setFetchSize(500);
+        int count = 0;
+        long sum = 0;
+        while(resultSet.next())
+        {
+            count++;
+            sum += resultSet.getLong("ID");
+            assertTrue(generator.lastRowNumber - count < 500);
+            if(count == 777777)
+            {
+                assertEquals(777777, resultSet.getInt(1));
+                assertEquals("name777777", resultSet.getString(2));
+            }
+        }
+        assertEquals(1000000, count);
+        assertEquals(500000500000L, sum);
+        assertEquals(1000000, generator.generatedRows);
+        assertFalse(resultSet.next());
+        assertEquals(Arrays.asList(new String[] {"id", "name"}), generator.lastColumnNames);
+    }
+
+    public void testPrepareResultSet() throws Exception
+    {
+        MockConnection connection = new JDBCMockObjectFactory().getMockConnection();
+        StatementResultSetHandler handler = connection.getStatementResultSetHandler();
+        GeneratedResultSetFactory factory = new GeneratedResultSetFactory(new String[] {"id", "name"}, 3, new TestRowGenerator());
+        handler.prepareResultSet("select", handler.createResultSet("generated", factory));
+        MockStatement statement = (MockStatement)connection.createStatement();
+        statement.setFetchSize(2);
+        ResultSet result1 = statement.executeQuery("select id from customer");
+        ResultSet result2 = connection.createStatement().executeQuery("select name from customer");
+        assertTrue(result1.next());
+        assertTrue(result1.next());
+        assertEquals(2, result1.getFetchSize());
+        assertTrue(result2.next());
+        assertEquals(1, result2.getInt("id"));
+        assertEquals(2, result1.getInt("id"));
+        PolyResultSet polyResultSet = new PolyResultSet(Arrays.asList(new ResultSet[] {factory.create("1"), factory.create("2")}));
+        List ids = new ArrayList();
+        while(polyResultSet.next())
+        {
+            ids.add(polyResultSet.getString("id"));
+        }
+        assertEquals(Arrays.asList(new String[] {"1", "2", "3", "1", "2", "3"}), ids);
+    }
+
+    public void testEmptyAndInvalid() throws Exception
+    {
+        GeneratedResultSetFactory factory = new GeneratedResultSetFactory(new String[] {"id"}, 0, new TestRowGenerator());
+        assertFalse(factory.create("").next());
+        factory = new GeneratedResultSetFactory(new ArrayList(), 2, new TestRowGenerator());
+        MockResultSet resultSet = factory.create("");
+        assertEquals(2, resultSet.getMetaData().getColumnCount());
+        assertTrue(resultSet.next());
+        assertEquals("name1", resultSet.getString("Column2"));
+        factory = new GeneratedResultSetFactory(new String[] {"id", "name", "other"}, 2, new TestRowGenerator());
+        try
+        {
+            factory.create("").next();
+            fail();
+        }
+        catch(IllegalStateException exc)
+        {
+            //should throw exception
+        }
+        try
+        {
+            new GeneratedResultSetFactory(new String[] {"id"}, -1, new TestRowGenerator());
+            fail();
+        }
+        catch(IllegalArgumentException exc)
+        {
+            //should throw exception
+        }
+    }
+
+    private static class TestRowGenerator implements RowGenerator
+    {
+        private int generatedRows = 0;
+        private int lastRowNumber = 0;
+        private List lastColumnNames;
+
+        public Object[] generateRow(int rowNumber, List columnNames)
+        {
+            generatedRows++;
+            lastRowNumber = rowNumber;
+            lastColumnNames = columnNames;
+            return new Object[] {new Integer(rowNumber), "name" + rowNumber};
+        }
+    }
+}
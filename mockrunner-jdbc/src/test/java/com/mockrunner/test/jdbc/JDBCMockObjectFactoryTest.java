@@ -1,9 +1,13 @@
 package com.mockrunner.test.jdbc;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 import java.sql.Connection;
 import java.sql.Driver;
@@ -12,8 +16,14 @@ import java.sql.DriverPropertyInfo;
 import java.sql.SQLException;
 import java.sql.SQLFeatureNotSupportedException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Enumeration;
+import java.util.List;
 import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.logging.Logger;
 
 import org.junit.Test;
@@ -22,6 +32,7 @@ import com.mockrunner.mock.jdbc.JDBCMockObjectFactory;
 import com.mockrunner.mock.jdbc.MockConnection;
 import com.mockrunner.mock.jdbc.MockDataSource;
 import com.mockrunner.mock.jdbc.MockDriver;
+import com.mockrunner.mock.jdbc.RoutingMockDriver;
 
 public class JDBCMockObjectFactoryTest
 {
@@ -96,6 +107,139 @@ public class JDBCMockObjectFactoryTest
        assertTrue(numberDrivers == newNumberDrivers);
     }
     
+	@Test
+    public void testRoutingMode() throws Exception
+    {
+        TestDriver testDriver = new TestDriver();
+        DriverManager.registerDriver(testDriver);
+        final JDBCMockObjectFactory factory1 = new JDBCMockObjectFactory(true);
+        assertTrue(factory1.isRouting());
+        List registeredDrivers = Collections.list(DriverManager.getDrivers());
+        assertTrue(registeredDrivers.contains(RoutingMockDriver.getInstance()));
+        assertTrue(registeredDrivers.contains(testDriver));
+        assertSame(factory1.getMockConnection(), DriverManager.getConnection("test"));
+        final List failures = new ArrayList();
+        final CyclicBarrier barrier = new CyclicBarrier(2);
+        Thread thread = new Thread(RoutingMockDriver.getInstance().wrap(new Runnable()
+        {
+            public void run()
+            {
+                try
+                {
+                    if(factory1.getMockConnection() != DriverManager.getConnection("test"))
+                    {
+                        failures.add("connection not propagated");
+                    }
+                    JDBCMockObjectFactory factory2 = new JDBCMockObjectFactory(true);
+                    barrier.await();
+                    if(factory2.getMockConnection() != DriverManager.getConnection("test"))
+                    {
+                        failures.add("wrong connection");
+                    }
+                    barrier.await();
+                    factory2.restoreDrivers();
+                    factory2.restoreDrivers();
+                    if(null != RoutingMockDriver.getInstance().getBoundConnection())
+                    {
+                        failures.add("connection not unbound");
+                    }
+                }
+                catch(Throwable exc)
+                {
+                    failures.add(exc.toString());
+                }
+            }
+        }));
+        Thread unboundThread = new Thread()
+        {
+            public void run()
+            {
+                if(null != RoutingMockDriver.getInstance().getBoundConnection())
+                {
+                    failures.add("connection inherited");
+                }
+                try
+                {
+                    DriverManager.getConnection("test");
+                    failures.add("connection without binding");
+                }
+                catch(SQLException exc)
+                {
+                    //should throw exception
+                }
+            }
+        };
+        unboundThread.start();
+        unboundThread.join();
+        thread.start();
+        barrier.await();
+        assertSame(factory1.getMockConnection(), DriverManager.getConnection("test"));
+        barrier.await();
+        thread.join();
+        assertEquals(new ArrayList(), failures);
+        assertTrue(Collections.list(DriverManager.getDrivers()).contains(RoutingMockDriver.getInstance()));
+        factory1.restoreDrivers();
+        assertNull(RoutingMockDriver.getInstance().getBoundConnection());
+        Enumeration drivers = DriverManager.getDrivers();
+        boolean testDriverFound = false;
+        while(drivers.hasMoreElements())
+        {
+            Object currentDriver = drivers.nextElement();
+            assertFalse(currentDriver instanceof MockDriver);
+            if(currentDriver == testDriver) testDriverFound = true;
+        }
+        assertTrue(testDriverFound);
+        DriverManager.deregisterDriver(testDriver);
+    }
+    
+	@Test
+    public void testRoutingMockDriverTags() throws Exception
+    {
+        RoutingMockDriver driver = RoutingMockDriver.getInstance();
+        MockConnection connection1 = new MockConnection();
+        MockConnection connection2 = new MockConnection();
+        MockConnection connection3 = new MockConnection();
+        assertNull(driver.connect("test", null));
+        assertFalse(driver.acceptsURL("test"));
+        driver.registerConnection("db1", connection1);
+        assertTrue(driver.acceptsURL("jdbc:mockrunner:db1"));
+        assertFalse(driver.acceptsURL("jdbc:mockrunner:db2"));
+        driver.bindConnection(connection2);
+        assertTrue(driver.acceptsURL("jdbc:mockrunner:db2"));
+        assertSame(connection1, driver.connect("jdbc:mockrunner:db1", null));
+        assertSame(connection1, driver.connect("jdbc:mockrunner:db1;user=test", null));
+        assertSame(connection2, driver.connect("jdbc:mockrunner:db2", null));
+        assertSame(connection2, driver.connect("test", null));
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        Callable connect = new Callable()
+        {
+            public Object call() throws Exception
+            {
+                return RoutingMockDriver.getInstance().connect("test", null);
+            }
+        };
+        assertNull(executor.submit(connect).get());
+        assertSame(connection2, executor.submit(driver.wrap(connect)).get());
+        assertNull(executor.submit(connect).get());
+        executor.shutdown();
+        driver.unbindConnection();
+        driver.setupConnection(connection3);
+        assertSame(connection3, driver.connect("test", null));
+        driver.removeConnection("db1");
+        assertSame(connection3, driver.connect("jdbc:mockrunner:db1", null));
+        driver.setupConnection(null);
+        driver.clearConnections();
+        try
+        {
+            driver.registerConnection("", connection1);
+            fail();
+        }
+        catch(IllegalArgumentException exc)
+        {
+            //should throw exception
+        }
+    }
+    
 	@Test
     public void testOverrideCreate()
     {
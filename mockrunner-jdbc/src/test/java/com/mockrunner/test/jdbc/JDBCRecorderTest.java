@@ -0,0 +1,223 @@
+package com.mockrunner.test.jdbc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.Reader;
+import java.io.StringReader;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import javax.sql.DataSource;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.mockrunner.jdbc.JDBCRecorder;
+import com.mockrunner.mock.jdbc.MockConnection;
+import com.mockrunner.mock.jdbc.MockDataSource;
+import com.mockrunner.mock.jdbc.MockPreparedStatement;
+import com.mockrunner.mock.jdbc.MockResultSet;
+import com.mockrunner.util.common.StreamUtil;
+
+public class JDBCRecorderTest
+{
+    private MockConnection database;
+    private JDBCRecorder recorder;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        database = new MockConnection();
+        MockResultSet customers = new MockResultSet("customers");
+        customers.addColumn("id", new Object[] {new Integer(1), new Integer(2)});
+        customers.addColumn("name", new Object[] {"Alice", null});
+        database.getStatementResultSetHandler().prepareResultSet("select * from customer", customers);
+        MockResultSet orders1 = new MockResultSet("orders1");
+        orders1.addColumn("amount", new Object[] {new Double(1.5), new Double(2.5)});
+        database.getPreparedStatementResultSetHandler().prepareResultSet("select amount from orders where customer = ?", orders1, new Object[] {new Integer(1)});
+        MockResultSet orders2 = new MockResultSet("orders2");
+        orders2.addColumn("amount", new Object[] {new Double(3.5)});
+        database.getPreparedStatementResultSetHandler().prepareResultSet("select amount from orders where customer = ?", orders2, new Object[] {new Integer(2)});
+        recorder = new JDBCRecorder();
+    }
+
+    @Test
+    public void testRecord() throws Exception
+    {
+        Connection connection = recorder.wrapConnection(database);
+        executeQueries(connection);
+        List fixtures = recorder.getFixtures();
+        assertEquals(3, fixtures.size());
+        JDBCRecorder.Fixture fixture = (JDBCRecorder.Fixture)fixtures.get(0);
+        assertFalse(fixture.isPrepared());
+        assertEquals("select * from customer", fixture.getSQL());
+        assertTrue(fixture.getParameters().isEmpty());
+        assertEquals(2, fixture.getResultSet().getRowCount());
+        assertEquals("Alice", fixture.getResultSet().getColumn("name").get(0));
+        fixture = (JDBCRecorder.Fixture)fixtures.get(2);
+        assertTrue(fixture.isPrepared());
+        assertEquals("select amount from orders where customer = ?", fixture.getSQL());
+        assertEquals(new Integer(2), fixture.getParameters().get(new Integer(1)));
+        assertEquals(1, fixture.getResultSet().getRowCount());
+        assertEquals(1, database.getStatementResultSetHandler().getExecutedStatements().size());
+        assertEquals(2, database.getPreparedStatementResultSetHandler().getExecutedStatements().size());
+        recorder.clearFixtures();
+        assertTrue(recorder.getFixtures().isEmpty());
+    }
+
+    @Test
+    public void testWriteAndReplay() throws Exception
+    {
+        MockDataSource dataSource = new MockDataSource();
+        dataSource.setupConnection(database);
+        DataSource recordingDataSource = recorder.wrapDataSource(dataSource);
+        executeQueries(recordingDataSource.getConnection());
+        File file = File.createTempFile("fixtures", ".bin");
+        file.deleteOnExit();
+        recorder.writeFixtures(file);
+        List fixtures = JDBCRecorder.readFixtures(file);
+        assertEquals(3, fixtures.size());
+        JDBCRecorder.Fixture fixture = (JDBCRecorder.Fixture)fixtures.get(1);
+        assertTrue(fixture.isPrepared());
+        assertEquals(new Integer(1), fixture.getParameters().get(new Integer(1)));
+        assertTrue(fixture.getResultSet().isEqual(((JDBCRecorder.Fixture)recorder.getFixtures().get(1)).getResultSet()));
+        MockConnection replayConnection = new MockConnection();
+        JDBCRecorder.replay(file, replayConnection);
+        executeQueries(replayConnection);
+        assertEquals(1, replayConnection.getStatementResultSetHandler().getExecutedStatements().size());
+        assertEquals(2, replayConnection.getPreparedStatementResultSetHandler().getExecutedStatements().size());
+    }
+
+    @Test
+    public void testMultipleResultSets() throws Exception
+    {
+        MockResultSet first = new MockResultSet("first");
+        first.addColumn("a", new Object[] {"1"});
+        MockResultSet second = new MockResultSet("second");
+        second.addColumn("b", new Object[] {"2", "3"});
+        database.getStatementResultSetHandler().prepareResultSets("select multiple", new MockResultSet[] {first, second});
+        Statement statement = recorder.wrapConnection(database).createStatement();
+        assertTrue(statement.execute("select multiple"));
+        ResultSet resultSet = statement.getResultSet();
+        assertSame(resultSet, statement.getResultSet());
+        assertTrue(resultSet.next());
+        assertEquals("1", resultSet.getString("a"));
+        assertTrue(statement.getMoreResults());
+        resultSet = statement.getResultSet();
+        assertTrue(resultSet.next());
+        assertEquals("2", resultSet.getString("b"));
+        assertFalse(statement.getMoreResults());
+        List fixtures = recorder.getFixtures();
+        assertEquals(2, fixtures.size());
+        assertEquals(1, ((JDBCRecorder.Fixture)fixtures.get(0)).getResultSet().getRowCount());
+        assertEquals(2, ((JDBCRecorder.Fixture)fixtures.get(1)).getResultSet().getRowCount());
+        assertEquals("select multiple", ((JDBCRecorder.Fixture)fixtures.get(1)).getSQL());
+    }
+
+    @Test
+    public void testCallableStatement() throws Exception
+    {
+        MockResultSet orders = new MockResultSet("orders");
+        orders.addColumn("amount", new Object[] {new Double(4.5)});
+        database.getCallableStatementResultSetHandler().prepareResultSet("{call getOrders(?)}", orders, new Object[] {new Integer(3)});
+        CallableStatement statement = recorder.wrapConnection(database).prepareCall("{call getOrders(?)}");
+        statement.setInt(1, 3);
+        ResultSet resultSet = statement.executeQuery();
+        assertTrue(resultSet.next());
+        assertEquals(4.5, resultSet.getDouble(1), 0);
+        File file = File.createTempFile("fixtures", ".bin");
+        file.deleteOnExit();
+        recorder.writeFixtures(file);
+        JDBCRecorder.Fixture fixture = (JDBCRecorder.Fixture)JDBCRecorder.readFixtures(file).get(0);
+        assertTrue(fixture.isCallable());
+        assertTrue(fixture.isPrepared());
+        assertEquals(new Integer(3), fixture.getParameters().get(new Integer(1)));
+        MockConnection replayConnection = new MockConnection();
+        JDBCRecorder.replay(file, replayConnection);
+        statement = replayConnection.prepareCall("{call getOrders(?)}");
+        statement.setInt(1, 3);
+        resultSet = statement.executeQuery();
+        assertTrue(resultSet.next());
+        assertEquals(4.5, resultSet.getDouble(1), 0);
+        assertTrue(replayConnection.getPreparedStatementResultSetHandler().getExecutedStatements().isEmpty());
+    }
+
+    @Test
+    public void testParametersCopied() throws Exception
+    {
+        PreparedStatement statement = recorder.wrapConnection(database).prepareStatement("select amount from orders where customer = ?");
+        byte[] data = new byte[] {1, 2, 3};
+        statement.setObject(1, data);
+        statement.setCharacterStream(2, new BufferedReader(new StringReader("abc")) 
+        {
+            public boolean markSupported()
+            {
+                return false;
+            }
+        });
+        statement.executeQuery();
+        data[0] = 5;
+        JDBCRecorder.Fixture fixture = (JDBCRecorder.Fixture)recorder.getFixtures().get(0);
+        assertTrue(Arrays.equals(new byte[] {1, 2, 3}, (byte[])fixture.getParameters().get(new Integer(1))));
+        assertEquals("abc", StreamUtil.getReaderAsString((Reader)fixture.getParameters().get(new Integer(2))));
+        Map parameters = ((MockPreparedStatement)database.getPreparedStatementResultSetHandler().getPreparedStatements().get(0)).getParameterMap();
+        assertEquals("abc", StreamUtil.getReaderAsString((Reader)parameters.get(new Integer(2))));
+    }
+
+    @Test
+    public void testUnsupportedParameter() throws Exception
+    {
+        Connection connection = recorder.wrapConnection(database);
+        PreparedStatement statement = connection.prepareStatement("select amount from orders where customer = ?");
+        statement.setObject(1, new StringBuffer("1"));
+        statement.executeQuery();
+        try
+        {
+            recorder.writeFixtures(File.createTempFile("fixtures", ".bin"));
+            fail();
+        }
+        catch(IllegalArgumentException exc)
+        {
+            //should throw exception
+        }
+    }
+
+    private void executeQueries(Connection connection) throws Exception
+    {
+        Statement statement = connection.createStatement();
+        ResultSet resultSet = statement.executeQuery("select * from customer");
+        assertSame(statement, resultSet.getStatement());
+        assertTrue(resultSet.next());
+        assertEquals(1, resultSet.getInt("id"));
+        assertEquals("Alice", resultSet.getString("name"));
+        assertTrue(resultSet.next());
+        assertEquals(null, resultSet.getString("name"));
+        assertFalse(resultSet.next());
+        PreparedStatement preparedStatement = connection.prepareStatement("select amount from orders where customer = ?");
+        preparedStatement.setInt(1, 1);
+        resultSet = preparedStatement.executeQuery();
+        assertTrue(resultSet.next());
+        assertEquals(1.5, resultSet.getDouble(1), 0);
+        assertTrue(resultSet.next());
+        assertEquals(2.5, resultSet.getDouble(1), 0);
+        preparedStatement.setInt(1, 2);
+        assertTrue(preparedStatement.execute());
+        resultSet = preparedStatement.getResultSet();
+        assertSame(resultSet, preparedStatement.getResultSet());
+        assertTrue(resultSet.next());
+        assertEquals(3.5, resultSet.getDouble(1), 0);
+        assertFalse(resultSet.next());
+    }
+}
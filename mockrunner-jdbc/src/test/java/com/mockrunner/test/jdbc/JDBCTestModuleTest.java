@@ -1,6 +1,7 @@
 package com.mockrunner.test.jdbc;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertNull;
@@ -8,12 +9,16 @@ import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
+import java.sql.BatchUpdateException;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.sql.Savepoint;
 import java.sql.Statement;
 import java.sql.Types;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -22,12 +27,19 @@ import org.junit.Before;
 import org.junit.Test;
 
 import com.mockrunner.base.VerifyFailedException;
+import com.mockrunner.jdbc.AbstractResultSetHandler;
+import com.mockrunner.jdbc.ExecutedStatementStatistics;
 import com.mockrunner.jdbc.JDBCTestModule;
+import com.mockrunner.jdbc.ParameterCopyStrategy;
 import com.mockrunner.jdbc.ParameterSets;
+import com.mockrunner.jdbc.ParameterUtil;
+import com.mockrunner.jdbc.PreparedStatementResultSetHandler;
+import com.mockrunner.jdbc.StatementResultSetHandler;
 import com.mockrunner.mock.jdbc.JDBCMockObjectFactory;
 import com.mockrunner.mock.jdbc.MockBlob;
 import com.mockrunner.mock.jdbc.MockCallableStatement;
 import com.mockrunner.mock.jdbc.MockClob;
+import com.mockrunner.mock.jdbc.MockConnection;
 import com.mockrunner.mock.jdbc.MockPreparedStatement;
 import com.mockrunner.mock.jdbc.MockResultSet;
 import com.mockrunner.mock.jdbc.MockStatement;
@@ -150,6 +162,40 @@ public class JDBCTestModuleTest
         module.verifyNumberPreparedStatements(0, "insert (.*) TEST.*");
     }
     
+    @Test
+    public void testGetStatementsBySQLManyStatements() throws Exception
+    {
+        MockConnection connection = mockfactory.getMockConnection();
+        for(int ii = 0; ii < 2000; ii++)
+        {
+            PreparedStatement statement = connection.prepareStatement("insert into table" + ii + " values(?)");
+            statement.setInt(1, ii);
+            statement.executeUpdate();
+        }
+        MockCallableStatement callableStatement = (MockCallableStatement)connection.prepareCall("{call table1999(?)}");
+        callableStatement.setString(1, "callable");
+        callableStatement.execute();
+        assertEquals(1, module.getPreparedStatements("table1999 ").size());
+        assertEquals(111, module.getPreparedStatements("TABLE19").size());
+        assertEquals(1, module.getCallableStatements("TABLE19").size());
+        module.verifyPreparedStatementParameter("table1999 ", 1, new Integer(1999));
+        module.verifySQLStatementParameter("table1500 ", 0, 1, new Integer(1500));
+        assertEquals(new Integer(1234), module.getExecutedSQLStatementParameterSets("TABLE1234 ").getParameterSet(0).get(new Integer(1)));
+        assertEquals(2, module.getExecutedSQLStatementParameterSets("table1999").getNumberParameterSets() + module.getExecutedSQLStatementParameterSets("table1999 ").getNumberParameterSets());
+        assertEquals("insert into table1999 values(?)", module.getExecutedSQLStatementParameterSets("table1999").getSQLStatement());
+        assertEquals("{call table1999(?)}", module.getExecutedSQLStatementParameterSets("call table1999").getSQLStatement());
+        module.setCaseSensitive(true);
+        assertEquals(0, module.getPreparedStatements("TABLE19").size());
+        module.verifyNumberPreparedStatements(111, "table19");
+        module.setExactMatch(true);
+        assertEquals(0, module.getPreparedStatements("table1999").size());
+        assertSame(module.getPreparedStatement(1999), module.getPreparedStatement("insert into table1999 values(?)"));
+        module.verifySQLStatementParameter("insert into table1999 values(?)", 0, 1, new Integer(1999));
+        module.setUseRegularExpressions(true);
+        module.setExactMatch(false);
+        assertEquals(10, module.getPreparedStatements("insert into table199\\d values.*").size());
+    }
+    
     @Test
     public void testGetPreparedStatementObjects() throws Exception
     {
@@ -398,6 +444,232 @@ public class JDBCTestModuleTest
         module.verifySQLStatementExecuted("{CALL getData(?, ?, ?, ?)}");
     }
     
+    @Test
+    public void testExecutedSQLStatementsJournalModes() throws Exception
+    {
+        prepareStatements();
+        preparePreparedStatements();
+        mockfactory.getMockConnection().getStatementResultSetHandler().setJournalMode(AbstractResultSetHandler.JOURNAL_RING_BUFFER);
+        mockfactory.getMockConnection().getStatementResultSetHandler().setJournalSize(3);
+        mockfactory.getMockConnection().getStatementResultSetHandler().prepareGlobalResultSet(new MockResultSet("global"));
+        mockfactory.getMockConnection().getPreparedStatementResultSetHandler().setJournalMode(AbstractResultSetHandler.JOURNAL_STATISTICS);
+        MockStatement statement = module.getStatement(0);
+        for(int ii = 0; ii < 10; ii++)
+        {
+            statement.executeQuery("select " + ii);
+        }
+        MockPreparedStatement preparedStatement = module.getPreparedStatement("insert");
+        for(int ii = 0; ii < 10; ii++)
+        {
+            preparedStatement.setInt(1, ii);
+            preparedStatement.execute();
+        }
+        module.getPreparedStatement("update").executeUpdate();
+        List sqlStatements = module.getExecutedSQLStatements();
+        assertEquals(Arrays.asList(new String[] {"select 7", "select 8", "select 9", "INSERT INTO TEST (COL1, COL2) VALUES(?, ?)", "update mytable set test = test + ? where id = ?"}), sqlStatements);
+        assertEquals(3, mockfactory.getMockConnection().getStatementResultSetHandler().getReturnedResultSets().size());
+        assertEquals(0, mockfactory.getMockConnection().getPreparedStatementResultSetHandler().getReturnedResultSets().size());
+        module.verifySQLStatementExecuted("select 9");
+        module.verifySQLStatementExecuted("select 1");
+        module.verifySQLStatementNotExecuted("select 10");
+        module.verifySQLStatementExecuted("insert into test");
+        assertEquals(0, module.getExecutedSQLStatementParameterSets("insert into test").getNumberParameterSets());
+        Map statistics = module.getExecutedSQLStatementStatistics();
+        assertEquals(12, statistics.size());
+        ExecutedStatementStatistics insertStatistics = (ExecutedStatementStatistics)statistics.get("INSERT INTO TEST (COL1, COL2) VALUES(?, ?)");
+        assertEquals(10, insertStatistics.getExecutionCount());
+        assertEquals(10, insertStatistics.getParameterSetCount());
+        assertTrue(insertStatistics.getFirstExecutionTime() <= insertStatistics.getLastExecutionTime());
+        ExecutedStatementStatistics selectStatistics = (ExecutedStatementStatistics)statistics.get("select 1");
+        assertEquals(1, selectStatistics.getExecutionCount());
+        assertEquals(0, selectStatistics.getParameterSetCount());
+        mockfactory.getMockConnection().getPreparedStatementResultSetHandler().setJournalMode(AbstractResultSetHandler.JOURNAL_FULL);
+        preparedStatement.setInt(1, 10);
+        preparedStatement.execute();
+        assertEquals(1, module.getExecutedSQLStatementParameterSets("insert into test").getNumberParameterSets());
+        module.verifySQLStatementParameter("insert into test", 0, 1, new Integer(10));
+    }
+    
+    @Test
+    public void testExecutedSQLStatementsStatisticsFromJournal() throws Exception
+    {
+        PreparedStatementResultSetHandler handler = mockfactory.getMockConnection().getPreparedStatementResultSetHandler();
+        PreparedStatement preparedStatement = mockfactory.getMockConnection().prepareStatement("insert into test values(?)");
+        for(int ii = 0; ii < 3; ii++)
+        {
+            preparedStatement.setInt(1, ii);
+            preparedStatement.execute();
+        }
+        assertFalse(handler.isStatisticsEnabled());
+        ExecutedStatementStatistics statistics = (ExecutedStatementStatistics)handler.getExecutedStatementStatistics().get("insert into test values(?)");
+        assertEquals(3, statistics.getExecutionCount());
+        assertEquals(3, statistics.getParameterSetCount());
+        assertEquals(-1, statistics.getFirstExecutionTime());
+        assertNotSame(statistics, handler.getExecutedStatementStatistics().get("insert into test values(?)"));
+        handler.clearExecutedStatementStatistics();
+        assertEquals(1, handler.getExecutedStatementStatistics().size());
+        handler.setStatisticsEnabled(true);
+        preparedStatement.setInt(1, 3);
+        preparedStatement.execute();
+        statistics = (ExecutedStatementStatistics)handler.getExecutedStatementStatistics().get("insert into test values(?)");
+        assertSame(statistics, handler.getExecutedStatementStatistics().get("insert into test values(?)"));
+        assertEquals(4, statistics.getExecutionCount());
+        assertEquals(4, statistics.getParameterSetCount());
+        assertTrue(statistics.getFirstExecutionTime() > 0);
+        handler.clearExecutedStatementStatistics();
+        assertTrue(handler.getExecutedStatementStatistics().isEmpty());
+        assertEquals(4, handler.getExecutedStatements().size());
+        handler.setStatisticsEnabled(false);
+        handler.clearExecutedStatements();
+        assertTrue(handler.getExecutedStatementStatistics().isEmpty());
+        assertTrue(handler.getExecutedStatements().isEmpty());
+        assertTrue(handler.getExecutedStatementParameterMap().isEmpty());
+        module.verifySQLStatementNotExecuted("insert into test");
+    }
+    
+    @Test
+    public void testExecutedSQLStatementsStatisticsSize() throws Exception
+    {
+        prepareStatements();
+        StatementResultSetHandler handler = mockfactory.getMockConnection().getStatementResultSetHandler();
+        handler.setJournalMode(AbstractResultSetHandler.JOURNAL_RING_BUFFER);
+        handler.setJournalSize(2);
+        handler.setStatisticsSize(5);
+        handler.prepareGlobalResultSet(new MockResultSet("global"));
+        MockStatement statement = module.getStatement(0);
+        for(int ii = 0; ii < 1000; ii++)
+        {
+            statement.executeQuery("select * from customer where id = " + ii);
+        }
+        Map statistics = module.getExecutedSQLStatementStatistics();
+        assertEquals(6, statistics.size());
+        ExecutedStatementStatistics shapeStatistics = (ExecutedStatementStatistics)statistics.get("select * from customer where id = ?");
+        assertTrue(shapeStatistics.isStatementShape());
+        assertEquals(995, shapeStatistics.getExecutionCount());
+        assertFalse(((ExecutedStatementStatistics)statistics.get("select * from customer where id = 0")).isStatementShape());
+        module.verifySQLStatementExecuted("select * from customer where id = 0");
+        module.verifySQLStatementExecuted("select * from customer where id = 500");
+        module.verifySQLStatementNotExecuted("select * from orders");
+        assertEquals(2, module.getExecutedSQLStatements().size());
+    }
+    
+    @Test
+    public void testExecutedSQLStatementsConcurrentRingBuffer() throws Exception
+    {
+        final MockConnection connection = mockfactory.getMockConnection();
+        connection.setConcurrent(true);
+        connection.getStatementResultSetHandler().setJournalMode(AbstractResultSetHandler.JOURNAL_RING_BUFFER);
+        connection.getStatementResultSetHandler().setJournalSize(100);
+        final List failures = Collections.synchronizedList(new ArrayList());
+        Thread[] threads = new Thread[4];
+        for(int ii = 0; ii < threads.length; ii++)
+        {
+            threads[ii] = new Thread()
+            {
+                public void run()
+                {
+                    try
+                    {
+                        Statement statement = connection.createStatement();
+                        for(int jj = 0; jj < 2000; jj++)
+                        {
+                            statement.executeUpdate("update " + jj);
+                        }
+                    }
+                    catch(Throwable exc)
+                    {
+                        failures.add(exc);
+                    }
+                }
+            };
+            threads[ii].start();
+        }
+        for(int ii = 0; ii < threads.length; ii++)
+        {
+            while(threads[ii].isAlive())
+            {
+                List statements = connection.getStatementResultSetHandler().getExecutedStatements();
+                for(int jj = 0; jj < statements.size(); jj++)
+                {
+                    assertNotNull(statements.get(jj));
+                }
+            }
+            threads[ii].join();
+        }
+        assertEquals(0, failures.size());
+        assertEquals(100, connection.getStatementResultSetHandler().getExecutedStatements().size());
+    }
+    
+    @Test
+    public void testExecutedSQLStatementsConcurrent() throws Exception
+    {
+        final MockConnection connection = mockfactory.getMockConnection();
+        connection.getPreparedStatementResultSetHandler().prepareResultSet("select", new MockResultSet("id"), new Object[0]);
+        connection.setConcurrent(true);
+        final int numberThreads = 8;
+        final int numberExecutions = 500;
+        final List failures = Collections.synchronizedList(new ArrayList());
+        Thread[] threads = new Thread[numberThreads];
+        for(int ii = 0; ii < numberThreads; ii++)
+        {
+            final int threadNumber = ii;
+            threads[ii] = new Thread()
+            {
+                public void run()
+                {
+                    try
+                    {
+                        Statement statement = connection.createStatement();
+                        PreparedStatement preparedStatement = connection.prepareStatement("select * from table" + threadNumber);
+                        for(int jj = 0; jj < numberExecutions; jj++)
+                        {
+                            statement.executeUpdate("update " + threadNumber + " " + jj);
+                            preparedStatement.setInt(1, jj);
+                            preparedStatement.executeQuery();
+                            connection.commit();
+                        }
+                    }
+                    catch(Throwable exc)
+                    {
+                        failures.add(exc);
+                    }
+                }
+            };
+            threads[ii].start();
+        }
+        for(int ii = 0; ii < numberThreads; ii++)
+        {
+            threads[ii].join();
+        }
+        assertEquals(0, failures.size());
+        assertEquals(numberThreads, module.getStatements().size());
+        assertEquals(numberThreads, module.getPreparedStatements().size());
+        assertEquals(numberThreads * numberExecutions, connection.getNumberCommits());
+        List statements = connection.getStatementResultSetHandler().getExecutedStatements();
+        assertEquals(numberThreads * numberExecutions, statements.size());
+        int[] nextExecution = new int[numberThreads];
+        for(int ii = 0; ii < statements.size(); ii++)
+        {
+            String sql = (String)statements.get(ii);
+            int threadNumber = Integer.parseInt(sql.substring(7, sql.indexOf(' ', 7)));
+            assertEquals("update " + threadNumber + " " + nextExecution[threadNumber], sql);
+            nextExecution[threadNumber]++;
+        }
+        assertEquals(statements, connection.getStatementResultSetHandler().getExecutedStatements());
+        assertEquals(numberThreads * numberExecutions, connection.getPreparedStatementResultSetHandler().getReturnedResultSets().size());
+        for(int ii = 0; ii < numberThreads; ii++)
+        {
+            ParameterSets sets = module.getExecutedSQLStatementParameterSets("select * from table" + ii);
+            assertEquals(numberExecutions, sets.getNumberParameterSets());
+            assertEquals(new Integer(numberExecutions - 1), sets.getParameterSet(numberExecutions - 1).get(new Integer(1)));
+            ExecutedStatementStatistics statistics = (ExecutedStatementStatistics)module.getExecutedSQLStatementStatistics().get("select * from table" + ii);
+            assertEquals(numberExecutions, statistics.getExecutionCount());
+        }
+        module.verifySQLStatementExecuted("update 7 499");
+        module.verifySQLStatementParameter("select * from table3", 42, 1, new Integer(42));
+        assertEquals(numberThreads, module.getPreparedStatements("select").size());
+    }
+    
     @Test
     public void testGetExecutedSQLStatementsRegEx() throws Exception
     {
@@ -1290,7 +1562,102 @@ public class JDBCTestModuleTest
         testMap.put(new Integer(2), new Integer(4));
         module.verifySQLStatementParameter("insert into test", 1, testMap);
     }
-    
+
+    @Test
+    public void testPreparedStatementLargeBatch() throws Exception
+    {
+        PreparedStatementResultSetHandler handler = mockfactory.getMockConnection().getPreparedStatementResultSetHandler();
+        handler.prepareUpdateCount("insert into test", 2);
+        handler.prepareUpdateCount("insert into test", 5, new Object[] {new Integer(7)});
+        handler.prepareThrowsSQLException("insert into test", new SQLException("failed"), new Object[] {new Integer(900)});
+        MockPreparedStatement preparedStatement = (MockPreparedStatement)mockfactory.getMockConnection().prepareStatement("insert into test");
+        for(int ii = 0; ii < 1000; ii++)
+        {
+            preparedStatement.setInt(1, ii);
+            preparedStatement.setString(2, "test" + ii);
+            preparedStatement.addBatch();
+        }
+        try
+        {
+            preparedStatement.executeBatch();
+            fail();
+        }
+        catch(BatchUpdateException exc)
+        {
+            int[] updateCounts = exc.getUpdateCounts();
+            assertEquals(900, updateCounts.length);
+            assertEquals(2, updateCounts[0]);
+            assertEquals(5, updateCounts[7]);
+            assertEquals(2, updateCounts[899]);
+        }
+        module.verifySQLStatementExecuted("insert into test");
+        assertEquals(900, module.getExecutedSQLStatements().size());
+        ExecutedStatementStatistics statistics = (ExecutedStatementStatistics)handler.getExecutedStatementStatistics().get("insert into test");
+        assertEquals(900, statistics.getExecutionCount());
+        assertEquals(900, statistics.getParameterSetCount());
+        module.verifySQLStatementParameter("insert into test", 7, 1, new Integer(7));
+        module.verifySQLStatementParameter("insert into test", 899, 2, "test899");
+        Map testMap = new HashMap();
+        testMap.put(new Integer(1), new Integer(42));
+        testMap.put(new Integer(2), "test42");
+        module.verifySQLStatementParameter("insert into test", 42, testMap);
+        assertEquals(2, preparedStatement.getUpdateCount());
+        handler.setContinueProcessingOnBatchFailure(true);
+        try
+        {
+            preparedStatement.executeBatch();
+            fail();
+        }
+        catch(BatchUpdateException exc)
+        {
+            int[] updateCounts = exc.getUpdateCounts();
+            assertEquals(1000, updateCounts.length);
+            assertEquals(Statement.EXECUTE_FAILED, updateCounts[900]);
+            assertEquals(2, updateCounts[999]);
+        }
+    }
+
+    @Test
+    public void testPreparedStatementLargeBatchRingBuffer() throws Exception
+    {
+        final int[] numberCopies = new int[1];
+        ParameterUtil.registerCopyStrategy(StringBuffer.class, new ParameterCopyStrategy()
+        {
+            public Object copy(Object source)
+            {
+                numberCopies[0]++;
+                return new StringBuffer(source.toString());
+            }
+        });
+        try
+        {
+            PreparedStatementResultSetHandler handler = mockfactory.getMockConnection().getPreparedStatementResultSetHandler();
+            handler.setJournalMode(AbstractResultSetHandler.JOURNAL_RING_BUFFER);
+            handler.setJournalSize(10);
+            PreparedStatement preparedStatement = mockfactory.getMockConnection().prepareStatement("insert into test");
+            for(int ii = 0; ii < 100000; ii++)
+            {
+                preparedStatement.setObject(1, new StringBuffer("test" + ii));
+                preparedStatement.addBatch();
+            }
+            preparedStatement.executeBatch();
+            assertEquals(10, numberCopies[0]);
+            ParameterSets parameterSets = handler.getParametersForExecutedStatement("insert into test");
+            assertEquals(10, parameterSets.getNumberParameterSets());
+            assertEquals("test99990", parameterSets.getParameterSet(0).get(new Integer(1)).toString());
+            assertEquals("test99999", parameterSets.getParameterSet(9).get(new Integer(1)).toString());
+            assertEquals(100000, ((ExecutedStatementStatistics)handler.getExecutedStatementStatistics().get("insert into test")).getParameterSetCount());
+            handler.setJournalMode(AbstractResultSetHandler.JOURNAL_STATISTICS);
+            preparedStatement.executeBatch();
+            assertEquals(10, numberCopies[0]);
+            assertEquals(200000, ((ExecutedStatementStatistics)handler.getExecutedStatementStatistics().get("insert into test")).getParameterSetCount());
+        }
+        finally
+        {
+            ParameterUtil.removeCopyStrategy(StringBuffer.class);
+        }
+    }
+
     @Test
     public void testSQLStatementParameterCallableStatementBatchParameterSets() throws Exception
     {
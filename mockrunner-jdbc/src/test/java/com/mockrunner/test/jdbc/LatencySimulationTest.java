@@ -0,0 +1,260 @@
+package com.mockrunner.test.jdbc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.sql.Statement;
+import java.util.Arrays;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.mockrunner.jdbc.ExecutedStatementStatistics;
+import com.mockrunner.jdbc.FixedLatencyProfile;
+import com.mockrunner.jdbc.HistogramLatencyProfile;
+import com.mockrunner.jdbc.LogNormalLatencyProfile;
+import com.mockrunner.jdbc.PreparedStatementResultSetHandler;
+import com.mockrunner.jdbc.StatementResultSetHandler;
+import com.mockrunner.jdbc.VirtualClock;
+import com.mockrunner.mock.jdbc.JDBCMockObjectFactory;
+import com.mockrunner.mock.jdbc.MockConnection;
+import com.mockrunner.mock.jdbc.MockResultSet;
+
+public class LatencySimulationTest
+{
+    private MockConnection connection;
+    private StatementResultSetHandler statementHandler;
+    private PreparedStatementResultSetHandler preparedStatementHandler;
+    private VirtualClock clock;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        connection = new JDBCMockObjectFactory().getMockConnection();
+        statementHandler = connection.getStatementResultSetHandler();
+        preparedStatementHandler = connection.getPreparedStatementResultSetHandler();
+        clock = new VirtualClock(1000);
+        statementHandler.setClock(clock);
+        preparedStatementHandler.setClock(clock);
+    }
+
+    @Test
+    public void testExecutionLatency() throws Exception
+    {
+        statementHandler.prepareLatency("select", new FixedLatencyProfile(250));
+        statementHandler.prepareGlobalLatency(new FixedLatencyProfile(10));
+        preparedStatementHandler.prepareLatency("update", new FixedLatencyProfile(40));
+        Statement statement = connection.createStatement();
+        statement.executeQuery("select name from customer");
+        assertEquals(1250, clock.currentTimeMillis());
+        statement.executeUpdate("delete from customer");
+        assertEquals(1260, clock.currentTimeMillis());
+        PreparedStatement preparedStatement = connection.prepareStatement("update customer");
+        preparedStatement.executeUpdate();
+        assertEquals(1300, clock.currentTimeMillis());
+        preparedStatement.addBatch();
+        preparedStatement.addBatch();
+        preparedStatement.executeBatch();
+        assertEquals(1340, clock.currentTimeMillis());
+        connection.prepareStatement("select").executeQuery();
+        assertEquals(1340, clock.currentTimeMillis());
+        assertSame(statementHandler.getGlobalLatencyProfile(), statementHandler.getLatencyProfile("insert"));
+        statementHandler.removeLatency("select");
+        statementHandler.clearGlobalLatency();
+        assertNull(statementHandler.getLatencyProfile("select"));
+        statement.executeQuery("select name from customer");
+        assertEquals(1340, clock.currentTimeMillis());
+    }
+
+    @Test
+    public void testExecutionDurationStatistics() throws Exception
+    {
+        statementHandler.setStatisticsEnabled(true);
+        preparedStatementHandler.setStatisticsEnabled(true);
+        statementHandler.prepareLatency("select", new FixedLatencyProfile(250));
+        preparedStatementHandler.prepareLatency("update", new FixedLatencyProfile(40));
+        Statement statement = connection.createStatement();
+        statement.executeQuery("select name from customer");
+        statement.executeQuery("select name from customer");
+        statement.executeUpdate("delete from customer");
+        PreparedStatement preparedStatement = connection.prepareStatement("update customer");
+        preparedStatement.executeUpdate();
+        preparedStatement.addBatch();
+        preparedStatement.addBatch();
+        preparedStatement.executeBatch();
+        ExecutedStatementStatistics statistics = (ExecutedStatementStatistics)statementHandler.getExecutedStatementStatistics().get("select name from customer");
+        assertEquals(2, statistics.getExecutionCount());
+        assertEquals(500, statistics.getTotalDuration());
+        assertEquals(250, statistics.getMaxDuration());
+        assertEquals(250.0, statistics.getAverageDuration(), 0.0);
+        assertEquals(1250, statistics.getFirstExecutionTime());
+        assertEquals(1500, statistics.getLastExecutionTime());
+        statistics = (ExecutedStatementStatistics)statementHandler.getExecutedStatementStatistics().get("delete from customer");
+        assertEquals(0, statistics.getTotalDuration());
+        statistics = (ExecutedStatementStatistics)preparedStatementHandler.getExecutedStatementStatistics().get("update customer");
+        assertEquals(3, statistics.getExecutionCount());
+        assertEquals(2, statistics.getBatchExecutionCount());
+        assertEquals(80, statistics.getTotalDuration());
+        assertEquals(40, statistics.getMaxDuration());
+        statementHandler.clearExecutedStatementStatistics();
+        assertTrue(statementHandler.getExecutedStatementStatistics().isEmpty());
+        assertEquals(3, statementHandler.getExecutedStatements().size());
+    }
+
+    @Test
+    public void testQueryTimeout() throws Exception
+    {
+        statementHandler.prepareLatency("select", new FixedLatencyProfile(5000));
+        Statement statement = connection.createStatement();
+        statement.setQueryTimeout(2);
+        try
+        {
+            statement.executeQuery("select name from customer");
+            fail();
+        }
+        catch(SQLTimeoutException exc)
+        {
+            assertEquals("HYT00", exc.getSQLState());
+        }
+        assertEquals(3000, clock.currentTimeMillis());
+        assertTrue(statementHandler.getExecutedStatements().isEmpty());
+        statement.setQueryTimeout(5);
+        statement.executeQuery("select name from customer");
+        assertEquals(8000, clock.currentTimeMillis());
+        assertEquals(1, statementHandler.getExecutedStatements().size());
+    }
+
+    @Test
+    public void testCancel() throws Exception
+    {
+        clock.setAutoAdvance(false);
+        preparedStatementHandler.prepareGlobalLatency(new FixedLatencyProfile(1000));
+        PreparedStatement statement = connection.prepareStatement("select name from customer");
+        statement.cancel();
+        SQLException[] exception = new SQLException[1];
+        Thread thread = startExecution(statement, exception);
+        waitForSleepingThreads(1);
+        clock.advance(500);
+        assertEquals(1, clock.getNumberSleepingThreads());
+        statement.cancel();
+        thread.join(10000);
+        assertFalse(thread.isAlive());
+        assertEquals("HY008", exception[0].getSQLState());
+        assertEquals(0, clock.getNumberSleepingThreads());
+        assertTrue(preparedStatementHandler.getExecutedStatements().isEmpty());
+        exception[0] = null;
+        thread = startExecution(statement, exception);
+        waitForSleepingThreads(1);
+        clock.advance(1000);
+        thread.join(10000);
+        assertFalse(thread.isAlive());
+        assertNull(exception[0]);
+        assertFalse(Thread.currentThread().isInterrupted());
+    }
+
+    @Test
+    public void testRowFetchLatency() throws Exception
+    {
+        MockResultSet resultSet = statementHandler.createResultSet();
+        resultSet.addColumn("id", new Object[] {"1", "2", "3", "4", "5"});
+        statementHandler.prepareGlobalResultSet(resultSet);
+        statementHandler.prepareGlobalLatency(new FixedLatencyProfile(100, 10));
+        Statement statement = connection.createStatement();
+        statement.setFetchSize(2);
+        ResultSet result = statement.executeQuery("select id from customer");
+        assertEquals(1100, clock.currentTimeMillis());
+        assertTrue(result.next());
+        assertEquals(1120, clock.currentTimeMillis());
+        assertTrue(result.next());
+        assertEquals(1120, clock.currentTimeMillis());
+        assertTrue(result.next());
+        assertTrue(result.next());
+        assertEquals(1140, clock.currentTimeMillis());
+        assertTrue(result.next());
+        assertEquals(1150, clock.currentTimeMillis());
+        assertFalse(result.next());
+        assertEquals(1150, clock.currentTimeMillis());
+        statement.setFetchSize(0);
+        result = statement.executeQuery("select id from customer");
+        while(result.next());
+        assertEquals(1300, clock.currentTimeMillis());
+        resultSet.next();
+        assertEquals(1300, clock.currentTimeMillis());
+    }
+
+    @Test
+    public void testLatencyDistributions() throws Exception
+    {
+        LogNormalLatencyProfile logNormal = new LogNormalLatencyProfile(100, 0.5, 42);
+        long[] samples = new long[1001];
+        for(int ii = 0; ii < samples.length; ii++)
+        {
+            samples[ii] = logNormal.nextExecutionLatency();
+            assertTrue(samples[ii] >= 0);
+        }
+        Arrays.sort(samples);
+        assertTrue(samples[500] > 80 && samples[500] < 120);
+        assertTrue(samples[990] > 200);
+        assertEquals(100, new LogNormalLatencyProfile(100, 0).nextExecutionLatency());
+        HistogramLatencyProfile histogram = new HistogramLatencyProfile(new long[] {5, 50, 500}, new long[] {0, 3, 1}, 42);
+        int[] counts = new int[3];
+        for(int ii = 0; ii < 4000; ii++)
+        {
+            long latency = histogram.nextExecutionLatency();
+            if(5 == latency) counts[0]++;
+            else if(50 == latency) counts[1]++;
+            else if(500 == latency) counts[2]++;
+            else fail();
+        }
+        assertEquals(0, counts[0]);
+        assertTrue(counts[1] > 2700 && counts[1] < 3300);
+        assertEquals(7, new HistogramLatencyProfile(new long[] {7}).nextExecutionLatency());
+        try
+        {
+            new HistogramLatencyProfile(new long[] {1, 2}, new long[] {0, 0});
+            fail();
+        }
+        catch(IllegalArgumentException exc)
+        {
+            //should throw exception
+        }
+    }
+
+    private Thread startExecution(final PreparedStatement statement, final SQLException[] exception)
+    {
+        Thread thread = new Thread()
+        {
+            public void run()
+            {
+                try
+                {
+                    statement.executeQuery();
+                }
+                catch(SQLException exc)
+                {
+                    exception[0] = exc;
+                }
+            }
+        };
+        thread.start();
+        return thread;
+    }
+
+    private void waitForSleepingThreads(int number) throws Exception
+    {
+        long endTime = System.currentTimeMillis() + 10000;
+        while(clock.getNumberSleepingThreads() < number && System.currentTimeMillis() < endTime)
+        {
+            Thread.sleep(1);
+        }
+        assertEquals(number, clock.getNumberSleepingThreads());
+    }
+}
@@ -33,6 +33,8 @@ public class MockBlobTest extends TestCase
         assertTrue(Arrays.equals(data, new byte[] {1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11})); 
         assertTrue(blob.getBytes(5, 0).length == 0);
         assertTrue(new MockBlob(new byte[] {}).getBytes(1, 0).length == 0);
+        assertTrue(blob.getBytes(12, 0).length == 0);
+        assertTrue(blob.getBytes(12, 5).length == 0);
         try
         {
             blob.getBytes(1, -1);
@@ -109,6 +111,44 @@ public class MockBlobTest extends TestCase
         assertTrue(Arrays.equals(data, new byte[] {1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16}));
     }
     
+    public void testStreamIsNotAffectedByUpdates() throws Exception
+    {
+        InputStream stream = blob.getBinaryStream();
+        InputStream partStream = blob.getBinaryStream(3, 2);
+        blob.setBytes(1, new byte[] {20, 21, 22, 23});
+        blob.setBytes(12, new byte[] {12});
+        assertTrue(StreamUtil.compareStreams(stream, new ByteArrayInputStream(new byte[] {1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11})));
+        assertTrue(StreamUtil.compareStreams(partStream, new ByteArrayInputStream(new byte[] {3, 4})));
+        assertTrue(Arrays.equals(blob.getBytes(1, 12), new byte[] {20, 21, 22, 23, 5, 6, 7, 8, 9, 10, 11, 12}));
+    }
+    
+    public void testTruncateAndGrow() throws Exception
+    {
+        blob.truncate(3);
+        assertEquals(3, blob.length());
+        blob.setBytes(6, new byte[] {6});
+        assertTrue(Arrays.equals(blob.getBytes(1, 6), new byte[] {1, 2, 3, 0, 0, 6}));
+        assertEquals(new MockBlob(new byte[] {1, 2, 3, 0, 0, 6}), blob);
+        assertEquals(new MockBlob(new byte[] {1, 2, 3, 0, 0, 6}).hashCode(), blob.hashCode());
+    }
+    
+    public void testLargeData() throws Exception
+    {
+        byte[] data = new byte[1024 * 1024];
+        for(int ii = 0; ii < data.length; ii++)
+        {
+            data[ii] = (byte)ii;
+        }
+        MockBlob largeBlob = new MockBlob(new byte[0]);
+        OutputStream stream = largeBlob.setBinaryStream(1);
+        stream.write(data);
+        stream.write(new byte[] {-1, -2, -3});
+        assertEquals(data.length + 3, largeBlob.length());
+        assertEquals(data.length + 1, largeBlob.position(new byte[] {-1, -2}, 1));
+        assertTrue(Arrays.equals(largeBlob.getBytes(257, 3), new byte[] {0, 1, 2}));
+        assertTrue(largeBlob.equals(largeBlob.clone()));
+    }
+    
     public void testFree() throws Exception
     {
         assertFalse(blob.wasFreeCalled());
@@ -2,6 +2,7 @@ package com.mockrunner.test.jdbc;
 
 import java.io.ByteArrayInputStream;
 import java.io.OutputStream;
+import java.io.Reader;
 import java.io.StringReader;
 import java.io.Writer;
 import java.sql.SQLException;
@@ -89,6 +90,108 @@ public class MockClobTest extends TestCase
         assertEquals("This is a Test ClobThis is a Test Clob", clob.getSubString(1, 38));
     }
     
+    public void testWriterAppends() throws Exception
+    {
+        Writer writer = clob.setCharacterStream(20);
+        writer.write("ab");
+        writer.write("cd");
+        assertEquals("This is a Test Clobabcd", clob.getSubString(1, 30));
+    }
+    
+    public void testLargeData() throws Exception
+    {
+        StringBuffer buffer = new StringBuffer();
+        for(int ii = 0; ii < 10000; ii++)
+        {
+            buffer.append(ii % 10);
+        }
+        String data = buffer.toString();
+        MockClob largeClob = new MockClob(data);
+        Reader reader = largeClob.getCharacterStream();
+        Reader partReader = largeClob.getCharacterStream(4090, 10);
+        largeClob.setString(4093, "XYZ");
+        largeClob.truncate(8193);
+        assertTrue(StreamUtil.compareReaders(reader, new StringReader(data)));
+        assertTrue(StreamUtil.compareReaders(partReader, new StringReader(data.substring(4089, 4099))));
+        assertEquals(8193, largeClob.length());
+        assertEquals("01XYZ56", largeClob.getSubString(4091, 7));
+        assertEquals(4093, largeClob.position("XYZ", 1));
+        largeClob.truncate(8200);
+        assertEquals("2\u0000\u0000", largeClob.getSubString(8193, 3));
+        MockClob cloneClob = (MockClob)largeClob.clone();
+        largeClob.setString(1, "A");
+        assertEquals("0", cloneClob.getSubString(1, 1));
+        assertEquals("A", largeClob.getSubString(1, 1));
+        assertFalse(largeClob.equals(cloneClob));
+        cloneClob.setString(1, "A");
+        assertEquals(largeClob, cloneClob);
+        assertEquals(largeClob.hashCode(), cloneClob.hashCode());
+    }
+    
+    public void testConcurrentClone() throws Exception
+    {
+        StringBuffer buffer = new StringBuffer();
+        for(int ii = 0; ii < 10000; ii++)
+        {
+            buffer.append(ii % 10);
+        }
+        final String data = buffer.toString();
+        final MockClob largeClob = new MockClob(data);
+        final MockClob[] clones = new MockClob[8];
+        final Throwable[] failures = new Throwable[clones.length];
+        Thread[] threads = new Thread[clones.length];
+        for(int ii = 0; ii < threads.length; ii++)
+        {
+            final int index = ii;
+            threads[ii] = new Thread()
+            {
+                public void run()
+                {
+                    try
+                    {
+                        for(int yy = 0; yy < 100; yy++)
+                        {
+                            MockClob cloneClob = (MockClob)largeClob.clone();
+                            assertTrue(StreamUtil.compareReaders(largeClob.getCharacterStream(4090, 10), new StringReader(data.substring(4089, 4099))));
+                            cloneClob.setString(4096, "X");
+                            assertEquals("X", cloneClob.getSubString(4096, 1));
+                            clones[index] = cloneClob;
+                        }
+                    }
+                    catch(Throwable exc)
+                    {
+                        failures[index] = exc;
+                    }
+                }
+            };
+            threads[ii].start();
+        }
+        for(int ii = 0; ii < threads.length; ii++)
+        {
+            threads[ii].join();
+            assertNull(failures[ii]);
+        }
+        largeClob.setString(1, "A");
+        largeClob.setString(8000, "B");
+        assertEquals(largeClob, largeClob.clone());
+        for(int ii = 0; ii < clones.length; ii++)
+        {
+            assertEquals("0", clones[ii].getSubString(1, 1));
+            assertEquals("X", clones[ii].getSubString(4096, 1));
+            assertEquals(data.substring(7999, 8000), clones[ii].getSubString(8000, 1));
+        }
+        Reader reader = largeClob.getCharacterStream();
+        largeClob.setString(1, "C");
+        assertEquals('A', reader.read());
+        assertEquals("C", largeClob.getSubString(1, 1));
+    }
+    
+    public void testHashCode() throws Exception
+    {
+        MockClob clob1 = new MockClob("This is a Test Clob");
+        assertEquals((31 * "This is a Test Clob".hashCode()) + 62, clob1.hashCode());
+    }
+    
     public void testFree() throws Exception
     {
         assertFalse(clob.wasFreeCalled());
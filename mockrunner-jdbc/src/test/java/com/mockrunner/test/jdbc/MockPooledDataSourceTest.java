@@ -0,0 +1,233 @@
+package com.mockrunner.test.jdbc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.mockrunner.base.VerifyFailedException;
+import com.mockrunner.jdbc.JDBCTestModule;
+import com.mockrunner.mock.jdbc.JDBCMockObjectFactory;
+import com.mockrunner.mock.jdbc.MockConnection;
+import com.mockrunner.mock.jdbc.MockPooledDataSource;
+import com.mockrunner.mock.jdbc.MockResultSet;
+
+public class MockPooledDataSourceTest
+{
+    private JDBCMockObjectFactory mockFactory;
+    private JDBCTestModule module;
+    private MockPooledDataSource dataSource;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        mockFactory = new JDBCMockObjectFactory();
+        module = new JDBCTestModule(mockFactory);
+        dataSource = mockFactory.enablePooledDataSource(2);
+    }
+
+    @Test
+    public void testDistinctConnectionsShareHandlers() throws Exception
+    {
+        assertSame(dataSource, mockFactory.getMockDataSource());
+        assertSame(mockFactory.getMockConnection(), dataSource.getMockConnection());
+        assertTrue(mockFactory.getMockConnection().getStatementResultSetHandler().isConcurrent());
+        mockFactory.getMockConnection().getStatementResultSetHandler().prepareResultSet("select", new MockResultSet("id"));
+        Connection connection1 = dataSource.getConnection();
+        Connection connection2 = dataSource.getConnection();
+        assertNotSame(connection1, connection2);
+        assertNotSame(mockFactory.getMockConnection(), connection1);
+        assertSame(mockFactory.getMockConnection().getStatementResultSetHandler(), ((MockConnection)connection1).getStatementResultSetHandler());
+        ResultSet resultSet = connection1.createStatement().executeQuery("select");
+        assertEquals("id", ((MockResultSet)resultSet).getId());
+        connection2.prepareStatement("update").executeUpdate();
+        module.verifySQLStatementExecuted("select");
+        module.verifySQLStatementExecuted("update");
+        module.verifyNumberStatements(1);
+        module.verifyNumberPreparedStatements(1);
+        connection1.close();
+        assertTrue(connection1.isClosed());
+        connection1.close();
+        assertEquals(1, dataSource.getInUseCount());
+        Connection connection3 = dataSource.getConnection();
+        assertSame(connection1, connection3);
+        assertFalse(connection3.isClosed());
+        assertEquals(2, dataSource.getPooledConnections().size());
+        connection2.close();
+        connection3.close();
+        module.verifyAllConnectionsReleased();
+        module.verifyNumberConnectionAcquisitions(3);
+        module.verifyPeakConnectionsInUse(2);
+        module.verifyNumberConnectionTimeouts(0);
+    }
+
+    @Test
+    public void testReleaseClosesStatements() throws Exception
+    {
+        Connection connection = dataSource.getConnection();
+        Statement statement = connection.createStatement();
+        PreparedStatement preparedStatement = connection.prepareStatement("update", Statement.RETURN_GENERATED_KEYS);
+        CallableStatement callableStatement = connection.prepareCall("call");
+        connection.close();
+        assertTrue(statement.isClosed());
+        assertTrue(preparedStatement.isClosed());
+        assertTrue(callableStatement.isClosed());
+        connection = dataSource.getConnection();
+        Statement otherStatement = connection.createStatement();
+        assertFalse(otherStatement.isClosed());
+        connection.close();
+        assertTrue(otherStatement.isClosed());
+        module.verifyNumberStatements(2);
+    }
+    
+    @Test
+    public void testReduceMaxPoolSize() throws Exception
+    {
+        dataSource.setMaxPoolSize(3);
+        Connection connection1 = dataSource.getConnection();
+        Connection connection2 = dataSource.getConnection();
+        Connection connection3 = dataSource.getConnection();
+        connection1.close();
+        connection2.close();
+        assertEquals(3, dataSource.getPooledConnections().size());
+        dataSource.setMaxPoolSize(2);
+        assertEquals(2, dataSource.getPooledConnections().size());
+        assertTrue(dataSource.getPooledConnections().contains(connection3));
+        dataSource.setMaxPoolSize(1);
+        assertEquals(1, dataSource.getPooledConnections().size());
+        assertSame(connection3, dataSource.getPooledConnections().get(0));
+        connection3.close();
+        assertEquals(1, dataSource.getPooledConnections().size());
+        assertSame(connection3, dataSource.getConnection());
+    }
+
+    @Test
+    public void testTimeout() throws Exception
+    {
+        dataSource.setAcquisitionTimeout(50);
+        Connection connection1 = dataSource.getConnection();
+        dataSource.getConnection();
+        try
+        {
+            dataSource.getConnection();
+            fail();
+        }
+        catch(SQLException exc)
+        {
+            //should throw exception
+        }
+        assertEquals(1, dataSource.getTimeoutCount());
+        assertTrue(dataSource.getMaxWaitTime() >= 40);
+        assertTrue(dataSource.getTotalWaitTime() >= dataSource.getMaxWaitTime());
+        module.verifyNumberConnectionTimeouts(1);
+        module.verifyMaxConnectionWaitTime(10000);
+        try
+        {
+            module.verifyMaxConnectionWaitTime(10);
+            fail();
+        }
+        catch(VerifyFailedException exc)
+        {
+            //should throw exception
+        }
+        try
+        {
+            module.verifyAllConnectionsReleased();
+            fail();
+        }
+        catch(VerifyFailedException exc)
+        {
+            //should throw exception
+        }
+        connection1.close();
+        dataSource.resetStatistics();
+        assertEquals(1, dataSource.getPeakInUseCount());
+        assertEquals(0, dataSource.getTimeoutCount());
+        assertEquals(0, dataSource.getAcquisitionCount());
+    }
+
+    @Test
+    public void testBlockingAcquisition() throws Exception
+    {
+        final Connection connection1 = dataSource.getConnection();
+        dataSource.getConnection();
+        Thread thread = new Thread()
+        {
+            public void run()
+            {
+                try
+                {
+                    Thread.sleep(100);
+                    connection1.close();
+                }
+                catch(Exception exc)
+                {
+                    throw new RuntimeException(exc);
+                }
+            }
+        };
+        thread.start();
+        Connection connection3 = dataSource.getConnection();
+        thread.join();
+        assertSame(connection1, connection3);
+        assertTrue(dataSource.getMaxWaitTime() >= 50);
+        module.verifyNumberConnectionAcquisitions(3);
+        module.verifyPeakConnectionsInUse(2);
+    }
+
+    @Test
+    public void testTransactions() throws Exception
+    {
+        Connection connection1 = dataSource.getConnection();
+        Connection connection2 = dataSource.getConnection();
+        module.verifyNotCommitted();
+        connection1.commit();
+        connection2.commit();
+        connection2.rollback(connection2.setSavepoint("test"));
+        module.verifyNumberCommits(2);
+        module.verifyNumberRollbacks(1);
+        module.verifySavepointRolledBack("test");
+        assertEquals(2, ((MockConnection)connection1).getNumberCommits());
+        assertEquals(1, connection1.setSavepoint().getSavepointId());
+        module.verifySavepointPresent(1);
+        ((MockConnection)connection2).resetNumberCommits();
+        module.verifyNotCommitted();
+        mockFactory.getMockConnection().setTransactionIsolation(Connection.TRANSACTION_SERIALIZABLE);
+        connection1.setAutoCommit(true);
+        connection1.setReadOnly(true);
+        connection1.setTransactionIsolation(Connection.TRANSACTION_READ_UNCOMMITTED);
+        connection1.close();
+        Connection connection3 = dataSource.getConnection();
+        assertSame(connection1, connection3);
+        assertFalse(connection3.getAutoCommit());
+        assertFalse(connection3.isReadOnly());
+        assertEquals(Connection.TRANSACTION_SERIALIZABLE, connection3.getTransactionIsolation());
+    }
+
+    @Test
+    public void testNoPooledDataSource() throws Exception
+    {
+        module = new JDBCTestModule(new JDBCMockObjectFactory());
+        try
+        {
+            module.verifyNumberConnectionAcquisitions(0);
+            fail();
+        }
+        catch(VerifyFailedException exc)
+        {
+            //should throw exception
+        }
+    }
+}
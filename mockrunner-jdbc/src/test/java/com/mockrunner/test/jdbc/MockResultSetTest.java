@@ -1105,6 +1105,43 @@ public class MockResultSetTest extends TestCase
         assertNotSame(metaData1, cloneResult.getMetaData());
     }
     
+    public void testCloneCopyOnWrite() throws Exception
+    {
+        resultSet.setResultSetConcurrency(ResultSet.CONCUR_UPDATABLE);
+        resultSet.addColumn("first", new Object[] {"1", "2", "3"});
+        resultSet.addColumn("second", new Object[] {new MockBlob(new byte[] {1}), new MockBlob(new byte[] {2}), null});
+        MockResultSet firstClone = (MockResultSet)resultSet.clone();
+        MockResultSet secondClone = (MockResultSet)resultSet.clone();
+        firstClone.next();
+        secondClone.next();
+        assertNotSame(firstClone.getBlob("second"), secondClone.getBlob(2));
+        assertNotSame(firstClone.getColumn(2).get(1), secondClone.getColumn("second").get(1));
+        assertNotSame(firstClone.getRow(2).get(1), resultSet.getRow(2).get(1));
+        firstClone.updateString("first", "x");
+        firstClone.updateRow();
+        firstClone.next();
+        firstClone.deleteRow();
+        firstClone.moveToInsertRow();
+        firstClone.updateString(1, "y");
+        firstClone.insertRow();
+        firstClone.moveToCurrentRow();
+        assertEquals(4, firstClone.getRowCount());
+        firstClone.setDatabaseView(true);
+        assertTrue(firstClone.isColumnEqual(1, Arrays.asList(new Object[] {"x", "y", null, "3"})));
+        assertTrue(firstClone.rowUpdated(1));
+        assertEquals(3, secondClone.getRowCount());
+        assertTrue(secondClone.isColumnEqual(1, Arrays.asList(new Object[] {"1", "2", "3"})));
+        assertFalse(secondClone.rowUpdated(1));
+        assertFalse(secondClone.rowDeleted(2));
+        assertTrue(resultSet.isEqual(secondClone));
+        resultSet.addRow(new Object[] {"4", null});
+        resultSet.setFetchDirection(ResultSet.FETCH_REVERSE);
+        assertEquals(3, secondClone.getRowCount());
+        assertEquals("1", secondClone.getString(1));
+        assertTrue(secondClone.isColumnEqual(1, Arrays.asList(new Object[] {"1", "2", "3"})));
+        assertTrue(resultSet.isColumnEqual(1, Arrays.asList(new Object[] {"4", "3", "2", "1"})));
+    }
+    
     public void testCaseInsensitiveColumns() throws Exception
     {
         resultSet.setResultSetConcurrency(ResultSet.CONCUR_UPDATABLE);
@@ -1147,4 +1184,59 @@ public class MockResultSetTest extends TestCase
             //expected exception
         }
     }
+    
+    public void testColumnarStorage() throws Exception
+    {
+        resultSet.addColumn("first", new Object[] {new Integer(1), new Integer(2), null});
+        resultSet.addColumn("second", new Object[] {"a", "b", "c"});
+        resultSet.setColumnarStorage(true);
+        assertTrue(resultSet.isColumnarStorage());
+        resultSet.addColumn("third", new Object[] {new Long(10), new Long(20)});
+        resultSet.addRow(new Object[] {new Integer(4), "d", new Double(40.5)});
+        assertEquals(4, resultSet.getRowCount());
+        resultSet.setResultSetConcurrency(ResultSet.CONCUR_UPDATABLE);
+        resultSet.next();
+        assertEquals(1, resultSet.getInt(1));
+        assertFalse(resultSet.wasNull());
+        assertEquals(new Integer(1), resultSet.getObject(1));
+        assertEquals("a", resultSet.getString(2));
+        assertEquals(10, resultSet.getLong(3));
+        resultSet.updateInt(1, 5);
+        assertEquals(5, resultSet.getInt(1));
+        resultSet.setDatabaseView(true);
+        assertEquals(1, resultSet.getInt(1));
+        resultSet.setDatabaseView(false);
+        resultSet.updateRow();
+        resultSet.setDatabaseView(true);
+        assertEquals(5, resultSet.getInt(1));
+        resultSet.setDatabaseView(false);
+        resultSet.next();
+        resultSet.deleteRow();
+        assertTrue(resultSet.rowDeleted());
+        resultSet.next();
+        assertEquals(0, resultSet.getInt("first"));
+        assertTrue(resultSet.wasNull());
+        assertEquals(0, resultSet.getDouble(3), 0);
+        assertTrue(resultSet.wasNull());
+        resultSet.moveToInsertRow();
+        resultSet.updateString(2, "x");
+        resultSet.insertRow();
+        resultSet.moveToCurrentRow();
+        assertEquals(5, resultSet.getRowCount());
+        assertTrue(resultSet.rowInserted());
+        assertEquals("x", resultSet.getString(2));
+        resultSet.last();
+        assertEquals(40, resultSet.getInt(3));
+        assertEquals(40.5, resultSet.getDouble(3), 0);
+        MockResultSet copy = (MockResultSet)resultSet.clone();
+        assertTrue(copy.isColumnarStorage());
+        assertTrue(copy.isEqual(resultSet));
+        copy.updateInt(1, 7);
+        assertEquals(4, resultSet.getInt(1));
+        resultSet.setColumnarStorage(false);
+        assertFalse(resultSet.isColumnarStorage());
+        assertFalse(copy.isEqual(resultSet));
+        assertEquals(4, resultSet.getInt(1));
+        assertTrue(resultSet.isColumnEqual("second", Arrays.asList(new Object[] {"a", null, "x", "c", "d"})));
+    }
 }
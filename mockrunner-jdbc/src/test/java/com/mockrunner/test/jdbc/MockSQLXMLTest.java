@@ -464,6 +464,58 @@ public class MockSQLXMLTest extends TestCase
         assertNotSame(inputStreamSQLXML, clone);
         assertTrue(inputStreamSQLXML.equals(clone));
     }
+
+    public void testConversionCached() throws Exception
+    {
+        prepareTestSQLXMLObjects();
+        String xml = stringSQLXML.getContentAsString();
+        assertSame(xml, stringSQLXML.getContentAsString());
+        assertSame(xml, stringSQLXML.getString());
+        assertXMLEqualsTestXML(xml, getFirstTestXMLAsString());
+        stringSQLXML.setString(getSecondTestXMLAsString());
+        assertXMLEqualsTestXML(stringSQLXML.getContentAsString(), getSecondTestXMLAsString());
+        MockSQLXML writerSQLXML = new MockSQLXML();
+        Writer writer = writerSQLXML.setCharacterStream();
+        writer.write(getFirstTestXMLAsString());
+        assertXMLEqualsTestXML(writerSQLXML.getContentAsString(), getFirstTestXMLAsString());
+        writer.write("<!-- comment -->");
+        assertTrue(writerSQLXML.getContentAsString().indexOf("comment") >= 0);
+    }
+
+    public void testMultipleThreads() throws Exception
+    {
+        final Throwable[] failure = new Throwable[1];
+        Thread[] threads = new Thread[4];
+        for(int ii = 0; ii < threads.length; ii++)
+        {
+            threads[ii] = new Thread()
+            {
+                public void run()
+                {
+                    try
+                    {
+                        for(int jj = 0; jj < 100; jj++)
+                        {
+                            MockSQLXML stringCopy = new MockSQLXML(getFirstTestXMLAsString());
+                            MockSQLXML streamCopy = new MockSQLXML(getTestXMLAsInputStream(getFirstTestXMLAsString()));
+                            assertTrue(stringCopy.equals(streamCopy));
+                            assertXMLEqualsTestXML(streamCopy.getContentAsW3CDocument(), getFirstTestXMLAsString());
+                        }
+                    }
+                    catch(Throwable exc)
+                    {
+                        failure[0] = exc;
+                    }
+                }
+            };
+            threads[ii].start();
+        }
+        for(int ii = 0; ii < threads.length; ii++)
+        {
+            threads[ii].join();
+        }
+        assertNull(failure[0]);
+    }
     
     public void testFree() throws Exception
     {
@@ -9,6 +9,7 @@ import java.util.Date;
 
 import junit.framework.TestCase;
 
+import com.mockrunner.jdbc.ParameterCopyStrategy;
 import com.mockrunner.jdbc.ParameterUtil;
 import com.mockrunner.mock.jdbc.MockArray;
 import com.mockrunner.mock.jdbc.MockBlob;
@@ -111,6 +112,47 @@ public class ParameterUtilTest extends TestCase
     	assertSame(parameter, copyParameter);
     }
     
+    public void testCopyParameterWithStrategy()
+    {
+        ParameterCopyStrategy strategy = new ParameterCopyStrategy()
+        {
+            public Object copy(Object source)
+            {
+                return new StringBuffer(source.toString());
+            }
+        };
+        try
+        {
+            ParameterUtil.registerCopyStrategy(CharSequence.class, strategy);
+            StringBuffer testBuffer = new StringBuffer("Test");
+            StringBuffer copyBuffer = (StringBuffer)ParameterUtil.copyParameter(testBuffer);
+            assertNotSame(testBuffer, copyBuffer);
+            assertEquals("Test", copyBuffer.toString());
+            assertEquals("Test", ParameterUtil.copyParameter("Test").toString());
+            assertTrue(ParameterUtil.copyParameter("Test") instanceof StringBuffer);
+            ParameterUtil.registerCopyStrategy(Date.class, new ParameterCopyStrategy()
+            {
+                public Object copy(Object source)
+                {
+                    return source;
+                }
+            });
+            Date testDate = new Date();
+            assertSame(testDate, ParameterUtil.copyParameter(testDate));
+            ParameterUtil.removeCopyStrategy(Date.class);
+            assertNotSame(testDate, ParameterUtil.copyParameter(testDate));
+            assertEquals(testDate, ParameterUtil.copyParameter(testDate));
+        }
+        finally
+        {
+            ParameterUtil.clearCopyStrategies();
+        }
+        String testString = "Test";
+        assertSame(testString, ParameterUtil.copyParameter(testString));
+        StringBuffer testBuffer = new StringBuffer("Test");
+        assertSame(testBuffer, ParameterUtil.copyParameter(testBuffer));
+    }
+    
     public static class TestParameter implements Cloneable
     {
 		public Object clone() throws CloneNotSupportedException
@@ -0,0 +1,199 @@
+package com.mockrunner.test.jdbc;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+import com.mockrunner.jdbc.FileResultSetFactory;
+import com.mockrunner.jdbc.PreparedStatementResultSetHandler;
+import com.mockrunner.jdbc.QueryEngine;
+import com.mockrunner.jdbc.StringValuesTable;
+import com.mockrunner.mock.jdbc.JDBCMockObjectFactory;
+import com.mockrunner.mock.jdbc.MockConnection;
+import com.mockrunner.mock.jdbc.MockResultSet;
+
+public class QueryEngineTest extends TestCase
+{
+    private QueryEngine engine;
+    
+    protected void setUp() throws Exception
+    {
+        super.setUp();
+        engine = new QueryEngine();
+        engine.registerTable(new StringValuesTable("customer", new String[] {"id", "name", "city"}, new String[][] {
+            new String[] {"1", "Miller", "Berlin"},
+            new String[] {"2", "Smith", "Paris"},
+            new String[] {"3", "O'Neil", "Berlin"},
+            new String[] {"4", "Adams", "Berlin"},
+        }));
+        MockResultSet orders = new MockResultSet("orders");
+        orders.addColumn("orderId", new Object[] {new Integer(10), new Integer(11), new Integer(12)});
+        orders.addColumn("customerId", new Object[] {new Integer(1), new Integer(3), null});
+        orders.addColumn("amount", new Object[] {new Double(2.5), new Double(10), new Double(7)});
+        engine.registerTable("orders", orders);
+    }
+    
+    public void testSelect() throws Exception
+    {
+        MockResultSet result = engine.executeQuery("select * from customer where city = ?", createParameters(new Object[] {"Berlin"}));
+        assertEquals("customer", result.getId());
+        assertEquals(Arrays.asList(new String[] {"id", "name", "city"}), result.getColumnNames());
+        assertEquals(Arrays.asList(new String[] {"1", "3", "4"}), result.getColumn("id"));
+        result = engine.executeQuery("SELECT c.name AS customerName, ID FROM Customer c WHERE c.city = ? AND id = ?", createParameters(new Object[] {"Berlin", new Integer(3)}));
+        assertEquals(Arrays.asList(new String[] {"customerName", "ID"}), result.getColumnNames());
+        assertEquals(1, result.getRowCount());
+        assertEquals("O'Neil", result.getColumn(1).get(0));
+        result = engine.executeQuery("select name from customer where name = 'O''Neil'", new HashMap());
+        assertEquals(1, result.getRowCount());
+        result = engine.executeQuery("select name from customer where city = 'Berlin' order by name desc;", new HashMap());
+        assertEquals(Arrays.asList(new String[] {"O'Neil", "Miller", "Adams"}), result.getColumn(1));
+        result = engine.executeQuery("select name from customer where city = ? and id = 2", createParameters(new Object[] {"Berlin"}));
+        assertEquals(0, result.getRowCount());
+        assertEquals(1, result.getColumnCount());
+        result = engine.executeQuery("select orderId from orders where customerId = 3.0", new HashMap());
+        assertEquals(Arrays.asList(new Object[] {new Integer(11)}), result.getColumn(1));
+        result = engine.executeQuery("select orderId from orders where customerId = ?", createParameters(new Object[] {null}));
+        assertEquals(0, result.getRowCount());
+        result = engine.executeQuery("select orderId, amount from orders order by amount desc, orderId", new HashMap());
+        assertEquals(Arrays.asList(new Object[] {new Integer(11), new Integer(12), new Integer(10)}), result.getColumn(1));
+        result = engine.executeQuery("select orderId from orders order by customerId", new HashMap());
+        assertEquals(Arrays.asList(new Object[] {new Integer(12), new Integer(10), new Integer(11)}), result.getColumn(1));
+    }
+    
+    public void testStringValuesComparedExactly() throws Exception
+    {
+        engine.registerTable(new StringValuesTable("address", new String[] {"zip", "code"}, new String[][] {
+            new String[] {"01234", "1"},
+            new String[] {"1234", "1.0"},
+            new String[] {"1234.0", "x"},
+        }));
+        MockResultSet result = engine.executeQuery("select code from address where zip = '01234'", new HashMap());
+        assertEquals(Arrays.asList(new String[] {"1"}), result.getColumn(1));
+        result = engine.executeQuery("select zip from address where code = ?", createParameters(new Object[] {"1"}));
+        assertEquals(Arrays.asList(new String[] {"01234"}), result.getColumn(1));
+        result = engine.executeQuery("select zip from address where code = '1.0'", new HashMap());
+        assertEquals(Arrays.asList(new String[] {"1234"}), result.getColumn(1));
+        result = engine.executeQuery("select code from address where zip = 1234", new HashMap());
+        assertEquals(Arrays.asList(new String[] {"1", "1.0", "x"}), result.getColumn(1));
+        result = engine.executeQuery("select code from address where zip = ? and code = '1.0'", createParameters(new Object[] {new Integer(1234)}));
+        assertEquals(Arrays.asList(new String[] {"1.0"}), result.getColumn(1));
+        result = engine.executeQuery("select orderId from orders where customerId = '3.0'", new HashMap());
+        assertEquals(Arrays.asList(new Object[] {new Integer(11)}), result.getColumn(1));
+        result = engine.executeQuery("select orderId from orders where customerId = 'abc'", new HashMap());
+        assertEquals(0, result.getRowCount());
+    }
+    
+    public void testWithoutTables() throws Exception
+    {
+        engine.clearTables();
+        assertFalse(engine.canExecute("select * from customer"));
+        assertNull(engine.executeQuery("select * from customer", new HashMap()));
+        for(int ii = 0; ii < 2 * QueryEngine.PARSED_STATEMENT_CACHE_SIZE; ii++)
+        {
+            assertNull(new PreparedStatementResultSetHandler().getResultSet("select * from customer where id = " + ii, new HashMap()));
+        }
+    }
+    
+    public void testUnsupportedStatements() throws Exception
+    {
+        assertTrue(engine.canExecute("select * from customer"));
+        assertFalse(engine.canExecute("select * from unknown"));
+        assertNull(engine.executeQuery("select * from unknown", new HashMap()));
+        assertNull(engine.executeQuery("select count(*) from customer", new HashMap()));
+        assertNull(engine.executeQuery("select * from customer where id = 1 or id = 2", new HashMap()));
+        assertNull(engine.executeQuery("select * from customer where id > 1", new HashMap()));
+        assertNull(engine.executeQuery("select * from customer c join orders o on c.id = o.customerId", new HashMap()));
+        assertNull(engine.executeQuery("select unknown from customer", new HashMap()));
+        assertNull(engine.executeQuery("update customer set name = 'x'", new HashMap()));
+        engine.removeTable("CUSTOMER");
+        assertFalse(engine.hasTable("customer"));
+        assertNull(engine.executeQuery("select * from customer", new HashMap()));
+        engine.clearTables();
+        assertFalse(engine.hasTable("orders"));
+    }
+    
+    public void testManyRows() throws Exception
+    {
+        MockResultSet table = new MockResultSet("large");
+        table.addColumn("id");
+        table.addColumn("group");
+        for(int ii = 0; ii < 20000; ii++)
+        {
+            table.addRow(new Object[] {new Integer(ii), new Integer(ii % 100)});
+        }
+        engine.registerTable("large", table);
+        for(int ii = 0; ii < 20000; ii += 7)
+        {
+            MockResultSet result = engine.executeQuery("select id from large where id = ? and group = ?", createParameters(new Object[] {new Long(ii), new Integer(ii % 100)}));
+            assertEquals(1, result.getRowCount());
+            assertEquals(new Integer(ii), result.getColumn(1).get(0));
+        }
+        assertEquals(200, engine.executeQuery("select * from large where group = 42", new HashMap()).getRowCount());
+    }
+    
+    public void testStreamingTable() throws Exception
+    {
+        File file = File.createTempFile("streaming", ".txt");
+        file.deleteOnExit();
+        FileWriter writer = new FileWriter(file);
+        writer.write("id;name;city\n");
+        writer.write("1;Miller;Berlin\n");
+        writer.write("2;Smith;Paris\n");
+        writer.write("3;Adams\n");
+        writer.close();
+        FileResultSetFactory factory = new FileResultSetFactory(file);
+        factory.setFirstLineContainsColumnNames(true);
+        factory.setStreaming(true);
+        engine.registerTable("streamed", factory);
+        MockResultSet result = engine.executeQuery("select name from streamed order by name", new HashMap());
+        assertEquals(Arrays.asList(new String[] {"Adams", "Miller", "Smith"}), result.getColumn(1));
+        result = engine.executeQuery("select name, city from streamed where id = ?", createParameters(new Object[] {new Integer(3)}));
+        assertEquals(1, result.getRowCount());
+        assertEquals("Adams", result.getColumn(1).get(0));
+        assertNull(result.getColumn(2).get(0));
+        file.delete();
+        assertEquals(1, engine.executeQuery("select * from streamed where city = 'Paris'", new HashMap()).getRowCount());
+    }
+    
+    public void testPreparedStatementFallback() throws Exception
+    {
+        MockConnection connection = new JDBCMockObjectFactory().getMockConnection();
+        PreparedStatementResultSetHandler handler = connection.getPreparedStatementResultSetHandler();
+        handler.setQueryEngine(engine);
+        MockResultSet explicitResult = handler.createResultSet("explicit");
+        handler.prepareResultSet("select name from customer where id = ?", explicitResult, new Object[] {new Integer(2)});
+        PreparedStatement statement = connection.prepareStatement("select name from customer where id = ?");
+        statement.setInt(1, 3);
+        ResultSet result = statement.executeQuery();
+        assertEquals("customer", ((MockResultSet)result).getId());
+        assertTrue(result.next());
+        assertEquals("O'Neil", result.getString("name"));
+        assertFalse(result.next());
+        statement.setInt(1, 2);
+        assertEquals("explicit", ((MockResultSet)statement.executeQuery()).getId());
+        assertEquals(2, handler.getReturnedResultSets().size());
+        handler.prepareResultSet("select name from customer", handler.createResultSet("withoutParameters"));
+        statement.setInt(1, 3);
+        assertNull(handler.getResultSet("select name from customer where id = ?", createParameters(new Object[] {new Integer(3)})));
+        handler.setQueryEngine(null);
+        handler.clearResultSets();
+        assertNull(handler.getResultSet("select name from customer where id = ?", createParameters(new Object[] {new Integer(3)})));
+        assertNotNull(new PreparedStatementResultSetHandler().getQueryEngine());
+    }
+    
+    private Map createParameters(Object[] values)
+    {
+        Map parameters = new HashMap();
+        for(int ii = 0; ii < values.length; ii++)
+        {
+            parameters.put(new Integer(ii + 1), values[ii]);
+        }
+        return parameters;
+    }
+}
@@ -0,0 +1,152 @@
+package com.mockrunner.test.jdbc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.sql.ResultSet;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.mockrunner.base.VerifyFailedException;
+import com.mockrunner.jdbc.JDBCTestModule;
+import com.mockrunner.mock.jdbc.JDBCMockObjectFactory;
+import com.mockrunner.mock.jdbc.MockResultSet;
+import com.mockrunner.mock.jdbc.ResultSetComparator;
+
+public class ResultSetComparatorTest
+{
+    @Test
+    public void testCompareLargeResultSets() throws Exception
+    {
+        MockResultSet source = createResultSet("source", 50000);
+        MockResultSet target = createResultSet("target", 50000);
+        ResultSetComparator comparator = new ResultSetComparator();
+        comparator.setChunkSize(1000);
+        assertTrue(comparator.compare(source, target).isEmpty());
+        assertTrue(source.isEqual(target));
+        target.absolute(40001);
+        target.updateObject("a", new Integer(-1));
+        target.absolute(6);
+        target.updateObject("b", "x");
+        target.updateObject("a", new Integer(-2));
+        List differences = comparator.compare(source, target);
+        assertEquals(3, differences.size());
+        ResultSetComparator.Difference difference = (ResultSetComparator.Difference)differences.get(0);
+        assertEquals(6, difference.getRow());
+        assertEquals("a", difference.getColumnName());
+        assertEquals(new Integer(5), difference.getSourceValue());
+        assertEquals(new Integer(-2), difference.getTargetValue());
+        assertEquals("Row 6, column a: expected 5, but was -2", difference.toString());
+        difference = (ResultSetComparator.Difference)differences.get(1);
+        assertEquals(6, difference.getRow());
+        assertEquals("b", difference.getColumnName());
+        difference = (ResultSetComparator.Difference)differences.get(2);
+        assertEquals(40001, difference.getRow());
+        assertEquals("a", difference.getColumnName());
+        assertFalse(comparator.isEqual(source, target));
+        assertFalse(source.isEqual(target));
+        comparator.setParallel(false);
+        assertEquals(differences.toString(), comparator.compare(source, target).toString());
+    }
+
+    @Test
+    public void testMaxDifferences() throws Exception
+    {
+        MockResultSet source = createResultSet("source", 1000);
+        MockResultSet target = createResultSet("target", 1000);
+        for(int ii = 1000; ii > 0; ii -= 100)
+        {
+            target.absolute(ii);
+            target.updateObject("c", null);
+        }
+        ResultSetComparator comparator = new ResultSetComparator();
+        comparator.setChunkSize(10);
+        comparator.setMaxDifferences(3);
+        List differences = comparator.compare(source, target);
+        assertEquals(3, differences.size());
+        assertEquals(100, ((ResultSetComparator.Difference)differences.get(0)).getRow());
+        assertEquals(200, ((ResultSetComparator.Difference)differences.get(1)).getRow());
+        assertEquals(300, ((ResultSetComparator.Difference)differences.get(2)).getRow());
+        assertNull(((ResultSetComparator.Difference)differences.get(2)).getTargetValue());
+        try
+        {
+            comparator.setMaxDifferences(0);
+            fail();
+        }
+        catch(IllegalArgumentException exc)
+        {
+            //should throw exception
+        }
+    }
+
+    @Test
+    public void testCompareColumns() throws Exception
+    {
+        MockResultSet source = new MockResultSet("source");
+        source.addColumn("id", new Object[] {new Integer(1), new Integer(2)});
+        source.addColumn("name", new Object[] {"a", "b"});
+        source.addColumn("data", new Object[] {new byte[] {1, 2}, null});
+        MockResultSet target = new MockResultSet("target");
+        target.addColumn("id", new Object[] {"1", "2", "3"});
+        target.addColumn("data", new Object[] {new byte[] {1, 2}, null});
+        List differences = new ResultSetComparator().compare(source, target);
+        assertEquals(3, differences.size());
+        assertTrue(differences.toString().indexOf("Column id: expected 2 rows, but was 3") >= 0);
+        assertTrue(differences.toString().indexOf("Column data: expected 2 rows, but was 3") >= 0);
+        assertTrue(differences.toString().indexOf("Column name: column missing") >= 0);
+        for(int ii = 0; ii < differences.size(); ii++)
+        {
+            assertEquals(0, ((ResultSetComparator.Difference)differences.get(ii)).getRow());
+        }
+        target = new MockResultSet("target");
+        target.addColumn("ID", new Object[] {"1", "2"});
+        target.addColumn("name", new Object[] {"a", "b"});
+        target.addColumn("data", new Object[] {new byte[] {1, 2}, null});
+        assertTrue(new ResultSetComparator().isEqual(source, target));
+        assertFalse(new ResultSetComparator().isEqual(source, null));
+    }
+
+    @Test
+    public void testVerifyResultSetEquals() throws Exception
+    {
+        JDBCTestModule module = new JDBCTestModule(new JDBCMockObjectFactory());
+        MockResultSet source = createResultSet("source", 1000);
+        MockResultSet target = createResultSet("target", 1000);
+        module.verifyResultSetEquals(source, target);
+        target.absolute(500);
+        target.updateObject("b", "x");
+        try
+        {
+            module.verifyResultSetEquals(source, target);
+            fail();
+        }
+        catch(VerifyFailedException exc)
+        {
+            assertTrue(exc.getMessage().indexOf("Row 500, column b: expected 499, but was x") >= 0);
+            assertTrue(exc.getMessage().indexOf("Source data") < 0);
+        }
+    }
+
+    private MockResultSet createResultSet(String id, int numberRows)
+    {
+        Object[] a = new Object[numberRows];
+        Object[] b = new Object[numberRows];
+        Object[] c = new Object[numberRows];
+        for(int ii = 0; ii < numberRows; ii++)
+        {
+            a[ii] = new Integer(ii);
+            b[ii] = String.valueOf(ii);
+            c[ii] = new Double(ii / 2.0);
+        }
+        MockResultSet resultSet = new MockResultSet(id);
+        resultSet.addColumn("a", a);
+        resultSet.addColumn("b", b);
+        resultSet.addColumn("c", c);
+        resultSet.setResultSetConcurrency(ResultSet.CONCUR_UPDATABLE);
+        return resultSet;
+    }
+}
@@ -0,0 +1,194 @@
+package com.mockrunner.test.jdbc;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import com.mockrunner.base.NestedApplicationException;
+import com.mockrunner.jdbc.ContainsStatementIndex;
+import com.mockrunner.jdbc.ExactMatchStatementIndex;
+import com.mockrunner.jdbc.RegularExpressionStatementIndex;
+import com.mockrunner.jdbc.SQLStatementIndex;
+import com.mockrunner.jdbc.SQLStatementMap;
+import com.mockrunner.jdbc.SQLStatementMatcher;
+import com.mockrunner.jdbc.SubstringStatementIndex;
+
+public class SQLStatementIndexTest extends TestCase
+{
+    public void testExactMatchStatementIndex()
+    {
+        SQLStatementIndex index = new ExactMatchStatementIndex(false);
+        index.add("select * from x");
+        index.add("SELECT * FROM X");
+        index.add("select * from y");
+        assertEquals(Arrays.asList(new String[] {"SELECT * FROM X", "select * from x"}), index.getMatchingStatements("Select * From X"));
+        assertTrue(index.getMatchingStatements("select * from").isEmpty());
+        index.remove("SELECT * FROM X");
+        assertEquals(Arrays.asList(new String[] {"select * from x"}), index.getMatchingStatements("Select * From X"));
+        index = new ExactMatchStatementIndex(true);
+        index.add("select * from x");
+        index.add("");
+        assertTrue(index.getMatchingStatements("Select * From X").isEmpty());
+        assertEquals(Arrays.asList(new String[] {"select * from x"}), index.getMatchingStatements("select * from x"));
+        assertEquals(Arrays.asList(new String[] {""}), index.getMatchingStatements(null));
+        index.clear();
+        assertTrue(index.getMatchingStatements("select * from x").isEmpty());
+    }
+    
+    public void testSQLStatementMapConcurrentLookup() throws Exception
+    {
+        for(int ii = 0; ii < 20; ii++)
+        {
+            final SQLStatementMap map = new SQLStatementMap();
+            map.put("", "empty");
+            map.put("select", "select");
+            map.put("from customer", "customer");
+            final SQLStatementMatcher matcher = new SQLStatementMatcher(false, false);
+            final List failures = Collections.synchronizedList(new ArrayList());
+            Thread[] threads = new Thread[4];
+            for(int yy = 0; yy < threads.length; yy++)
+            {
+                threads[yy] = new Thread()
+                {
+                    public void run()
+                    {
+                        for(int zz = 0; zz < 100; zz++)
+                        {
+                            List keys = map.getMatchingKeys(matcher, "SELECT * FROM customer");
+                            if(!Arrays.asList(new String[] {"", "from customer", "select"}).equals(keys))
+                            {
+                                failures.add(keys);
+                            }
+                        }
+                    }
+                };
+            }
+            for(int yy = 0; yy < threads.length; yy++)
+            {
+                threads[yy].start();
+            }
+            for(int yy = 0; yy < threads.length; yy++)
+            {
+                threads[yy].join(10000);
+                assertFalse(threads[yy].isAlive());
+            }
+            assertTrue(failures.toString(), failures.isEmpty());
+        }
+    }
+    
+    public void testContainsStatementIndex()
+    {
+        SQLStatementIndex index = new ContainsStatementIndex(true);
+        index.add("he");
+        index.add("she");
+        index.add("his");
+        index.add("hers");
+        index.add("hershey");
+        assertEquals(Arrays.asList(new String[] {"he", "hers", "she"}), index.getMatchingStatements("ushers"));
+        assertEquals(Arrays.asList(new String[] {"his"}), index.getMatchingStatements("this"));
+        assertTrue(index.getMatchingStatements("HIS").isEmpty());
+        index.add("");
+        assertEquals(Arrays.asList(new String[] {""}), index.getMatchingStatements("xyz"));
+        assertEquals(Arrays.asList(new String[] {""}), index.getMatchingStatements(null));
+        index.remove("");
+        index.remove("she");
+        assertEquals(Arrays.asList(new String[] {"he", "hers"}), index.getMatchingStatements("ushers"));
+        index = new ContainsStatementIndex(false);
+        index.add("Select");
+        index.add("FROM TABLE");
+        index.add("aaa");
+        index.add("aab");
+        assertEquals(Arrays.asList(new String[] {"FROM TABLE", "Select"}), index.getMatchingStatements("select * from table"));
+        assertEquals(Arrays.asList(new String[] {"aaa", "aab"}), index.getMatchingStatements("AAAAB"));
+        index.clear();
+        assertTrue(index.getMatchingStatements("select * from table").isEmpty());
+    }
+    
+    public void testSubstringStatementIndex()
+    {
+        SQLStatementIndex index = new SubstringStatementIndex(true);
+        index.add("select * from customer where id = ?");
+        index.add("select * from orders");
+        index.add("insert into customer values(?, ?)");
+        index.add("");
+        assertEquals(Arrays.asList(new String[] {"insert into customer values(?, ?)", "select * from customer where id = ?"}), index.getMatchingStatements("customer"));
+        assertEquals(Arrays.asList(new String[] {"select * from customer where id = ?", "select * from orders"}), index.getMatchingStatements("select"));
+        assertEquals(Arrays.asList(new String[] {"insert into customer values(?, ?)", "select * from customer where id = ?"}), index.getMatchingStatements("?"));
+        assertEquals(4, index.getMatchingStatements(null).size());
+        assertTrue(index.getMatchingStatements("CUSTOMER").isEmpty());
+        assertTrue(index.getMatchingStatements("from customers").isEmpty());
+        index.remove("select * from customer where id = ?");
+        index.remove("");
+        assertEquals(Arrays.asList(new String[] {"insert into customer values(?, ?)"}), index.getMatchingStatements("customer"));
+        index = new SubstringStatementIndex(false);
+        index.add("SELECT * FROM Customer");
+        index.add("select * from customer");
+        assertEquals(Arrays.asList(new String[] {"SELECT * FROM Customer", "select * from customer"}), index.getMatchingStatements("FROM CUSTOMER"));
+        index.clear();
+        assertTrue(index.getMatchingStatements("").isEmpty());
+    }
+    
+    public void testSQLStatementMapKeysMatchedBy()
+    {
+        SQLStatementMap map = new SQLStatementMap();
+        for(int ii = 0; ii < 1000; ii++)
+        {
+            map.put("insert into t" + ii + " values(?)", new Integer(ii));
+        }
+        map.put("select * from T1", "select");
+        SQLStatementMatcher matcher = new SQLStatementMatcher(false, false);
+        assertEquals(Arrays.asList(new String[] {"insert into t999 values(?)"}), map.getKeysMatchedBy(matcher, "T999"));
+        assertEquals(112, map.getKeysMatchedBy(matcher, "t1").size());
+        assertEquals(Arrays.asList(new Object[] {"select"}), matcher.getMatchingObjects(map, "Select", false, false));
+        map.remove("select * from T1");
+        assertTrue(map.getKeysMatchedBy(matcher, "select").isEmpty());
+        map.put("select * from T2", "select");
+        assertEquals(1, map.getKeysMatchedBy(matcher, "select").size());
+        matcher = new SQLStatementMatcher(true, true);
+        assertEquals(Arrays.asList(new String[] {"select * from T2"}), map.getKeysMatchedBy(matcher, "select * from T2"));
+        assertTrue(map.getKeysMatchedBy(matcher, "select * from t2").isEmpty());
+        matcher = new SQLStatementMatcher(false, false, true);
+        assertEquals(Arrays.asList(new String[] {"select * from T2"}), map.getKeysMatchedBy(matcher, "select.*"));
+        map.clear();
+        assertTrue(map.getKeysMatchedBy(new SQLStatementMatcher(false, false), "").isEmpty());
+    }
+    
+    public void testRegularExpressionStatementIndex()
+    {
+        SQLStatementIndex index = new RegularExpressionStatementIndex(false);
+        index.add("select.*");
+        index.add("insert.*");
+        index.add(".*");
+        assertEquals(Arrays.asList(new String[] {".*", "select.*"}), index.getMatchingStatements("SELECT * FROM X"));
+        index.remove(".*");
+        assertTrue(index.getMatchingStatements("update").isEmpty());
+        index = new RegularExpressionStatementIndex(true);
+        index.add("select.*");
+        assertTrue(index.getMatchingStatements("SELECT * FROM X").isEmpty());
+        index.add("[a-");
+        try
+        {
+            index.getMatchingStatements("select");
+            fail();
+        }
+        catch(NestedApplicationException exc)
+        {
+            //should throw exception
+        }
+    }
+    
+    public void testCreateStatementIndex()
+    {
+        assertTrue(new SQLStatementMatcher(false, true, true).createStatementIndex() instanceof ExactMatchStatementIndex);
+        assertTrue(new SQLStatementMatcher(false, false, true).createStatementIndex() instanceof RegularExpressionStatementIndex);
+        assertTrue(new SQLStatementMatcher(true, false).createStatementIndex() instanceof ContainsStatementIndex);
+        assertTrue(new SQLStatementMatcher(false, true, true).createReverseStatementIndex() instanceof ExactMatchStatementIndex);
+        assertNull(new SQLStatementMatcher(false, false, true).createReverseStatementIndex());
+        assertTrue(new SQLStatementMatcher(true, false).createReverseStatementIndex() instanceof SubstringStatementIndex);
+        assertEquals(new SQLStatementMatcher(true, false), new SQLStatementMatcher(true, false, false));
+        assertFalse(new SQLStatementMatcher(true, false).equals(new SQLStatementMatcher(false, false)));
+    }
+}
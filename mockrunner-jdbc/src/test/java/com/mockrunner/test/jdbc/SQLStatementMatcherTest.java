@@ -4,7 +4,9 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
 
+import com.mockrunner.jdbc.SQLStatementMap;
 import com.mockrunner.jdbc.SQLStatementMatcher;
 
 import junit.framework.TestCase;
@@ -192,4 +194,66 @@ public class SQLStatementMatcherTest extends TestCase
         matcher = new SQLStatementMatcher(true, true, true);
         assertFalse(matcher.doStringsMatch("myTest", "[nmg]ytest"));
     }
+    
+    public void testGetMatchingObjectsStatementMap()
+    {
+        Map linearMap = new TreeMap();
+        Map indexedMap = new SQLStatementMap();
+        String[] keys = new String[] {"select", "SELECT * FROM", "from table", "table", "", "insert into", "update x", "e"};
+        for(int ii = 0; ii < keys.length; ii++)
+        {
+            linearMap.put(keys[ii], "Object" + ii);
+            indexedMap.put(keys[ii], "Object" + ii);
+        }
+        List testList = new ArrayList();
+        testList.add("TestList1");
+        testList.add("TestList2");
+        linearMap.put("insert", testList);
+        indexedMap.put("insert", testList);
+        String[] queries = new String[] {"select * from table", "SELECT * FROM TABLE", "insert into x", "update x set y", "", null, "xyz"};
+        boolean[] flags = new boolean[] {false, true};
+        for(int ii = 0; ii < flags.length; ii++)
+        {
+            for(int yy = 0; yy < flags.length; yy++)
+            {
+                SQLStatementMatcher matcher = new SQLStatementMatcher(flags[ii], flags[yy]);
+                for(int zz = 0; zz < queries.length; zz++)
+                {
+                    assertEquals(matcher.getMatchingObjects(linearMap, queries[zz], true, true), matcher.getMatchingObjects(indexedMap, queries[zz], true, true));
+                    assertEquals(matcher.getMatchingObjects(linearMap, queries[zz], false, true), matcher.getMatchingObjects(indexedMap, queries[zz], false, true));
+                }
+            }
+        }
+        indexedMap.remove("table");
+        linearMap.remove("table");
+        indexedMap.put("TABLE", "Object");
+        linearMap.put("TABLE", "Object");
+        SQLStatementMatcher matcher = new SQLStatementMatcher(false, false);
+        assertEquals(matcher.getMatchingObjects(linearMap, "select * from table", true, true), matcher.getMatchingObjects(indexedMap, "select * from table", true, true));
+        indexedMap.clear();
+        assertTrue(matcher.getMatchingObjects(indexedMap, "select * from table", true, true).isEmpty());
+    }
+    
+    public void testGetMatchingObjectsStatementMapRegEx()
+    {
+        Map linearMap = new TreeMap();
+        Map indexedMap = new SQLStatementMap();
+        String[] keys = new String[] {"select.*", "SELECT \\* FROM.*", ".*table", "[a-z]*", "insert into .*"};
+        for(int ii = 0; ii < keys.length; ii++)
+        {
+            linearMap.put(keys[ii], "Object" + ii);
+            indexedMap.put(keys[ii], "Object" + ii);
+        }
+        String[] queries = new String[] {"select * from table", "SELECT * FROM TABLE", "insert into x", "", null, "xyz"};
+        SQLStatementMatcher matcher = new SQLStatementMatcher(true, false, true);
+        for(int ii = 0; ii < queries.length; ii++)
+        {
+            assertEquals(matcher.getMatchingObjects(linearMap, queries[ii], true, true), matcher.getMatchingObjects(indexedMap, queries[ii], true, true));
+        }
+        matcher = new SQLStatementMatcher(false, false, true);
+        for(int ii = 0; ii < queries.length; ii++)
+        {
+            assertEquals(matcher.getMatchingObjects(linearMap, queries[ii], true, true), matcher.getMatchingObjects(indexedMap, queries[ii], true, true));
+        }
+    }
 }
@@ -0,0 +1,166 @@
+package com.mockrunner.test.jdbc;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import com.mockrunner.jdbc.RowSource;
+import com.mockrunner.mock.jdbc.MockResultSet;
+import com.mockrunner.mock.jdbc.StreamingMockResultSet;
+
+public class StreamingMockResultSetTest extends TestCase
+{
+    public void testReadRows() throws Exception
+    {
+        TestRowSource source = new TestRowSource(Arrays.asList(new String[] {"id", "name"}), 250);
+        StreamingMockResultSet resultSet = new StreamingMockResultSet("test", source);
+        resultSet.setResultSetType(ResultSet.TYPE_SCROLL_INSENSITIVE);
+        assertEquals(ResultSet.TYPE_FORWARD_ONLY, resultSet.getType());
+        assertEquals(ResultSet.CONCUR_READ_ONLY, resultSet.getConcurrency());
+        assertEquals(2, resultSet.getMetaData().getColumnCount());
+        assertEquals("name", resultSet.getMetaData().getColumnName(2));
+        assertEquals(0, source.openCount);
+        int count = 0;
+        while(resultSet.next())
+        {
+            count++;
+            assertEquals(count, resultSet.getRow());
+            assertEquals(count, resultSet.getInt(1));
+            assertEquals("name" + count, resultSet.getString("NAME"));
+            assertTrue(source.maxRead - count < 100);
+        }
+        assertEquals(250, count);
+        assertEquals(1, source.openCount);
+        assertEquals(1, source.closeCount);
+        assertFalse(resultSet.next());
+        try
+        {
+            resultSet.getString(1);
+            fail();
+        }
+        catch(SQLException exc)
+        {
+            //expected exception
+        }
+    }
+    
+    public void testCloneAndClose() throws Exception
+    {
+        TestRowSource source = new TestRowSource(new ArrayList(), 10);
+        StreamingMockResultSet resultSet = new StreamingMockResultSet("test", source);
+        assertEquals(2, resultSet.getColumnCount());
+        assertEquals(1, source.closeCount);
+        resultSet.setFetchSize(3);
+        resultSet.next();
+        resultSet.next();
+        assertEquals(2, resultSet.getInt("Column1"));
+        MockResultSet clone = (MockResultSet)resultSet.clone();
+        assertTrue(clone.isBeforeFirst());
+        clone.next();
+        assertEquals(1, clone.getInt(1));
+        assertEquals(2, resultSet.getInt(1));
+        clone.close();
+        resultSet.close();
+        assertEquals(source.openCount, source.closeCount);
+        try
+        {
+            resultSet.updateInt(1, 3);
+            fail();
+        }
+        catch(SQLException exc)
+        {
+            //expected exception
+        }
+        try
+        {
+            resultSet.findColumn("Column3");
+            fail();
+        }
+        catch(SQLException exc)
+        {
+            //expected exception
+        }
+    }
+    
+    public void testAbandonedClonesClosed() throws Exception
+    {
+        TestRowSource source = new TestRowSource(Arrays.asList(new String[] {"id", "name"}), 10);
+        StreamingMockResultSet resultSet = new StreamingMockResultSet("test", source);
+        resultSet.setFetchSize(3);
+        MockResultSet unread = (MockResultSet)resultSet.clone();
+        MockResultSet exhausted = (MockResultSet)resultSet.clone();
+        while(exhausted.next());
+        assertEquals(1, source.openCount);
+        assertEquals(1, source.closeCount);
+        MockResultSet abandoned = (MockResultSet)resultSet.clone();
+        abandoned.next();
+        MockResultSet abandonedClone = (MockResultSet)abandoned.clone();
+        abandonedClone.next();
+        assertEquals(3, source.openCount);
+        assertEquals(1, source.closeCount);
+        resultSet.close();
+        assertEquals(3, source.closeCount);
+        assertTrue(abandoned.isClosed());
+        assertTrue(abandonedClone.isClosed());
+        assertFalse(unread.isClosed());
+        assertFalse(exhausted.isClosed());
+        unread.next();
+        assertEquals(4, source.openCount);
+    }
+    
+    private static class TestRowSource implements RowSource
+    {
+        private List columnNames;
+        private int numberRows;
+        private int openCount;
+        private int closeCount;
+        private int maxRead;
+        
+        public TestRowSource(List columnNames, int numberRows)
+        {
+            this.columnNames = columnNames;
+            this.numberRows = numberRows;
+        }
+        
+        public List getColumnNames()
+        {
+            return columnNames;
+        }
+
+        public Iterator openRows()
+        {
+            openCount++;
+            return new Iterator()
+            {
+                private int current = 0;
+                
+                public boolean hasNext()
+                {
+                    return current < numberRows;
+                }
+
+                public Object next()
+                {
+                    current++;
+                    maxRead = Math.max(maxRead, current);
+                    return Arrays.asList(new Object[] {new Integer(current), "name" + current});
+                }
+
+                public void remove()
+                {
+                    throw new UnsupportedOperationException();
+                }
+            };
+        }
+
+        public void closeRows(Iterator rows)
+        {
+            closeCount++;
+        }
+    }
+}
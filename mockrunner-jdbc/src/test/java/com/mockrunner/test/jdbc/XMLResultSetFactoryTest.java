@@ -1,11 +1,18 @@
 package com.mockrunner.test.jdbc;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
+import java.io.BufferedWriter;
 import java.io.File;
+import java.io.FileWriter;
+import java.io.Writer;
+import java.sql.ResultSet;
+import java.sql.SQLException;
 
 import org.junit.Test;
 
@@ -13,6 +20,7 @@ import junit.framework.TestCase;
 
 import com.mockrunner.jdbc.XMLResultSetFactory;
 import com.mockrunner.mock.jdbc.MockResultSet;
+import com.mockrunner.mock.jdbc.StreamingMockResultSet;
 
 public class XMLResultSetFactoryTest
 {
@@ -119,4 +127,168 @@ public class XMLResultSetFactoryTest
             //should throw exception
         }
     }
+    
+    @Test
+    public void testStAXSybaseCreate() throws Exception
+    {
+        XMLResultSetFactory factory = new XMLResultSetFactory(createSybaseFile());
+        factory.setUseStAXParser(true);
+        MockResultSet resultSet = factory.create("");
+        assertEquals(2, resultSet.getColumnCount());
+        assertEquals(3, resultSet.getRowCount());
+        assertEquals("pub_id", resultSet.getMetaData().getColumnName(1));
+        assertEquals("pub_name", resultSet.getMetaData().getColumnName(2));
+        assertEquals("0736", resultSet.getRow(1).get(0));
+        assertEquals("Binnet & Hardley", resultSet.getRow(2).get(1));
+        assertEquals("Algodata Infosystems", resultSet.getColumn("pub_id").get(2));
+        assertNull(resultSet.getColumn("pub_name").get(2));
+        factory.setTrim(false);
+        factory.setColumnarStorage(true);
+        resultSet = factory.create("");
+        assertTrue(resultSet.isColumnarStorage());
+        assertEquals(" New Age Books ", resultSet.getRow(1).get(1));
+    }
+    
+    @Test
+    public void testStAXSquirrelCreate() throws Exception
+    {
+        XMLResultSetFactory factory = new XMLResultSetFactory(createSquirrelFile());
+        factory.setDialect(XMLResultSetFactory.SQUIRREL_DIALECT);
+        factory.setUseStAXParser(true);
+        MockResultSet resultSet = factory.create("");
+        assertEquals(3, resultSet.getColumnCount());
+        assertEquals(3, resultSet.getRowCount());
+        assertEquals("pub_id", resultSet.getMetaData().getColumnName(1));
+        assertEquals("unknown.1", resultSet.getMetaData().getColumnName(2));
+        assertEquals("pub_name", resultSet.getMetaData().getColumnName(3));
+        assertEquals("0877", resultSet.getRow(2).get(0));
+        assertEquals("Binnet & Hardley", resultSet.getRow(2).get(2));
+        assertNull(resultSet.getRow(2).get(1));
+        assertEquals("Algodata Infosystems", resultSet.getRow(3).get(2));
+    }
+    
+    @Test
+    public void testStAXLargeFile() throws Exception
+    {
+        File file = File.createTempFile("large", ".xml");
+        file.deleteOnExit();
+        Writer writer = new BufferedWriter(new FileWriter(file));
+        writer.write("<resultset>\n");
+        for(int ii = 0; ii < 100000; ii++)
+        {
+            writer.write("<row><id>" + ii + "</id><name>name" + ii + "</name></row>\n");
+        }
+        writer.write("<row><id>100000</id></row>\n");
+        writer.write("</resultset>\n");
+        writer.close();
+        XMLResultSetFactory factory = new XMLResultSetFactory(file);
+        factory.setUseStAXParser(true);
+        MockResultSet resultSet = factory.create("");
+        assertEquals(100001, resultSet.getRowCount());
+        assertEquals(2, resultSet.getColumnCount());
+        assertEquals("99999", resultSet.getRow(100000).get(0));
+        assertEquals("name99999", resultSet.getColumn("name").get(99999));
+        assertEquals("100000", resultSet.getColumn("id").get(100000));
+        assertNull(resultSet.getColumn("name").get(100000));
+    }
+    
+    @Test
+    public void testStAXBadFile() throws Exception
+    {
+        File file = File.createTempFile("bad", ".xml");
+        file.deleteOnExit();
+        FileWriter writer = new FileWriter(file);
+        writer.write("<resultset><row><pub_id>0736</pub_id></row><row>");
+        writer.close();
+        XMLResultSetFactory factory = new XMLResultSetFactory(file);
+        factory.setUseStAXParser(true);
+        try
+        {
+            factory.create("");
+            fail();
+        }
+        catch(RuntimeException exc)
+        {
+            //should throw exception
+        }
+    }
+    
+    @Test
+    public void testCreateStreaming() throws Exception
+    {
+        XMLResultSetFactory factory = new XMLResultSetFactory(createSybaseFile());
+        factory.setStreaming(true);
+        MockResultSet resultSet = factory.create("");
+        assertTrue(resultSet instanceof StreamingMockResultSet);
+        assertEquals(ResultSet.TYPE_FORWARD_ONLY, resultSet.getType());
+        assertEquals(2, resultSet.getColumnCount());
+        resultSet.setFetchSize(2);
+        assertTrue(resultSet.next());
+        assertEquals("0736", resultSet.getString("PUB_ID"));
+        assertEquals("New Age Books", resultSet.getString(2));
+        MockResultSet clone = (MockResultSet)resultSet.clone();
+        assertTrue(resultSet.next());
+        assertTrue(resultSet.next());
+        assertTrue(resultSet.isLast());
+        assertNull(resultSet.getString("pub_name"));
+        assertTrue(resultSet.wasNull());
+        assertFalse(resultSet.next());
+        assertTrue(clone.next());
+        assertEquals(736, clone.getInt(1));
+        try
+        {
+            clone.first();
+            fail();
+        } 
+        catch(SQLException exc)
+        {
+            //should throw exception
+        }
+        clone.close();
+        factory = new XMLResultSetFactory(createSquirrelFile());
+        factory.setDialect(XMLResultSetFactory.SQUIRREL_DIALECT);
+        factory.setStreaming(true);
+        resultSet = factory.create("");
+        assertEquals(3, resultSet.getColumnCount());
+        assertTrue(resultSet.next());
+        assertTrue(resultSet.next());
+        assertEquals("0877", resultSet.getString("pub_id"));
+        assertEquals("Binnet & Hardley", resultSet.getString("pub_name"));
+        assertNull(resultSet.getString("unknown.1"));
+        assertTrue(resultSet.next());
+        assertFalse(resultSet.next());
+        resultSet.close();
+    }
+    
+    private File createSybaseFile() throws Exception
+    {
+        File file = File.createTempFile("sybase", ".xml");
+        file.deleteOnExit();
+        FileWriter writer = new FileWriter(file);
+        writer.write("<resultset>\n");
+        writer.write("<row><pub_id>0736</pub_id><pub_name> New Age Books </pub_name></row>\n");
+        writer.write("<!-- comment --><row><pub_id>0877</pub_id><pub_name>Binnet &amp; Hardley</pub_name></row>\n");
+        writer.write("<row><pub_name><![CDATA[Algodata Infosystems]]></pub_name></row>\n");
+        writer.write("</resultset>\n");
+        writer.close();
+        return file;
+    }
+    
+    private File createSquirrelFile() throws Exception
+    {
+        File file = File.createTempFile("squirrel", ".xml");
+        file.deleteOnExit();
+        FileWriter writer = new FileWriter(file);
+        writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"no\"?>\n");
+        writer.write("<table>\n<columns>\n");
+        writer.write("<column number=\"0\"><name>pub_id</name></column>\n");
+        writer.write("<column number=\"2\"><name>pub_name</name></column>\n");
+        writer.write("</columns>\n<rows>\n");
+        writer.write("<row rowNumber=\"0\"><value columnNumber=\"0\">0736</value><value columnNumber=\"2\">New Age Books</value></row>\n");
+        writer.write("<row rowNumber=\"1\"><value columnNumber=\"0\">0877</value><value columnNumber=\"2\">Binnet &amp; Hardley</value></row>\n");
+        writer.write("<row rowNumber=\"2\"><value columnNumber=\"0\">1389</value><value columnNumber=\"2\">Algodata Infosystems</value></row>\n");
+        writer.write("</rows>\n</table>\n");
+        writer.close();
+        return file;
+    }
 }